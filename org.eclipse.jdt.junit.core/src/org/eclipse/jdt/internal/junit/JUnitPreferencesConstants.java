@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -58,6 +58,12 @@ public class JUnitPreferencesConstants {
 	 */
 	public static final String MAX_TEST_RUNS= JUnitCorePlugin.PLUGIN_ID + ".max_test_runs"; //$NON-NLS-1$
 
+	/**
+	 * Boolean preference controlling whether test runs report their results
+	 * with the binary protocol instead of the text protocol.
+	 */
+	public static final String BINARY_PROTOCOL= JUnitCorePlugin.PLUGIN_ID + ".binary_protocol"; //$NON-NLS-1$
+
 	/**
 	 * Javadoc location for JUnit 3
 	 */
@@ -144,6 +150,10 @@ public class JUnitPreferencesConstants {
 		return Platform.getPreferencesService().getBoolean(JUnitCorePlugin.CORE_PLUGIN_ID, DO_FILTER_STACK, true, null);
 	}
 
+	public static boolean getBinaryProtocol() {
+		return Platform.getPreferencesService().getBoolean(JUnitCorePlugin.CORE_PLUGIN_ID, BINARY_PROTOCOL, true, null);
+	}
+
 	public static void setFilterStack(boolean filter) {
 		InstanceScope.INSTANCE.getNode(JUnitCorePlugin.CORE_PLUGIN_ID).putBoolean(DO_FILTER_STACK, filter);
 	}
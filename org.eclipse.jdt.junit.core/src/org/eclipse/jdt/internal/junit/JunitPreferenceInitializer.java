@@ -41,6 +41,7 @@ public class JunitPreferenceInitializer extends AbstractPreferenceInitializer {
 		prefs.put(JUnitPreferencesConstants.PREF_ACTIVE_FILTERS_LIST, active);
 		prefs.put(JUnitPreferencesConstants.PREF_INACTIVE_FILTERS_LIST, ""); //$NON-NLS-1$
 		prefs.putInt(JUnitPreferencesConstants.MAX_TEST_RUNS, 10);
+		prefs.putBoolean(JUnitPreferencesConstants.BINARY_PROTOCOL, true);
 
 		// see https://github.com/junit-team/junit/issues/570
 		prefs.put(JUnitPreferencesConstants.JUNIT3_JAVADOC, "http://junit.sourceforge.net/junit3.8.1/javadoc/"); //$NON-NLS-1$
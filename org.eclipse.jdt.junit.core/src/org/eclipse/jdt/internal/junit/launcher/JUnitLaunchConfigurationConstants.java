@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2009 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -54,6 +54,12 @@ public class JUnitLaunchConfigurationConstants {
 
 	public static final String ATTR_TEST_RUNNER_KIND= JUnitCorePlugin.PLUGIN_ID+".TEST_KIND"; //$NON-NLS-1$
 
+	/**
+	 * The number of threads that run test classes concurrently, or 1 (the default) to
+	 * run them sequentially. Only supported by the JUnit 4 test kind.
+	 */
+	public static final String ATTR_TEST_THREADS= JUnitCorePlugin.PLUGIN_ID+".TEST_THREADS"; //$NON-NLS-1$
+
 	public static ITestKind getTestRunnerKind(ILaunchConfiguration launchConfiguration) {
 		try {
 			String loaderId = launchConfiguration.getAttribute(JUnitLaunchConfigurationConstants.ATTR_TEST_RUNNER_KIND, (String) null);
@@ -12,8 +12,11 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.junit.model;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
@@ -27,6 +30,7 @@ import org.eclipse.core.runtime.ISafeRunnable;
 import org.eclipse.core.runtime.SafeRunner;
 
 import org.eclipse.jdt.internal.junit.JUnitCorePlugin;
+import org.eclipse.jdt.internal.junit.runner.BinaryMessageIds;
 import org.eclipse.jdt.internal.junit.runner.MessageIds;
 import org.eclipse.jdt.internal.junit.runner.RemoteTestRunner;
 
@@ -220,6 +224,10 @@ public class RemoteTestRunnerClient {
 	private int fPort= -1;
 	private PrintWriter fWriter;
 	private PushbackReader fPushbackReader;
+	/**
+	 * The input stream if the RemoteTestRunner uses the binary protocol
+	 */
+	private DataInputStream fDataInputStream;
 	private String fLastLineDelimiter;
 	/**
 	 * The protocol version
@@ -257,19 +265,13 @@ public class RemoteTestRunnerClient {
 					System.out.println("Creating server socket "+fServerPort); //$NON-NLS-1$
 				fServerSocket= new ServerSocket(fServerPort);
 				fSocket= fServerSocket.accept();
-				try {
-				    fPushbackReader= new PushbackReader(new BufferedReader(new InputStreamReader(fSocket.getInputStream(), "UTF-8"))); //$NON-NLS-1$
-				} catch (UnsupportedEncodingException e) {
-				    fPushbackReader= new PushbackReader(new BufferedReader(new InputStreamReader(fSocket.getInputStream())));
-				}
+				InputStream in= fSocket.getInputStream();
 				try {
 				    fWriter= new PrintWriter(new OutputStreamWriter(fSocket.getOutputStream(), "UTF-8"), true); //$NON-NLS-1$
 	            } catch (UnsupportedEncodingException e1) {
 	                fWriter= new PrintWriter(new OutputStreamWriter(fSocket.getOutputStream()), true);
 	            }
-				String message;
-				while(fPushbackReader != null && (message= readMessage(fPushbackReader)) != null)
-					receiveMessage(message);
+				readMessages(in);
 			} catch (SocketException e) {
 				notifyTestRunTerminated();
 			} catch (IOException e) {
@@ -318,6 +320,13 @@ public class RemoteTestRunnerClient {
 			fWriter.close();
 			fWriter= null;
 		}
+		try {
+			if (fDataInputStream != null) {
+				fDataInputStream.close();
+				fDataInputStream= null;
+			}
+		} catch(IOException e) {
+		}
 		try {
 			if (fPushbackReader != null) {
 				fPushbackReader.close();
@@ -345,6 +354,146 @@ public class RemoteTestRunnerClient {
 		return fSocket != null;
 	}
 
+	/**
+	 * Reads the messages of a test run from the given stream and informs the given listeners.
+	 * The protocol is detected from the first bytes of the stream.
+	 * <p>
+	 * Clients that replay recorded test runs use this method instead of
+	 * {@link #startListening(ITestRunListener2[], int)}.
+	 * </p>
+	 *
+	 * @param listeners listeners to inform
+	 * @param in the stream to read from
+	 * @throws IOException if reading from the stream fails
+	 * @since 3.7
+	 */
+	public void readMessages(ITestRunListener2[] listeners, InputStream in) throws IOException {
+		fListeners= listeners;
+		readMessages(in);
+	}
+
+	private void readMessages(InputStream in) throws IOException {
+		BufferedInputStream bufferedIn= new BufferedInputStream(in);
+		if (isBinaryProtocol(bufferedIn)) {
+			DataInputStream dataIn= new DataInputStream(bufferedIn);
+			fDataInputStream= dataIn;
+			int version= dataIn.readInt();
+			if (version > BinaryMessageIds.VERSION)
+				throw new IOException("Unsupported protocol version: " + version); //$NON-NLS-1$
+			fVersion= "v2"; //$NON-NLS-1$
+			while (fDataInputStream != null && readFrame(dataIn)) {
+				// process frames until the end of the stream
+			}
+		} else {
+			try {
+			    fPushbackReader= new PushbackReader(new BufferedReader(new InputStreamReader(bufferedIn, "UTF-8"))); //$NON-NLS-1$
+			} catch (UnsupportedEncodingException e) {
+			    fPushbackReader= new PushbackReader(new BufferedReader(new InputStreamReader(bufferedIn)));
+			}
+			String message;
+			while(fPushbackReader != null && (message= readMessage(fPushbackReader)) != null)
+				receiveMessage(message);
+		}
+	}
+
+	/**
+	 * Tells whether the stream starts with the header of the binary protocol and consumes
+	 * the header if so.
+	 *
+	 * @param in the stream
+	 * @return <code>true</code> if the RemoteTestRunner uses the binary protocol
+	 * @throws IOException if reading from the stream fails
+	 */
+	private static boolean isBinaryProtocol(BufferedInputStream in) throws IOException {
+		byte[] magic= BinaryMessageIds.MAGIC;
+		in.mark(magic.length);
+		for (int i= 0; i < magic.length; i++) {
+			if (in.read() != magic[i]) {
+				in.reset();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads and processes a frame of the binary protocol.
+	 *
+	 * @param in the stream
+	 * @return <code>false</code> if the end of the stream has been reached
+	 * @throws IOException if reading from the stream fails
+	 * @see BinaryMessageIds
+	 */
+	private boolean readFrame(DataInputStream in) throws IOException {
+		int id= in.read();
+		switch (id) {
+			case -1:
+				return false;
+			case BinaryMessageIds.TEST_RUN_START:
+				int count= in.readInt();
+				fVersion= readString(in);
+				notifyTestRunStarted(count);
+				break;
+			case BinaryMessageIds.TEST_START:
+				notifyTestStarted(Integer.toString(in.readInt()), readString(in));
+				break;
+			case BinaryMessageIds.TEST_END:
+				notifyTestEnded(Integer.toString(in.readInt()), readString(in));
+				break;
+			case BinaryMessageIds.TEST_ERROR:
+			case BinaryMessageIds.TEST_FAILED:
+				fFailedTestId= Integer.toString(in.readInt());
+				fFailedTest= readString(in);
+				fFailureKind= id == BinaryMessageIds.TEST_ERROR ? ITestRunListener2.STATUS_ERROR : ITestRunListener2.STATUS_FAILURE;
+				break;
+			case BinaryMessageIds.TRACE:
+				fFailedTrace.setLength(0);
+				fFailedTrace.append(readString(in));
+				notifyTestFailed();
+				fFailedTrace.setLength(0);
+				fActualResult.setLength(0);
+				fExpectedResult.setLength(0);
+				break;
+			case BinaryMessageIds.EXPECTED:
+				fExpectedResult.setLength(0);
+				fExpectedResult.append(readString(in));
+				break;
+			case BinaryMessageIds.ACTUAL:
+				fActualResult.setLength(0);
+				fActualResult.append(readString(in));
+				break;
+			case BinaryMessageIds.RTRACE:
+				fFailedRerunTrace.setLength(0);
+				fFailedRerunTrace.append(readString(in));
+				break;
+			case BinaryMessageIds.TEST_RUN_END:
+				testRunEnded(in.readLong());
+				break;
+			case BinaryMessageIds.TEST_STOPPED:
+				notifyTestRunStopped(in.readLong());
+				shutDown();
+				break;
+			case BinaryMessageIds.TEST_TREE:
+				notifyTestTreeEntry(Integer.toString(in.readInt()) + ',' + readString(in));
+				break;
+			case BinaryMessageIds.TEST_RERAN:
+				scanReranMessage(readString(in));
+				break;
+			case BinaryMessageIds.TEXT:
+				receiveMessage(readString(in));
+				break;
+			default:
+				throw new IOException("Unknown frame: " + id); //$NON-NLS-1$
+		}
+		return true;
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes= new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8"); //$NON-NLS-1$
+	}
+
 	private String readMessage(PushbackReader in) throws IOException {
 		StringBuffer buf= new StringBuffer(128);
 		int ch;
@@ -511,28 +660,40 @@ public class RemoteTestRunnerClient {
 	}
 
 	private void notifyTestEnded(final String test) {
+		if (JUnitCorePlugin.isStopped())
+			return;
+		String s[]= extractTestId(test);
+		notifyTestEnded(s[0], s[1]);
+	}
+
+	private void notifyTestEnded(final String testId, final String testName) {
 		if (JUnitCorePlugin.isStopped())
 			return;
 		for (int i= 0; i < fListeners.length; i++) {
 			final ITestRunListener2 listener= fListeners[i];
 			SafeRunner.run(new ListenerSafeRunnable() {
 				public void run() {
-					String s[]= extractTestId(test);
-					listener.testEnded(s[0], s[1]);
+					listener.testEnded(testId, testName);
 				}
 			});
 		}
 	}
 
 	private void notifyTestStarted(final String test) {
+		if (JUnitCorePlugin.isStopped())
+			return;
+		String s[]= extractTestId(test);
+		notifyTestStarted(s[0], s[1]);
+	}
+
+	private void notifyTestStarted(final String testId, final String testName) {
 		if (JUnitCorePlugin.isStopped())
 			return;
 		for (int i= 0; i < fListeners.length; i++) {
 			final ITestRunListener2 listener= fListeners[i];
 			SafeRunner.run(new ListenerSafeRunnable() {
 				public void run() {
-					String s[]= extractTestId(test);
-					listener.testStarted(s[0], s[1]);
+					listener.testStarted(testId, testName);
 				}
 			});
 		}
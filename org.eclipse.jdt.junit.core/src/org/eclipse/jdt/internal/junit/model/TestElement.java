@@ -294,6 +294,22 @@ public abstract class TestElement implements ITestElement {
 		setStatus(status);
 	}
 
+	/**
+	 * Restores the state of a test element that is read from a swap file.
+	 * Unlike {@link #setStatus(Status, String, String, String)}, the parent is not notified.
+	 *
+	 * @param status the status
+	 * @param trace the failure trace, or <code>null</code>
+	 * @param expected the expected value, or <code>null</code>
+	 * @param actual the actual value, or <code>null</code>
+	 */
+	void restoreState(Status status, String trace, String expected, String actual) {
+		fStatus= status;
+		fTrace= trace;
+		fExpected= expected;
+		fActual= actual;
+	}
+
 	public Status getStatus() {
 		return fStatus;
 	}
@@ -13,6 +13,7 @@
 package org.eclipse.jdt.internal.junit.model;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -85,6 +86,12 @@ public class TestRunSession implements ITestRunSession {
 	 */
 	private HashMap/*<String, TestElement>*/ fIdToTest;
 
+	/**
+	 * Tells whether the swap file is up to date with the model root, i.e. the
+	 * root has been read from the swap file and the session has not been reset since.
+	 */
+	private boolean fSwapFileValid;
+
 	/**
 	 * The TestSuites for which additional children are expected.
 	 */
@@ -218,6 +225,7 @@ public class TestRunSession implements ITestRunSession {
 		fTestRoot= new TestRoot(this);
 		fTestResult= null;
 		fIdToTest= new HashMap();
+		fSwapFileValid= false;
 	}
 
 	/* (non-Javadoc)
@@ -361,7 +369,10 @@ public class TestRunSession implements ITestRunSession {
 		try {
 			File swapFile= getSwapFile();
 
-			JUnitModel.exportTestRunSession(this, swapFile);
+			if (! fSwapFileValid || ! swapFile.exists()) {
+				TestRunSessionSwapFile.write(fTestRoot, swapFile);
+				fSwapFileValid= true;
+			}
 			fTestResult= fTestRoot.getTestResult(true);
 			fTestRoot= null;
 			fTestRunnerClient= null;
@@ -371,7 +382,7 @@ public class TestRunSession implements ITestRunSession {
 
 		} catch (IllegalStateException e) {
 			JUnitCorePlugin.log(e);
-		} catch (CoreException e) {
+		} catch (IOException e) {
 			JUnitCorePlugin.log(e);
 		}
 	}
@@ -390,7 +401,7 @@ public class TestRunSession implements ITestRunSession {
 	private File getSwapFile() throws IllegalStateException {
 		File historyDir= JUnitCorePlugin.getHistoryDirectory();
 		String isoTime= new SimpleDateFormat("yyyyMMdd-HHmmss.SSS").format(new Date(getStartTime())); //$NON-NLS-1$
-		String swapFileName= isoTime + ".xml"; //$NON-NLS-1$
+		String swapFileName= isoTime + ".swap"; //$NON-NLS-1$
 		return new File(historyDir, swapFileName);
 	}
 
@@ -400,12 +411,15 @@ public class TestRunSession implements ITestRunSession {
 			return;
 
 		try {
-			JUnitModel.importIntoTestRunSession(getSwapFile(), this);
+			fIdToTest= new HashMap();
+			fTestRoot= TestRunSessionSwapFile.read(this, getSwapFile());
+			fTestResult= null;
+			fSwapFileValid= true;
 		} catch (IllegalStateException e) {
 			JUnitCorePlugin.log(e);
 			fTestRoot= new TestRoot(this);
 			fTestResult= null;
-		} catch (CoreException e) {
+		} catch (IOException e) {
 			JUnitCorePlugin.log(e);
 			fTestRoot= new TestRoot(this);
 			fTestResult= null;
@@ -513,6 +527,15 @@ public class TestRunSession implements ITestRunSession {
 		return testElement;
 	}
 
+	/**
+	 * Registers a test element that has been read from the swap file.
+	 *
+	 * @param testElement the test element
+	 */
+	void registerTestElement(TestElement testElement) {
+		fIdToTest.put(testElement.getId(), testElement);
+	}
+
 	/**
 	 * Append the test name from <code>s</code> to <code>testName</code>.
 	 *
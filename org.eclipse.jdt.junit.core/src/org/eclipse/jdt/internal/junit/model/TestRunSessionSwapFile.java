@@ -0,0 +1,414 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.jdt.internal.junit.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.eclipse.jdt.junit.model.ITestElement;
+
+import org.eclipse.jdt.internal.junit.model.TestElement.Status;
+
+/**
+ * Reads and writes the files to which test run sessions are swapped out.
+ * <p>
+ * The swap file is a compact binary format that is only used while the workbench
+ * is running. Import and export of test runs still use the XML format of
+ * {@link TestRunSessionSerializer}.
+ * </p>
+ * <p>
+ * The file starts with a header (magic, version, offset of the string table) that is
+ * followed by the records of the test elements in depth-first order. Class names are
+ * stored once in the string table at the end of the file and referenced by index.
+ * The record of a suite is followed by the byte length of its children's records.
+ * When a session is swapped in, only the test root and its direct children are read.
+ * The children of other suites are skipped and only read when they are accessed
+ * for the first time, see {@link TestSuiteElement#getChildren()}.
+ * </p>
+ */
+class TestRunSessionSwapFile {
+
+	private static final int MAGIC= 0x4A555357; // "JUSW"
+	private static final int VERSION= 1;
+
+	/**
+	 * Length of the header: magic, version and the offset of the string table.
+	 */
+	private static final int HEADER_LENGTH= 4 + 4 + 8;
+
+	private static final int BUFFER_SIZE= 32 * 1024;
+
+	private static final byte KIND_CASE= 0;
+	private static final byte KIND_SUITE= 1;
+
+	/** The name is stored as a string. */
+	private static final byte NAME_PLAIN= 0;
+	/** The name is an interned class name. */
+	private static final byte NAME_CLASS= 1;
+	/** The name is a method name followed by an interned class name in parentheses. */
+	private static final byte NAME_METHOD= 2;
+
+	private static final int FLAG_IGNORED= 1;
+	private static final int FLAG_ASSUMPTION_FAILED= 2;
+
+	/**
+	 * Statuses indexed by {@link Status#getOldCode()}.
+	 */
+	private static final Status[] STATUS_BY_CODE= {
+		Status.OK, Status.ERROR, Status.FAILURE, Status.RUNNING, Status.NOT_RUN, Status.RUNNING_ERROR, Status.RUNNING_FAILURE
+	};
+
+	/**
+	 * An input stream that counts the bytes that have been read or skipped.
+	 */
+	private static class PositionInputStream extends FilterInputStream {
+
+		private long fPosition;
+
+		public PositionInputStream(InputStream in, long position) {
+			super(in);
+			fPosition= position;
+		}
+
+		public int read() throws IOException {
+			int b= super.read();
+			if (b != -1)
+				fPosition++;
+			return b;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read= super.read(b, off, len);
+			if (read > 0)
+				fPosition+= read;
+			return read;
+		}
+
+		public long skip(long n) throws IOException {
+			long skipped= super.skip(n);
+			fPosition+= skipped;
+			return skipped;
+		}
+
+		public boolean markSupported() {
+			return false;
+		}
+
+		public long getPosition() {
+			return fPosition;
+		}
+	}
+
+	/**
+	 * Writes the given test root to a swap file.
+	 *
+	 * @param root the test root to write
+	 * @param file the swap file, an existing file is replaced
+	 * @throws IOException if writing fails
+	 */
+	static void write(TestRoot root, File file) throws IOException {
+		new Writer().write(root, file);
+	}
+
+	/**
+	 * Reads the test root and its direct children from the given swap file and
+	 * registers them with the session. Nested suites read their children on demand.
+	 *
+	 * @param session the session to read the test root for
+	 * @param file the swap file
+	 * @return the test root
+	 * @throws IOException if reading fails or the file is not a valid swap file
+	 */
+	static TestRoot read(TestRunSession session, File file) throws IOException {
+		return new TestRunSessionSwapFile(session, file).readRoot();
+	}
+
+	private static class Writer {
+
+		private DataOutputStream fOut;
+
+		private final HashMap/*<String, Integer>*/ fStringIndex= new HashMap();
+		private final ArrayList/*<String>*/ fStrings= new ArrayList();
+
+		/**
+		 * Positions and values of the children lengths that are patched after writing,
+		 * stored as <code>int[] { position, length }</code>.
+		 */
+		private final ArrayList/*<int[]>*/ fPatches= new ArrayList();
+
+		void write(TestRoot root, File file) throws IOException {
+			File tmpFile= new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+			long stringTableOffset;
+			fOut= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), BUFFER_SIZE));
+			try {
+				fOut.writeInt(MAGIC);
+				fOut.writeInt(VERSION);
+				fOut.writeLong(0); // patched below
+				writeElement(root);
+
+				stringTableOffset= fOut.size();
+				fOut.writeInt(fStrings.size());
+				for (int i= 0; i < fStrings.size(); i++)
+					writeString(fOut, (String) fStrings.get(i));
+			} finally {
+				fOut.close();
+			}
+
+			RandomAccessFile patchFile= new RandomAccessFile(tmpFile, "rw"); //$NON-NLS-1$
+			try {
+				patchFile.seek(8);
+				patchFile.writeLong(stringTableOffset);
+				for (int i= 0; i < fPatches.size(); i++) {
+					int[] patch= (int[]) fPatches.get(i);
+					patchFile.seek(patch[0]);
+					patchFile.writeInt(patch[1]);
+				}
+			} finally {
+				patchFile.close();
+			}
+
+			if (file.exists() && ! file.delete() || ! tmpFile.renameTo(file)) {
+				tmpFile.delete();
+				throw new IOException("Could not replace swap file " + file); //$NON-NLS-1$
+			}
+		}
+
+		private void writeElement(TestElement element) throws IOException {
+			boolean isSuite= element instanceof TestSuiteElement;
+			fOut.writeByte(isSuite ? KIND_SUITE : KIND_CASE);
+			writeString(fOut, element.getId());
+			writeName(element.getTestName(), isSuite);
+
+			Status status= isSuite ? ((TestSuiteElement) element).getSuiteStatus() : element.getStatus();
+			fOut.writeByte(status.getOldCode());
+			int flags= 0;
+			if (element instanceof TestCaseElement && ((TestCaseElement) element).isIgnored())
+				flags|= FLAG_IGNORED;
+			if (element.isAssumptionFailure())
+				flags|= FLAG_ASSUMPTION_FAILED;
+			fOut.writeByte(flags);
+			fOut.writeDouble(element.fTime);
+			writeString(fOut, element.getTrace());
+			writeString(fOut, element.getExpected());
+			writeString(fOut, element.getActual());
+
+			if (isSuite) {
+				TestSuiteElement suite= (TestSuiteElement) element;
+				Status childrenStatus= suite.getChildrenStatus();
+				fOut.writeByte(childrenStatus == null ? -1 : childrenStatus.getOldCode());
+				ITestElement[] children= suite.getChildren();
+				fOut.writeInt(children.length);
+				int lengthPosition= fOut.size();
+				fOut.writeInt(0); // patched after writing
+				for (int i= 0; i < children.length; i++)
+					writeElement((TestElement) children[i]);
+				fPatches.add(new int[] { lengthPosition, fOut.size() - lengthPosition - 4 });
+			}
+		}
+
+		private void writeName(String name, boolean isSuite) throws IOException {
+			if (isSuite) {
+				fOut.writeByte(NAME_CLASS);
+				fOut.writeInt(intern(name));
+				return;
+			}
+			int open= name.indexOf('(');
+			if (open > 0 && name.endsWith(")")) { //$NON-NLS-1$
+				fOut.writeByte(NAME_METHOD);
+				writeString(fOut, name.substring(0, open));
+				fOut.writeInt(intern(name.substring(open + 1, name.length() - 1)));
+			} else {
+				fOut.writeByte(NAME_PLAIN);
+				writeString(fOut, name);
+			}
+		}
+
+		private int intern(String string) {
+			Integer index= (Integer) fStringIndex.get(string);
+			if (index == null) {
+				index= new Integer(fStrings.size());
+				fStringIndex.put(string, index);
+				fStrings.add(string);
+			}
+			return index.intValue();
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		if (string == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes= string.getBytes("UTF-8"); //$NON-NLS-1$
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length= in.readInt();
+		if (length == -1)
+			return null;
+		byte[] bytes= new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8"); //$NON-NLS-1$
+	}
+
+	private final TestRunSession fSession;
+	private final File fFile;
+	private String[] fStrings;
+
+	private TestRunSessionSwapFile(TestRunSession session, File file) {
+		fSession= session;
+		fFile= file;
+	}
+
+	private TestRoot readRoot() throws IOException {
+		long stringTableOffset;
+		DataInputStream header= new DataInputStream(new FileInputStream(fFile));
+		try {
+			if (header.readInt() != MAGIC || header.readInt() != VERSION)
+				throw new IOException("Not a swap file: " + fFile); //$NON-NLS-1$
+			stringTableOffset= header.readLong();
+		} finally {
+			header.close();
+		}
+		readStringTable(stringTableOffset);
+
+		FileInputStream fileIn= new FileInputStream(fFile);
+		try {
+			fileIn.getChannel().position(HEADER_LENGTH);
+			PositionInputStream position= new PositionInputStream(new BufferedInputStream(fileIn, BUFFER_SIZE), HEADER_LENGTH);
+			DataInputStream in= new DataInputStream(position);
+
+			if (in.readByte() != KIND_SUITE)
+				throw new IOException("Invalid swap file: " + fFile); //$NON-NLS-1$
+			readString(in); // the id and name of the root are given by the session
+			readName(in);
+			TestRoot root= new TestRoot(fSession);
+			readState(in, root);
+			root.restoreChildrenStatus(readStatus(in));
+			int childCount= in.readInt();
+			in.readInt(); // length of the children
+			readChildren(root, childCount, position, in);
+			return root;
+		} finally {
+			fileIn.close();
+		}
+	}
+
+	private void readStringTable(long offset) throws IOException {
+		FileInputStream fileIn= new FileInputStream(fFile);
+		try {
+			fileIn.getChannel().position(offset);
+			DataInputStream in= new DataInputStream(new BufferedInputStream(fileIn, BUFFER_SIZE));
+			String[] strings= new String[in.readInt()];
+			for (int i= 0; i < strings.length; i++)
+				strings[i]= readString(in);
+			fStrings= strings;
+		} finally {
+			fileIn.close();
+		}
+	}
+
+	/**
+	 * Reads the children of a suite whose children have been skipped.
+	 *
+	 * @param suite the suite
+	 * @param offset the offset of the children's records
+	 * @param childCount the number of children
+	 * @throws IOException if reading fails
+	 */
+	void readChildren(TestSuiteElement suite, long offset, int childCount) throws IOException {
+		FileInputStream fileIn= new FileInputStream(fFile);
+		try {
+			fileIn.getChannel().position(offset);
+			PositionInputStream position= new PositionInputStream(new BufferedInputStream(fileIn, BUFFER_SIZE), offset);
+			readChildren(suite, childCount, position, new DataInputStream(position));
+		} finally {
+			fileIn.close();
+		}
+	}
+
+	private void readChildren(TestSuiteElement parent, int childCount, PositionInputStream position, DataInputStream in) throws IOException {
+		for (int i= 0; i < childCount; i++) {
+			byte kind= in.readByte();
+			String id= readString(in);
+			String name= readName(in);
+			if (kind == KIND_SUITE) {
+				TestSuiteElement suite= new TestSuiteElement(parent, id, name, 0);
+				readState(in, suite);
+				suite.restoreChildrenStatus(readStatus(in));
+				int suiteChildCount= in.readInt();
+				int length= in.readInt();
+				if (suiteChildCount > 0)
+					suite.setSwappedChildren(this, position.getPosition(), suiteChildCount);
+				in.skipBytes(length);
+				fSession.registerTestElement(suite);
+			} else if (kind == KIND_CASE) {
+				TestCaseElement testCase= new TestCaseElement(parent, id, name);
+				readState(in, testCase);
+				fSession.registerTestElement(testCase);
+			} else {
+				throw new IOException("Invalid swap file: " + fFile); //$NON-NLS-1$
+			}
+		}
+	}
+
+	private String readName(DataInputStream in) throws IOException {
+		byte kind= in.readByte();
+		switch (kind) {
+			case NAME_PLAIN:
+				return readString(in);
+			case NAME_CLASS:
+				return fStrings[in.readInt()];
+			case NAME_METHOD:
+				String method= readString(in);
+				return method + '(' + fStrings[in.readInt()] + ')';
+			default:
+				throw new IOException("Invalid swap file: " + fFile); //$NON-NLS-1$
+		}
+	}
+
+	private void readState(DataInputStream in, TestElement element) throws IOException {
+		Status status= readStatus(in);
+		int flags= in.readByte();
+		double time= in.readDouble();
+		String trace= readString(in);
+		String expected= readString(in);
+		String actual= readString(in);
+		element.restoreState(status, trace, expected, actual);
+		element.fTime= time;
+		element.setAssumptionFailed((flags & FLAG_ASSUMPTION_FAILED) != 0);
+		if ((flags & FLAG_IGNORED) != 0)
+			((TestCaseElement) element).setIgnored(true);
+	}
+
+	private Status readStatus(DataInputStream in) throws IOException {
+		int code= in.readByte();
+		if (code == -1)
+			return null;
+		if (code < 0 || code >= STATUS_BY_CODE.length)
+			throw new IOException("Invalid swap file: " + fFile); //$NON-NLS-1$
+		return STATUS_BY_CODE[code];
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,18 +11,29 @@
 
 package org.eclipse.jdt.internal.junit.model;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.jdt.junit.model.ITestElement;
 import org.eclipse.jdt.junit.model.ITestSuiteElement;
 
+import org.eclipse.jdt.internal.junit.JUnitCorePlugin;
+
 
 public class TestSuiteElement extends TestElement implements ITestSuiteElement {
 
 	private List/*<TestElement>*/ fChildren;
 	private Status fChildrenStatus;
 
+	/**
+	 * The swap file from which the children are read on first access,
+	 * or <code>null</code> if the children are loaded.
+	 */
+	private TestRunSessionSwapFile fSwapFile;
+	private long fSwappedChildrenOffset;
+	private int fSwappedChildrenCount;
+
 	public TestSuiteElement(TestSuiteElement parent, String id, String testName, int childrenCount) {
 		super(parent, id, testName);
 		fChildren= new ArrayList(childrenCount);
@@ -50,6 +61,7 @@ public class TestSuiteElement extends TestElement implements ITestSuiteElement {
 	 * @see org.eclipse.jdt.junit.model.ITestSuiteElement#getChildren()
 	 */
 	public ITestElement[] getChildren() {
+		loadSwappedChildren();
 		return (ITestElement[]) fChildren.toArray(new ITestElement[fChildren.size()]);
 	}
 
@@ -57,6 +69,45 @@ public class TestSuiteElement extends TestElement implements ITestSuiteElement {
 		fChildren.add(child);
 	}
 
+	/**
+	 * @return <code>true</code> if this suite has children; does not read
+	 *         swapped out children
+	 */
+	public boolean hasChildren() {
+		synchronized (this) {
+			if (fSwapFile != null)
+				return fSwappedChildrenCount > 0;
+		}
+		return ! fChildren.isEmpty();
+	}
+
+	/**
+	 * Defers reading the children of this suite from the given swap file
+	 * until they are accessed.
+	 *
+	 * @param swapFile the swap file
+	 * @param offset the offset of the children's records in the swap file
+	 * @param childCount the number of children
+	 */
+	synchronized void setSwappedChildren(TestRunSessionSwapFile swapFile, long offset, int childCount) {
+		fSwapFile= swapFile;
+		fSwappedChildrenOffset= offset;
+		fSwappedChildrenCount= childCount;
+	}
+
+	private synchronized void loadSwappedChildren() {
+		if (fSwapFile == null)
+			return;
+		TestRunSessionSwapFile swapFile= fSwapFile;
+		fSwapFile= null;
+		try {
+			((ArrayList) fChildren).ensureCapacity(fSwappedChildrenCount);
+			swapFile.readChildren(this, fSwappedChildrenOffset, fSwappedChildrenCount);
+		} catch (IOException e) {
+			JUnitCorePlugin.log(e);
+		}
+	}
+
 	public Status getStatus() {
 		Status suiteStatus= getSuiteStatus();
 		if (fChildrenStatus != null) {
@@ -68,6 +119,7 @@ public class TestSuiteElement extends TestElement implements ITestSuiteElement {
 	}
 
 	private Status getCumulatedStatus() {
+		loadSwappedChildren();
 		TestElement[] children= (TestElement[]) fChildren.toArray(new TestElement[fChildren.size()]); // copy list to avoid concurreny problems
 		if (children.length == 0)
 			return getSuiteStatus();
@@ -88,7 +140,16 @@ public class TestSuiteElement extends TestElement implements ITestSuiteElement {
 		return super.getStatus();
 	}
 
+	Status getChildrenStatus() {
+		return fChildrenStatus;
+	}
+
+	void restoreChildrenStatus(Status childrenStatus) {
+		fChildrenStatus= childrenStatus;
+	}
+
 	public void childChangedStatus(TestElement child, Status childStatus) {
+		loadSwappedChildren();
 		int childCount= fChildren.size();
 		if (child == fChildren.get(0) && childStatus.isRunning()) {
 			// is first child, and is running -> copy status
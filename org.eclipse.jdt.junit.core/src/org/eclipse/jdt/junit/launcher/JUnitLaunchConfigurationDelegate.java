@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -52,11 +52,13 @@ import org.eclipse.jdt.core.JavaCore;
 
 import org.eclipse.jdt.internal.junit.JUnitCorePlugin;
 import org.eclipse.jdt.internal.junit.JUnitMessages;
+import org.eclipse.jdt.internal.junit.JUnitPreferencesConstants;
 import org.eclipse.jdt.internal.junit.Messages;
 import org.eclipse.jdt.internal.junit.launcher.ITestKind;
 import org.eclipse.jdt.internal.junit.launcher.JUnitLaunchConfigurationConstants;
 import org.eclipse.jdt.internal.junit.launcher.JUnitRuntimeClasspathEntry;
 import org.eclipse.jdt.internal.junit.launcher.TestKindRegistry;
+import org.eclipse.jdt.internal.junit.runner.BinaryMessageIds;
 import org.eclipse.jdt.internal.junit.util.CoreTestSearchEngine;
 import org.eclipse.jdt.internal.junit.util.IJUnitStatusConstants;
 
@@ -290,6 +292,11 @@ public class JUnitLaunchConfigurationDelegate extends AbstractJavaLaunchConfigur
 		programArguments.add("-port"); //$NON-NLS-1$
 		programArguments.add(String.valueOf(fPort));
 
+		if (JUnitPreferencesConstants.getBinaryProtocol()) {
+			programArguments.add("-protocol"); //$NON-NLS-1$
+			programArguments.add(BinaryMessageIds.PROTOCOL_BINARY);
+		}
+
 		if (fKeepAlive)
 			programArguments.add(0, "-keepalive"); //$NON-NLS-1$
 
@@ -300,6 +307,12 @@ public class JUnitLaunchConfigurationDelegate extends AbstractJavaLaunchConfigur
 		programArguments.add("-loaderpluginname"); //$NON-NLS-1$
 		programArguments.add(testRunnerKind.getLoaderPluginId());
 
+		int threadCount= configuration.getAttribute(JUnitLaunchConfigurationConstants.ATTR_TEST_THREADS, 1);
+		if (threadCount > 1 && TestKindRegistry.JUNIT4_TEST_KIND_ID.equals(testRunnerKind.getId())) {
+			programArguments.add("-threads"); //$NON-NLS-1$
+			programArguments.add(String.valueOf(threadCount));
+		}
+
 		IMember[] testElements = fTestElements;
 
 		// a test name was specified just run the single test
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.jdt.internal.junit.runner;
+
+/**
+ * Frame identifiers of the binary protocol used between the
+ * RemoteTestRunner and its client.
+ * <p>
+ * The binary protocol is requested with the <code>-protocol binary</code> argument.
+ * A binary stream starts with {@link #MAGIC} followed by the protocol {@link #VERSION}
+ * as an <code>int</code>. Since no text message starts with a <code>0</code> character,
+ * the client can detect the protocol from the first bytes of the stream and falls back to
+ * the text protocol described in {@link MessageIds} otherwise.
+ * </p>
+ * <p>
+ * Every frame starts with a one byte frame identifier. Test ids are sent as <code>int</code>,
+ * elapsed times as <code>long</code> and strings as an <code>int</code> byte count followed
+ * by the UTF-8 encoded bytes. Stack traces, expected and actual results are sent as a single
+ * string which contains the same text that the text protocol sends in between the start
+ * and the end message.
+ * </p>
+ * <p>
+ * Requests from the client to the RemoteTestRunner always use the text protocol.
+ * </p>
+ *
+ * @see MessageIds
+ * @see BinaryMessageSender
+ */
+public class BinaryMessageIds {
+
+	/**
+	 * Value of the <code>-protocol</code> argument that requests the binary protocol.
+	 */
+	public static final String PROTOCOL_BINARY= "binary"; //$NON-NLS-1$
+
+	/**
+	 * The bytes every binary stream starts with.
+	 */
+	public static final byte[] MAGIC= { 0, 'J', 'U', 'B' };
+
+	/**
+	 * The version of the binary protocol.
+	 */
+	public static final int VERSION= 1;
+
+	/**
+	 * Notification that a test run has started.
+	 * TEST_RUN_START, int testCount, string version
+	 */
+	public static final byte TEST_RUN_START= 1;
+	/**
+	 * Notification that a test has started.
+	 * TEST_START, int testId, string testName
+	 */
+	public static final byte TEST_START= 2;
+	/**
+	 * Notification that a test has ended.
+	 * TEST_END, int testId, string testName
+	 */
+	public static final byte TEST_END= 3;
+	/**
+	 * Notification that a test had an error.
+	 * TEST_ERROR, int testId, string testName.
+	 * After the notification follow the optional EXPECTED and ACTUAL frames and the TRACE frame.
+	 */
+	public static final byte TEST_ERROR= 4;
+	/**
+	 * Notification that a test had a failure.
+	 * TEST_FAILED, int testId, string testName.
+	 * After the notification follow the optional EXPECTED and ACTUAL frames and the TRACE frame.
+	 */
+	public static final byte TEST_FAILED= 5;
+	/**
+	 * Notification that a test run has ended.
+	 * TEST_RUN_END, long elapsedTime
+	 */
+	public static final byte TEST_RUN_END= 6;
+	/**
+	 * Notification that a test run was successfully stopped.
+	 * TEST_STOPPED, long elapsedTime
+	 */
+	public static final byte TEST_STOPPED= 7;
+	/**
+	 * Notification that a test was reran.
+	 * TEST_RERAN, string message, where message has the format
+	 * of the text protocol's {@link MessageIds#TEST_RERAN} argument.
+	 */
+	public static final byte TEST_RERAN= 8;
+	/**
+	 * Notification about a test inside the test suite.
+	 * TEST_TREE, int testId, string entry, where entry is
+	 * testName + "," + isSuite + "," + testcount (+ further fields)
+	 */
+	public static final byte TEST_TREE= 9;
+	/**
+	 * The stack trace of a failed test.
+	 * TRACE, string trace
+	 */
+	public static final byte TRACE= 10;
+	/**
+	 * The expected result of a failed comparison.
+	 * EXPECTED, string expected
+	 */
+	public static final byte EXPECTED= 11;
+	/**
+	 * The actual result of a failed comparison.
+	 * ACTUAL, string actual
+	 */
+	public static final byte ACTUAL= 12;
+	/**
+	 * The stack trace of a reran test.
+	 * RTRACE, string trace
+	 */
+	public static final byte RTRACE= 13;
+	/**
+	 * A message of the text protocol that has no binary representation.
+	 * TEXT, string message
+	 */
+	public static final byte TEXT= 14;
+}
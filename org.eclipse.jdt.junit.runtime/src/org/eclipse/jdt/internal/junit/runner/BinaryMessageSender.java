@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.jdt.internal.junit.runner;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A message sender that translates the messages of the text protocol into
+ * the frames of the binary protocol.
+ * <p>
+ * Frames are buffered and written to the underlying stream at most every
+ * {@link #FLUSH_INTERVAL} milliseconds, even if {@link #flush()} is called more often.
+ * A background thread writes frames that are held back. The end of a test run and
+ * of a rerun are written immediately. Messages in between
+ * a start and an end message (e.g. {@link MessageIds#TRACE_START} and
+ * {@link MessageIds#TRACE_END}) are collected and sent as a single frame.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ *
+ * @see BinaryMessageIds
+ */
+public class BinaryMessageSender implements MessageSender {
+
+	/**
+	 * Maximal time in milliseconds buffered frames are held back while messages are sent.
+	 */
+	private static final long FLUSH_INTERVAL= 50;
+
+	private static final int BUFFER_SIZE= 64 * 1024;
+
+	private static final String LINE_SEPARATOR= System.getProperty("line.separator", "\n"); //$NON-NLS-1$ //$NON-NLS-2$
+
+	private DataOutputStream fOut;
+
+	private long fLastFlush;
+
+	/**
+	 * Tells whether there are frames which have not been written to the underlying stream.
+	 */
+	private boolean fDirty;
+
+	/**
+	 * The frame identifier of the multi-line message that is currently collected,
+	 * or <code>-1</code> if none.
+	 */
+	private byte fBlockId= -1;
+
+	/**
+	 * The end message of the multi-line message that is currently collected.
+	 */
+	private String fBlockEnd;
+
+	private final StringBuffer fBlock= new StringBuffer();
+
+	/**
+	 * Creates a sender that writes to the given stream and sends the protocol header.
+	 *
+	 * @param out the stream to write to
+	 * @throws IOException if the header could not be written
+	 */
+	public BinaryMessageSender(OutputStream out) throws IOException {
+		fOut= new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+		fOut.write(BinaryMessageIds.MAGIC);
+		fOut.writeInt(BinaryMessageIds.VERSION);
+		fOut.flush();
+		fLastFlush= System.currentTimeMillis();
+
+		Thread flusher= new Thread("BinaryMessageSender Flusher") { //$NON-NLS-1$
+			public void run() {
+				flushPeriodically();
+			}
+		};
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	private void flushPeriodically() {
+		while (true) {
+			try {
+				Thread.sleep(FLUSH_INTERVAL);
+			} catch (InterruptedException e) {
+				// continue
+			}
+			synchronized (this) {
+				if (fOut == null)
+					return;
+				if (fDirty && System.currentTimeMillis() - fLastFlush >= FLUSH_INTERVAL)
+					doFlush();
+			}
+		}
+	}
+
+	/*
+	 * @see org.eclipse.jdt.internal.junit.runner.MessageSender#sendMessage(java.lang.String)
+	 */
+	public synchronized void sendMessage(String msg) {
+		if (fOut == null)
+			return;
+		fDirty= true;
+		try {
+			if (fBlockId != -1) {
+				if (msg.startsWith(fBlockEnd)) {
+					writeString(fBlockId, fBlock.toString());
+					fBlock.setLength(0);
+					fBlockId= -1;
+					fBlockEnd= null;
+				} else {
+					fBlock.append(msg).append(LINE_SEPARATOR);
+				}
+				return;
+			}
+			if (writeMessage(msg))
+				doFlush();
+		} catch (IOException e) {
+			// like PrintWriter, ignore write errors; the client has gone away
+		}
+	}
+
+	/**
+	 * Writes the frame for the given message.
+	 *
+	 * @param msg the message of the text protocol
+	 * @return <code>true</code> if the frame must be written to the underlying stream immediately
+	 * @throws IOException if writing fails
+	 */
+	private boolean writeMessage(String msg) throws IOException {
+		if (msg.length() < MessageIds.MSG_HEADER_LENGTH) {
+			writeString(BinaryMessageIds.TEXT, msg);
+			return false;
+		}
+		String header= msg.substring(0, MessageIds.MSG_HEADER_LENGTH);
+		String arg= msg.substring(MessageIds.MSG_HEADER_LENGTH);
+
+		if (header.equals(MessageIds.TRACE_START)) {
+			startBlock(BinaryMessageIds.TRACE, MessageIds.TRACE_END);
+		} else if (header.equals(MessageIds.EXPECTED_START)) {
+			startBlock(BinaryMessageIds.EXPECTED, MessageIds.EXPECTED_END);
+		} else if (header.equals(MessageIds.ACTUAL_START)) {
+			startBlock(BinaryMessageIds.ACTUAL, MessageIds.ACTUAL_END);
+		} else if (header.equals(MessageIds.RTRACE_START)) {
+			startBlock(BinaryMessageIds.RTRACE, MessageIds.RTRACE_END);
+		} else if (header.equals(MessageIds.TEST_START)) {
+			writeTest(BinaryMessageIds.TEST_START, msg, arg);
+		} else if (header.equals(MessageIds.TEST_END)) {
+			writeTest(BinaryMessageIds.TEST_END, msg, arg);
+		} else if (header.equals(MessageIds.TEST_ERROR)) {
+			writeTest(BinaryMessageIds.TEST_ERROR, msg, arg);
+		} else if (header.equals(MessageIds.TEST_FAILED)) {
+			writeTest(BinaryMessageIds.TEST_FAILED, msg, arg);
+		} else if (header.equals(MessageIds.TEST_TREE)) {
+			writeTest(BinaryMessageIds.TEST_TREE, msg, arg);
+		} else if (header.equals(MessageIds.TEST_RUN_START)) {
+			int space= arg.indexOf(' ');
+			try {
+				int count= Integer.parseInt(space == -1 ? arg : arg.substring(0, space));
+				fOut.writeByte(BinaryMessageIds.TEST_RUN_START);
+				fOut.writeInt(count);
+				writeString(space == -1 ? "v1" : arg.substring(space + 1)); //$NON-NLS-1$
+			} catch (NumberFormatException e) {
+				writeString(BinaryMessageIds.TEXT, msg);
+			}
+		} else if (header.equals(MessageIds.TEST_RUN_END)) {
+			writeTime(BinaryMessageIds.TEST_RUN_END, msg, arg);
+			return true;
+		} else if (header.equals(MessageIds.TEST_STOPPED)) {
+			writeTime(BinaryMessageIds.TEST_STOPPED, msg, arg);
+			return true;
+		} else if (header.equals(MessageIds.TEST_RERAN)) {
+			writeString(BinaryMessageIds.TEST_RERAN, arg);
+			return true;
+		} else {
+			writeString(BinaryMessageIds.TEXT, msg);
+		}
+		return false;
+	}
+
+	private void startBlock(byte id, String end) {
+		fBlockId= id;
+		fBlockEnd= end;
+		fBlock.setLength(0);
+	}
+
+	private void writeTest(byte id, String msg, String arg) throws IOException {
+		int comma= arg.indexOf(',');
+		if (comma != -1) {
+			try {
+				int testId= Integer.parseInt(arg.substring(0, comma));
+				fOut.writeByte(id);
+				fOut.writeInt(testId);
+				writeString(arg.substring(comma + 1));
+				return;
+			} catch (NumberFormatException e) {
+				// not an integer id, send as text
+			}
+		}
+		writeString(BinaryMessageIds.TEXT, msg);
+	}
+
+	private void writeTime(byte id, String msg, String arg) throws IOException {
+		try {
+			long time= Long.parseLong(arg);
+			fOut.writeByte(id);
+			fOut.writeLong(time);
+		} catch (NumberFormatException e) {
+			writeString(BinaryMessageIds.TEXT, msg);
+		}
+	}
+
+	private void writeString(byte id, String s) throws IOException {
+		fOut.writeByte(id);
+		writeString(s);
+	}
+
+	private void writeString(String s) throws IOException {
+		byte[] bytes= s.getBytes("UTF-8"); //$NON-NLS-1$
+		fOut.writeInt(bytes.length);
+		fOut.write(bytes);
+	}
+
+	/*
+	 * @see org.eclipse.jdt.internal.junit.runner.MessageSender#flush()
+	 */
+	public synchronized void flush() {
+		if (fOut == null || !fDirty)
+			return;
+		if (System.currentTimeMillis() - fLastFlush >= FLUSH_INTERVAL)
+			doFlush();
+	}
+
+	private void doFlush() {
+		try {
+			fOut.flush();
+		} catch (IOException e) {
+			// ignore, see sendMessage(String)
+		}
+		fDirty= false;
+		fLastFlush= System.currentTimeMillis();
+	}
+
+	/**
+	 * Flushes and closes the underlying stream.
+	 */
+	public synchronized void close() {
+		if (fOut == null)
+			return;
+		try {
+			fOut.close();
+		} catch (IOException e) {
+			// ignore, see sendMessage(String)
+		}
+		fOut= null;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -79,6 +79,18 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	 * Print writer for sending messages
 	 */
 	private PrintWriter fWriter;
+	/**
+	 * Sender for the binary protocol, or <code>null</code> if the text protocol is used
+	 */
+	private BinaryMessageSender fBinarySender;
+	/**
+	 * Should the binary protocol be used (argument -protocol binary)
+	 */
+	private boolean fBinaryProtocol= false;
+	/**
+	 * Number of threads that run test classes concurrently (argument -threads)
+	 */
+	private int fThreadCount= 1;
 	/**
 	 * Reader for incoming messages
 	 */
@@ -188,6 +200,8 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	 * -host: the host to connect to default local host
 	 * -port: the port to connect to, mandatory argument
 	 * -keepalive: keep the process alive after a test run
+	 * -protocol: the protocol used to report results, "binary" or the default text protocol
+	 * -threads: the number of threads that run test classes concurrently, default 1
      * </pre>
      */
 	public static void main(String[] args) {
@@ -286,6 +300,12 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 			    i++;
 			} else if (args[i].toLowerCase().equals("-junitconsole")) { //$NON-NLS-1$
 			    fConsoleMode  = true;
+			} else if (args[i].toLowerCase().equals("-threads")) { //$NON-NLS-1$
+				fThreadCount= Integer.parseInt(args[i+1]);
+				i++;
+			} else if (args[i].toLowerCase().equals("-protocol")) { //$NON-NLS-1$
+				fBinaryProtocol= BinaryMessageIds.PROTOCOL_BINARY.equals(args[i+1]);
+				i++;
 			} else if (args[i].toLowerCase().equals("-testloaderclass")) { //$NON-NLS-1$
 				String className = args[i + 1];
 				createLoader(className);
@@ -387,6 +407,7 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 
 		FirstRunExecutionListener listener= firstRunExecutionListener();
 		fExecution= new TestExecution(listener, getClassifier());
+		fExecution.setThreadCount(fThreadCount);
 		runTests(fExecution);
 		if (fKeepAlive)
 			waitForReruns();
@@ -568,11 +589,15 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 		for (int i= 1; i < 20; i++) {
 			try{
 				fClientSocket= new Socket(fHost, fPort);
-				try {
-				    fWriter= new PrintWriter(new BufferedWriter(new OutputStreamWriter(fClientSocket.getOutputStream(), "UTF-8")), false/*true*/); //$NON-NLS-1$
-	            } catch (UnsupportedEncodingException e1) {
-	                fWriter= new PrintWriter(new BufferedWriter(new OutputStreamWriter(fClientSocket.getOutputStream())), false/*true*/);
-	            }
+				if (fBinaryProtocol) {
+					fBinarySender= new BinaryMessageSender(fClientSocket.getOutputStream());
+				} else {
+					try {
+					    fWriter= new PrintWriter(new BufferedWriter(new OutputStreamWriter(fClientSocket.getOutputStream(), "UTF-8")), false/*true*/); //$NON-NLS-1$
+		            } catch (UnsupportedEncodingException e1) {
+		                fWriter= new PrintWriter(new BufferedWriter(new OutputStreamWriter(fClientSocket.getOutputStream())), false/*true*/);
+		            }
+				}
 				try {
 				    fReader= new BufferedReader(new InputStreamReader(fClientSocket.getInputStream(), "UTF-8")); //$NON-NLS-1$
                 } catch (UnsupportedEncodingException e1) {
@@ -597,6 +622,10 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	 * Shutsdown the connection to the remote test listener.
 	 */
 	private void shutDown() {
+		if (fBinarySender != null) {
+			fBinarySender.close();
+			fBinarySender= null;
+		}
 		if (fWriter != null) {
 			fWriter.close();
 			fWriter= null;
@@ -631,7 +660,12 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	/*
 	 * @see org.eclipse.jdt.internal.junit.runner.MessageSender#sendMessage(java.lang.String)
 	 */
-	public void sendMessage(String msg) {
+	public synchronized void sendMessage(String msg) {
+		// listeners lock this sender to keep multi-line messages together, see FirstRunExecutionListener
+		if (fBinarySender != null) {
+			fBinarySender.sendMessage(msg);
+			return;
+		}
 		if(fWriter == null)
 			return;
 		fWriter.println(msg);
@@ -670,7 +704,11 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 		}
 	}
 
-	public void flush() {
+	public synchronized void flush() {
+		if (fBinarySender != null) {
+			fBinarySender.flush();
+			return;
+		}
 	    fWriter.flush();
 	}
 
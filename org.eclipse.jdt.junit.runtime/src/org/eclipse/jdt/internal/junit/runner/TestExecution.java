@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006 IBM Corporation and others.
+ * Copyright (c) 2006, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,10 +14,15 @@
 package org.eclipse.jdt.internal.junit.runner;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 
 public class TestExecution {
-	private boolean fShouldStop = false;
+	private volatile boolean fShouldStop = false;
+
+	/**
+	 * The number of threads that run test references concurrently, <code>1</code>
+	 * to run them sequentially in the calling thread
+	 */
+	private int fThreadCount = 1;
 
 	private IListensToTestExecutions fExecutionListener;
 
@@ -31,7 +36,23 @@ public class TestExecution {
 		fExecutionListener = listener;
 	}
 
+	/**
+	 * Sets the number of threads that run the test references passed to
+	 * {@link #run(ITestReference[])} concurrently. The execution listener
+	 * must be thread safe if the count is greater than <code>1</code>.
+	 *
+	 * @param threadCount the number of threads, <code>1</code> to run
+	 *        the test references sequentially
+	 */
+	public void setThreadCount(int threadCount) {
+		fThreadCount = Math.max(1, threadCount);
+	}
+
 	public void run(ITestReference[] suites) {
+		if (fThreadCount > 1 && suites.length > 1) {
+			runParallel(suites);
+			return;
+		}
 		for (int i = 0; i < suites.length; i++) {
 			if (fShouldStop)
 				return;
@@ -39,15 +60,57 @@ public class TestExecution {
 		}
 	}
 
+	/**
+	 * Runs the given test references on a pool of worker threads and waits
+	 * until all of them have finished. Each reference is run by a single
+	 * worker, so the tests of a test class still run sequentially.
+	 *
+	 * @param suites the test references to run
+	 */
+	private void runParallel(final ITestReference[] suites) {
+		final int[] next = { 0 };
+		Thread[] workers = new Thread[Math.min(fThreadCount, suites.length)];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread("TestExecution Worker " + (i + 1)) { //$NON-NLS-1$
+				public void run() {
+					while (true) {
+						ITestReference suite;
+						synchronized (next) {
+							if (fShouldStop || next[0] >= suites.length)
+								return;
+							suite = suites[next[0]++];
+						}
+						suite.run(TestExecution.this);
+					}
+				}
+			};
+			workers[i].start();
+		}
+		for (int i = 0; i < workers.length; i++) {
+			boolean interrupted = true;
+			while (interrupted) {
+				try {
+					workers[i].join();
+					interrupted = false;
+				} catch (InterruptedException e) {
+					// wait until the worker has finished
+				}
+			}
+		}
+	}
+
 	public boolean shouldStop() {
 		return fShouldStop;
 	}
 
 	public void stop() {
 		fShouldStop = true;
-		for (Iterator iter = fStopListeners.iterator(); iter.hasNext();) {
-			IStopListener listener = (IStopListener) iter.next();
-			listener.stop();
+		Object[] listeners;
+		synchronized (fStopListeners) {
+			listeners = fStopListeners.toArray();
+		}
+		for (int i = 0; i < listeners.length; i++) {
+			((IStopListener) listeners[i]).stop();
 		}
 	}
 
@@ -60,6 +123,8 @@ public class TestExecution {
 	}
 
 	public void addStopListener(IStopListener listener) {
-		fStopListeners.add(listener);
+		synchronized (fStopListeners) {
+			fStopListeners.add(listener);
+		}
 	}
 }
@@ -163,6 +163,17 @@ public class TestRunnerViewPart extends ViewPart {
 
 	static final int REFRESH_INTERVAL= 200;
 
+	/**
+	 * Upper bound for the delay between two updates while tests are running.
+	 */
+	static final int MAX_REFRESH_INTERVAL= 2000;
+
+	/**
+	 * The delay before the next update is at least this many times the time
+	 * the last update took in the UI thread.
+	 */
+	private static final int REFRESH_LOAD_FACTOR= 4;
+
 	static final int LAYOUT_FLAT= 0;
 	static final int LAYOUT_HIERARCHICAL= 1;
 
@@ -818,10 +829,15 @@ public class TestRunnerViewPart extends ViewPart {
 		}
 		@Override
 		public IStatus runInUIThread(IProgressMonitor monitor) {
+			long delay= REFRESH_INTERVAL;
 			if (!isDisposed()) {
+				long start= System.currentTimeMillis();
 				processChangesInUI();
+				// back off while updating the view keeps the UI thread busy
+				long elapsed= System.currentTimeMillis() - start;
+				delay= Math.min(MAX_REFRESH_INTERVAL, Math.max(REFRESH_INTERVAL, elapsed * REFRESH_LOAD_FACTOR));
 			}
-			schedule(REFRESH_INTERVAL);
+			schedule(delay);
 			return Status.OK_STATUS;
 		}
 
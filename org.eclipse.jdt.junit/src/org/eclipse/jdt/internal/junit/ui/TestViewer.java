@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,12 +14,17 @@
 package org.eclipse.jdt.internal.junit.ui;
 
 import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map.Entry;
 
 import org.eclipse.jdt.junit.model.ITestElement;
 
@@ -29,7 +34,10 @@ import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Menu;
+import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableItem;
 
 import org.eclipse.jface.action.Action;
@@ -40,10 +48,12 @@ import org.eclipse.jface.action.Separator;
 import org.eclipse.jface.viewers.AbstractTreeViewer;
 import org.eclipse.jface.viewers.ISelectionChangedListener;
 import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.viewers.ITreeViewerListener;
 import org.eclipse.jface.viewers.SelectionChangedEvent;
 import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.jface.viewers.StructuredViewer;
 import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.TreeExpansionEvent;
 import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerFilter;
@@ -82,6 +92,47 @@ public class TestViewer {
 		}
 	}
 
+	/**
+	 * Updates the items of changed elements that are in a branch of the tree
+	 * which has just been expanded.
+	 */
+	private final class TreeExpansionListener implements ITreeViewerListener {
+		public void treeExpanded(TreeExpansionEvent event) {
+			// the item is expanded after the listeners have been notified
+			fTreeViewer.getControl().getDisplay().asyncExec(new Runnable() {
+				public void run() {
+					if (! fTreeViewer.getControl().isDisposed())
+						updateExpandedElementsInTree();
+				}
+			});
+		}
+
+		public void treeCollapsed(TreeExpansionEvent event) {
+		}
+	}
+
+	/**
+	 * Updates the items of changed elements that have been scrolled into the
+	 * visible part of the table.
+	 */
+	private final class TableScrollListener implements Listener {
+		private boolean fUpdateScheduled;
+
+		public void handleEvent(Event event) {
+			if (fUpdateScheduled || fTableUpdatesWhileHidden.isEmpty())
+				return;
+			fUpdateScheduled= true;
+			// mouse wheel and key events arrive before the table has scrolled
+			fTableViewer.getControl().getDisplay().asyncExec(new Runnable() {
+				public void run() {
+					fUpdateScheduled= false;
+					if (! fTableViewer.getControl().isDisposed())
+						updateVisibleElementsInTable();
+				}
+			});
+		}
+	}
+
 	private final class FailuresOnlyFilter extends ViewerFilter {
 		@Override
 		public boolean select(Viewer viewer, Object parentElement, Object element) {
@@ -121,6 +172,7 @@ public class TestViewer {
 		@Override
 		public void run(){
 			fTreeViewer.expandAll();
+			updateExpandedElementsInTree();
 		}
 	}
 
@@ -149,6 +201,14 @@ public class TestViewer {
 	private HashSet<TestElement> fNeedUpdate;
 	private TestCaseElement fAutoScrollTarget;
 
+	/*
+	 * Elements from fNeedUpdate whose items are not updated yet because they are not visible.
+	 * Only accessed in the UI thread.
+	 */
+	private final LinkedHashSet<TestElement> fTreeUpdatesWhileHidden= new LinkedHashSet<TestElement>();
+	private final HashMap<TestSuiteElement, LinkedHashSet<TestElement>> fTreeUpdatesWhileCollapsed= new HashMap<TestSuiteElement, LinkedHashSet<TestElement>>();
+	private final LinkedHashSet<TestElement> fTableUpdatesWhileHidden= new LinkedHashSet<TestElement>();
+
 	private LinkedList<TestSuiteElement> fAutoClose;
 	private HashSet<TestSuiteElement> fAutoExpand;
 
@@ -175,6 +235,7 @@ public class TestViewer {
 		fTreeViewer.setContentProvider(fTreeContentProvider);
 		fTreeLabelProvider= new TestSessionLabelProvider(fTestRunnerPart, TestRunnerViewPart.LAYOUT_HIERARCHICAL);
 		fTreeViewer.setLabelProvider(new ColoringLabelProvider(fTreeLabelProvider));
+		fTreeViewer.addTreeListener(new TreeExpansionListener());
 
 		fTableViewer= new TableViewer(fViewerbook, SWT.V_SCROLL | SWT.H_SCROLL | SWT.SINGLE);
 		fTableViewer.setUseHashlookup(true);
@@ -182,6 +243,12 @@ public class TestViewer {
 		fTableViewer.setContentProvider(fTableContentProvider);
 		fTableLabelProvider= new TestSessionLabelProvider(fTestRunnerPart, TestRunnerViewPart.LAYOUT_FLAT);
 		fTableViewer.setLabelProvider(new ColoringLabelProvider(fTableLabelProvider));
+		Table table= fTableViewer.getTable();
+		TableScrollListener tableScrollListener= new TableScrollListener();
+		table.addListener(SWT.Resize, tableScrollListener);
+		table.addListener(SWT.MouseWheel, tableScrollListener);
+		table.addListener(SWT.KeyDown, tableScrollListener);
+		table.getVerticalBar().addListener(SWT.Selection, tableScrollListener);
 
 		fSelectionProvider= new SelectionProviderMediator(new StructuredViewer[] { fTreeViewer, fTableViewer }, fTreeViewer);
 		fSelectionProvider.addSelectionChangedListener(new TestSelectionListener());
@@ -318,8 +385,10 @@ public class TestViewer {
 		/*
 		 * Management of fTreeViewer and fTableViewer
 		 * ******************************************
-		 * - invisible viewer is updated on registerViewerUpdate unless its f*NeedsRefresh is true
+		 * - invisible viewer is updated when it is shown again unless its f*NeedsRefresh is true
 		 * - invisible viewer is not refreshed upfront
+		 * - items in collapsed branches of the tree and outside of the visible part of the
+		 *   table are updated when they become visible
 		 * - on layout change, new viewer is refreshed if necessary
 		 * - filter only applies to "current" layout mode / viewer
 		 */
@@ -330,15 +399,7 @@ public class TestViewer {
 			boolean switchLayout= layoutMode != fLayoutMode;
 			if (switchLayout) {
 				selection= (IStructuredSelection) fSelectionProvider.getSelection();
-				if (layoutMode == TestRunnerViewPart.LAYOUT_HIERARCHICAL) {
-					if (fTreeNeedsRefresh) {
-						clearUpdateAndExpansion();
-					}
-				} else {
-					if (fTableNeedsRefresh) {
-						clearUpdateAndExpansion();
-					}
-				}
+				// pending updates are kept for the viewer that gets hidden, see processChangesInUI()
 				fLayoutMode= layoutMode;
 				fViewerbook.showPage(getActiveViewer().getControl());
 			}
@@ -368,6 +429,7 @@ public class TestViewer {
 				// (ITreeSelection not adapted if TreePaths changed):
 				StructuredSelection flatSelection= new StructuredSelection(selection.toList());
 				fSelectionProvider.setSelection(flatSelection, true);
+				updateRevealedElements();
 			}
 
 		} finally {
@@ -421,49 +483,166 @@ public class TestViewer {
 			fTableNeedsRefresh= false;
 			fTreeViewer.setInput(null);
 			fTableViewer.setInput(null);
+			clearTreeUpdates();
+			fTableUpdatesWhileHidden.clear();
 			return;
 		}
 
 		testRoot= fTestRunSession.getTestRoot();
 
+		List<TestElement> toUpdate;
+		synchronized (this) {
+			toUpdate= new ArrayList<TestElement>(fNeedUpdate);
+			fNeedUpdate.clear();
+		}
+
 		StructuredViewer viewer= getActiveViewer();
-		if (getActiveViewerNeedsRefresh()) {
+		boolean refresh= getActiveViewerNeedsRefresh();
+		if (refresh) {
 			clearUpdateAndExpansion();
 			setActiveViewerNeedsRefresh(false);
 			viewer.setInput(testRoot);
+		}
 
+		if (fLayoutMode == TestRunnerViewPart.LAYOUT_HIERARCHICAL) {
+			if (refresh) {
+				clearTreeUpdates();
+			} else {
+				fTreeUpdatesWhileHidden.addAll(toUpdate);
+				updateHiddenElementsInTree();
+			}
+			if (! fTableNeedsRefresh)
+				fTableUpdatesWhileHidden.addAll(toUpdate);
+		} else {
+			if (refresh) {
+				fTableUpdatesWhileHidden.clear();
+			} else {
+				fTableUpdatesWhileHidden.addAll(toUpdate);
+				updateHiddenElementsInTable();
+			}
+			if (! fTreeNeedsRefresh)
+				fTreeUpdatesWhileHidden.addAll(toUpdate);
+		}
+		autoScrollInUI();
+	}
+
+	private void clearTreeUpdates() {
+		fTreeUpdatesWhileHidden.clear();
+		fTreeUpdatesWhileCollapsed.clear();
+	}
+
+	private void updateHiddenElementsInTree() {
+		if (fTreeUpdatesWhileHidden.isEmpty())
+			return;
+		if (fTreeHasFilter) {
+			for (TestElement element : fTreeUpdatesWhileHidden)
+				updateElementInTree(element);
 		} else {
-			Object[] toUpdate;
-			synchronized (this) {
-				toUpdate= fNeedUpdate.toArray();
-				fNeedUpdate.clear();
+			LinkedHashSet<TestElement> toUpdateWithParents= new LinkedHashSet<TestElement>();
+			for (TestElement element : fTreeUpdatesWhileHidden) {
+				TestElement current= element;
+				while (current != null && toUpdateWithParents.add(current))
+					current= current.getParent(); // ancestors of an added element are already added
 			}
-			if (! fTreeNeedsRefresh && toUpdate.length > 0) {
-				if (fTreeHasFilter)
-					for (Object element : toUpdate)
-						updateElementInTree((TestElement) element);
-				else {
-					HashSet<Object> toUpdateWithParents= new HashSet<Object>();
-					toUpdateWithParents.addAll(Arrays.asList(toUpdate));
-					for (Object element : toUpdate) {
-						TestElement parent= ((TestElement) element).getParent();
-						while (parent != null) {
-							toUpdateWithParents.add(parent);
-							parent= parent.getParent();
-						}
-					}
-					fTreeViewer.update(toUpdateWithParents.toArray(), null);
+			updateElementsInTree(toUpdateWithParents);
+		}
+		fTreeUpdatesWhileHidden.clear();
+	}
+
+	/**
+	 * Updates the items of the given elements in the unfiltered tree. Items in collapsed
+	 * branches are updated when the branch gets expanded.
+	 *
+	 * @param elements the changed elements
+	 */
+	private void updateElementsInTree(Collection<TestElement> elements) {
+		HashMap<TestSuiteElement, Boolean> expandedStates= new HashMap<TestSuiteElement, Boolean>();
+		ArrayList<TestElement> visible= new ArrayList<TestElement>();
+		for (TestElement element : elements) {
+			if (fTreeViewer.testFindItem(element) == null)
+				continue; // the label is computed when the item is created
+
+			TestSuiteElement collapsed= getOutermostCollapsedAncestor(element, expandedStates);
+			if (collapsed == null) {
+				visible.add(element);
+			} else {
+				LinkedHashSet<TestElement> deferred= fTreeUpdatesWhileCollapsed.get(collapsed);
+				if (deferred == null) {
+					deferred= new LinkedHashSet<TestElement>();
+					fTreeUpdatesWhileCollapsed.put(collapsed, deferred);
 				}
+				deferred.add(element);
 			}
-			if (! fTableNeedsRefresh && toUpdate.length > 0) {
-				if (fTableHasFilter)
-					for (Object element : toUpdate)
-						updateElementInTable((TestElement) element);
-				else
-					fTableViewer.update(toUpdate, null);
+		}
+		if (! visible.isEmpty())
+			fTreeViewer.update(visible.toArray(), null);
+	}
+
+	private TestSuiteElement getOutermostCollapsedAncestor(TestElement element, HashMap<TestSuiteElement, Boolean> expandedStates) {
+		TestSuiteElement collapsed= null;
+		TestSuiteElement parent= element.getParent();
+		while (parent != null && ! (parent instanceof TestRoot)) {
+			Boolean expanded= expandedStates.get(parent);
+			if (expanded == null) {
+				expanded= Boolean.valueOf(fTreeViewer.getExpandedState(parent));
+				expandedStates.put(parent, expanded);
 			}
+			if (! expanded.booleanValue())
+				collapsed= parent;
+			parent= parent.getParent();
 		}
-		autoScrollInUI();
+		return collapsed;
+	}
+
+	/**
+	 * Updates the deferred items of branches that have been expanded since they were changed.
+	 */
+	private void updateExpandedElementsInTree() {
+		if (fTreeUpdatesWhileCollapsed.isEmpty())
+			return;
+		ArrayList<TestElement> expanded= new ArrayList<TestElement>();
+		for (Iterator<Entry<TestSuiteElement, LinkedHashSet<TestElement>>> iter= fTreeUpdatesWhileCollapsed.entrySet().iterator(); iter.hasNext();) {
+			Entry<TestSuiteElement, LinkedHashSet<TestElement>> entry= iter.next();
+			if (fTreeViewer.getExpandedState(entry.getKey())) {
+				expanded.addAll(entry.getValue());
+				iter.remove();
+			}
+		}
+		if (! expanded.isEmpty())
+			updateElementsInTree(expanded); // defers elements that are still in a collapsed branch
+	}
+
+	private void updateHiddenElementsInTable() {
+		if (fTableHasFilter) {
+			for (TestElement element : fTableUpdatesWhileHidden)
+				updateElementInTable(element);
+			fTableUpdatesWhileHidden.clear();
+		} else {
+			updateVisibleElementsInTable();
+		}
+	}
+
+	/**
+	 * Updates the items of changed elements in the visible part of the unfiltered table.
+	 * The other items are updated when they are scrolled into view.
+	 */
+	private void updateVisibleElementsInTable() {
+		if (fTableUpdatesWhileHidden.isEmpty() || fLayoutMode != TestRunnerViewPart.LAYOUT_FLAT || fTableNeedsRefresh || fTableHasFilter)
+			return;
+		Table table= fTableViewer.getTable();
+		int itemHeight= table.getItemHeight();
+		if (itemHeight <= 0)
+			return;
+		int top= table.getTopIndex();
+		int end= Math.min(table.getItemCount(), top + table.getClientArea().height / itemHeight + 2);
+		ArrayList<Object> visible= new ArrayList<Object>();
+		for (int i= top; i < end; i++) {
+			Object element= table.getItem(i).getData();
+			if (element != null && fTableUpdatesWhileHidden.remove(element))
+				visible.add(element);
+		}
+		if (! visible.isEmpty())
+			fTableViewer.update(visible.toArray(), null);
 	}
 
 	private void updateElementInTree(final TestElement testElement) {
@@ -529,8 +708,10 @@ public class TestViewer {
 		}
 
 		if (fLayoutMode == TestRunnerViewPart.LAYOUT_FLAT) {
-			if (fAutoScrollTarget != null)
+			if (fAutoScrollTarget != null) {
 				fTableViewer.reveal(fAutoScrollTarget);
+				updateVisibleElementsInTable();
+			}
 			return;
 		}
 
@@ -566,12 +747,15 @@ public class TestViewer {
 		}
 		if (current != null)
 			fTreeViewer.reveal(current);
+		updateExpandedElementsInTree();
 	}
 
 	public void selectFirstFailure() {
 		TestCaseElement firstFailure= getNextChildFailure(fTestRunSession.getTestRoot(), true);
-		if (firstFailure != null)
+		if (firstFailure != null) {
 			getActiveViewer().setSelection(new StructuredSelection(firstFailure), true);
+			updateRevealedElements();
+		}
 	}
 
 	public void selectFailure(boolean showNext) {
@@ -585,8 +769,22 @@ public class TestViewer {
 			next= getNextFailure(selected, showNext);
 		}
 
-		if (next != null)
+		if (next != null) {
 			getActiveViewer().setSelection(new StructuredSelection(next), true);
+			updateRevealedElements();
+		}
+	}
+
+	/**
+	 * Updates the deferred items that have been revealed by a programmatic selection.
+	 * Expanding the tree or scrolling the table programmatically does not notify the
+	 * expansion and scroll listeners.
+	 */
+	private void updateRevealedElements() {
+		if (fLayoutMode == TestRunnerViewPart.LAYOUT_FLAT)
+			updateVisibleElementsInTable();
+		else
+			updateExpandedElementsInTree();
 	}
 
 	private TestElement getNextFailure(TestElement selected, boolean showNext) {
@@ -679,6 +877,7 @@ public class TestViewer {
 
 	public void expandFirstLevel() {
 		fTreeViewer.expandToLevel(2);
+		updateExpandedElementsInTree();
 	}
 
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -115,6 +115,13 @@ public class AbstractSemanticHighlightingTest extends TestCase {
 		return new Position(document.getLineOffset(line) + column, length);
 	}
 
+	protected void replace(int line, int column, int length, String text) throws BadLocationException {
+		IDocument document= fSourceViewer.getDocument();
+		document.replace(document.getLineOffset(line) + column, length, text);
+		assertTrue(EditorTestHelper.joinReconciler(fSourceViewer, 0, 10000, 100));
+		EditorTestHelper.runEventQueue(100);
+	}
+
 	String toString(Position[] positions) throws BadLocationException {
 		StringBuffer buf= new StringBuffer();
 		IDocument document= fSourceViewer.getDocument();
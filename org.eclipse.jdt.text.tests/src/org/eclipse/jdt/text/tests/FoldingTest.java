@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+import org.eclipse.jdt.text.tests.performance.EditorTestHelper;
+
+import org.eclipse.text.tests.Accessor;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.SourceViewer;
+import org.eclipse.jface.text.source.projection.ProjectionAnnotationModel;
+import org.eclipse.jface.text.source.projection.ProjectionViewer;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+
+import org.eclipse.jdt.ui.text.folding.DefaultJavaFoldingStructureProvider;
+import org.eclipse.jdt.ui.text.folding.IJavaFoldingStructureProvider;
+
+import org.eclipse.jdt.internal.ui.javaeditor.EditorUtility;
+import org.eclipse.jdt.internal.ui.javaeditor.JavaEditor;
+
+/**
+ * Tests that the folding structure which is updated incrementally after a reconcile is the same
+ * as the one computed for the whole compilation unit.
+ *
+ * @since 3.10
+ */
+public class FoldingTest extends TestCase {
+
+	/**
+	 * Records the elements whose folding structure is computed.
+	 */
+	private static class RecordingFoldingStructureProvider extends DefaultJavaFoldingStructureProvider {
+
+		private final List<IJavaElement> fComputed= Collections.synchronizedList(new ArrayList<IJavaElement>());
+
+		@Override
+		protected void computeFoldingStructure(IJavaElement element, FoldingStructureComputationContext ctx) {
+			fComputed.add(element);
+			super.computeFoldingStructure(element, ctx);
+		}
+	}
+
+	private static final String PROJECT= "FoldingTest";
+
+	private IJavaProject fJProject;
+	private ICompilationUnit fCu;
+	private JavaEditor fEditor;
+	private SourceViewer fSourceViewer;
+	private IDocument fDocument;
+	private RecordingFoldingStructureProvider fProvider;
+	private boolean fFoldingEnabled;
+
+	public static Test suite() {
+		return new TestSuite(FoldingTest.class);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		fFoldingEnabled= EditorTestHelper.enableFolding(true);
+		fJProject= JavaProjectHelper.createJavaProject(PROJECT, "bin");
+		assertNotNull("JRE is null", JavaProjectHelper.addRTJar(fJProject));
+		IPackageFragmentRoot root= JavaProjectHelper.addSourceContainer(fJProject, "src");
+		IPackageFragment pack= root.createPackageFragment("test1", false, null);
+
+		StringBuffer buf= new StringBuffer();
+		buf.append("package test1;\n");
+		buf.append("\n");
+		buf.append("public class E {\n");
+		buf.append("    /**\n");
+		buf.append("     * A field.\n");
+		buf.append("     */\n");
+		buf.append("    int fField= 1;\n");
+		buf.append("\n");
+		buf.append("    /**\n");
+		buf.append("     * Javadoc of foo.\n");
+		buf.append("     */\n");
+		buf.append("    void foo() {\n");
+		buf.append("        int i= 0;\n");
+		buf.append("    }\n");
+		buf.append("\n");
+		buf.append("    void bar() {\n");
+		buf.append("        int j= 0;\n");
+		buf.append("    }\n");
+		buf.append("\n");
+		buf.append("    int baz() { return 1; }\n");
+		buf.append("\n");
+		buf.append("    class Inner {\n");
+		buf.append("        void m() {\n");
+		buf.append("        }\n");
+		buf.append("    }\n");
+		buf.append("}\n");
+		fCu= pack.createCompilationUnit("E.java", buf.toString(), false, null);
+
+		fEditor= (JavaEditor) EditorUtility.openInEditor(fCu);
+		fSourceViewer= EditorTestHelper.getSourceViewer(fEditor);
+		fDocument= EditorTestHelper.getDocument(fEditor);
+		assertTrue(EditorTestHelper.joinReconciler(fSourceViewer, 0, 10000, 100));
+
+		// replace the editor's provider by one that records the recomputed elements
+		IJavaFoldingStructureProvider provider= (IJavaFoldingStructureProvider) fEditor.getAdapter(IJavaFoldingStructureProvider.class);
+		provider.uninstall();
+		fProvider= new RecordingFoldingStructureProvider();
+		fProvider.install(fEditor, (ProjectionViewer) fSourceViewer);
+		fProvider.initialize();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (fProvider != null)
+			fProvider.uninstall();
+		EditorTestHelper.closeEditor(fEditor);
+		if (fJProject != null)
+			JavaProjectHelper.delete(fJProject);
+		EditorTestHelper.enableFolding(fFoldingEnabled);
+	}
+
+	private void replace(String search, String text) throws Exception {
+		int offset= fDocument.get().indexOf(search);
+		assertTrue(search, offset != -1);
+		fProvider.fComputed.clear();
+		fDocument.replace(offset, search.length(), text);
+		assertTrue(EditorTestHelper.joinReconciler(fSourceViewer, 0, 10000, 100));
+		EditorTestHelper.runEventQueue(100);
+	}
+
+	private String getFoldingStructure() {
+		ProjectionAnnotationModel model= (ProjectionAnnotationModel) fEditor.getAdapter(ProjectionAnnotationModel.class);
+		List<String> result= new ArrayList<String>();
+		for (Iterator<?> iter= model.getAnnotationIterator(); iter.hasNext();) {
+			Object annotation= iter.next();
+			Accessor accessor= new Accessor(annotation, annotation.getClass());
+			IJavaElement element= (IJavaElement) accessor.invoke("getElement", new Object[0]);
+			boolean comment= ((Boolean) accessor.invoke("isComment", new Object[0])).booleanValue();
+			Position position= model.getPosition((Annotation) annotation);
+			result.add(position.getOffset() + ", " + position.getLength() + ", " + (comment ? "comment" : "code") + ", " + element.getElementName());
+		}
+		Collections.sort(result);
+		StringBuffer buf= new StringBuffer();
+		for (int i= 0; i < result.size(); i++)
+			buf.append(result.get(i)).append('\n');
+		return buf.toString();
+	}
+
+	private void assertFullStructure() {
+		String incremental= getFoldingStructure();
+		fProvider.initialize();
+		assertEquals(getFoldingStructure(), incremental);
+	}
+
+	private boolean isComputed(String elementName) {
+		synchronized (fProvider.fComputed) {
+			for (Iterator<IJavaElement> iter= fProvider.fComputed.iterator(); iter.hasNext();) {
+				if (elementName.equals(iter.next().getElementName()))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	public void testEditBody() throws Exception {
+		replace("        int j= 0;\n", "        int j= 0;\n        j++;\n        j--;\n");
+		assertFullStructure();
+
+		replace("        int i= 0;\n", "");
+		assertFullStructure();
+	}
+
+	public void testOnlyChangedElementsRecomputed() throws Exception {
+		replace("        int j= 0;\n", "        int j= 0;\n        j++;\n");
+		assertFalse(isComputed("fField"));
+		assertFalse(isComputed("foo"));
+		assertFalse(isComputed("m"));
+		assertFullStructure();
+	}
+
+	public void testAddJavadoc() throws Exception {
+		replace("    void bar() {\n", "    /**\n     * Javadoc of bar.\n     */\n    void bar() {\n");
+		assertTrue(isComputed("bar"));
+		assertFullStructure();
+	}
+
+	public void testRemoveJavadoc() throws Exception {
+		replace("    /**\n     * Javadoc of foo.\n     */\n", "");
+		assertTrue(isComputed("foo"));
+		assertFullStructure();
+	}
+
+	public void testAddCommentAfterJavadoc() throws Exception {
+		replace("     * Javadoc of foo.\n     */\n", "     * Javadoc of foo.\n     */\n    /*\n     * Comment of foo.\n     */\n");
+		assertTrue(isComputed("foo"));
+		assertFullStructure();
+	}
+
+	public void testJoinLines() throws Exception {
+		replace("    void bar() {\n        int j= 0;\n    }\n", "    void bar() { int j= 0; }\n");
+		assertTrue(isComputed("bar"));
+		assertFullStructure();
+	}
+
+	public void testSplitLines() throws Exception {
+		replace("    int baz() { return 1; }\n", "    int baz() {\n        return 1;\n    }\n");
+		assertTrue(isComputed("baz"));
+		assertFullStructure();
+	}
+
+	public void testSplitOneLineFieldWithJavadoc() throws Exception {
+		replace("    int fField= 1;\n", "    int fField=\n        1;\n");
+		assertTrue(isComputed("fField"));
+		assertFullStructure();
+
+		replace("    int fField=\n        1;\n", "    int fField= 1;\n");
+		assertTrue(isComputed("fField"));
+		assertFullStructure();
+	}
+}
@@ -44,6 +44,7 @@ public class JdtTextTestSuite {
 //		suite.addTest(PartitionTokenScannerTest.suite());
 		suite.addTest(MarkOccurrenceTest.suite());
 		suite.addTest(MarkOccurrenceTest17.suite());
+		suite.addTest(FoldingTest.suite());
 		suite.addTest(PluginsNotLoadedTest.suite());
 		PluginsNotLoadedTest.addLoadedPlugIns(
 				new String[] {
@@ -208,6 +208,35 @@ public class SemanticHighlightingTest extends AbstractSemanticHighlightingTest {
 		assertEqualPositions(expected, actual);
 	}
 
+	public void testLocalVariableHighlightingAfterChangeInBody() throws Exception {
+		setUpSemanticHighlighting(SemanticHighlightings.LOCAL_VARIABLE);
+		replace(10, 2, 0, "local--;");
+		try {
+			Position[] expected= new Position[] {
+					createPosition(7, 17, 5),
+					createPosition(8, 6, 5),
+					createPosition(8, 13, 5),
+					createPosition(9, 2, 5),
+					createPosition(10, 2, 5),
+					createPosition(13, 11, 6),
+					createPosition(13, 22, 6),
+					createPosition(13, 35, 6),
+					createPosition(14, 26, 6),
+					createPosition(15, 3, 5),
+					createPosition(15, 10, 6),
+					createPosition(16, 3, 6),
+					createPosition(41, 16, 4),
+					createPosition(42, 20, 13),
+					createPosition(43, 15, 7),
+			};
+			Position[] actual= getSemanticHighlightingPositions();
+//			System.out.println(toString(actual));
+			assertEqualPositions(expected, actual);
+		} finally {
+			replace(10, 2, "local--;".length(), "");
+		}
+	}
+
 	public void testParameterVariableHighlighting() throws Exception {
 		setUpSemanticHighlighting(SemanticHighlightings.PARAMETER_VARIABLE);
 		Position[] actual= getSemanticHighlightingPositions();
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests.spelling;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.text.spelling.engine.PersistentSpellDictionary;
+import org.eclipse.jdt.internal.ui.text.spelling.engine.RankedWordProposal;
+
+/**
+ * Tests the precompiled, memory-mapped word list of {@link PersistentSpellDictionary}.
+ *
+ * @since 3.10
+ */
+public class PersistentSpellDictionaryTest extends TestCase {
+
+	private File fWordList;
+
+	public static Test suite() {
+		return new TestSuite(PersistentSpellDictionaryTest.class);
+	}
+
+	protected void setUp() throws Exception {
+		fWordList= File.createTempFile("PersistentSpellDictionaryTest", ".txt"); //$NON-NLS-1$ //$NON-NLS-2$
+		writeWordList("truck\nlorry\nsentence\nsentences\n"); //$NON-NLS-1$
+	}
+
+	protected void tearDown() throws Exception {
+		List<File> versions= getVersions();
+		for (int i= 0; i < versions.size(); i++)
+			versions.get(i).delete();
+		fWordList.delete();
+	}
+
+	private void writeWordList(String words) throws IOException {
+		FileWriter writer= new FileWriter(fWordList);
+		try {
+			writer.write(words);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private PersistentSpellDictionary createDictionary() throws IOException {
+		return new PersistentSpellDictionary(fWordList.toURI().toURL());
+	}
+
+	/*
+	 * Returns the versions of the precompiled word list in the state location.
+	 */
+	private List<File> getVersions() throws IOException {
+		String prefix= Integer.toHexString(fWordList.toURI().toURL().toExternalForm().hashCode()) + '_';
+		File directory= JavaPlugin.getDefault().getStateLocation().append("spelling").toFile(); //$NON-NLS-1$
+		List<File> result= new ArrayList<File>();
+		File[] files= directory.listFiles();
+		for (int i= 0; files != null && i < files.length; i++) {
+			if (files[i].getName().startsWith(prefix) && files[i].getName().endsWith(".dictionary")) //$NON-NLS-1$
+				result.add(files[i]);
+		}
+		return result;
+	}
+
+	private static boolean contains(Set<RankedWordProposal> proposals, String word) {
+		for (RankedWordProposal proposal : proposals) {
+			if (proposal.getText().equals(word))
+				return true;
+		}
+		return false;
+	}
+
+	public void testPrecompiledWordList() throws Exception {
+		PersistentSpellDictionary compiling= createDictionary();
+		assertTrue(compiling.isCorrect("truck")); //$NON-NLS-1$
+		assertTrue(compiling.isPrecompiledWordListMapped());
+		compiling.unload();
+		assertEquals(1, getVersions().size());
+
+		PersistentSpellDictionary mapped= createDictionary();
+		assertTrue(mapped.isCorrect("truck")); //$NON-NLS-1$
+		assertTrue(mapped.isPrecompiledWordListMapped());
+		assertEquals(1, getVersions().size());
+		assertTrue(mapped.isCorrect("Lorry")); //$NON-NLS-1$
+		assertTrue(mapped.isCorrect("sentences")); //$NON-NLS-1$
+		assertFalse(mapped.isCorrect("trukc")); //$NON-NLS-1$
+		assertTrue(mapped.isLoaded());
+
+		assertTrue(contains(mapped.getProposals("trukc", false), "truck")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue(contains(mapped.getProposals("sentense", true), "Sentence")); //$NON-NLS-1$ //$NON-NLS-2$
+		mapped.unload();
+	}
+
+	public void testAddWordToPrecompiledWordList() throws Exception {
+		PersistentSpellDictionary dictionary= createDictionary();
+		assertFalse(dictionary.isCorrect("lastwagen")); //$NON-NLS-1$
+		dictionary.addWord("lastwagen"); //$NON-NLS-1$
+		assertTrue(dictionary.isCorrect("lastwagen")); //$NON-NLS-1$
+		assertTrue(dictionary.isCorrect("truck")); //$NON-NLS-1$
+		dictionary.unload();
+
+		PersistentSpellDictionary reloaded= createDictionary();
+		assertTrue(reloaded.isCorrect("lastwagen")); //$NON-NLS-1$
+		assertTrue(reloaded.isCorrect("truck")); //$NON-NLS-1$
+		reloaded.unload();
+	}
+
+	public void testNewVersionForChangedWordList() throws Exception {
+		PersistentSpellDictionary first= createDictionary();
+		assertTrue(first.isCorrect("truck")); //$NON-NLS-1$
+		assertTrue(first.isPrecompiledWordListMapped());
+		List<File> firstVersions= getVersions();
+		assertEquals(1, firstVersions.size());
+
+		// the first version is still mapped while the changed word list is compiled
+		writeWordList("truck\nlorry\nsentence\nsentences\nlastwagen\n"); //$NON-NLS-1$
+		PersistentSpellDictionary second= createDictionary();
+		assertTrue(second.isCorrect("lastwagen")); //$NON-NLS-1$
+		assertTrue(second.isPrecompiledWordListMapped());
+
+		List<File> secondVersions= getVersions();
+		secondVersions.removeAll(firstVersions);
+		assertEquals(1, secondVersions.size());
+
+		// the mapping of the first version is not affected by the new version
+		assertTrue(first.isCorrect("sentences")); //$NON-NLS-1$
+		assertFalse(first.isCorrect("lastwagen")); //$NON-NLS-1$
+		first.unload();
+		second.unload();
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,8 @@ package org.eclipse.jdt.ui.tests.refactoring;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.zip.ZipInputStream;
 
 import junit.framework.Assert;
@@ -26,9 +28,13 @@ import org.eclipse.jdt.testplugin.JavaTestPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.NullProgressMonitor;
 
+import org.eclipse.ltk.core.refactoring.Change;
 import org.eclipse.ltk.core.refactoring.CheckConditionsOperation;
+import org.eclipse.ltk.core.refactoring.CompositeChange;
 import org.eclipse.ltk.core.refactoring.PerformRefactoringOperation;
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.RefactoringStatusEntry;
+import org.eclipse.ltk.core.refactoring.TextChange;
 
 import org.eclipse.jdt.core.IClasspathEntry;
 import org.eclipse.jdt.core.ICompilationUnit;
@@ -105,6 +111,9 @@ public class InferTypeArgumentsTests extends RefactoringTest {
 		refactoring.setAssumeCloneReturnsSameType(fAssumeCloneReturnsSameType);
 		refactoring.setLeaveUnconstrainedRaw(fLeaveUnconstrainedRaw);
 
+		// the bit set solver (the default) must compute the same changes as the symbolic solver
+		assertEquals(computeChanges(elements, false), computeChanges(elements, true));
+
 		PerformRefactoringOperation op= new PerformRefactoringOperation(
 				refactoring, CheckConditionsOperation.FINAL_CONDITIONS);
 		JavaCore.run(op, new NullProgressMonitor());
@@ -118,6 +127,43 @@ public class InferTypeArgumentsTests extends RefactoringTest {
 		return true;
 	}
 
+	/**
+	 * Computes the changes of the refactoring without performing them.
+	 *
+	 * @param elements the elements to infer type arguments for
+	 * @param useBitSetSolver whether to use the bit set solver or the symbolic solver
+	 * @return the final condition status and the preview contents of the changed files
+	 * @throws CoreException if computing the changes fails
+	 */
+	private Map<String, String> computeChanges(IJavaElement[] elements, boolean useBitSetSolver) throws CoreException {
+		InferTypeArgumentsRefactoring refactoring= new InferTypeArgumentsRefactoring(elements);
+		refactoring.setAssumeCloneReturnsSameType(fAssumeCloneReturnsSameType);
+		refactoring.setLeaveUnconstrainedRaw(fLeaveUnconstrainedRaw);
+		refactoring.setUseBitSetSolver(useBitSetSolver);
+
+		NullProgressMonitor pm= new NullProgressMonitor();
+		Map<String, String> result= new TreeMap<String, String>();
+		RefactoringStatus status= refactoring.checkAllConditions(pm);
+		RefactoringStatusEntry[] entries= status.getEntries();
+		StringBuffer buf= new StringBuffer();
+		for (int i= 0; i < entries.length; i++)
+			buf.append(entries[i].getSeverity()).append(' ').append(entries[i].getMessage()).append('\n');
+		result.put("", buf.toString());
+		if (!status.hasFatalError())
+			collectPreviews(refactoring.createChange(pm), result);
+		return result;
+	}
+
+	private static void collectPreviews(Change change, Map<String, String> previews) throws CoreException {
+		if (change instanceof CompositeChange) {
+			Change[] children= ((CompositeChange) change).getChildren();
+			for (int i= 0; i < children.length; i++)
+				collectPreviews(children[i], previews);
+		} else if (change instanceof TextChange) {
+			previews.put(change.getName(), ((TextChange) change).getPreviewContent(new NullProgressMonitor()));
+		}
+	}
+
 	private void performCuOK() throws Exception {
 		performCu(RefactoringStatus.OK, RefactoringStatus.OK);
 	}
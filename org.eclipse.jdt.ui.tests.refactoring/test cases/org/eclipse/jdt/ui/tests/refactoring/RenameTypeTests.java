@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -26,12 +26,16 @@ import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.CompositeChange;
 import org.eclipse.ltk.core.refactoring.Refactoring;
 import org.eclipse.ltk.core.refactoring.RefactoringDescriptor;
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.TextChange;
 import org.eclipse.ltk.core.refactoring.participants.RenameArguments;
 import org.eclipse.ltk.core.refactoring.participants.RenameRefactoring;
 
+import org.eclipse.jdt.core.IBuffer;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IField;
 import org.eclipse.jdt.core.IJavaElement;
@@ -51,6 +55,7 @@ import org.eclipse.jdt.internal.core.refactoring.descriptors.RefactoringSignatur
 import org.eclipse.jdt.internal.corext.refactoring.rename.RenameTypeProcessor;
 import org.eclipse.jdt.internal.corext.refactoring.rename.RenamingNameSuggestor;
 import org.eclipse.jdt.internal.corext.refactoring.tagging.INameUpdating;
+import org.eclipse.jdt.internal.corext.refactoring.util.ParallelTasks;
 
 import org.eclipse.jdt.ui.tests.refactoring.infra.DebugUtils;
 
@@ -1704,4 +1709,84 @@ public class RenameTypeTests extends RefactoringTest {
 		// Test references in annotations and type parameters
 		helper3("Try", "Bla", true, false, true);
 	}
+
+	private void createReferencingCUs() throws Exception {
+		createCU(getPackageP(), "A.java", "package p;\n/** A */\npublic class A {\n\tpublic A() {\n\t}\n}\n");
+		IPackageFragment q= getRoot().createPackageFragment("q", true, null);
+		for (int i= 0; i < 12; i++) {
+			IPackageFragment pack= i % 2 == 0 ? getPackageP() : q;
+			String imports= pack == q ? "import p.A;\n" : "";
+			createCU(pack, "R" + i + ".java", "package " + pack.getElementName() + ";\n" + imports + "/** uses A */\npublic class R" + i + " {\n\tA f= new A();\n\tA m(A a) {\n\t\treturn (A) a; // A\n\t}\n}\n");
+		}
+	}
+
+	/*
+	 * Returns the names of the changes and the new contents of the text changes, without
+	 * performing the changes.
+	 */
+	private List createChangePreviews(IType type, String newName, int threadLimit) throws Exception {
+		int previous= ParallelTasks.setThreadLimit(threadLimit);
+		try {
+			RenameJavaElementDescriptor descriptor= createRefactoringDescriptor(type, newName);
+			descriptor.setUpdateTextualOccurrences(true);
+			Refactoring refactoring= createRefactoring(descriptor);
+			RefactoringStatus status= refactoring.checkAllConditions(new NullProgressMonitor());
+			assertFalse(status.toString(), status.hasError());
+
+			List previews= new ArrayList();
+			previews.add(status.toString());
+			addPreviews(refactoring.createChange(new NullProgressMonitor()), previews);
+			return previews;
+		} finally {
+			ParallelTasks.setThreadLimit(previous);
+		}
+	}
+
+	private static void addPreviews(Change change, List previews) throws CoreException {
+		previews.add(change.getName());
+		if (change instanceof CompositeChange) {
+			Change[] children= ((CompositeChange) change).getChildren();
+			for (int i= 0; i < children.length; i++) {
+				addPreviews(children[i], previews);
+			}
+		} else if (change instanceof TextChange) {
+			previews.add(((TextChange) change).getPreviewContent(new NullProgressMonitor()));
+		}
+	}
+
+	public void testParallelChanges() throws Exception {
+		createReferencingCUs();
+		IType type= getPackageP().getCompilationUnit("A.java").getType("A");
+
+		List sequential= createChangePreviews(type, "B", 1);
+		List parallel= createChangePreviews(type, "B", 4);
+		assertEquals(sequential, parallel);
+		assertTrue(parallel.contains("package q;\nimport p.B;\n/** uses B */\npublic class R1 {\n\tB f= new B();\n\tB m(B a) {\n\t\treturn (B) a; // B\n\t}\n}\n"));
+	}
+
+	public void testParallelChangesInWorkingCopies() throws Exception {
+		createReferencingCUs();
+		IType type= getPackageP().getCompilationUnit("A.java").getType("A");
+		ICompilationUnit[] workingCopies= {
+				getPackageP().getCompilationUnit("R0.java"),
+				getRoot().getPackageFragment("q").getCompilationUnit("R1.java")
+		};
+		try {
+			for (int i= 0; i < workingCopies.length; i++) {
+				workingCopies[i].becomeWorkingCopy(null);
+				IBuffer buffer= workingCopies[i].getBuffer();
+				buffer.setContents(buffer.getContents().replaceAll("return \\(A\\) a;", "A b= a;\n\t\treturn b;"));
+				workingCopies[i].reconcile(ICompilationUnit.NO_AST, false, null, null);
+			}
+
+			List sequential= createChangePreviews(type, "B", 1);
+			List parallel= createChangePreviews(type, "B", 4);
+			assertEquals(sequential, parallel);
+			assertTrue(parallel.contains("package q;\nimport p.B;\n/** uses B */\npublic class R1 {\n\tB f= new B();\n\tB m(B a) {\n\t\tB b= a;\n\t\treturn b; // B\n\t}\n}\n"));
+		} finally {
+			for (int i= 0; i < workingCopies.length; i++) {
+				workingCopies[i].discardWorkingCopy();
+			}
+		}
+	}
 }
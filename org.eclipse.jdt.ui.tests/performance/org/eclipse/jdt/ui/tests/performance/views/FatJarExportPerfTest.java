@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.performance.views;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+import org.eclipse.test.OrderedTestSuite;
+import org.eclipse.test.performance.Dimension;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.Path;
+
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.PlatformUI;
+
+import org.eclipse.debug.core.ILaunchConfiguration;
+
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+
+import org.eclipse.jdt.ui.JavaUI;
+import org.eclipse.jdt.ui.jarpackager.IJarExportRunnable;
+import org.eclipse.jdt.ui.jarpackager.JarPackageData;
+import org.eclipse.jdt.ui.tests.jarexport.FatJarExportTests;
+import org.eclipse.jdt.ui.tests.performance.JdtPerformanceTestCase;
+
+import org.eclipse.jdt.internal.ui.jarpackagerfat.FatJarPackageWizardPage;
+import org.eclipse.jdt.internal.ui.jarpackagerfat.JarWriter4;
+import org.eclipse.jdt.internal.ui.jarpackagerfat.UnpackFatJarBuilder;
+import org.eclipse.jdt.internal.ui.util.BusyIndicatorRunnableContext;
+
+/**
+ * Exports a runnable JAR that extracts a synthetic class path of 500 library JARs.
+ */
+public class FatJarExportPerfTest extends JdtPerformanceTestCase {
+
+	private static final int LIBRARY_COUNT= 500;
+
+	private static final int ENTRIES_PER_LIBRARY= 100;
+
+	private static final int CLASS_COUNT= 500;
+
+	private static final int WARM_UP= 1;
+
+	private static final int REPEAT= 5;
+
+	private static class MyTestSetup extends TestSetup {
+		public static IJavaProject fJProject1;
+		public static File fLibraryFolder;
+
+		public MyTestSetup(Test test) {
+			super(test);
+		}
+
+		protected void setUp() throws Exception {
+			fJProject1= JavaProjectHelper.createJavaProject("TestProject1", "bin");
+			JavaProjectHelper.addRTJar(fJProject1);
+			IPackageFragmentRoot root= JavaProjectHelper.addSourceContainer(fJProject1, "src");
+			IPackageFragment fragment= root.createPackageFragment("org.eclipse.jdt.ui.test", true, null);
+			fragment.createCompilationUnit("Main.java", "package org.eclipse.jdt.ui.test;\npublic class Main {\n    public static void main(String[] args) {\n    }\n}\n", true, null);
+			for (int i= 0; i < CLASS_COUNT; i++) {
+				StringBuffer buf= new StringBuffer();
+				buf.append("package org.eclipse.jdt.ui.test;\n");
+				buf.append("public class C" + i + " {\n");
+				for (int j= 0; j < 20; j++)
+					buf.append("    public String method" + j + "(int i) { return \"C" + i + "\" + i + " + j + "; }\n");
+				buf.append("}\n");
+				fragment.createCompilationUnit("C" + i + ".java", buf.toString(), true, null);
+			}
+
+			fLibraryFolder= ResourcesPlugin.getWorkspace().getRoot().getLocation().append("fatjar_libraries").toFile();
+			fLibraryFolder.mkdirs();
+			Random random= new Random(4711);
+			for (int i= 0; i < LIBRARY_COUNT; i++) {
+				File library= new File(fLibraryFolder, "lib" + i + ".jar");
+				createLibrary(library, i, random);
+				JavaProjectHelper.addLibrary(fJProject1, Path.fromOSString(library.getAbsolutePath()));
+			}
+			ResourcesPlugin.getWorkspace().build(IncrementalProjectBuilder.FULL_BUILD, null);
+		}
+
+		protected void tearDown() throws Exception {
+			if (fJProject1 != null && fJProject1.exists())
+				JavaProjectHelper.delete(fJProject1);
+			if (fLibraryFolder != null) {
+				File[] libraries= fLibraryFolder.listFiles();
+				for (int i= 0; i < libraries.length; i++)
+					libraries[i].delete();
+				fLibraryFolder.delete();
+			}
+		}
+	}
+
+	public static Test suite() {
+		return new MyTestSetup(new OrderedTestSuite(FatJarExportPerfTest.class, new String[] {
+			"testExportCompressed",
+			"testExportDeterministic",
+		}));
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new MyTestSetup(someTest);
+	}
+
+	public FatJarExportPerfTest(String name) {
+		super(name);
+	}
+
+	/**
+	 * Writes a library whose entries resemble class files: a constant pool with names that
+	 * repeat across entries, and some random code.
+	 *
+	 * @param file the library
+	 * @param index the number of the library
+	 * @param random the random generator
+	 * @throws IOException if the library could not be written
+	 */
+	private static void createLibrary(File file, int index, Random random) throws IOException {
+		JarOutputStream out= new JarOutputStream(new FileOutputStream(file));
+		try {
+			for (int i= 0; i < ENTRIES_PER_LIBRARY; i++) {
+				out.putNextEntry(new JarEntry("lib" + index + "/pack" + (i % 5) + "/Class" + i + ".class"));
+				StringBuffer buf= new StringBuffer();
+				int members= 10 + random.nextInt(40);
+				for (int j= 0; j < members; j++)
+					buf.append("Ljava/lang/String;method").append(random.nextInt(100)).append("(I)V;lib").append(index).append("/pack").append(j % 5).append(';');
+				out.write(buf.toString().getBytes("UTF-8"));
+				byte[] code= new byte[500 + random.nextInt(2000)];
+				random.nextBytes(code);
+				out.write(code);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static JarPackageData createJarPackage(String jarName) throws Exception {
+		JarPackageData data= new JarPackageData();
+		data.setOverwrite(true);
+		data.setIncludeDirectoryEntries(true);
+		data.setCompress(true);
+		data.setJarLocation(ResourcesPlugin.getWorkspace().getRoot().getLocation().append(jarName));
+
+		ILaunchConfiguration launchConfig= FatJarExportTests.createTempLaunchConfig(MyTestSetup.fJProject1);
+		MultiStatus status= new MultiStatus(JavaUI.ID_PLUGIN, 0, "", null);
+		Object[] children= FatJarPackageWizardPage.getSelectedElementsWithoutContainedChildren(launchConfig, data, new BusyIndicatorRunnableContext(), status);
+		assertTrue(status.getMessage(), status.getSeverity() == IStatus.OK || status.getSeverity() == IStatus.INFO);
+		data.setElements(children);
+		data.setJarBuilder(new UnpackFatJarBuilder());
+		return data;
+	}
+
+	private static File export(JarPackageData data) throws Exception {
+		IWorkbenchWindow window= PlatformUI.getWorkbench().getActiveWorkbenchWindow();
+		IJarExportRunnable op= data.createJarExportRunnable(window.getShell());
+		window.run(false, false, op);
+		assertTrue(op.getStatus().getMessage(), op.getStatus().getSeverity() != IStatus.ERROR);
+		return data.getJarLocation().toFile();
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out= new ByteArrayOutputStream();
+		try {
+			byte[] buffer= new byte[8192];
+			int count;
+			while ((count= in.read(buffer)) != -1)
+				out.write(buffer, 0, count);
+		} finally {
+			in.close();
+		}
+		return out.toByteArray();
+	}
+
+	public void testExportCompressed() throws Exception {
+		tagAsSummary("Fat JAR export - Extract 500 libraries", Dimension.ELAPSED_PROCESS);
+
+		JarPackageData data= createJarPackage("FatJarExportPerfTest.jar");
+
+		IWorkbenchWindow window= PlatformUI.getWorkbench().getActiveWorkbenchWindow();
+		for (int i= 0; i < WARM_UP + REPEAT; i++) {
+			joinBackgroudActivities();
+
+			IJarExportRunnable op= data.createJarExportRunnable(window.getShell());
+			boolean measure= i >= WARM_UP;
+			if (measure)
+				startMeasuring();
+			window.run(false, false, op);
+			if (measure)
+				stopMeasuring();
+
+			assertTrue(op.getStatus().getMessage(), op.getStatus().getSeverity() != IStatus.ERROR);
+			ZipFile jar= new ZipFile(data.getJarLocation().toFile());
+			try {
+				assertNotNull(jar.getEntry("org/eclipse/jdt/ui/test/Main.class"));
+				assertNotNull(jar.getEntry("lib" + (LIBRARY_COUNT - 1) + "/pack4/Class" + (ENTRIES_PER_LIBRARY - 1) + ".class"));
+			} finally {
+				jar.close();
+			}
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/*
+	 * Not measured. The concurrently written archive must not depend on the scheduling of the
+	 * workers, and must have the same entries as the archive written by JarWriter3.
+	 */
+	public void testExportDeterministic() throws Exception {
+		File concurrentJar= export(createJarPackage("FatJarExportPerfTest1.jar"));
+		byte[] first= readAll(new FileInputStream(concurrentJar));
+		byte[] second= readAll(new FileInputStream(export(createJarPackage("FatJarExportPerfTest2.jar"))));
+		assertTrue("archives differ", Arrays.equals(first, second));
+
+		boolean concurrent= JarWriter4.setConcurrent(false);
+		File sequential;
+		try {
+			sequential= export(createJarPackage("FatJarExportPerfTest3.jar"));
+		} finally {
+			JarWriter4.setConcurrent(concurrent);
+		}
+
+		ZipFile expected= new ZipFile(sequential);
+		ZipFile actual= new ZipFile(concurrentJar);
+		try {
+			assertEquals(expected.size(), actual.size());
+			Enumeration<? extends ZipEntry> expectedEntries= expected.entries();
+			Enumeration<? extends ZipEntry> actualEntries= actual.entries();
+			while (expectedEntries.hasMoreElements()) {
+				ZipEntry expectedEntry= expectedEntries.nextElement();
+				ZipEntry actualEntry= actualEntries.nextElement();
+				String name= expectedEntry.getName();
+				assertEquals(name, actualEntry.getName());
+				assertEquals(name, expectedEntry.getTime(), actualEntry.getTime());
+				assertEquals(name, expectedEntry.getCrc(), actualEntry.getCrc());
+				assertTrue(name, Arrays.equals(readAll(expected.getInputStream(expectedEntry)), readAll(actual.getInputStream(actualEntry))));
+			}
+		} finally {
+			expected.close();
+			actual.close();
+		}
+	}
+}
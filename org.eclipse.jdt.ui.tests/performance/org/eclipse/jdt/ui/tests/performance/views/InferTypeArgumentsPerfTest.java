@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.performance.views;
+
+import java.io.File;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+import org.eclipse.jdt.testplugin.JavaTestPlugin;
+import org.eclipse.test.OrderedTestSuite;
+import org.eclipse.test.performance.Dimension;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+
+import org.eclipse.jdt.internal.corext.refactoring.generics.InferTypeArgumentsRefactoring;
+
+import org.eclipse.jdt.ui.tests.performance.JdtPerformanceTestCase;
+
+/**
+ * Compares the symbolic type set solver and the bit set solver of the
+ * Infer Generic Type Arguments refactoring on the JUnit 3.8.1 sources.
+ */
+public class InferTypeArgumentsPerfTest extends JdtPerformanceTestCase {
+
+	private static final int WARM_UP= 2;
+
+	private static final int REPEAT= 10;
+
+	private static class MyTestSetup extends TestSetup {
+		public static final String SRC_CONTAINER= "src";
+
+		public static IJavaProject fJProject1;
+		public static IPackageFragmentRoot fSourceFolder;
+
+		public MyTestSetup(Test test) {
+			super(test);
+		}
+
+		protected void setUp() throws Exception {
+			fJProject1= JavaProjectHelper.createJavaProject("TestProject1", "bin");
+			assertTrue("rt not found", JavaProjectHelper.addRTJar(fJProject1) != null);
+			File junitSrcArchive= JavaTestPlugin.getDefault().getFileInPlugin(JavaProjectHelper.JUNIT_SRC_381);
+			fSourceFolder= JavaProjectHelper.addSourceContainerWithImport(fJProject1, SRC_CONTAINER, junitSrcArchive, JavaProjectHelper.JUNIT_SRC_ENCODING);
+		}
+
+		protected void tearDown() throws Exception {
+			if (fJProject1 != null && fJProject1.exists())
+				JavaProjectHelper.delete(fJProject1);
+		}
+	}
+
+	public static Test suite() {
+		return new MyTestSetup(new OrderedTestSuite(InferTypeArgumentsPerfTest.class, new String[] {
+			"testTypeSetSolver",
+			"testBitSetSolver",
+		}));
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new MyTestSetup(someTest);
+	}
+
+	public InferTypeArgumentsPerfTest(String name) {
+		super(name);
+	}
+
+	public void testTypeSetSolver() throws Exception {
+		measureInferTypeArguments(false);
+	}
+
+	public void testBitSetSolver() throws Exception {
+		tagAsSummary("Infer Type Arguments - Bit set solver", Dimension.ELAPSED_PROCESS);
+		measureInferTypeArguments(true);
+	}
+
+	private void measureInferTypeArguments(boolean useBitSets) throws Exception {
+		for (int i= 0; i < WARM_UP + REPEAT; i++) {
+			InferTypeArgumentsRefactoring refactoring= new InferTypeArgumentsRefactoring(new IJavaElement[] { MyTestSetup.fSourceFolder });
+			refactoring.setUseBitSetSolver(useBitSets);
+			joinBackgroudActivities();
+			System.gc();
+			boolean measure= i >= WARM_UP;
+			if (measure)
+				startMeasuring();
+			RefactoringStatus status= refactoring.checkAllConditions(new NullProgressMonitor());
+			if (measure)
+				stopMeasuring();
+			assertTrue(status.getSeverity() <= IStatus.WARNING);
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.performance.views;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import junit.framework.Test;
+
+import org.eclipse.test.OrderedTestSuite;
+import org.eclipse.test.performance.Dimension;
+
+import org.eclipse.jdt.ui.tests.performance.JdtPerformanceTestCase;
+
+import org.eclipse.jdt.internal.junit.model.ITestRunListener2;
+import org.eclipse.jdt.internal.junit.model.RemoteTestRunnerClient;
+import org.eclipse.jdt.internal.junit.runner.BinaryMessageSender;
+import org.eclipse.jdt.internal.junit.runner.MessageIds;
+import org.eclipse.jdt.internal.junit.runner.MessageSender;
+
+/**
+ * Compares the text and the binary protocol between the RemoteTestRunner and
+ * the RemoteTestRunnerClient by encoding and decoding a recorded test run.
+ */
+public class JUnitProtocolPerfTest extends JdtPerformanceTestCase {
+
+	private static final int TEST_COUNT= 20000;
+
+	private static final int FAILURE_FREQUENCY= 10;
+
+	private static final int REPEAT= 10;
+
+	private static class TextMessageSender implements MessageSender {
+		private final PrintWriter fWriter;
+
+		public TextMessageSender(ByteArrayOutputStream out) throws IOException {
+			fWriter= new PrintWriter(new OutputStreamWriter(out, "UTF-8"));
+		}
+
+		public void sendMessage(String msg) {
+			fWriter.println(msg);
+		}
+
+		public void flush() {
+			fWriter.flush();
+		}
+	}
+
+	private static class CountingListener implements ITestRunListener2 {
+		int fEvents;
+
+		public void testRunStarted(int testCount) {
+			fEvents++;
+		}
+
+		public void testRunEnded(long elapsedTime) {
+			fEvents++;
+		}
+
+		public void testRunStopped(long elapsedTime) {
+			fEvents++;
+		}
+
+		public void testStarted(String testId, String testName) {
+			fEvents++;
+		}
+
+		public void testEnded(String testId, String testName) {
+			fEvents++;
+		}
+
+		public void testRunTerminated() {
+			fEvents++;
+		}
+
+		public void testTreeEntry(String description) {
+			fEvents++;
+		}
+
+		public void testFailed(int status, String testId, String testName, String trace, String expected, String actual) {
+			fEvents++;
+		}
+
+		public void testReran(String testId, String testClass, String testName, int status, String trace, String expected, String actual) {
+			fEvents++;
+		}
+	}
+
+	public static Test suite() {
+		return new OrderedTestSuite(JUnitProtocolPerfTest.class, new String[] {
+			"testTextProtocol",
+			"testBinaryProtocol",
+		});
+	}
+
+	public JUnitProtocolPerfTest(String name) {
+		super(name);
+	}
+
+	public void testTextProtocol() throws Exception {
+		byte[] bytes= null;
+		for (int i= 0; i < REPEAT; i++) {
+			ByteArrayOutputStream out= new ByteArrayOutputStream();
+			startMeasuring();
+			sendTestRun(new TextMessageSender(out));
+			bytes= out.toByteArray();
+			readTestRun(bytes);
+			stopMeasuring();
+		}
+		System.out.println("JUnit text protocol: " + bytes.length + " bytes");
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	public void testBinaryProtocol() throws Exception {
+		tagAsSummary("JUnit - Binary protocol", Dimension.ELAPSED_PROCESS);
+
+		byte[] bytes= null;
+		for (int i= 0; i < REPEAT; i++) {
+			ByteArrayOutputStream out= new ByteArrayOutputStream();
+			startMeasuring();
+			BinaryMessageSender sender= new BinaryMessageSender(out);
+			sendTestRun(sender);
+			sender.close();
+			bytes= out.toByteArray();
+			readTestRun(bytes);
+			stopMeasuring();
+		}
+		System.out.println("JUnit binary protocol: " + bytes.length + " bytes");
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	private static void sendTestRun(MessageSender sender) {
+		sender.sendMessage(MessageIds.TEST_RUN_START + TEST_COUNT + " v2");
+		sender.sendMessage(MessageIds.TEST_TREE + "1,junit.tests.AllTests,true," + TEST_COUNT);
+		for (int i= 0; i < TEST_COUNT; i++) {
+			int id= i + 2;
+			sender.sendMessage(MessageIds.TEST_TREE + id + "," + getTestName(i) + ",false,1");
+		}
+		for (int i= 0; i < TEST_COUNT; i++) {
+			String test= (i + 2) + "," + getTestName(i);
+			sender.sendMessage(MessageIds.TEST_START + test);
+			if (i % FAILURE_FREQUENCY == 0) {
+				sender.sendMessage(MessageIds.TEST_FAILED + test);
+				sender.sendMessage(MessageIds.EXPECTED_START);
+				sender.sendMessage("expected " + i);
+				sender.sendMessage(MessageIds.EXPECTED_END);
+				sender.sendMessage(MessageIds.ACTUAL_START);
+				sender.sendMessage("actual " + i);
+				sender.sendMessage(MessageIds.ACTUAL_END);
+				sender.sendMessage(MessageIds.TRACE_START);
+				sender.sendMessage(getTrace(i));
+				sender.sendMessage(MessageIds.TRACE_END);
+			}
+			sender.sendMessage(MessageIds.TEST_END + test);
+		}
+		sender.sendMessage(MessageIds.TEST_RUN_END + 4711);
+		sender.flush();
+	}
+
+	private static void readTestRun(byte[] bytes) throws IOException {
+		CountingListener listener= new CountingListener();
+		new RemoteTestRunnerClient().readMessages(new ITestRunListener2[] { listener }, new ByteArrayInputStream(bytes));
+		int expected= 3 + 3 * TEST_COUNT + (TEST_COUNT + FAILURE_FREQUENCY - 1) / FAILURE_FREQUENCY;
+		assertEquals(expected, listener.fEvents);
+	}
+
+	private static String getTestName(int i) {
+		return "test" + i + "(junit.tests.framework.Test" + (i / 100) + ")";
+	}
+
+	private static String getTrace(int i) {
+		StringBuffer buf= new StringBuffer();
+		buf.append("junit.framework.AssertionFailedError: failure ").append(i).append('\n');
+		for (int j= 0; j < 20; j++)
+			buf.append("\tat junit.framework.Assert.method").append(j).append("(Assert.java:").append(j + 10).append(")\n");
+		return buf.toString();
+	}
+}
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.performance.views;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.ConnectException;
+import java.net.Socket;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+import org.eclipse.test.OrderedTestSuite;
+import org.eclipse.test.performance.Dimension;
+
+import org.eclipse.swt.widgets.Display;
+
+import org.eclipse.ui.PlatformUI;
+
+import org.eclipse.debug.core.ILaunchManager;
+import org.eclipse.debug.core.Launch;
+
+import org.eclipse.jdt.core.IJavaProject;
+
+import org.eclipse.jdt.launching.SocketUtil;
+
+import org.eclipse.jdt.ui.tests.performance.JdtPerformanceTestCase;
+
+import org.eclipse.jdt.internal.junit.JUnitCorePlugin;
+import org.eclipse.jdt.internal.junit.model.ITestSessionListener;
+import org.eclipse.jdt.internal.junit.model.TestCaseElement;
+import org.eclipse.jdt.internal.junit.model.TestElement;
+import org.eclipse.jdt.internal.junit.model.TestElement.Status;
+import org.eclipse.jdt.internal.junit.model.TestRunSession;
+import org.eclipse.jdt.internal.junit.runner.BinaryMessageSender;
+import org.eclipse.jdt.internal.junit.runner.MessageIds;
+import org.eclipse.jdt.internal.junit.ui.TestRunnerViewPart;
+
+/**
+ * Replays a recorded test run of about 200'000 events into the JUnit view and
+ * measures the time until the view has processed all updates.
+ */
+public class JUnitViewUpdatePerfTest extends JdtPerformanceTestCase {
+
+	private static final int TEST_COUNT= 64000;
+
+	private static final int TESTS_PER_CLASS= 100;
+
+	private static final int FAILURE_FREQUENCY= 10;
+
+	private static final int WARM_UP= 1;
+
+	private static final int REPEAT= 5;
+
+	private static class MyTestSetup extends TestSetup {
+		public static IJavaProject fJProject1;
+
+		public MyTestSetup(Test test) {
+			super(test);
+		}
+
+		protected void setUp() throws Exception {
+			fJProject1= JavaProjectHelper.createJavaProject("TestProject1", "bin");
+			PlatformUI.getWorkbench().getActiveWorkbenchWindow().getActivePage().showView(TestRunnerViewPart.NAME);
+		}
+
+		protected void tearDown() throws Exception {
+			if (fJProject1 != null && fJProject1.exists())
+				JavaProjectHelper.delete(fJProject1);
+		}
+	}
+
+	private static class SessionEndListener implements ITestSessionListener {
+		private final Display fDisplay;
+		volatile boolean fEnded;
+
+		public SessionEndListener(Display display) {
+			fDisplay= display;
+		}
+
+		private void end() {
+			fEnded= true;
+			fDisplay.wake();
+		}
+
+		public void sessionStarted() {
+		}
+
+		public void sessionEnded(long elapsedTime) {
+			end();
+		}
+
+		public void sessionStopped(long elapsedTime) {
+			end();
+		}
+
+		public void sessionTerminated() {
+			end();
+		}
+
+		public void testAdded(TestElement testElement) {
+		}
+
+		public void runningBegins() {
+		}
+
+		public void testStarted(TestCaseElement testCaseElement) {
+		}
+
+		public void testEnded(TestCaseElement testCaseElement) {
+		}
+
+		public void testFailed(TestElement testElement, Status status, String trace, String expected, String actual) {
+		}
+
+		public void testReran(TestCaseElement testCaseElement, Status status, String trace, String expectedResult, String actualResult) {
+		}
+
+		public boolean acceptsSwapToDisk() {
+			return false;
+		}
+	}
+
+	public static Test suite() {
+		return new MyTestSetup(new OrderedTestSuite(JUnitViewUpdatePerfTest.class, new String[] {
+			"testReplayTestRun",
+		}));
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new MyTestSetup(someTest);
+	}
+
+	public JUnitViewUpdatePerfTest(String name) {
+		super(name);
+	}
+
+	public void testReplayTestRun() throws Exception {
+		tagAsSummary("JUnit view - Replay test run", Dimension.ELAPSED_PROCESS);
+
+		Display display= Display.getCurrent();
+		ThreadMXBean threadBean= ManagementFactory.getThreadMXBean();
+		for (int i= 0; i < WARM_UP + REPEAT; i++) {
+			int port= SocketUtil.findFreePort();
+			Launch launch= new Launch(null, ILaunchManager.RUN_MODE, null);
+			TestRunSession session= new TestRunSession(launch, MyTestSetup.fJProject1, port);
+			JUnitCorePlugin.getModel().addTestRunSession(session);
+			while (display.readAndDispatch()) {
+				// let the view activate the session
+			}
+			// notified after the view has posted its final update:
+			SessionEndListener listener= new SessionEndListener(display);
+			session.addTestSessionListener(listener);
+			joinBackgroudActivities();
+
+			boolean measure= i >= WARM_UP;
+			long cpuTime= threadBean.getCurrentThreadCpuTime();
+			if (measure)
+				startMeasuring();
+			Thread sender= sendTestRun(port);
+			while (! listener.fEnded) {
+				if (! display.readAndDispatch())
+					display.sleep();
+			}
+			while (display.readAndDispatch()) {
+				// process the final update
+			}
+			if (measure)
+				stopMeasuring();
+			cpuTime= threadBean.getCurrentThreadCpuTime() - cpuTime;
+			sender.join();
+			if (measure)
+				System.out.println("JUnit view - UI thread time: " + cpuTime / 1000000 + " ms");
+
+			assertEquals(TEST_COUNT, session.getStartedCount());
+			assertEquals(TEST_COUNT / FAILURE_FREQUENCY, session.getFailureCount());
+			JUnitCorePlugin.getModel().removeTestRunSession(session);
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	private static Thread sendTestRun(final int port) {
+		Thread thread= new Thread("JUnitViewUpdatePerfTest sender") {
+			public void run() {
+				try {
+					Socket socket= connect(port);
+					try {
+						BinaryMessageSender sender= new BinaryMessageSender(socket.getOutputStream());
+						sendTestRun(sender);
+						sender.close();
+					} finally {
+						socket.close();
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		thread.start();
+		return thread;
+	}
+
+	private static Socket connect(int port) throws IOException, InterruptedException {
+		for (int i= 0; ; i++) {
+			try {
+				return new Socket("127.0.0.1", port);
+			} catch (ConnectException e) {
+				if (i == 50)
+					throw e;
+				Thread.sleep(100); // server socket is opened asynchronously
+			}
+		}
+	}
+
+	private static void sendTestRun(BinaryMessageSender sender) {
+		int classCount= TEST_COUNT / TESTS_PER_CLASS;
+		sender.sendMessage(MessageIds.TEST_RUN_START + TEST_COUNT + " v2");
+		sender.sendMessage(MessageIds.TEST_TREE + "1,junit.tests.AllTests,true," + classCount);
+		for (int c= 0; c < classCount; c++) {
+			sender.sendMessage(MessageIds.TEST_TREE + getClassId(c) + "," + getClassName(c) + ",true," + TESTS_PER_CLASS);
+			for (int t= 0; t < TESTS_PER_CLASS; t++)
+				sender.sendMessage(MessageIds.TEST_TREE + getTestId(c, t) + "," + getTestName(c, t) + ",false,1");
+		}
+		for (int c= 0; c < classCount; c++) {
+			for (int t= 0; t < TESTS_PER_CLASS; t++) {
+				String test= getTestId(c, t) + "," + getTestName(c, t);
+				sender.sendMessage(MessageIds.TEST_START + test);
+				if (t % FAILURE_FREQUENCY == 0) {
+					sender.sendMessage(MessageIds.TEST_FAILED + test);
+					sender.sendMessage(MessageIds.TRACE_START);
+					sender.sendMessage("junit.framework.AssertionFailedError: failure " + t);
+					sender.sendMessage("\tat " + getClassName(c) + ".test" + t + "(Test.java:" + (t + 10) + ")");
+					sender.sendMessage(MessageIds.TRACE_END);
+				}
+				sender.sendMessage(MessageIds.TEST_END + test);
+			}
+		}
+		sender.sendMessage(MessageIds.TEST_RUN_END + 4711);
+		sender.flush();
+	}
+
+	private static int getClassId(int c) {
+		return 2 + c * (TESTS_PER_CLASS + 1);
+	}
+
+	private static int getTestId(int c, int t) {
+		return getClassId(c) + 1 + t;
+	}
+
+	private static String getClassName(int c) {
+		return "junit.tests.framework.Test" + c;
+	}
+
+	private static String getTestName(int c, int t) {
+		return "test" + t + "(" + getClassName(c) + ")";
+	}
+}
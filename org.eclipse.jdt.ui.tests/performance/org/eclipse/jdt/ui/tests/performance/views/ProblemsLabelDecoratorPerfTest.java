@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.performance.views;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+import org.eclipse.test.OrderedTestSuite;
+import org.eclipse.test.performance.Dimension;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.jface.viewers.ILabelProviderListener;
+import org.eclipse.jface.viewers.LabelProviderChangedEvent;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+
+import org.eclipse.jdt.ui.JavaElementImageDescriptor;
+import org.eclipse.jdt.ui.ProblemsLabelDecorator;
+import org.eclipse.jdt.ui.tests.performance.JdtPerformanceTestCase;
+
+/**
+ * Computes the problem decorations of the projects, source folders and packages of a
+ * workspace with a large number of problem markers.
+ */
+public class ProblemsLabelDecoratorPerfTest extends JdtPerformanceTestCase {
+
+	private static final int PROJECT_COUNT= 30;
+
+	private static final int PACKAGE_COUNT= 10;
+
+	private static final int CU_COUNT= 10;
+
+	private static final int MARKERS_PER_CU= 20;
+
+	private static final int WARM_UP= 2;
+
+	private static final int REPEAT= 10;
+
+	private static class MyTestSetup extends TestSetup {
+		public static List<IJavaProject> fProjects;
+		public static List<IJavaElement> fContainers;
+
+		public MyTestSetup(Test test) {
+			super(test);
+		}
+
+		protected void setUp() throws Exception {
+			fProjects= new ArrayList<IJavaProject>();
+			fContainers= new ArrayList<IJavaElement>();
+			final List<ICompilationUnit> cus= new ArrayList<ICompilationUnit>();
+			for (int i= 0; i < PROJECT_COUNT; i++) {
+				IJavaProject project= JavaProjectHelper.createJavaProject("DecoratorProject" + i, "bin");
+				fProjects.add(project);
+				fContainers.add(project);
+				IPackageFragmentRoot root= JavaProjectHelper.addSourceContainer(project, "src");
+				fContainers.add(root);
+				for (int j= 0; j < PACKAGE_COUNT; j++) {
+					IPackageFragment pack= root.createPackageFragment("pack" + j, true, null);
+					fContainers.add(pack);
+					for (int k= 0; k < CU_COUNT; k++) {
+						String name= "C" + k;
+						cus.add(pack.createCompilationUnit(name + ".java", "package pack" + j + ";\npublic class " + name + " {\n}\n", true, null));
+					}
+				}
+			}
+
+			ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
+				public void run(IProgressMonitor monitor) throws CoreException {
+					for (int i= 0; i < cus.size(); i++) {
+						IResource resource= cus.get(i).getResource();
+						for (int j= 0; j < MARKERS_PER_CU; j++) {
+							IMarker marker= resource.createMarker(IMarker.PROBLEM);
+							marker.setAttribute(IMarker.SEVERITY, i % 100 == 0 && j == 0 ? IMarker.SEVERITY_ERROR : IMarker.SEVERITY_WARNING);
+							marker.setAttribute(IMarker.MESSAGE, "problem " + j);
+						}
+					}
+				}
+			}, null);
+		}
+
+		protected void tearDown() throws Exception {
+			for (int i= 0; i < fProjects.size(); i++)
+				JavaProjectHelper.delete(fProjects.get(i));
+		}
+	}
+
+	private static class Decorator extends ProblemsLabelDecorator {
+		public int getFlags(Object element) {
+			return computeAdornmentFlags(element);
+		}
+	}
+
+	private static class NullListener implements ILabelProviderListener {
+		public void labelProviderChanged(LabelProviderChangedEvent event) {
+			// not interested
+		}
+	}
+
+	public static Test suite() {
+		return new MyTestSetup(new OrderedTestSuite(ProblemsLabelDecoratorPerfTest.class, new String[] {
+			"testDecorateWithoutIndex",
+			"testDecorateWithIndex",
+		}));
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new MyTestSetup(someTest);
+	}
+
+	public ProblemsLabelDecoratorPerfTest(String name) {
+		super(name);
+	}
+
+	public void testDecorateWithoutIndex() throws Exception {
+		Decorator decorator= new Decorator();
+		try {
+			measureDecoration(decorator);
+		} finally {
+			decorator.dispose();
+		}
+	}
+
+	public void testDecorateWithIndex() throws Exception {
+		tagAsSummary("Problems decorator - 360 containers with 60000 markers", Dimension.ELAPSED_PROCESS);
+
+		Decorator decorator= new Decorator();
+		// listening to problem changes enables the severity index
+		decorator.addListener(new NullListener());
+		try {
+			measureDecoration(decorator);
+		} finally {
+			decorator.dispose();
+		}
+	}
+
+	private void measureDecoration(Decorator decorator) throws Exception {
+		joinBackgroudActivities();
+		List<IJavaElement> containers= MyTestSetup.fContainers;
+		for (int i= 0; i < WARM_UP + REPEAT; i++) {
+			boolean measure= i >= WARM_UP;
+			if (measure)
+				startMeasuring();
+			int errors= 0;
+			for (int j= 0; j < containers.size(); j++) {
+				if ((decorator.getFlags(containers.get(j)) & JavaElementImageDescriptor.ERROR) != 0)
+					errors++;
+			}
+			if (measure)
+				stopMeasuring();
+			assertTrue(errors > 0);
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+}
@@ -31,6 +31,7 @@ public class JUnitJUnitTests {
 		addDeprecatedTests(suite);
 
 		suite.addTestSuite(TestRunListenerTest.class);
+		suite.addTestSuite(TestExecutionTest.class);
 
 		suite.addTest(TestRunSessionSerializationTests3.suite());
 		suite.addTest(TestRunSessionSerializationTests4.suite());
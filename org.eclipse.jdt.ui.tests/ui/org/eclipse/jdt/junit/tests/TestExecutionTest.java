@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.junit.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jdt.internal.junit.model.ITestRunListener2;
+import org.eclipse.jdt.internal.junit.model.RemoteTestRunnerClient;
+import org.eclipse.jdt.internal.junit.runner.BinaryMessageSender;
+import org.eclipse.jdt.internal.junit.runner.IListensToTestExecutions;
+import org.eclipse.jdt.internal.junit.runner.ITestIdentifier;
+import org.eclipse.jdt.internal.junit.runner.ITestReference;
+import org.eclipse.jdt.internal.junit.runner.IVisitsTestTrees;
+import org.eclipse.jdt.internal.junit.runner.MessageIds;
+import org.eclipse.jdt.internal.junit.runner.MessageSender;
+import org.eclipse.jdt.internal.junit.runner.RemoteTestRunner;
+import org.eclipse.jdt.internal.junit.runner.TestExecution;
+import org.eclipse.jdt.internal.junit.runner.TestReferenceFailure;
+
+public class TestExecutionTest extends TestCase {
+
+	private static final int FAILING_COUNT= 200;
+
+	private static class RecordingReference implements ITestReference {
+		private final String fName;
+		private final List<String> fLog;
+		private final long fDuration;
+		private final boolean fStop;
+		static int fgRunning;
+		static int fgMaxRunning;
+
+		public RecordingReference(String name, List<String> log, long duration, boolean stop) {
+			fName= name;
+			fLog= log;
+			fDuration= duration;
+			fStop= stop;
+		}
+
+		public int countTestCases() {
+			return 1;
+		}
+
+		public void sendTree(IVisitsTestTrees notified) {
+		}
+
+		public void run(TestExecution execution) {
+			synchronized (RecordingReference.class) {
+				fgRunning++;
+				fgMaxRunning= Math.max(fgMaxRunning, fgRunning);
+			}
+			try {
+				if (fStop)
+					execution.stop();
+				Thread.sleep(fDuration);
+			} catch (InterruptedException e) {
+				// ignore
+			} finally {
+				synchronized (RecordingReference.class) {
+					fgRunning--;
+				}
+				fLog.add(fName);
+			}
+		}
+
+		public ITestIdentifier getIdentifier() {
+			return null;
+		}
+	}
+
+	private static class FailingReference implements ITestReference, ITestIdentifier {
+		private final String fName;
+
+		public FailingReference(String name) {
+			fName= name;
+		}
+
+		public int countTestCases() {
+			return 1;
+		}
+
+		public void sendTree(IVisitsTestTrees notified) {
+		}
+
+		public void run(TestExecution execution) {
+			IListensToTestExecutions listener= execution.getListener();
+			listener.notifyTestStarted(this);
+			listener.notifyTestFailed(new TestReferenceFailure((ITestIdentifier) this, MessageIds.TEST_FAILED, getTrace(fName)));
+			listener.notifyTestEnded(this);
+		}
+
+		public ITestIdentifier getIdentifier() {
+			return this;
+		}
+
+		public String getName() {
+			return fName;
+		}
+	}
+
+	private static class FailureRecorder implements ITestRunListener2 {
+		final Map<String, String> fTraces= new HashMap<String, String>();
+
+		public void testRunStarted(int testCount) {
+		}
+
+		public void testRunEnded(long elapsedTime) {
+		}
+
+		public void testRunStopped(long elapsedTime) {
+		}
+
+		public void testStarted(String testId, String testName) {
+		}
+
+		public void testEnded(String testId, String testName) {
+		}
+
+		public void testRunTerminated() {
+		}
+
+		public void testTreeEntry(String description) {
+		}
+
+		public void testFailed(int status, String testId, String testName, String trace, String expected, String actual) {
+			assertNull(fTraces.put(testName, trace));
+		}
+
+		public void testReran(String testId, String testClass, String testName, int status, String trace, String expected, String actual) {
+		}
+	}
+
+	private static String getTrace(String name) {
+		StringBuffer buf= new StringBuffer();
+		buf.append("java.lang.AssertionError: ").append(name);
+		for (int i= 0; i < 20; i++)
+			buf.append("\n\tat ").append(name).append(".frame").append(i).append("(").append(name).append(".java:").append(i).append(")");
+		return buf.toString();
+	}
+
+	protected void setUp() throws Exception {
+		RecordingReference.fgRunning= 0;
+		RecordingReference.fgMaxRunning= 0;
+	}
+
+	private static ITestReference[] createReferences(List<String> log, int count, long duration) {
+		ITestReference[] references= new ITestReference[count];
+		for (int i= 0; i < count; i++)
+			references[i]= new RecordingReference("Test" + i, log, duration, false);
+		return references;
+	}
+
+	public void testSequential() throws Exception {
+		List<String> log= Collections.synchronizedList(new ArrayList<String>());
+		TestExecution execution= new TestExecution(null, null);
+		execution.run(createReferences(log, 4, 10));
+
+		assertEquals("[Test0, Test1, Test2, Test3]", log.toString());
+		assertEquals(1, RecordingReference.fgMaxRunning);
+	}
+
+	public void testParallel() throws Exception {
+		List<String> log= Collections.synchronizedList(new ArrayList<String>());
+		TestExecution execution= new TestExecution(null, null);
+		execution.setThreadCount(4);
+		execution.run(createReferences(log, 8, 200));
+
+		assertEquals(8, log.size());
+		for (int i= 0; i < 8; i++)
+			assertTrue(log.contains("Test" + i));
+		assertTrue(RecordingReference.fgMaxRunning > 1);
+		assertTrue(RecordingReference.fgMaxRunning <= 4);
+	}
+
+	public void testParallelStop() throws Exception {
+		List<String> log= Collections.synchronizedList(new ArrayList<String>());
+		ITestReference[] references= createReferences(log, 8, 200);
+		references[0]= new RecordingReference("Stop", log, 200, true);
+		TestExecution execution= new TestExecution(null, null);
+		execution.setThreadCount(2);
+		execution.run(references);
+
+		assertTrue(execution.shouldStop());
+		assertTrue(log.contains("Stop"));
+		assertTrue(log.size() < references.length);
+	}
+
+	public void testParallelFailureTracesText() throws Exception {
+		ByteArrayOutputStream out= new ByteArrayOutputStream();
+		final PrintWriter writer= new PrintWriter(new OutputStreamWriter(out, "UTF-8"));
+		MessageSender sender= new MessageSender() {
+			public void sendMessage(String msg) {
+				writer.println(msg);
+			}
+
+			public void flush() {
+				writer.flush();
+			}
+		};
+		runFailingTests(sender);
+		writer.close();
+		assertTracesIntact(out.toByteArray());
+	}
+
+	public void testParallelFailureTracesBinary() throws Exception {
+		ByteArrayOutputStream out= new ByteArrayOutputStream();
+		BinaryMessageSender sender= new BinaryMessageSender(out);
+		runFailingTests(sender);
+		sender.close();
+		assertTracesIntact(out.toByteArray());
+	}
+
+	private void runFailingTests(MessageSender sender) {
+		RemoteTestRunner runner= new RemoteTestRunner();
+		runner.setMessageSender(sender);
+		ITestReference[] references= new ITestReference[FAILING_COUNT];
+		for (int i= 0; i < references.length; i++)
+			references[i]= new FailingReference("Test" + i);
+		TestExecution execution= new TestExecution(runner.firstRunExecutionListener(), null);
+		execution.setThreadCount(8);
+		execution.run(references);
+		sender.flush();
+	}
+
+	private void assertTracesIntact(byte[] bytes) throws Exception {
+		FailureRecorder recorder= new FailureRecorder();
+		new RemoteTestRunnerClient().readMessages(new ITestRunListener2[] { recorder }, new ByteArrayInputStream(bytes));
+		assertEquals(FAILING_COUNT, recorder.fTraces.size());
+		for (int i= 0; i < FAILING_COUNT; i++) {
+			String name= "Test" + i;
+			String trace= recorder.fTraces.get(name);
+			assertNotNull(name, trace);
+			assertEquals(name, getTrace(name).replaceAll("\\r?\\n", "\n").trim(), trace.replaceAll("\\r?\\n", "\n").trim());
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.core;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import org.eclipse.jdt.internal.ui.javaeditor.ASTCache;
+import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
+
+/**
+ * Tests the cache of the ASTs of recently active editors.
+ *
+ * @since 3.10
+ */
+public class ASTCacheTest extends CoreTests {
+
+	private static final Class<ASTCacheTest> THIS= ASTCacheTest.class;
+
+	private IJavaProject fJProject1;
+	private ICompilationUnit fCuA;
+	private ICompilationUnit fCuB;
+	private ICompilationUnit fCuC;
+
+	public ASTCacheTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(THIS));
+	}
+
+	public static Test setUpTest(Test test) {
+		return new ProjectTestSetup(test);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		fJProject1= ProjectTestSetup.getProject();
+		IPackageFragmentRoot sourceFolder= JavaProjectHelper.addSourceContainer(fJProject1, "src");
+		IPackageFragment pack1= sourceFolder.createPackageFragment("test1", false, null);
+		fCuA= createType(pack1, "A");
+		fCuB= createType(pack1, "B");
+		fCuC= createType(pack1, "C");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		ASTProvider.getASTProvider().getRecentASTCache().clear();
+		JavaProjectHelper.clear(fJProject1, ProjectTestSetup.getDefaultClasspath());
+	}
+
+	private static ICompilationUnit createType(IPackageFragment pack, String name) throws Exception {
+		StringBuffer buf= new StringBuffer();
+		buf.append("package test1;\n");
+		buf.append("public class " + name + " {\n");
+		buf.append("    void foo() {\n");
+		buf.append("    }\n");
+		buf.append("}\n");
+		return pack.createCompilationUnit(name + ".java", buf.toString(), false, null);
+	}
+
+	private static CompilationUnit createAST(ICompilationUnit cu) {
+		ASTParser parser= ASTParser.newParser(ASTProvider.SHARED_AST_LEVEL);
+		parser.setSource(cu);
+		parser.setResolveBindings(true);
+		return (CompilationUnit) parser.createAST(null);
+	}
+
+	/*
+	 * All test ASTs have the same length, so they have the same estimated size.
+	 */
+	private long getEntrySize() {
+		ASTCache cache= new ASTCache(Long.MAX_VALUE);
+		cache.put(fCuA, createAST(fCuA), 1);
+		return cache.getEstimatedSize();
+	}
+
+	public void testGet() throws Exception {
+		ASTCache cache= new ASTCache(Long.MAX_VALUE);
+		CompilationUnit astA= createAST(fCuA);
+		cache.put(fCuA, astA, 1);
+
+		assertSame(astA, cache.get(fCuA, 1));
+		assertSame(astA, cache.get(fCuA, 1));
+		assertNull(cache.get(fCuB, 1));
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getEntryCount());
+	}
+
+	public void testModificationStamp() throws Exception {
+		ASTCache cache= new ASTCache(Long.MAX_VALUE);
+		cache.put(fCuA, createAST(fCuA), 1);
+
+		// a stale AST is dropped
+		assertNull(cache.get(fCuA, 2));
+		assertEquals(1, cache.getMisses());
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0, cache.getEstimatedSize());
+		assertNull(cache.get(fCuA, 1));
+	}
+
+	public void testReplace() throws Exception {
+		ASTCache cache= new ASTCache(Long.MAX_VALUE);
+		CompilationUnit ast1= createAST(fCuA);
+		CompilationUnit ast2= createAST(fCuA);
+		cache.put(fCuA, ast1, 1);
+		long size= cache.getEstimatedSize();
+		cache.put(fCuA, ast2, 2);
+
+		assertEquals(1, cache.getEntryCount());
+		assertEquals(size, cache.getEstimatedSize());
+		assertFalse(cache.contains(ast1));
+		assertSame(ast2, cache.get(fCuA, 2));
+	}
+
+	public void testEviction() throws Exception {
+		long entrySize= getEntrySize();
+		ASTCache cache= new ASTCache(2 * entrySize + entrySize / 2);
+		CompilationUnit astA= createAST(fCuA);
+		CompilationUnit astB= createAST(fCuB);
+		CompilationUnit astC= createAST(fCuC);
+		cache.put(fCuA, astA, 1);
+		cache.put(fCuB, astB, 1);
+
+		// accessing A makes B the least recently used entry
+		assertSame(astA, cache.get(fCuA, 1));
+		cache.put(fCuC, astC, 1);
+
+		assertEquals(1, cache.getEvictions());
+		assertEquals(2, cache.getEntryCount());
+		assertEquals(2 * entrySize, cache.getEstimatedSize());
+		assertTrue(cache.contains(astA));
+		assertFalse(cache.contains(astB));
+		assertTrue(cache.contains(astC));
+	}
+
+	public void testTooLarge() throws Exception {
+		ASTCache cache= new ASTCache(getEntrySize() - 1);
+		cache.put(fCuA, createAST(fCuA), 1);
+
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0, cache.getEstimatedSize());
+		assertEquals(0, cache.getEvictions());
+	}
+
+	public void testRemoveAndClear() throws Exception {
+		ASTCache cache= new ASTCache(Long.MAX_VALUE);
+		CompilationUnit astA= createAST(fCuA);
+		CompilationUnit astB= createAST(fCuB);
+		cache.put(fCuA, astA, 1);
+		cache.put(fCuB, astB, 1);
+
+		assertSame(astA, cache.remove(fCuA));
+		assertNull(cache.remove(fCuA));
+		assertFalse(cache.contains(astA));
+		assertTrue(cache.contains(astB));
+		assertEquals(getEntrySize(), cache.getEstimatedSize());
+
+		cache.clear();
+		assertFalse(cache.contains(astB));
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0, cache.getEstimatedSize());
+	}
+
+	public void testClearedOnReconcile() throws Exception {
+		ASTCache cache= ASTProvider.getASTProvider().getRecentASTCache();
+		cache.put(fCuA, createAST(fCuA), 1);
+
+		// the AST of A may refer to B, so editing B invalidates it
+		ICompilationUnit workingCopy= fCuB.getWorkingCopy(null);
+		try {
+			String contents= workingCopy.getSource();
+			workingCopy.getBuffer().replace(contents.lastIndexOf('}'), 0, "    void bar() {\n    }\n");
+			workingCopy.reconcile(ICompilationUnit.NO_AST, false, null, null);
+		} finally {
+			workingCopy.discardWorkingCopy();
+		}
+		assertEquals(0, cache.getEntryCount());
+	}
+}
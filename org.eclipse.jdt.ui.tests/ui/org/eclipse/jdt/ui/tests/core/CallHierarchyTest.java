@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,7 +12,10 @@
 package org.eclipse.jdt.ui.tests.core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
@@ -24,8 +27,11 @@ import org.eclipse.jdt.core.IInitializer;
 import org.eclipse.jdt.core.IMember;
 import org.eclipse.jdt.core.IMethod;
 import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+import org.eclipse.jdt.core.search.SearchEngine;
 
 import org.eclipse.jdt.internal.corext.callhierarchy.CallHierarchy;
+import org.eclipse.jdt.internal.corext.callhierarchy.CallerCache;
 import org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper;
 
 import org.eclipse.jdt.ui.tests.callhierarchy.CallHierarchyTestHelper;
@@ -90,6 +96,62 @@ public class CallHierarchyTest extends TestCase {
         helper.assertCalls(expectedSecondLevelMethods, wrapper2.getCalls(new NullProgressMonitor()));
     }
 
+    public void testStreamedCallers() throws Exception {
+        helper.createSimpleClasses();
+
+        Collection expectedMethods= new ArrayList();
+        expectedMethods.add(helper.getMethod2());
+        expectedMethods.add(helper.getMethod3());
+
+        final List batches= new ArrayList();
+        final List streamedCalls= new ArrayList();
+        MethodWrapper wrapper= getSingleCallerRoot(helper.getMethod1());
+        wrapper.getCalls(new NullProgressMonitor(), new MethodWrapper.IChildrenCollector() {
+			public void add(MethodWrapper[] children) {
+				batches.add(children);
+				streamedCalls.addAll(Arrays.asList(children));
+			}
+		});
+        helper.assertCalls(expectedMethods, streamedCalls);
+        assertEquals("callers of both compilation units must be passed separately", 2, batches.size());
+
+        helper.assertCalls(expectedMethods, wrapper.getCalls(new NullProgressMonitor()));
+    }
+
+    public void testCallerCacheInvalidated() throws Exception {
+        helper.createSimpleClasses();
+
+        IMethod method= helper.getMethod4();
+        helper.assertCalls(new ArrayList(), getSingleCallerRoot(method).getCalls(new NullProgressMonitor()));
+        helper.assertCalls(new ArrayList(), getSingleCallerRoot(method).getCalls(new NullProgressMonitor()));
+
+        IMethod method5= helper.getType2().createMethod("public void method5() { method4(); }\n", null, true, null);
+
+        Collection expectedMethods= new ArrayList();
+        expectedMethods.add(method5);
+        helper.assertCalls(expectedMethods, getSingleCallerRoot(method).getCalls(new NullProgressMonitor()));
+    }
+
+    public void testCallerCacheSkipsStaleResults() throws Exception {
+        CallerCache cache= CallerCache.getDefault();
+        IJavaSearchScope scope= SearchEngine.createWorkspaceScope();
+
+        int generation= cache.getGeneration();
+        cache.put("key", scope, new HashMap(), generation);
+        assertNotNull(cache.get("key", scope));
+
+        // the cache is flushed while the search of another member runs
+        generation= cache.getGeneration();
+        cache.clear();
+        cache.put("key2", scope, new HashMap(), generation);
+        assertNull("callers found before the flush must not be cached", cache.get("key2", scope));
+
+        generation= cache.getGeneration();
+        cache.remove("key");
+        cache.put("key", scope, new HashMap(), generation);
+        assertNull("callers found before the removal must not be cached", cache.get("key", scope));
+    }
+
     public void testCallersNoResults() throws Exception {
         helper.createSimpleClasses();
 
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.core;
+
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Display;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.contentassist.CompletionProposal;
+import org.eclipse.jface.text.contentassist.ContentAssistant;
+import org.eclipse.jface.text.contentassist.ICompletionProposal;
+import org.eclipse.jface.text.contentassist.IContextInformation;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+
+import org.eclipse.jdt.ui.text.IJavaPartitions;
+import org.eclipse.jdt.ui.text.java.ContentAssistInvocationContext;
+import org.eclipse.jdt.ui.text.java.IJavaCompletionProposalComputer;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.javaeditor.EditorUtility;
+import org.eclipse.jdt.internal.ui.javaeditor.JavaEditor;
+import org.eclipse.jdt.internal.ui.text.java.CompletionProposalComputerRegistry;
+import org.eclipse.jdt.internal.ui.text.java.JavaCompletionProcessor;
+
+/**
+ * Tests the completion proposal computers that run concurrently, using the computer contributed
+ * by this plug-in with the <code>concurrent</code> attribute.
+ *
+ * @since 3.10
+ */
+public class ConcurrentProposalComputersTest extends CoreTests {
+
+	private static final String PROPOSAL= "concurrentProposal";
+
+	/**
+	 * The contributed computer. Does nothing unless enabled by a test.
+	 */
+	public static class TestComputer implements IJavaCompletionProposalComputer {
+
+		static volatile boolean fgEnabled;
+		static volatile long fgDelay;
+		static volatile boolean fgIgnoreCancel;
+		static volatile boolean fgRequiresUIThread;
+
+		static volatile int fgInvocations;
+		static volatile boolean fgInUIThread;
+		static volatile boolean fgCanceled;
+		static volatile boolean fgRunning;
+
+		static void reset() {
+			fgEnabled= false;
+			fgDelay= 0;
+			fgIgnoreCancel= false;
+			fgRequiresUIThread= false;
+			fgInvocations= 0;
+			fgInUIThread= false;
+			fgCanceled= false;
+			fgRunning= false;
+		}
+
+		public List<ICompletionProposal> computeCompletionProposals(ContentAssistInvocationContext context, IProgressMonitor monitor) {
+			if (!fgEnabled)
+				return Collections.emptyList();
+			fgRunning= true;
+			try {
+				fgInvocations++;
+				fgInUIThread= Display.getCurrent() != null;
+				if (fgRequiresUIThread && !fgInUIThread)
+					SWT.error(SWT.ERROR_THREAD_INVALID_ACCESS);
+				long end= System.currentTimeMillis() + fgDelay;
+				while (System.currentTimeMillis() < end) {
+					if (monitor.isCanceled()) {
+						fgCanceled= true;
+						if (!fgIgnoreCancel)
+							return Collections.emptyList();
+					}
+					try {
+						Thread.sleep(10);
+					} catch (InterruptedException e) {
+						return Collections.emptyList();
+					}
+				}
+				int offset= context.getInvocationOffset();
+				return Collections.<ICompletionProposal>singletonList(new CompletionProposal(PROPOSAL, offset, 0, PROPOSAL.length()));
+			} finally {
+				fgRunning= false;
+			}
+		}
+
+		public List<IContextInformation> computeContextInformation(ContentAssistInvocationContext context, IProgressMonitor monitor) {
+			return Collections.emptyList();
+		}
+
+		public String getErrorMessage() {
+			return null;
+		}
+
+		public void sessionStarted() {
+		}
+
+		public void sessionEnded() {
+		}
+	}
+
+	private static final Class<ConcurrentProposalComputersTest> THIS= ConcurrentProposalComputersTest.class;
+
+	private IJavaProject fJProject1;
+	private JavaEditor fEditor;
+	private int fOffset;
+
+	public ConcurrentProposalComputersTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(THIS));
+	}
+
+	public static Test setUpTest(Test test) {
+		return new ProjectTestSetup(test);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		fJProject1= ProjectTestSetup.getProject();
+		IPackageFragmentRoot sourceFolder= JavaProjectHelper.addSourceContainer(fJProject1, "src");
+		IPackageFragment pack1= sourceFolder.createPackageFragment("test1", false, null);
+		StringBuffer buf= new StringBuffer();
+		buf.append("package test1;\n");
+		buf.append("public class E {\n");
+		buf.append("    void foo() {\n");
+		buf.append("        \n");
+		buf.append("    }\n");
+		buf.append("}\n");
+		String contents= buf.toString();
+		ICompilationUnit cu= pack1.createCompilationUnit("E.java", contents, false, null);
+		fOffset= contents.indexOf("        \n") + 8;
+		fEditor= (JavaEditor) EditorUtility.openInEditor(cu);
+
+		// fresh descriptors, without the state of previous tests
+		TestComputer.reset();
+		CompletionProposalComputerRegistry.getDefault().reload();
+		TestComputer.fgEnabled= true;
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		waitUntilIdle();
+		TestComputer.reset();
+		CompletionProposalComputerRegistry.getDefault().reload();
+		JavaPlugin.getActivePage().closeAllEditors(false);
+		JavaProjectHelper.clear(fJProject1, ProjectTestSetup.getDefaultClasspath());
+	}
+
+	private boolean computeProposals() {
+		ContentAssistant assistant= new ContentAssistant();
+		assistant.setDocumentPartitioning(IJavaPartitions.JAVA_PARTITIONING);
+		JavaCompletionProcessor processor= new JavaCompletionProcessor(fEditor, assistant, IDocument.DEFAULT_CONTENT_TYPE);
+		ICompletionProposal[] proposals= processor.computeCompletionProposals(fEditor.getViewer(), fOffset);
+		for (int i= 0; i < proposals.length; i++) {
+			if (PROPOSAL.equals(proposals[i].getDisplayString()))
+				return true;
+		}
+		return false;
+	}
+
+	/*
+	 * The first invocation loads the computer in the calling thread.
+	 */
+	private void load() {
+		assertTrue(computeProposals());
+		assertTrue(TestComputer.fgInUIThread);
+		TestComputer.fgInvocations= 0;
+	}
+
+	private static void waitUntilIdle() throws InterruptedException {
+		long end= System.currentTimeMillis() + 10000;
+		while (TestComputer.fgRunning && System.currentTimeMillis() < end)
+			Thread.sleep(10);
+		assertFalse(TestComputer.fgRunning);
+		Thread.sleep(100); // let the descriptor finish the invocation
+	}
+
+	public void testConcurrentComputer() throws Exception {
+		load();
+
+		assertTrue(computeProposals());
+		assertEquals(1, TestComputer.fgInvocations);
+		assertFalse(TestComputer.fgInUIThread);
+	}
+
+	public void testDeadline() throws Exception {
+		load();
+
+		TestComputer.fgDelay= 3000;
+		long start= System.currentTimeMillis();
+		assertFalse(computeProposals());
+		long duration= System.currentTimeMillis() - start;
+		assertTrue("waited " + duration + "ms", duration < 2000);
+
+		// the late computer is canceled through its monitor
+		waitUntilIdle();
+		assertTrue(TestComputer.fgCanceled);
+		assertEquals(1, TestComputer.fgInvocations);
+	}
+
+	public void testUIThreadFallback() throws Exception {
+		load();
+
+		TestComputer.fgRequiresUIThread= true;
+		assertTrue(computeProposals());
+		assertEquals(2, TestComputer.fgInvocations);
+		assertTrue(TestComputer.fgInUIThread);
+
+		// from now on the computer runs in the calling thread only
+		TestComputer.fgInvocations= 0;
+		assertTrue(computeProposals());
+		assertEquals(1, TestComputer.fgInvocations);
+		assertTrue(TestComputer.fgInUIThread);
+	}
+
+	public void testSkipWhileBusy() throws Exception {
+		load();
+
+		TestComputer.fgDelay= 3000;
+		TestComputer.fgIgnoreCancel= true;
+		assertFalse(computeProposals());
+		assertTrue(TestComputer.fgRunning);
+
+		// the computer is still busy and is not called again
+		TestComputer.fgDelay= 0;
+		assertFalse(computeProposals());
+		assertEquals(1, TestComputer.fgInvocations);
+
+		waitUntilIdle();
+		assertTrue(computeProposals());
+		assertEquals(2, TestComputer.fgInvocations);
+		assertFalse(TestComputer.fgInUIThread);
+	}
+
+	public void testRepeatedlyMissedDeadline() throws Exception {
+		load();
+
+		TestComputer.fgDelay= 1000;
+		TestComputer.fgIgnoreCancel= true;
+		for (int i= 0; i < 3; i++) {
+			assertFalse(computeProposals());
+			waitUntilIdle();
+		}
+		assertEquals(3, TestComputer.fgInvocations);
+
+		// the slow computer is skipped rather than run in the calling thread
+		TestComputer.fgInUIThread= false;
+		for (int i= 0; i < 10; i++)
+			assertFalse(computeProposals());
+		assertEquals(3, TestComputer.fgInvocations);
+
+		// it is tried again concurrently, and is no longer skipped once it is fast
+		TestComputer.fgDelay= 0;
+		assertTrue(computeProposals());
+		assertEquals(4, TestComputer.fgInvocations);
+		assertFalse(TestComputer.fgInUIThread);
+		assertTrue(computeProposals());
+		assertEquals(5, TestComputer.fgInvocations);
+		assertFalse(TestComputer.fgInUIThread);
+	}
+}
@@ -44,6 +44,7 @@ public class CoreTests extends TestCase {
 		suite.addTest(CodeFormatterTest.suite());
 		suite.addTest(HierarchicalASTVisitorTest.suite());
 		suite.addTest(ImportOrganizeTest.suite());
+		suite.addTest(JavadocContentCacheTest.suite());
 		suite.addTest(JavaElementLabelsTest.suite());
 		suite.addTest(JavaElementLabelsTest17.suite());
 		suite.addTest(JavaElementPropertyTesterTest.suite());
@@ -61,6 +62,8 @@ public class CoreTests extends TestCase {
 		suite.addTest(IndentManipulationTest.suite());
 		suite.addTest(SelectionHistoryTest.suite());
 		suite.addTest(ASTProviderTest.suite());
+		suite.addTest(ASTCacheTest.suite());
+		suite.addTest(ConcurrentProposalComputersTest.suite());
 
 		return new ProjectTestSetup(suite);
 	}
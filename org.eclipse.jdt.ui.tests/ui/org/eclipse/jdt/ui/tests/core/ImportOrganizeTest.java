@@ -11,7 +11,11 @@
 package org.eclipse.jdt.ui.tests.core;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -20,13 +24,25 @@ import org.eclipse.jdt.testplugin.JavaProjectHelper;
 import org.eclipse.jdt.testplugin.JavaTestPlugin;
 import org.eclipse.jdt.testplugin.TestOptions;
 
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 
 import org.eclipse.core.resources.ProjectScope;
 
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.CheckConditionsOperation;
+import org.eclipse.ltk.core.refactoring.CompositeChange;
+import org.eclipse.ltk.core.refactoring.CreateChangeOperation;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IImportDeclaration;
+import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
@@ -34,13 +50,22 @@ import org.eclipse.jdt.core.ISourceRange;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.Signature;
 import org.eclipse.jdt.core.formatter.DefaultCodeFormatterConstants;
+import org.eclipse.jdt.core.refactoring.CompilationUnitChange;
 import org.eclipse.jdt.core.search.TypeNameMatch;
 
 import org.eclipse.jdt.internal.corext.codemanipulation.OrganizeImportsOperation;
 import org.eclipse.jdt.internal.corext.codemanipulation.OrganizeImportsOperation.IChooseImportQuery;
+import org.eclipse.jdt.internal.corext.codemanipulation.OrganizeImportsOperation.TypeNameCache;
+import org.eclipse.jdt.internal.corext.fix.CleanUpConstants;
+import org.eclipse.jdt.internal.corext.fix.CleanUpRefactoring;
+import org.eclipse.jdt.internal.corext.refactoring.changes.MultiStateCompilationUnitChange;
 
 import org.eclipse.jdt.ui.JavaUI;
 import org.eclipse.jdt.ui.PreferenceConstants;
+import org.eclipse.jdt.ui.cleanup.CleanUpOptions;
+
+import org.eclipse.jdt.internal.ui.fix.ImportsCleanUp;
+import org.eclipse.jdt.internal.ui.preferences.JavaPreferencesSettings;
 
 
 public class ImportOrganizeTest extends CoreTests {
@@ -155,6 +180,147 @@ public class ImportOrganizeTest extends CoreTests {
 		});
 	}
 
+	public void test1WithTypeNameCache() throws Exception {
+		File junitSrcArchive= JavaTestPlugin.getDefault().getFileInPlugin(JavaProjectHelper.JUNIT_SRC_381);
+		assertTrue("junit src not found", junitSrcArchive != null && junitSrcArchive.exists());
+
+		JavaProjectHelper.addSourceContainerWithImport(fJProject1, "src", junitSrcArchive, JavaProjectHelper.JUNIT_SRC_ENCODING);
+
+		ICompilationUnit cu1= (ICompilationUnit) fJProject1.findElement(new Path("junit/runner/BaseTestRunner.java"));
+		assertNotNull("BaseTestRunner.java", cu1);
+		ICompilationUnit cu2= (ICompilationUnit) fJProject1.findElement(new Path("junit/framework/TestResult.java"));
+		assertNotNull("TestResult.java", cu2);
+
+		IPackageFragmentRoot root= (IPackageFragmentRoot)cu1.getParent().getParent();
+		IPackageFragment pack= root.createPackageFragment("mytest", true, null);
+
+		ICompilationUnit colidingCU= pack.getCompilationUnit("TestListener.java");
+		colidingCU.createType("public abstract class TestListener {\n}\n", null, true, null);
+
+		// remove the imports, so that the type names need to be searched
+		cu1.getImport("java.io.*").delete(true, null);
+		cu1.getImport("java.util.*").delete(true, null);
+		cu1.getImport("java.lang.reflect.*").delete(true, null);
+		cu1.getImport("java.text.NumberFormat").delete(true, null);
+		cu1.getImport("junit.framework.*").delete(true, null);
+
+		setOrganizeImportSettings(new String[0], 99, 99, fJProject1);
+		TypeNameCache cache= new TypeNameCache(fJProject1);
+
+		IChooseImportQuery query= createQuery("BaseTestRunner", new String[] { "junit.framework.TestListener" }, new int[] { 2 });
+		OrganizeImportsOperation op= new OrganizeImportsOperation(cu1, null, false, true, true, query, cache);
+		op.run(null);
+
+		assertImports(cu1, new String[] {
+			"java.io.BufferedReader",
+			"java.io.File",
+			"java.io.FileInputStream",
+			"java.io.FileOutputStream",
+			"java.io.IOException",
+			"java.io.InputStream",
+			"java.io.PrintWriter",
+			"java.io.StringReader",
+			"java.io.StringWriter",
+			"java.lang.reflect.InvocationTargetException",
+			"java.lang.reflect.Method",
+			"java.lang.reflect.Modifier",
+			"java.text.NumberFormat",
+			"java.util.Properties",
+			"junit.framework.AssertionFailedError",
+			"junit.framework.Test",
+			"junit.framework.TestListener",
+			"junit.framework.TestSuite"
+		});
+
+		// the second unit is answered from the cache
+		cu2.getImport("java.util.Vector").delete(true, null);
+		cu2.getImport("java.util.Enumeration").delete(true, null);
+		op= new OrganizeImportsOperation(cu2, null, false, true, true, null, cache);
+		op.run(null);
+
+		assertImports(cu2, new String[] {
+			"java.util.Enumeration",
+			"java.util.Vector"
+		});
+	}
+
+	public void testBatchWithTypeNameCache() throws Exception {
+		File junitSrcArchive= JavaTestPlugin.getDefault().getFileInPlugin(JavaProjectHelper.JUNIT_SRC_381);
+		assertTrue("junit src not found", junitSrcArchive != null && junitSrcArchive.exists());
+
+		IPackageFragmentRoot root= JavaProjectHelper.addSourceContainerWithImport(fJProject1, "src", junitSrcArchive, JavaProjectHelper.JUNIT_SRC_ENCODING);
+
+		// remove all imports, so that the type names need to be searched
+		List cus= new ArrayList();
+		IJavaElement[] packages= root.getChildren();
+		for (int i= 0; i < packages.length; i++) {
+			ICompilationUnit[] units= ((IPackageFragment) packages[i]).getCompilationUnits();
+			for (int k= 0; k < units.length; k++) {
+				IImportDeclaration[] imports= units[k].getImports();
+				for (int j= 0; j < imports.length; j++) {
+					imports[j].delete(true, null);
+				}
+				cus.add(units[k]);
+			}
+		}
+		ICompilationUnit[] units= (ICompilationUnit[]) cus.toArray(new ICompilationUnit[cus.size()]);
+
+		// organize the units one by one, each with its own search
+		boolean ignoreLowerCase= JavaPreferencesSettings.getCodeGenerationSettings(fJProject1).importIgnoreLowercase;
+		IChooseImportQuery skipAmbiguous= new IChooseImportQuery() {
+			public TypeNameMatch[] chooseImports(TypeNameMatch[][] openChoices, ISourceRange[] ranges) {
+				return new TypeNameMatch[0];
+			}
+		};
+		String[] expected= new String[units.length];
+		for (int i= 0; i < units.length; i++) {
+			OrganizeImportsOperation op= new OrganizeImportsOperation(units[i], null, ignoreLowerCase, false, false, skipAmbiguous);
+			IDocument document= new Document(units[i].getSource());
+			op.createTextEdit(null).apply(document);
+			expected[i]= document.get();
+		}
+
+		// organize all units as a parallel batch, which shares one search over the project
+		Map options= new HashMap();
+		options.put(CleanUpConstants.ORGANIZE_IMPORTS, CleanUpOptions.TRUE);
+		CleanUpRefactoring refactoring= new CleanUpRefactoring();
+		refactoring.setParallel(true);
+		refactoring.addCleanUp(new ImportsCleanUp(options));
+		for (int i= 0; i < units.length; i++) {
+			refactoring.addCompilationUnit(units[i]);
+		}
+
+		CreateChangeOperation create= new CreateChangeOperation(new CheckConditionsOperation(refactoring, CheckConditionsOperation.ALL_CONDITIONS), RefactoringStatus.FATAL);
+		create.run(null);
+		assertFalse(create.getConditionCheckingStatus().hasFatalError());
+
+		Map previews= new HashMap();
+		addPreviews(create.getChange(), previews);
+		assertFalse(previews.isEmpty());
+
+		for (int i= 0; i < units.length; i++) {
+			String actual= (String) previews.get(units[i]);
+			if (actual == null)
+				actual= units[i].getSource();
+			assertEquals(units[i].getElementName(), expected[i], actual);
+		}
+	}
+
+	private static void addPreviews(Change change, Map previews) throws CoreException {
+		if (change instanceof CompositeChange) {
+			Change[] children= ((CompositeChange) change).getChildren();
+			for (int i= 0; i < children.length; i++) {
+				addPreviews(children[i], previews);
+			}
+		} else if (change instanceof CompilationUnitChange) {
+			CompilationUnitChange cuChange= (CompilationUnitChange) change;
+			previews.put(cuChange.getCompilationUnit(), cuChange.getPreviewContent(new NullProgressMonitor()));
+		} else if (change instanceof MultiStateCompilationUnitChange) {
+			MultiStateCompilationUnitChange cuChange= (MultiStateCompilationUnitChange) change;
+			previews.put(cuChange.getCompilationUnit(), cuChange.getPreviewContent(new NullProgressMonitor()));
+		}
+	}
+
 	public void test1WithOrder() throws Exception {
 		File junitSrcArchive= JavaTestPlugin.getDefault().getFileInPlugin(JavaProjectHelper.JUNIT_SRC_381);
 		assertTrue("junit src not found", junitSrcArchive != null && junitSrcArchive.exists());
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.core;
+
+import java.io.File;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+import org.eclipse.jdt.testplugin.JavaTestPlugin;
+
+import org.eclipse.core.runtime.Path;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.IType;
+
+import org.eclipse.jdt.internal.ui.text.javadoc.JavadocContentAccess2;
+import org.eclipse.jdt.internal.ui.text.javadoc.JavadocContentCache;
+import org.eclipse.jdt.internal.ui.text.javadoc.JavadocContentCache.CachedContent;
+
+
+public class JavadocContentCacheTest extends TestCase {
+
+	private static final Class THIS= JavadocContentCacheTest.class;
+
+	private IJavaProject fJProject1;
+
+	public JavadocContentCacheTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(THIS));
+	}
+
+	public static Test setUpTest(Test test) {
+		return new ProjectTestSetup(test);
+	}
+
+	protected void setUp() throws Exception {
+		fJProject1= ProjectTestSetup.getProject();
+		// entries stored by other tests or previous runs must not leak into the assertions
+		JavadocContentCache.getDefault().clear();
+	}
+
+	protected void tearDown() throws Exception {
+		JavaProjectHelper.clear(fJProject1, ProjectTestSetup.getDefaultClasspath());
+	}
+
+	public void testLibraryMember() throws Exception {
+		IType type= fJProject1.findType("java.lang.Object");
+		assertNotNull(type);
+
+		String content= JavadocContentAccess2.getHTMLContent(type, true);
+		CachedContent cached= JavadocContentCache.getDefault().get(type, true);
+		assertNotNull(cached);
+		assertEquals(content, cached.getContent());
+		assertNull(JavadocContentCache.getDefault().get(type, false));
+	}
+
+	public void testClasspathChange() throws Exception {
+		IType type= fJProject1.findType("java.lang.Object");
+		JavadocContentAccess2.getHTMLContent(type, true);
+		assertNotNull(JavadocContentCache.getDefault().get(type, true));
+
+		File lib= JavaTestPlugin.getDefault().getFileInPlugin(new Path("testresources/PackageJavadocTests/testData.zip"));
+		JavaProjectHelper.addLibrary(fJProject1, Path.fromOSString(lib.getAbsolutePath()));
+
+		assertNull(JavadocContentCache.getDefault().get(type, true));
+	}
+
+	public void testClasspathChangeDuringComputation() throws Exception {
+		IType type= fJProject1.findType("java.lang.Object");
+		JavadocContentCache cache= JavadocContentCache.getDefault();
+		String stamp= cache.getStamp(type);
+		assertNotNull(stamp);
+
+		File lib= JavaTestPlugin.getDefault().getFileInPlugin(new Path("testresources/PackageJavadocTests/testData.zip"));
+		JavaProjectHelper.addLibrary(fJProject1, Path.fromOSString(lib.getAbsolutePath()));
+
+		// content computed for the old class path is not stored under the new stamp
+		cache.put(type, true, stamp, "stale");
+		assertNull(cache.get(type, true));
+	}
+
+	public void testSourceMember() throws Exception {
+		IPackageFragmentRoot root= JavaProjectHelper.addSourceContainer(fJProject1, "src");
+		IPackageFragment pack= root.createPackageFragment("pack", true, null);
+		ICompilationUnit cu= pack.createCompilationUnit("A.java", "package pack;\n/** Doc of A */\npublic class A {\n}\n", true, null);
+		IType type= cu.getType("A");
+
+		String content= JavadocContentAccess2.getHTMLContent(type, true);
+		assertTrue(content, content.indexOf("Doc of A") != -1);
+		assertNull(JavadocContentCache.getDefault().get(type, true));
+	}
+}
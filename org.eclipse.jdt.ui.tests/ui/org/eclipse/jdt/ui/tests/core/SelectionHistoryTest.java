@@ -10,9 +10,13 @@
  *******************************************************************************/
 package org.eclipse.jdt.ui.tests.core;
 
+import java.io.File;
+import java.io.RandomAccessFile;
 import java.text.Collator;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
@@ -22,6 +26,8 @@ import org.w3c.dom.Element;
 
 import org.eclipse.jdt.internal.corext.util.History;
 
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
 
 public class SelectionHistoryTest extends TestCase {
 
@@ -127,6 +133,48 @@ public class SelectionHistoryTest extends TestCase {
 
 	}
 
+	private static final class PersistedTestHistory extends History {
+
+		public PersistedTestHistory() {
+			super("SelectionHistoryTest.xml");
+		}
+		protected void setAttributes(Object object, Element element) {
+			element.setAttribute("name", (String) object);
+		}
+		protected Object createFromElement(Element type) {return type.getAttribute("name");}
+		protected Object getKey(Object object) {return object;}
+
+	}
+
+	private static final class StampedTestHistory extends History {
+
+		private final Map<String, String> fStamps= new HashMap<String, String>();
+
+		public StampedTestHistory() {
+			super("SelectionHistoryTest.xml");
+		}
+		protected void setAttributes(Object object, Element element) {
+			element.setAttribute("name", (String) object);
+			element.setAttribute("stamp", fStamps.get(object));
+		}
+		protected Object createFromElement(Element type) {
+			String name= type.getAttribute("name");
+			fStamps.put(name, type.getAttribute("stamp"));
+			return name;
+		}
+		protected Object getKey(Object object) {return object;}
+
+	}
+
+	private static File getJournalFile() {
+		return JavaPlugin.getDefault().getStateLocation().append("SelectionHistoryTest.journal").toFile();
+	}
+
+	protected void tearDown() throws Exception {
+		getJournalFile().delete();
+		super.tearDown();
+	}
+
 	public void testOrganizeImportHistory01() throws Exception {
 		History history= new TestHistory();
 		Comparator comparator= new TestHistoryComparator(history);
@@ -189,4 +237,74 @@ public class SelectionHistoryTest extends TestCase {
 		assertEquals(strings, expected);
 	}
 
+	public void testJournal() throws Exception {
+		History history= new PersistedTestHistory();
+		history.accessed("a");
+		history.accessed("b");
+		history.accessed("c");
+		history.remove("b");
+		history.save();
+		history.accessed("a");
+		history.save();
+
+		History loaded= new PersistedTestHistory();
+		loaded.load();
+		assertEquals(1, loaded.getPosition("a"));
+		assertEquals(-1, loaded.getPosition("b"));
+		assertEquals(0, loaded.getPosition("c"));
+	}
+
+	public void testTruncatedJournal() throws Exception {
+		History history= new PersistedTestHistory();
+		history.accessed("a");
+		history.accessed("b");
+		history.save();
+		history.accessed("a");
+		history.save();
+
+		RandomAccessFile file= new RandomAccessFile(getJournalFile(), "rw");
+		try {
+			file.setLength(file.length() - 1);
+		} finally {
+			file.close();
+		}
+
+		History loaded= new PersistedTestHistory();
+		loaded.load();
+		assertEquals(0, loaded.getPosition("a"));
+		assertEquals(1, loaded.getPosition("b"));
+
+		loaded.accessed("c");
+		loaded.save();
+		History reloaded= new PersistedTestHistory();
+		reloaded.load();
+		assertEquals(0, reloaded.getPosition("a"));
+		assertEquals(1, reloaded.getPosition("b"));
+		assertEquals(2, reloaded.getPosition("c"));
+	}
+
+	public void testUpdatedJournal() throws Exception {
+		StampedTestHistory history= new StampedTestHistory();
+		history.fStamps.put("a", "1");
+		history.fStamps.put("b", "1");
+		history.accessed("a");
+		history.accessed("b");
+		history.save();
+		long length= getJournalFile().length();
+
+		history.fStamps.put("a", "2");
+		history.updated("a");
+		history.updated("c"); // not in the history
+		history.save();
+		assertTrue(getJournalFile().length() > length);
+
+		StampedTestHistory loaded= new StampedTestHistory();
+		loaded.load();
+		assertEquals(0, loaded.getPosition("a"));
+		assertEquals(1, loaded.getPosition("b"));
+		assertEquals(-1, loaded.getPosition("c"));
+		assertEquals("2", loaded.fStamps.get("a"));
+		assertEquals("1", loaded.fStamps.get("b"));
+	}
+
 }
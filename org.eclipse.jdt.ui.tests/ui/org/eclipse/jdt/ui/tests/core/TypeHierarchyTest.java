@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -29,6 +29,7 @@ import org.eclipse.jdt.core.ITypeHierarchy;
 import org.eclipse.jdt.core.ITypeHierarchyChangedListener;
 
 import org.eclipse.jdt.internal.corext.util.JavaModelUtil;
+import org.eclipse.jdt.internal.corext.util.SuperTypeHierarchyCache;
 
 import org.eclipse.jdt.ui.JavaUI;
 import org.eclipse.jdt.ui.SharedASTProvider;
@@ -286,7 +287,37 @@ public class TypeHierarchyTest extends TestCase {
 
 	}
 
+	public void testSuperTypeHierarchyCache() throws Exception {
+		IPackageFragmentRoot root1= JavaProjectHelper.addSourceContainer(fJavaProject1, "src");
+		IPackageFragment pack1= root1.createPackageFragment("pack1", true, null);
+
+		ICompilationUnit cu1= pack1.getCompilationUnit("A.java");
+		IType type1= cu1.createType("public class A {\n}\n", null, true, null);
+
+		ICompilationUnit cu2= pack1.getCompilationUnit("B.java");
+		IType type2= cu2.createType("public class B extends A {\n}\n", null, true, null);
 
+		int hits= SuperTypeHierarchyCache.getCacheHits();
+		int misses= SuperTypeHierarchyCache.getCacheMisses();
 
+		ITypeHierarchy hierarchy= SuperTypeHierarchyCache.getTypeHierarchy(type2);
+		assertEquals(misses + 1, SuperTypeHierarchyCache.getCacheMisses());
 
+		// the hierarchy of B contains A
+		assertTrue(SuperTypeHierarchyCache.hasInCache(type1));
+		assertSame(hierarchy, SuperTypeHierarchyCache.getTypeHierarchy(type1));
+		assertSame(hierarchy, SuperTypeHierarchyCache.getMethodOverrideTester(type1).getTypeHierarchy());
+		assertEquals(hits + 2, SuperTypeHierarchyCache.getCacheHits());
+		assertEquals(misses + 1, SuperTypeHierarchyCache.getCacheMisses());
+		assertTrue(SuperTypeHierarchyCache.getHitRatio() > 0);
+
+		long maxSize= SuperTypeHierarchyCache.getMaxSize();
+		try {
+			SuperTypeHierarchyCache.setMaxSize(0);
+			assertFalse(SuperTypeHierarchyCache.hasInCache(type1));
+			assertEquals(0, SuperTypeHierarchyCache.getEstimatedSize());
+		} finally {
+			SuperTypeHierarchyCache.setMaxSize(maxSize);
+		}
+	}
 }
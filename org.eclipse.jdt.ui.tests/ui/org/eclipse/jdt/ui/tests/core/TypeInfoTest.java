@@ -12,6 +12,7 @@ package org.eclipse.jdt.ui.tests.core;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import junit.framework.Test;
@@ -39,6 +40,8 @@ import org.eclipse.jdt.core.search.TypeNameMatchRequestor;
 
 import org.eclipse.jdt.internal.corext.util.TypeNameMatchCollector;
 
+import org.eclipse.jdt.internal.ui.dialogs.TypeNameIndex;
+
 
 public class TypeInfoTest extends TestCase {
 
@@ -227,4 +230,35 @@ public class TypeInfoTest extends TestCase {
 
 	}
 
+	public void testTypeNameIndex() throws Exception {
+		IPackageFragmentRoot root1= JavaProjectHelper.addSourceContainer(fJProject1, "src");
+		IPackageFragment pack1= root1.createPackageFragment("com.oti", true, null);
+		ICompilationUnit cu1= pack1.getCompilationUnit("VIndexed.java");
+		cu1.createType("public class VIndexed {\n static class VInner {\n}\n}\n", null, true, null);
+
+		TypeNameIndex index= TypeNameIndex.getDefault();
+		List result= Arrays.asList(index.getCandidates("vind", SearchPattern.R_PREFIX_MATCH, null));
+		assertEquals(1, result.size());
+		findTypeRef(result, "com.oti.VIndexed");
+
+		result= Arrays.asList(index.getCandidates("VI", SearchPattern.R_CAMELCASE_MATCH, null));
+		findTypeRef(result, "com.oti.VIndexed");
+		findTypeRef(result, "com.oti.VIndexed.VInner");
+		findTypeRef(result, "java.util.Vector");
+
+		// changes are picked up without rebuilding the index
+		ICompilationUnit cu2= pack1.getCompilationUnit("VIndexed2.java");
+		cu2.createType("public class VIndexed2 {\n}\n", null, true, null);
+		result= Arrays.asList(index.getCandidates("VIndexed", SearchPattern.R_PREFIX_MATCH, null));
+		assertEquals(2, result.size());
+		findTypeRef(result, "com.oti.VIndexed2");
+
+		cu1.delete(true, null);
+		result= Arrays.asList(index.getCandidates("VIndexed", SearchPattern.R_PREFIX_MATCH, null));
+		assertEquals(1, result.size());
+		findTypeRef(result, "com.oti.VIndexed2");
+		result= Arrays.asList(index.getCandidates("VInner", SearchPattern.R_EXACT_MATCH, null));
+		assertEquals(0, result.size());
+	}
+
 }
@@ -22,11 +22,21 @@ import junit.framework.TestSuite;
 import org.eclipse.jdt.testplugin.JavaProjectHelper;
 import org.eclipse.jdt.testplugin.JavaTestPlugin;
 
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
 
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.CheckConditionsOperation;
+import org.eclipse.ltk.core.refactoring.CompositeChange;
+import org.eclipse.ltk.core.refactoring.CreateChangeOperation;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.TextEditBasedChange;
+
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IPackageFragment;
@@ -34,10 +44,14 @@ import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.JavaModelException;
 
 import org.eclipse.jdt.internal.corext.fix.CleanUpConstants;
+import org.eclipse.jdt.internal.corext.fix.CleanUpRefactoring;
 
 import org.eclipse.jdt.ui.JavaElementLabels;
+import org.eclipse.jdt.ui.cleanup.ICleanUp;
 import org.eclipse.jdt.ui.tests.core.ProjectTestSetup;
 
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
 
 public class CleanUpStressTest extends CleanUpTestCase {
 
@@ -5205,10 +5219,7 @@ public class CleanUpStressTest extends CleanUpTestCase {
         fExpectedChangesAllTests.put("junit.samples.money.Money.java", buf.toString());
     }
 
-	public void testAllCleanUps() throws Exception {
-		List cus= new ArrayList();
-		addAllCUs(fJProject1.getChildren(), cus);
-
+	private void enableAllCleanUps() throws CoreException {
 		enable(CleanUpConstants.MEMBER_ACCESSES_NON_STATIC_FIELD_USE_THIS);
 		enable(CleanUpConstants.MEMBER_ACCESSES_NON_STATIC_FIELD_USE_THIS_ALWAYS);
 		enable(CleanUpConstants.MEMBER_ACCESSES_NON_STATIC_METHOD_USE_THIS);
@@ -5258,6 +5269,13 @@ public class CleanUpStressTest extends CleanUpTestCase {
 
 		enable(CleanUpConstants.SORT_MEMBERS);
 		enable(CleanUpConstants.SORT_MEMBERS_ALL);
+	}
+
+	public void testAllCleanUps() throws Exception {
+		List cus= new ArrayList();
+		addAllCUs(fJProject1.getChildren(), cus);
+
+		enableAllCleanUps();
 
 		ICompilationUnit[] units= (ICompilationUnit[])cus.toArray(new ICompilationUnit[cus.size()]);
 		performRefactoring(units);
@@ -5277,6 +5295,62 @@ public class CleanUpStressTest extends CleanUpTestCase {
         }
 	}
 
+	public void testAllCleanUpsParallel() throws Exception {
+		List cus= new ArrayList();
+		addAllCUs(fJProject1.getChildren(), cus);
+
+		enableAllCleanUps();
+
+		ICompilationUnit[] units= (ICompilationUnit[])cus.toArray(new ICompilationUnit[cus.size()]);
+		List sequential= createPreviews(units, false);
+		List parallel= createPreviews(units, true);
+
+		assertTrue(sequential.size() > 2);
+		assertEquals(sequential, parallel);
+	}
+
+	/*
+	 * Returns the names and the new contents of the changed compilation units, in the order of the
+	 * changes, without performing the changes.
+	 */
+	private static List createPreviews(ICompilationUnit[] units, boolean parallel) throws CoreException {
+		CleanUpRefactoring ref= new CleanUpRefactoring();
+		ref.setUseOptionsFromProfile(true);
+		ref.setParallel(parallel);
+		for (int i= 0; i < units.length; i++) {
+			ref.addCompilationUnit(units[i]);
+		}
+		ICleanUp[] cleanUps= JavaPlugin.getDefault().getCleanUpRegistry().createCleanUps();
+		for (int i= 0; i < cleanUps.length; i++) {
+			ref.addCleanUp(cleanUps[i]);
+		}
+
+		CreateChangeOperation create= new CreateChangeOperation(new CheckConditionsOperation(ref, CheckConditionsOperation.ALL_CONDITIONS), RefactoringStatus.FATAL);
+		create.run(new NullProgressMonitor());
+		assertFalse(create.getConditionCheckingStatus().hasFatalError());
+
+		List result= new ArrayList();
+		Change change= create.getChange();
+		try {
+			addPreviews(change, result);
+		} finally {
+			change.dispose();
+		}
+		return result;
+	}
+
+	private static void addPreviews(Change change, List result) throws CoreException {
+		if (change instanceof CompositeChange) {
+			Change[] children= ((CompositeChange)change).getChildren();
+			for (int i= 0; i < children.length; i++) {
+				addPreviews(children[i], result);
+			}
+		} else if (change instanceof TextEditBasedChange) {
+			result.add(change.getName());
+			result.add(((TextEditBasedChange)change).getPreviewContent(new NullProgressMonitor()));
+		}
+	}
+
 	private static String getCompilationUnitName(ICompilationUnit cu) {
 		StringBuffer result= new StringBuffer();
 		JavaElementLabels.getCompilationUnitLabel(cu, JavaElementLabels.CU_QUALIFIED, result);
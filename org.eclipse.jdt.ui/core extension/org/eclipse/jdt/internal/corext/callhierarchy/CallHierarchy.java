@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -51,7 +51,7 @@ public class CallHierarchy {
     private IJavaSearchScope fSearchScope;
     private StringMatcher[] fFilters;
 
-    public static CallHierarchy getDefault() {
+    public static synchronized CallHierarchy getDefault() {
         if (fgInstance == null) {
             fgInstance = new CallHierarchy();
         }
@@ -206,6 +206,7 @@ public class CallHierarchy {
     public void setFilterEnabled(boolean filterEnabled) {
         IPreferenceStore settings = JavaPlugin.getDefault().getPreferenceStore();
         settings.setValue(PREF_USE_FILTERS, filterEnabled);
+        CallerCache.getDefault().clear();
     }
 
     /**
@@ -223,6 +224,7 @@ public class CallHierarchy {
 
         IPreferenceStore settings = JavaPlugin.getDefault().getPreferenceStore();
         settings.setValue(PREF_FILTERS_LIST, filters);
+        CallerCache.getDefault().clear();
     }
 
     /**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -59,6 +59,14 @@ class CalleeMethodWrapper extends MethodWrapper {
         return result;
     }
 
+	/* Passes the calls sorted after the call location in a single batch
+	 * @see org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper#getCalls(org.eclipse.core.runtime.IProgressMonitor, org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper.IChildrenCollector)
+	 */
+	@Override
+	public void getCalls(IProgressMonitor progressMonitor, IChildrenCollector collector) {
+		collector.add(getCalls(progressMonitor));
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper#getTaskName()
      */
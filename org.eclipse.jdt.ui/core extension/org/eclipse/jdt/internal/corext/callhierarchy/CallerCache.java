@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.callhierarchy;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+
+/**
+ * Workspace-wide cache of the callers found by {@link CallerMethodWrapper}, so that
+ * reopening a call hierarchy or expanding a member that has already been expanded in
+ * another hierarchy does not search again.
+ * <p>
+ * The results are only valid for the search scope they have been computed for. The
+ * cache is flushed whenever the Java model changes in a way that can add or remove
+ * references, including changes of working copies that are being edited, and when the
+ * call hierarchy filters change.
+ * </p>
+ * <p>
+ * Searches run concurrently with these changes. A search therefore takes the
+ * {@linkplain #getGeneration() generation} of the cache before it starts, and its callers are
+ * not cached if the cache has been flushed since.
+ * </p>
+ *
+ * @since 3.10
+ */
+public final class CallerCache {
+
+	private static final int MAX_ENTRIES= 1000;
+
+	/**
+	 * Flags of a changed delta that cannot add or remove references.
+	 */
+	private static final int IGNORED_FLAGS= IJavaElementDelta.F_CHILDREN | IJavaElementDelta.F_OPENED | IJavaElementDelta.F_CLOSED
+			| IJavaElementDelta.F_PRIMARY_WORKING_COPY | IJavaElementDelta.F_AST_AFFECTED;
+
+	private static CallerCache fgInstance;
+
+	private class DeltaListener implements IElementChangedListener {
+		public void elementChanged(ElementChangedEvent event) {
+			if (isRelevant(event.getDelta()))
+				clear();
+		}
+	}
+
+	private final Map<String, Map<String, MethodCall>> fCallers;
+
+	private final IElementChangedListener fDeltaListener;
+
+	private IJavaSearchScope fSearchScope;
+
+	private int fGeneration;
+
+	public static synchronized CallerCache getDefault() {
+		if (fgInstance == null)
+			fgInstance= new CallerCache();
+		return fgInstance;
+	}
+
+	public static synchronized void shutdown() {
+		if (fgInstance == null)
+			return;
+		JavaCore.removeElementChangedListener(fgInstance.fDeltaListener);
+		fgInstance= null;
+	}
+
+	private CallerCache() {
+		fCallers= new LinkedHashMap<String, Map<String, MethodCall>>(64, 0.75f, true) {
+			private static final long serialVersionUID= 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Map<String, MethodCall>> eldest) {
+				return size() > MAX_ENTRIES;
+			}
+		};
+		fDeltaListener= new DeltaListener();
+		JavaCore.addElementChangedListener(fDeltaListener, ElementChangedEvent.POST_CHANGE | ElementChangedEvent.POST_RECONCILE);
+	}
+
+	/**
+	 * Returns the cached callers of a member.
+	 *
+	 * @param key the key of the search, see {@link CallerMethodWrapper}
+	 * @param searchScope the scope of the search
+	 * @return a map from handle identifier ({@link String}) to {@link MethodCall}, or
+	 *         <code>null</code> if the callers have not been cached for this scope
+	 */
+	public synchronized Map<String, MethodCall> get(String key, IJavaSearchScope searchScope) {
+		if (!searchScope.equals(fSearchScope))
+			return null;
+		Map<String, MethodCall> callers= fCallers.get(key);
+		return callers != null ? new HashMap<String, MethodCall>(callers) : null;
+	}
+
+	/**
+	 * Returns the generation of the cache, which changes whenever cached callers are removed.
+	 * Must be taken before searching for callers that are passed to
+	 * {@link #put(String, IJavaSearchScope, Map, int)}.
+	 *
+	 * @return the generation
+	 */
+	public synchronized int getGeneration() {
+		return fGeneration;
+	}
+
+	/**
+	 * Caches the callers of a member. The cached callers of other scopes are discarded.
+	 * Nothing is cached if cached callers have been removed since the search started, since
+	 * the callers might be stale.
+	 *
+	 * @param key the key of the search, see {@link CallerMethodWrapper}
+	 * @param searchScope the scope of the search
+	 * @param callers a map from handle identifier ({@link String}) to {@link MethodCall}
+	 * @param generation the generation of the cache before the search started
+	 */
+	public synchronized void put(String key, IJavaSearchScope searchScope, Map<String, MethodCall> callers, int generation) {
+		if (generation != fGeneration)
+			return;
+		if (!searchScope.equals(fSearchScope)) {
+			fCallers.clear();
+			fSearchScope= searchScope;
+		}
+		fCallers.put(key, new HashMap<String, MethodCall>(callers));
+	}
+
+	/**
+	 * Removes the cached callers of a member.
+	 *
+	 * @param key the key of the search, see {@link CallerMethodWrapper}
+	 */
+	public synchronized void remove(String key) {
+		fCallers.remove(key);
+		fGeneration++;
+	}
+
+	/**
+	 * Removes all cached callers.
+	 */
+	public synchronized void clear() {
+		fCallers.clear();
+		fGeneration++;
+	}
+
+	/**
+	 * Tells whether a delta can add or remove references.
+	 *
+	 * @param delta the Java element delta
+	 * @return <code>true</code> if the cached callers might be stale
+	 */
+	private static boolean isRelevant(IJavaElementDelta delta) {
+		if (delta.getKind() != IJavaElementDelta.CHANGED)
+			return true;
+		if ((delta.getFlags() & ~IGNORED_FLAGS) != 0)
+			return true;
+		IJavaElementDelta[] children= delta.getAffectedChildren();
+		for (int i= 0; i < children.length; i++) {
+			if (isRelevant(children[i]))
+				return true;
+		}
+		return false;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -98,6 +98,18 @@ public class CallerMethodWrapper extends MethodWrapper {
 	 */
 	@Override
 	protected Map<String, MethodCall> findChildren(IProgressMonitor progressMonitor) {
+		return findChildren(progressMonitor, null);
+	}
+
+	/**
+	 * Looks the callers up in the {@link CallerCache} first and passes them to the collector
+	 * document by document while searching.
+	 *
+	 * @return The result of the search for children
+	 * @see org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper#findChildren(org.eclipse.core.runtime.IProgressMonitor, org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper.IChildrenCollector)
+	 */
+	@Override
+	protected Map<String, MethodCall> findChildren(IProgressMonitor progressMonitor, IChildrenCollector collector) {
 		try {
 
 			IProgressMonitor monitor= new SubProgressMonitor(progressMonitor, 95, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL);
@@ -147,14 +159,23 @@ public class CallerMethodWrapper extends MethodWrapper {
 				return new HashMap<String, MethodCall>(0);
 			}
 
-			SearchEngine searchEngine= new SearchEngine();
-			MethodReferencesSearchRequestor searchRequestor= new MethodReferencesSearchRequestor();
 			IJavaSearchScope defaultSearchScope= getSearchScope();
+			String cacheKey= getCacheKey();
+			CallerCache cache= CallerCache.getDefault();
+			int generation= cache.getGeneration();
+			Map<String, MethodCall> callers= cache.get(cacheKey, defaultSearchScope);
+			if (callers != null)
+				return callers;
+
+			SearchEngine searchEngine= new SearchEngine();
+			MethodReferencesSearchRequestor searchRequestor= new MethodReferencesSearchRequestor(this, collector);
 			boolean isWorkspaceScope= SearchEngine.createWorkspaceScope().equals(defaultSearchScope);
 			IJavaSearchScope searchScope= isWorkspaceScope ? getAccurateSearchScope(defaultSearchScope, member) : defaultSearchScope;
 			searchEngine.search(pattern, new SearchParticipant[] { SearchEngine.getDefaultSearchParticipant() }, searchScope, searchRequestor,
 					monitor);
-			return searchRequestor.getCallers();
+			callers= searchRequestor.getCallers();
+			cache.put(cacheKey, defaultSearchScope, callers, generation);
+			return callers;
 
 		} catch (CoreException e) {
 			JavaPlugin.log(e);
@@ -162,6 +183,26 @@ public class CallerMethodWrapper extends MethodWrapper {
 		}
 	}
 
+	/**
+	 * Returns the key of the callers of this wrapper in the {@link CallerCache}.
+	 * 
+	 * @return the key
+	 */
+	private String getCacheKey() {
+		IMember member= getMember();
+		int limitTo= member.getElementType() == IJavaElement.FIELD ? getFieldSearchMode() : IJavaSearchConstants.REFERENCES;
+		return member.getHandleIdentifier() + '#' + limitTo;
+	}
+
+	/*
+	 * @see org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper#removeFromCache()
+	 */
+	@Override
+	public void removeFromCache() {
+		super.removeFromCache();
+		CallerCache.getDefault().remove(getCacheKey());
+	}
+
 	private IJavaSearchScope getAccurateSearchScope(IJavaSearchScope defaultSearchScope, IMember member) throws JavaModelException {
 		if (! JdtFlags.isPrivate(member))
 			return defaultSearchScope;
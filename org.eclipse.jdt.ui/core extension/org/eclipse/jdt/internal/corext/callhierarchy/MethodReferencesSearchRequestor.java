@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,8 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.corext.callhierarchy;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.jdt.core.IJavaElement;
@@ -22,8 +24,36 @@ class MethodReferencesSearchRequestor extends SearchRequestor {
     private CallSearchResultCollector fSearchResults;
     private boolean fRequireExactMatch = true;
 
+    /**
+     * The wrapper whose callers are searched, or <code>null</code> if callers are not
+     * passed on while searching.
+     */
+    private final MethodWrapper fParent;
+    private final MethodWrapper.IChildrenCollector fCollector;
+
+    /**
+     * The callers found in the current document. Matches are reported document by document,
+     * so these callers are complete as soon as a match in another document is reported.
+     */
+    private final List<MethodCall> fPendingCallers;
+    private String fCurrentDocument;
+
     MethodReferencesSearchRequestor() {
+        this(null, null);
+    }
+
+    /**
+     * Creates a requestor that passes callers to a collector as soon as all their call
+     * locations have been found.
+     *
+     * @param parent the wrapper whose callers are searched, or <code>null</code>
+     * @param collector the collector for the callers, or <code>null</code>
+     */
+    MethodReferencesSearchRequestor(MethodWrapper parent, MethodWrapper.IChildrenCollector collector) {
         fSearchResults = new CallSearchResultCollector();
+        fParent= parent;
+        fCollector= collector;
+        fPendingCallers= new ArrayList<MethodCall>();
     }
 
     public Map<String, MethodCall> getCallers() {
@@ -50,9 +80,46 @@ class MethodReferencesSearchRequestor extends SearchRequestor {
                 case IJavaElement.TYPE:
                 case IJavaElement.FIELD:
                 case IJavaElement.INITIALIZER:
+                    if (fCollector != null)
+                        checkDocument(match.getResource() != null ? match.getResource().getFullPath().toString() : member.getHandleIdentifier());
                     fSearchResults.addMember(member, member, match.getOffset(), match.getOffset()+match.getLength());
+                    if (fCollector != null)
+                        addPending(member);
                     break;
             }
         }
     }
+
+    /*
+     * @see org.eclipse.jdt.core.search.SearchRequestor#endReporting()
+     */
+    @Override
+	public void endReporting() {
+    	if (fCollector != null)
+    		flushPending();
+    }
+
+    private void checkDocument(String document) {
+    	if (!document.equals(fCurrentDocument)) {
+    		flushPending();
+    		fCurrentDocument= document;
+    	}
+    }
+
+    private void addPending(IMember member) {
+    	MethodCall methodCall= getCallers().get(member.getHandleIdentifier());
+    	if (methodCall != null && !fPendingCallers.contains(methodCall))
+    		fPendingCallers.add(methodCall);
+    }
+
+    private void flushPending() {
+    	if (fPendingCallers.isEmpty())
+    		return;
+    	MethodWrapper[] children= new MethodWrapper[fPendingCallers.size()];
+    	for (int i= 0; i < children.length; i++) {
+			children[i]= fParent.createMethodWrapper(fPendingCallers.get(i));
+		}
+    	fPendingCallers.clear();
+    	fCollector.add(children);
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,9 +13,15 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.corext.callhierarchy;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -36,12 +42,51 @@ import org.eclipse.jdt.internal.ui.callhierarchy.MethodWrapperWorkbenchAdapter;
  *
  */
 public abstract class MethodWrapper extends PlatformObject {
-    private Map<String, MethodCall> fElements = null;
+
+	/**
+	 * Receives the children of a method wrapper in batches while they are being searched.
+	 *
+	 * @since 3.10
+	 */
+	public interface IChildrenCollector {
+
+		/**
+		 * Adds the next batch of children.
+		 *
+		 * @param children the children
+		 */
+		void add(MethodWrapper[] children);
+	}
+
+	/**
+	 * Collector that remembers which children have already been passed on.
+	 */
+	private static class ReportingCollector implements IChildrenCollector {
+		private final IChildrenCollector fCollector;
+		private final Set<String> fReported= new HashSet<String>();
+
+		public ReportingCollector(IChildrenCollector collector) {
+			fCollector= collector;
+		}
+
+		public void add(MethodWrapper[] children) {
+			List<MethodWrapper> added= new ArrayList<MethodWrapper>(children.length);
+			for (int i= 0; i < children.length; i++) {
+				if (fReported.add(children[i].getMethodCall().getKey()))
+					added.add(children[i]);
+			}
+			if (!added.isEmpty())
+				fCollector.add(added.toArray(new MethodWrapper[added.size()]));
+		}
+	}
+
+    private volatile Map<String, MethodCall> fElements = null;
 
     /*
      * A cache of previously found methods. This cache should be searched
      * before adding a "new" method object reference to the list of elements.
-     * This way previously found methods won't be searched again.
+     * This way previously found methods won't be searched again. The cache is
+     * shared by all wrappers of a tree, whose children may be searched concurrently.
      */
     private Map<String, Map<String, MethodCall>> fMethodCache;
     private final MethodCall fMethodCall;
@@ -57,7 +102,7 @@ public abstract class MethodWrapper extends PlatformObject {
         Assert.isNotNull(methodCall);
 
         if (parent == null) {
-            setMethodCache(new HashMap<String, Map<String, MethodCall>>());
+            setMethodCache(Collections.synchronizedMap(new HashMap<String, Map<String, MethodCall>>()));
             fLevel = 1;
         } else {
             setMethodCache(parent.getMethodCache());
@@ -80,20 +125,41 @@ public abstract class MethodWrapper extends PlatformObject {
 	}
 
     public MethodWrapper[] getCalls(IProgressMonitor progressMonitor) {
-        if (fElements == null) {
-            doFindChildren(progressMonitor);
-        }
+        return createMethodWrappers(getElements(progressMonitor, null).values());
+    }
 
-        MethodWrapper[] result = new MethodWrapper[fElements.size()];
-        int i = 0;
+	/**
+	 * Finds the children of this wrapper and passes them to the given collector as soon as
+	 * they are known. Every child is passed exactly once. Wrappers that cannot report their
+	 * children while searching pass all of them when the search is done.
+	 *
+	 * @param progressMonitor the progress monitor
+	 * @param collector the collector for the children
+	 * @since 3.10
+	 */
+	public void getCalls(IProgressMonitor progressMonitor, IChildrenCollector collector) {
+		ReportingCollector reportingCollector= new ReportingCollector(collector);
+		Map<String, MethodCall> elements= getElements(progressMonitor, reportingCollector);
+		reportingCollector.add(createMethodWrappers(elements.values()));
+	}
 
-        for (Iterator<String> iter = fElements.keySet().iterator(); iter.hasNext();) {
-            MethodCall methodCall = getMethodCallFromMap(fElements, iter.next());
-            result[i++] = createMethodWrapper(methodCall);
-        }
+	private Map<String, MethodCall> getElements(IProgressMonitor progressMonitor, IChildrenCollector collector) {
+		Map<String, MethodCall> elements= fElements;
+		if (elements == null) {
+			elements= doFindChildren(progressMonitor, collector);
+			fElements= elements;
+		}
+		return elements;
+	}
 
-        return result;
-    }
+	private MethodWrapper[] createMethodWrappers(Collection<MethodCall> methodCalls) {
+		MethodWrapper[] result= new MethodWrapper[methodCalls.size()];
+		int i= 0;
+		for (Iterator<MethodCall> iter= methodCalls.iterator(); iter.hasNext();) {
+			result[i++]= createMethodWrapper(iter.next());
+		}
+		return result;
+	}
 
     public int getLevel() {
         return fLevel;
@@ -202,11 +268,6 @@ public abstract class MethodWrapper extends PlatformObject {
 
     protected abstract String getTaskName();
 
-    private void addCallToCache(MethodCall methodCall) {
-        Map<String, MethodCall> cachedCalls = lookupMethod(this.getMethodCall());
-        cachedCalls.put(methodCall.getKey(), methodCall);
-    }
-
 	/**
 	 * Creates a method wrapper for the child of the receiver.
 	 * 
@@ -215,24 +276,18 @@ public abstract class MethodWrapper extends PlatformObject {
 	 */
     protected abstract MethodWrapper createMethodWrapper(MethodCall methodCall);
 
-    private void doFindChildren(IProgressMonitor progressMonitor) {
+    private Map<String, MethodCall> doFindChildren(IProgressMonitor progressMonitor, IChildrenCollector collector) {
         Map<String, MethodCall> existingResults = lookupMethod(getMethodCall());
 
         if (existingResults != null && !existingResults.isEmpty()) {
-            fElements = new HashMap<String, MethodCall>();
-            fElements.putAll(existingResults);
+            return new HashMap<String, MethodCall>(existingResults);
         } else {
-            initCalls();
-
             if (progressMonitor != null) {
                 progressMonitor.beginTask(getTaskName(), 100);
             }
 
             try {
-                performSearch(progressMonitor);
-            } catch (OperationCanceledException e){
-            	fElements= null;
-            	throw e;
+                return performSearch(progressMonitor, collector);
             } finally {
                 if (progressMonitor != null) {
                     progressMonitor.done();
@@ -278,16 +333,26 @@ public abstract class MethodWrapper extends PlatformObject {
      */
     protected abstract Map<String, MethodCall> findChildren(IProgressMonitor progressMonitor);
 
+	/**
+	 * This method finds the children of the current IMember and may pass some or all of
+	 * them to the given collector before the search is done. The default implementation
+	 * does not pass any children to the collector.
+	 *
+	 * @param progressMonitor a progress monitor
+	 * @param collector the collector for children that are known before the search is
+	 *            done, or <code>null</code>
+	 * @return a map from handle identifier ({@link String}) to {@link MethodCall}, including
+	 *         the children that have been passed to the collector
+	 * @since 3.10
+	 */
+	protected Map<String, MethodCall> findChildren(IProgressMonitor progressMonitor, IChildrenCollector collector) {
+		return findChildren(progressMonitor);
+	}
+
     private Map<String, Map<String, MethodCall>> getMethodCache() {
         return fMethodCache;
     }
 
-    private void initCalls() {
-        this.fElements = new HashMap<String, MethodCall>();
-
-        initCacheForMethod();
-    }
-
     /**
      * Looks up a previously created search result in the "global" cache.
      * @param methodCall the method call
@@ -297,24 +362,13 @@ public abstract class MethodWrapper extends PlatformObject {
         return getMethodCache().get(methodCall.getKey());
     }
 
-    private void performSearch(IProgressMonitor progressMonitor) {
-        fElements = findChildren(progressMonitor);
-
-        for (Iterator<String> iter = fElements.keySet().iterator(); iter.hasNext();) {
-            checkCanceled(progressMonitor);
-
-            MethodCall methodCall = getMethodCallFromMap(fElements, iter.next());
-            addCallToCache(methodCall);
-        }
-    }
-
-    private MethodCall getMethodCallFromMap(Map<String, MethodCall> elements, String key) {
-        return elements.get(key);
-    }
+    private Map<String, MethodCall> performSearch(IProgressMonitor progressMonitor, IChildrenCollector collector) {
+        Map<String, MethodCall> elements = findChildren(progressMonitor, collector);
+        checkCanceled(progressMonitor);
 
-    private void initCacheForMethod() {
-        Map<String, MethodCall> cachedCalls = new HashMap<String, MethodCall>();
-        getMethodCache().put(this.getMethodCall().getKey(), cachedCalls);
+        // publish complete results only, since siblings may look them up concurrently
+        getMethodCache().put(getMethodCall().getKey(), new HashMap<String, MethodCall>(elements));
+        return elements;
     }
 
     /**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,7 @@ package org.eclipse.jdt.internal.corext.codemanipulation;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -54,6 +55,7 @@ import org.eclipse.jdt.core.dom.rewrite.ImportRewrite;
 import org.eclipse.jdt.core.search.IJavaSearchConstants;
 import org.eclipse.jdt.core.search.IJavaSearchScope;
 import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchPattern;
 import org.eclipse.jdt.core.search.TypeNameMatch;
 
 import org.eclipse.jdt.internal.corext.dom.ASTNodes;
@@ -82,6 +84,75 @@ public class OrganizeImportsOperation implements IWorkspaceRunnable {
 		TypeNameMatch[] chooseImports(TypeNameMatch[][] openChoices, ISourceRange[] ranges);
 	}
 
+	/**
+	 * Cache of the types of a project by simple name, to be shared by the operations on the
+	 * compilation units of that project.
+	 * <p>
+	 * Without a cache, each operation searches the names that could not be resolved in its
+	 * compilation unit. With a cache, all types in the project's class path are searched once,
+	 * when the first operation needs them, and the other operations answer from memory.
+	 * A cache should only be used for a short time, e.g. for a clean up of many compilation
+	 * units, as it does not see types that are added or removed after it has been filled.
+	 * </p>
+	 * <p>
+	 * The cache can be used by operations running in different threads.
+	 * </p>
+	 *
+	 * @since 3.10
+	 */
+	public static class TypeNameCache {
+
+		private final IJavaProject fProject;
+
+		private Map<String, List<TypeNameMatch>> fMatches;
+
+		public TypeNameCache(IJavaProject project) {
+			fProject= project;
+		}
+
+		public IJavaProject getProject() {
+			return fProject;
+		}
+
+		/**
+		 * Adds the types with the given simple names to a collection.
+		 *
+		 * @param simpleNames the simple type names
+		 * @param result the collection to add the found types to
+		 * @param monitor the progress monitor, used when the cache is filled
+		 * @throws JavaModelException if the types could not be searched
+		 */
+		public synchronized void collectMatches(Collection<String> simpleNames, Collection<TypeNameMatch> result, IProgressMonitor monitor) throws JavaModelException {
+			if (fMatches == null)
+				fMatches= searchAllTypes(monitor);
+
+			for (Iterator<String> iter= simpleNames.iterator(); iter.hasNext();) {
+				List<TypeNameMatch> matches= fMatches.get(iter.next());
+				if (matches != null)
+					result.addAll(matches);
+			}
+		}
+
+		private Map<String, List<TypeNameMatch>> searchAllTypes(IProgressMonitor monitor) throws JavaModelException {
+			ArrayList<TypeNameMatch> typesFound= new ArrayList<TypeNameMatch>();
+			IJavaSearchScope scope= SearchEngine.createJavaSearchScope(new IJavaElement[] { fProject });
+			TypeNameMatchCollector collector= new TypeNameMatchCollector(typesFound);
+			new SearchEngine().searchAllTypeNames(null, SearchPattern.R_EXACT_MATCH, null, SearchPattern.R_EXACT_MATCH, IJavaSearchConstants.TYPE, scope, collector, IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, monitor);
+
+			Map<String, List<TypeNameMatch>> matches= new HashMap<String, List<TypeNameMatch>>();
+			for (int i= 0; i < typesFound.size(); i++) {
+				TypeNameMatch curr= typesFound.get(i);
+				List<TypeNameMatch> list= matches.get(curr.getSimpleTypeName());
+				if (list == null) {
+					list= new ArrayList<TypeNameMatch>(1);
+					matches.put(curr.getSimpleTypeName(), list);
+				}
+				list.add(curr);
+			}
+			return matches;
+		}
+	}
+
 
 	private static class TypeReferenceProcessor {
 
@@ -126,12 +197,15 @@ public class OrganizeImportsOperation implements IWorkspaceRunnable {
 		private TypeNameMatch[][] fOpenChoices;
 		private SourceRange[] fSourceRanges;
 
+		private TypeNameCache fTypeNameCache;
+
 
-		public TypeReferenceProcessor(Set<String> oldSingleImports, Set<String> oldDemandImports, CompilationUnit root, ImportRewrite impStructure, boolean ignoreLowerCaseNames) {
+		public TypeReferenceProcessor(Set<String> oldSingleImports, Set<String> oldDemandImports, CompilationUnit root, ImportRewrite impStructure, boolean ignoreLowerCaseNames, TypeNameCache typeNameCache) {
 			fOldSingleImports= oldSingleImports;
 			fOldDemandImports= oldDemandImports;
 			fImpStructure= impStructure;
 			fDoIgnoreLowerCaseNames= ignoreLowerCaseNames;
+			fTypeNameCache= typeNameCache;
 
 			ICompilationUnit cu= impStructure.getCompilationUnit();
 
@@ -233,20 +307,24 @@ public class OrganizeImportsOperation implements IWorkspaceRunnable {
 				if (nUnresolved == 0) {
 					return false;
 				}
-				char[][] allTypes= new char[nUnresolved][];
-				int i= 0;
-				for (Iterator<String> iter= fUnresolvedTypes.keySet().iterator(); iter.hasNext();) {
-					allTypes[i++]= iter.next().toCharArray();
-				}
 				final ArrayList<TypeNameMatch> typesFound= new ArrayList<TypeNameMatch>();
 				final IJavaProject project= fCurrPackage.getJavaProject();
-				IJavaSearchScope scope= SearchEngine.createJavaSearchScope(new IJavaElement[] { project });
-				TypeNameMatchCollector collector= new TypeNameMatchCollector(typesFound);
-				new SearchEngine().searchAllTypeNames(null, allTypes, scope, collector, IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, monitor);
+				if (fTypeNameCache != null && project.equals(fTypeNameCache.getProject())) {
+					fTypeNameCache.collectMatches(fUnresolvedTypes.keySet(), typesFound, monitor);
+				} else {
+					char[][] allTypes= new char[nUnresolved][];
+					int i= 0;
+					for (Iterator<String> iter= fUnresolvedTypes.keySet().iterator(); iter.hasNext();) {
+						allTypes[i++]= iter.next().toCharArray();
+					}
+					IJavaSearchScope scope= SearchEngine.createJavaSearchScope(new IJavaElement[] { project });
+					TypeNameMatchCollector collector= new TypeNameMatchCollector(typesFound);
+					new SearchEngine().searchAllTypeNames(null, allTypes, scope, collector, IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, monitor);
+				}
 
 				boolean is50OrHigher= 	JavaModelUtil.is50OrHigher(project);
 
-				for (i= 0; i < typesFound.size(); i++) {
+				for (int i= 0; i < typesFound.size(); i++) {
 					TypeNameMatch curr= typesFound.get(i);
 					UnresolvedTypeData data= fUnresolvedTypes.get(curr.getSimpleTypeName());
 					if (data != null && isVisible(curr) && isOfKind(curr, data.typeKinds, is50OrHigher)) {
@@ -367,7 +445,28 @@ public class OrganizeImportsOperation implements IWorkspaceRunnable {
 
 	private final boolean fAllowSyntaxErrors;
 
+	private final TypeNameCache fTypeNameCache;
+
 	public OrganizeImportsOperation(ICompilationUnit cu, CompilationUnit astRoot, boolean ignoreLowerCaseNames, boolean save, boolean allowSyntaxErrors, IChooseImportQuery chooseImportQuery) {
+		this(cu, astRoot, ignoreLowerCaseNames, save, allowSyntaxErrors, chooseImportQuery, null);
+	}
+
+	/**
+	 * Creates an operation that looks up unresolved type names in a shared cache.
+	 *
+	 * @param cu the compilation unit
+	 * @param astRoot the AST of the compilation unit, or <code>null</code> to use the shared AST
+	 * @param ignoreLowerCaseNames if <code>true</code>, unresolved names starting with a lower
+	 *            case letter are not imported
+	 * @param save if <code>true</code>, the compilation unit is saved
+	 * @param allowSyntaxErrors if <code>true</code>, the operation also runs on a compilation
+	 *            unit with syntax errors
+	 * @param chooseImportQuery the query for ambiguous type names
+	 * @param typeNameCache the cache of the types of the compilation unit's project, or
+	 *            <code>null</code> to search the unresolved names of this compilation unit only
+	 * @since 3.10
+	 */
+	public OrganizeImportsOperation(ICompilationUnit cu, CompilationUnit astRoot, boolean ignoreLowerCaseNames, boolean save, boolean allowSyntaxErrors, IChooseImportQuery chooseImportQuery, TypeNameCache typeNameCache) {
 		fCompilationUnit= cu;
 		fASTRoot= astRoot;
 
@@ -375,6 +474,7 @@ public class OrganizeImportsOperation implements IWorkspaceRunnable {
 		fIgnoreLowerCaseNames= ignoreLowerCaseNames;
 		fAllowSyntaxErrors= allowSyntaxErrors;
 		fChooseImportQuery= chooseImportQuery;
+		fTypeNameCache= typeNameCache;
 
 		fNumberOfImportsAdded= 0;
 		fNumberOfImportsRemoved= 0;
@@ -436,7 +536,7 @@ public class OrganizeImportsOperation implements IWorkspaceRunnable {
 
 			monitor.worked(1);
 
-			TypeReferenceProcessor processor= new TypeReferenceProcessor(oldSingleImports, oldDemandImports, astRoot, importsRewrite, fIgnoreLowerCaseNames);
+			TypeReferenceProcessor processor= new TypeReferenceProcessor(oldSingleImports, oldDemandImports, astRoot, importsRewrite, fIgnoreLowerCaseNames, fTypeNameCache);
 
 			Iterator<SimpleName> refIterator= typeReferences.iterator();
 			while (refIterator.hasNext()) {
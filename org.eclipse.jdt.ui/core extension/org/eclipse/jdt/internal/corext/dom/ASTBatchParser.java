@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2011 IBM Corporation and others.
+ * Copyright (c) 2007, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,17 +10,26 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.corext.dom;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.URI;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 
+import org.eclipse.core.filesystem.EFS;
+
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.SubProgressMonitor;
 
+import org.eclipse.core.resources.IResource;
+
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.dom.ASTParser;
@@ -33,37 +42,109 @@ import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
  * Creates AST from a set of compilation units. Uses the
  * batch parser. Splits the set of compilation units in subsets
  * such that it is unlikely that a out of memory exception will occur.
+ * <p>
+ * The size of each subset is limited by the total number of source characters
+ * it contains. The limit is derived from the currently available heap and from
+ * the heap growth observed for the previous subsets.
+ * </p>
  *
  * @since 3.4
  */
 public class ASTBatchParser {
 
-	private static final int MAX_AT_ONCE;
-	static {
-		long maxMemory= Runtime.getRuntime().maxMemory();
-		int ratio= (int) Math.round((double) maxMemory / (64 * 0x100000));
-		switch (ratio) {
-			case 0:
-				MAX_AT_ONCE= 25;
-				break;
-			case 1:
-				MAX_AT_ONCE= 100;
-				break;
-			case 2:
-				MAX_AT_ONCE= 200;
-				break;
-			case 3:
-				MAX_AT_ONCE= 300;
-				break;
-			case 4:
-				MAX_AT_ONCE= 400;
-				break;
-			default:
-				MAX_AT_ONCE= 500;
-				break;
+	/**
+	 * Statistics about a single call to {@link ASTParser#createASTs(ICompilationUnit[], String[], ASTRequestor, IProgressMonitor)}.
+	 *
+	 * @since 3.10
+	 */
+	public static final class BatchStatistics {
+
+		private final int fUnits;
+		private final long fCharacters;
+		private final long fParseTime;
+		private final long fHeapDelta;
+
+		BatchStatistics(int units, long characters, long parseTime, long heapDelta) {
+			fUnits= units;
+			fCharacters= characters;
+			fParseTime= parseTime;
+			fHeapDelta= heapDelta;
+		}
+
+		/**
+		 * @return the number of compilation units in the batch
+		 */
+		public int getUnits() {
+			return fUnits;
+		}
+
+		/**
+		 * @return the estimated number of source characters in the batch
+		 */
+		public long getCharacters() {
+			return fCharacters;
+		}
+
+		/**
+		 * @return the time in ms spent creating the ASTs, including the time spent in the requestor
+		 */
+		public long getParseTime() {
+			return fParseTime;
+		}
+
+		/**
+		 * @return the difference in bytes of the used heap after and before the batch, can be negative
+		 *         if a garbage collection happened in between
+		 */
+		public long getHeapDelta() {
+			return fHeapDelta;
+		}
+
+		/*
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "units: " + fUnits + ", chars: " + fCharacters + ", parse ms: " + fParseTime + ", heap delta: " + fHeapDelta; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
 		}
 	}
 
+	private static final boolean DEBUG= "true".equalsIgnoreCase(Platform.getDebugOption("org.eclipse.jdt.ui/debug/ASTBatchParser")); //$NON-NLS-1$//$NON-NLS-2$
+
+	/**
+	 * Maximum number of units parsed at once, regardless of their size.
+	 */
+	private static final int MAX_AT_ONCE= 500;
+
+	/**
+	 * Initial estimate of the heap in bytes occupied per source character
+	 * by an AST with resolved bindings.
+	 */
+	private static final double INITIAL_BYTES_PER_CHAR= 100;
+
+	/**
+	 * Lower bound for the estimated heap consumption per source character.
+	 */
+	private static final double MIN_BYTES_PER_CHAR= 10;
+
+	/**
+	 * Fraction of the free heap a single batch may occupy.
+	 */
+	private static final double HEAP_FRACTION= 0.3;
+
+	/**
+	 * Heap occupancy above which the budget of the next batch is halved.
+	 */
+	private static final double HIGH_OCCUPANCY= 0.75;
+
+	/**
+	 * Size assumed for units whose length cannot be determined cheaply.
+	 */
+	private static final long DEFAULT_UNIT_LENGTH= 10000;
+
+	private double fBytesPerChar= INITIAL_BYTES_PER_CHAR;
+	private List<BatchStatistics> fStatistics= Collections.emptyList();
+
 	/**
 	 * Creates ASTs for each compilation unit in <code>units</code>.
 	 * <p>
@@ -83,6 +164,7 @@ public class ASTBatchParser {
 	 * @see ASTParser#createASTs(ICompilationUnit[], String[], ASTRequestor, IProgressMonitor)
 	 */
 	public final void createASTs(ICompilationUnit[] compilationUnits, String[] bindingKeys, ASTRequestor requestor, IProgressMonitor monitor) {
+		fStatistics= new ArrayList<BatchStatistics>();
 		if (compilationUnits.length == 0)
 			return;
 
@@ -96,20 +178,25 @@ public class ASTBatchParser {
 			for (int i= 0; i < splited.length; i++) {
 				ICompilationUnit[] units= splited[i];
 
-				if (units.length <= MAX_AT_ONCE) {
-					createParser(units[0].getJavaProject()).createASTs(units, bindingKeys, requestor, new SubProgressMonitor(monitor, units.length));
-				} else {
-					List<ICompilationUnit> list= Arrays.asList(units);
-					int end= 0;
-					int cursor= 0;
-					while (cursor < units.length) {
-						end= Math.min(end + MAX_AT_ONCE, units.length);
-						List<ICompilationUnit> toParse= list.subList(cursor, end);
-
-						createParser(units[0].getJavaProject()).createASTs(toParse.toArray(new ICompilationUnit[toParse.size()]), bindingKeys, requestor,
-								new SubProgressMonitor(monitor, toParse.size()));
-						cursor= end;
+				long[] lengths= new long[units.length];
+				for (int j= 0; j < units.length; j++) {
+					lengths[j]= getSourceLength(units[j]);
+				}
+
+				int cursor= 0;
+				while (cursor < units.length) {
+					long budget= getCharacterBudget();
+					long characters= lengths[cursor];
+					int end= cursor + 1;
+					while (end < units.length && end - cursor < MAX_AT_ONCE && characters + lengths[end] <= budget) {
+						characters+= lengths[end];
+						end++;
 					}
+
+					ICompilationUnit[] toParse= new ICompilationUnit[end - cursor];
+					System.arraycopy(units, cursor, toParse, 0, toParse.length);
+					parseBatch(toParse, characters, bindingKeys, requestor, new SubProgressMonitor(monitor, toParse.length));
+					cursor= end;
 				}
 			}
 		} finally {
@@ -117,6 +204,75 @@ public class ASTBatchParser {
 		}
 	}
 
+	/**
+	 * Returns the statistics of the batches created by the last call to
+	 * {@link #createASTs(ICompilationUnit[], String[], ASTRequestor, IProgressMonitor)}.
+	 *
+	 * @return the statistics in the order in which the batches have been parsed
+	 * @since 3.10
+	 */
+	public List<BatchStatistics> getStatistics() {
+		return Collections.unmodifiableList(fStatistics);
+	}
+
+	private void parseBatch(ICompilationUnit[] units, long characters, String[] bindingKeys, ASTRequestor requestor, IProgressMonitor monitor) {
+		long usedBefore= getHeapUsage().getUsed();
+		long start= System.currentTimeMillis();
+
+		createParser(units[0].getJavaProject()).createASTs(units, bindingKeys, requestor, monitor);
+
+		long parseTime= System.currentTimeMillis() - start;
+		long heapDelta= getHeapUsage().getUsed() - usedBefore;
+		if (heapDelta > 0 && characters > 0) {
+			// a negative delta means a collection happened, which tells nothing about the batch
+			double observed= (double) heapDelta / characters;
+			fBytesPerChar= Math.max(MIN_BYTES_PER_CHAR, (fBytesPerChar + observed) / 2);
+		}
+
+		BatchStatistics statistics= new BatchStatistics(units.length, characters, parseTime, heapDelta);
+		fStatistics.add(statistics);
+		if (DEBUG)
+			System.out.println("ASTBatchParser: " + statistics); //$NON-NLS-1$
+	}
+
+	private long getCharacterBudget() {
+		MemoryUsage heap= getHeapUsage();
+		long max= heap.getMax();
+		if (max <= 0)
+			max= Runtime.getRuntime().maxMemory();
+		long used= heap.getUsed();
+
+		double fraction= HEAP_FRACTION;
+		if ((double) used / max > HIGH_OCCUPANCY)
+			fraction/= 2;
+
+		return Math.max(1, (long) ((max - used) * fraction / fBytesPerChar));
+	}
+
+	private static MemoryUsage getHeapUsage() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+	}
+
+	private static long getSourceLength(ICompilationUnit unit) {
+		try {
+			if (unit.isWorkingCopy())
+				return unit.getBuffer().getLength();
+
+			IResource resource= unit.getResource();
+			if (resource != null) {
+				URI location= resource.getLocationURI();
+				if (location != null) {
+					long length= EFS.getStore(location).fetchInfo().getLength();
+					if (length > 0)
+						return length;
+				}
+			}
+		} catch (CoreException e) {
+			// fall through, the length is only an estimate
+		}
+		return DEFAULT_UNIT_LENGTH;
+	}
+
 	/**
 	 * Creates a new parser which can be used to create ASTs
 	 * for compilation units in <code>project</code>
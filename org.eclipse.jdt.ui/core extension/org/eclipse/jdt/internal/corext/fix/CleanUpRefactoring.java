@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,9 +11,11 @@
 package org.eclipse.jdt.internal.corext.fix;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -56,6 +58,7 @@ import org.eclipse.ltk.core.refactoring.TextEditBasedChangeGroup;
 import org.eclipse.ltk.core.refactoring.TextFileChange;
 
 import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.JavaModelException;
@@ -69,6 +72,7 @@ import org.eclipse.jdt.internal.corext.dom.ASTBatchParser;
 import org.eclipse.jdt.internal.corext.refactoring.Checks;
 import org.eclipse.jdt.internal.corext.refactoring.changes.DynamicValidationStateChange;
 import org.eclipse.jdt.internal.corext.refactoring.changes.MultiStateCompilationUnitChange;
+import org.eclipse.jdt.internal.corext.refactoring.util.ParallelTasks;
 import org.eclipse.jdt.internal.corext.refactoring.util.RefactoringASTParser;
 import org.eclipse.jdt.internal.corext.refactoring.util.TextEditUtil;
 import org.eclipse.jdt.internal.corext.util.Messages;
@@ -326,8 +330,26 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		}
 	}
 
+	/**
+	 * The clean up targets of one package which are parsed and fixed independently
+	 * of all other work units in parallel mode.
+	 */
+	private static class CleanUpWorkUnit {
+
+		private final CleanUpTarget[] fTargets;
+
+		public CleanUpWorkUnit(List<CleanUpTarget> targets) {
+			fTargets= targets.toArray(new CleanUpTarget[targets.size()]);
+		}
+
+		public CleanUpTarget[] getTargets() {
+			return fTargets;
+		}
+	}
+
 	private class CleanUpFixpointIterator {
 
+		private final CleanUpTarget[] fTargets;
 		private List<ParseListElement> fParseList;
 		private final Hashtable<ICompilationUnit, List<CleanUpChange>> fSolutions;
 		private final Hashtable<ICompilationUnit, ICompilationUnit> fWorkingCopies; // map from primary to working copy
@@ -336,6 +358,7 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		private int fIndex;
 
 		public CleanUpFixpointIterator(CleanUpTarget[] targets, ICleanUp[] cleanUps) {
+			fTargets= targets;
 			fSolutions= new Hashtable<ICompilationUnit, List<CleanUpChange>>(targets.length);
 			fWorkingCopies= new Hashtable<ICompilationUnit, ICompilationUnit>();
 
@@ -446,15 +469,22 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 			return false;
 		}
 
+		/**
+		 * Returns the changes in the order of the clean up targets, such that the
+		 * result does not depend on the order in which the units have been parsed.
+		 *
+		 * @return the changes for all targets which have been modified
+		 */
 		public Change[] getResult() {
 
 			Change[] result= new Change[fSolutions.size()];
+			HashSet<ICompilationUnit> processed= new HashSet<ICompilationUnit>();
 			int i=0;
-			for (Iterator<Entry<ICompilationUnit, List<CleanUpChange>>> iterator= fSolutions.entrySet().iterator(); iterator.hasNext();) {
-				Entry<ICompilationUnit, List<CleanUpChange>>  entry= iterator.next();
-
-				List<CleanUpChange> changes= entry.getValue();
-				ICompilationUnit unit= entry.getKey();
+			for (int k= 0; k < fTargets.length; k++) {
+				ICompilationUnit unit= fTargets[k].getCompilationUnit().getPrimary();
+				List<CleanUpChange> changes= fSolutions.get(unit);
+				if (changes == null || !processed.add(unit))
+					continue;
 
 				int saveMode;
 				if (fLeaveFilesDirty) {
@@ -515,6 +545,12 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 	 */
 	private static final int SLOW_CLEAN_UP_THRESHOLD= 2000;
 
+	/**
+	 * Maximum number of problems which are reported with their context. Further
+	 * problems are summarized.
+	 */
+	private static final int MAX_STATUS_ENTRIES= 200;
+
 	private final List<ICleanUp> fCleanUps;
 	private final Hashtable<IJavaProject, List<CleanUpTarget>> fProjects;
 	private Change fChange;
@@ -522,6 +558,7 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 	private final String fName;
 
 	private boolean fUseOptionsFromProfile;
+	private boolean fParallel;
 
 	public CleanUpRefactoring() {
 		this(FixMessages.CleanUpRefactoring_Refactoring_name);
@@ -532,12 +569,31 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		fCleanUps= new ArrayList<ICleanUp>();
 		fProjects= new Hashtable<IJavaProject, List<CleanUpTarget>>();
 		fUseOptionsFromProfile= false;
+		fParallel= false;
 	}
 
 	public void setUseOptionsFromProfile(boolean enabled) {
 		fUseOptionsFromProfile= enabled;
 	}
 
+	/**
+	 * Enables or disables the parallel mode. In parallel mode the targets of a project are
+	 * partitioned by package into work units which are parsed and fixed concurrently on a
+	 * pool bounded by the number of available processors. The resulting changes are merged in
+	 * the order in which the targets have been added and are identical to the changes computed
+	 * in sequential mode.
+	 * <p>
+	 * The parallel mode only applies if all clean ups are contributed by this plug-in, since only
+	 * those are known to support concurrent calls to {@link ICleanUp#createFix(CleanUpContext)}.
+	 * Otherwise the targets are fixed sequentially.
+	 * </p>
+	 *
+	 * @param parallel <code>true</code> to fix independent work units concurrently
+	 */
+	public void setParallel(boolean parallel) {
+		fParallel= parallel;
+	}
+
 	public void addCompilationUnit(ICompilationUnit unit) {
 		addCleanUpTarget(new CleanUpTarget(unit));
 	}
@@ -648,7 +704,7 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 
 		int cuCount= getCleanUpTargetsSize();
 
-		RefactoringStatus result= new RefactoringStatus();
+		RefactoringStatus result= RefactoringStatus.createBoundedStatus(MAX_STATUS_ENTRIES);
 
 		ICleanUp[] cleanUps= getCleanUps();
 		pm.beginTask("", cuCount * 2 * fCleanUps.size() + 4 * cleanUps.length); //$NON-NLS-1$
@@ -708,6 +764,12 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 	}
 
 	private Change[] cleanUpProject(IJavaProject project, CleanUpTarget[] targets, ICleanUp[] cleanUps, IProgressMonitor monitor) throws CoreException {
+		if (fParallel && canFixConcurrently(cleanUps)) {
+			CleanUpWorkUnit[] workUnits= createWorkUnits(targets);
+			if (workUnits.length > 1)
+				return cleanUpProjectParallel(project, targets, workUnits, cleanUps, monitor);
+		}
+
 		CleanUpFixpointIterator iter= new CleanUpFixpointIterator(targets, cleanUps);
 
 		SubProgressMonitor subMonitor= new SubProgressMonitor(monitor, 2 * targets.length * cleanUps.length);
@@ -725,6 +787,92 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		}
 	}
 
+	private static boolean canFixConcurrently(ICleanUp[] cleanUps) {
+		ClassLoader loader= CleanUpRefactoring.class.getClassLoader();
+		for (int i= 0; i < cleanUps.length; i++) {
+			if (cleanUps[i].getClass().getClassLoader() != loader)
+				return false;
+		}
+		return true;
+	}
+
+	private static CleanUpWorkUnit[] createWorkUnits(CleanUpTarget[] targets) {
+		Map<IJavaElement, List<CleanUpTarget>> packages= new LinkedHashMap<IJavaElement, List<CleanUpTarget>>();
+		for (int i= 0; i < targets.length; i++) {
+			IJavaElement pack= targets[i].getCompilationUnit().getParent();
+			List<CleanUpTarget> packageTargets= packages.get(pack);
+			if (packageTargets == null) {
+				packageTargets= new ArrayList<CleanUpTarget>();
+				packages.put(pack, packageTargets);
+			}
+			packageTargets.add(targets[i]);
+		}
+
+		CleanUpWorkUnit[] result= new CleanUpWorkUnit[packages.size()];
+		int i= 0;
+		for (Iterator<List<CleanUpTarget>> iter= packages.values().iterator(); iter.hasNext();) {
+			result[i++]= new CleanUpWorkUnit(iter.next());
+		}
+		return result;
+	}
+
+	private Change[] cleanUpProjectParallel(IJavaProject project, CleanUpTarget[] targets, CleanUpWorkUnit[] workUnits, final ICleanUp[] cleanUps, IProgressMonitor monitor) throws CoreException {
+		final SubProgressMonitor subMonitor= new SubProgressMonitor(monitor, 2 * targets.length * cleanUps.length);
+		final int size= targets.length;
+		final String projectName= BasicElementLabels.getResourceName(project.getProject());
+		subMonitor.subTask(Messages.format(FixMessages.CleanUpRefactoring_Parser_Startup_message, projectName));
+
+		List<Change[]> results= ParallelTasks.run(workUnits, new ParallelTasks.Task<CleanUpWorkUnit, Change[]>() {
+			private int fProcessed= 0;
+
+			@Override
+			public Change[] run(CleanUpWorkUnit workUnit, IProgressMonitor workerMonitor) throws CoreException {
+				CleanUpFixpointIterator iter= new CleanUpFixpointIterator(workUnit.getTargets(), cleanUps);
+				try {
+					while (iter.hasNext()) {
+						iter.next(workerMonitor);
+					}
+					return iter.getResult();
+				} finally {
+					iter.dispose();
+				}
+			}
+
+			@Override
+			public int getWork(CleanUpWorkUnit workUnit) {
+				return workUnit.getTargets().length;
+			}
+
+			@Override
+			public void completed(CleanUpWorkUnit workUnit, Change[] result) {
+				fProcessed+= workUnit.getTargets().length;
+				subMonitor.subTask(Messages.format(FixMessages.CleanUpRefactoring_ProcessingCompilationUnit_message, new Object[] {new Integer(fProcessed), new Integer(size), projectName}));
+			}
+		}, subMonitor);
+
+		Map<ICompilationUnit, Change> changes= new HashMap<ICompilationUnit, Change>();
+		for (Iterator<Change[]> iter= results.iterator(); iter.hasNext();) {
+			Change[] result= iter.next();
+			for (int i= 0; i < result.length; i++) {
+				changes.put(getCompilationUnit(result[i]), result[i]);
+			}
+		}
+
+		List<Change> result= new ArrayList<Change>(changes.size());
+		for (int i= 0; i < targets.length; i++) {
+			Change change= changes.remove(targets[i].getCompilationUnit().getPrimary());
+			if (change != null)
+				result.add(change);
+		}
+		return result.toArray(new Change[result.size()]);
+	}
+
+	private static ICompilationUnit getCompilationUnit(Change change) {
+		if (change instanceof MultiStateCompilationUnitChange)
+			return ((MultiStateCompilationUnitChange)change).getCompilationUnit();
+		return ((CompilationUnitChange)change).getCompilationUnit();
+	}
+
 	private RefactoringStatus setOptionsFromProfile(IJavaProject javaProject, ICleanUp[] cleanUps) {
 		Map<String, String> options= CleanUpPreferenceUtil.loadOptions(new ProjectScope(javaProject.getProject()));
 		if (options == null)
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -25,6 +25,7 @@ import org.eclipse.jdt.core.search.TypeNameMatch;
 import org.eclipse.jdt.internal.corext.codemanipulation.CodeGenerationSettings;
 import org.eclipse.jdt.internal.corext.codemanipulation.OrganizeImportsOperation;
 import org.eclipse.jdt.internal.corext.codemanipulation.OrganizeImportsOperation.IChooseImportQuery;
+import org.eclipse.jdt.internal.corext.codemanipulation.OrganizeImportsOperation.TypeNameCache;
 import org.eclipse.jdt.internal.corext.util.Messages;
 
 import org.eclipse.jdt.ui.cleanup.ICleanUpFix;
@@ -35,6 +36,10 @@ import org.eclipse.jdt.internal.ui.viewsupport.BasicElementLabels;
 public class ImportsFix extends TextEditFix {
 
 	public static ICleanUpFix createCleanUp(final CompilationUnit cu, CodeGenerationSettings settings, boolean organizeImports, RefactoringStatus status) throws CoreException {
+		return createCleanUp(cu, settings, organizeImports, status, null);
+	}
+
+	public static ICleanUpFix createCleanUp(final CompilationUnit cu, CodeGenerationSettings settings, boolean organizeImports, RefactoringStatus status, TypeNameCache typeNameCache) throws CoreException {
 		if (!organizeImports)
 			return null;
 
@@ -47,14 +52,19 @@ public class ImportsFix extends TextEditFix {
 		};
 
 		final ICompilationUnit unit= (ICompilationUnit)cu.getJavaElement();
-		OrganizeImportsOperation op= new OrganizeImportsOperation(unit, cu, settings.importIgnoreLowercase, false, false, query);
+		OrganizeImportsOperation op= new OrganizeImportsOperation(unit, cu, settings.importIgnoreLowercase, false, false, query, typeNameCache);
 		final TextEdit edit= op.createTextEdit(null);
+		// the status is shared by all units of a project, which can be cleaned up concurrently
 		if (hasAmbiguity[0]) {
-			status.addInfo(Messages.format(ActionMessages.OrganizeImportsAction_multi_error_unresolvable, getLocationString(cu)));
+			synchronized (status) {
+				status.addInfo(Messages.format(ActionMessages.OrganizeImportsAction_multi_error_unresolvable, getLocationString(cu)));
+			}
 		}
 
 		if (op.getParseError() != null) {
-			status.addInfo(Messages.format(ActionMessages.OrganizeImportsAction_multi_error_parse, getLocationString(cu)));
+			synchronized (status) {
+				status.addInfo(Messages.format(ActionMessages.OrganizeImportsAction_multi_error_parse, getLocationString(cu)));
+			}
 			return null;
 		}
 
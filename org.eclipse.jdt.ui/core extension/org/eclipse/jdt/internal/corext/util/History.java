@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,36 +10,37 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.corext.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.TransformerFactoryConfigurationError;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
@@ -59,7 +60,11 @@ import org.eclipse.jdt.internal.ui.viewsupport.BasicElementLabels;
  * MAX_HISTORY_SIZE. If the list exceeds this size the eldest element is removed
  * from the list. An element can be added/renewed with a call to <code>accessed(Object)</code>.
  *
- * The history can be stored to/loaded from an xml file.
+ * The history is stored in a binary journal: <code>save()</code> appends the elements that
+ * have been accessed, removed or updated since the last save, and the journal is compacted to the
+ * current elements once it has grown too large. Each element is stored as the attributes
+ * set by <code>setAttributes(Object, Element)</code>. Histories that have been stored to an
+ * xml file by earlier versions are loaded from that file until the journal has been written.
  */
 public abstract class History {
 
@@ -67,6 +72,28 @@ public abstract class History {
 	private static final String DEFAULT_INFO_NODE_NAME= "infoNode"; //$NON-NLS-1$
 	private static final int MAX_HISTORY_SIZE= 60;
 
+	private static final String JOURNAL_EXTENSION= ".journal"; //$NON-NLS-1$
+	private static final int JOURNAL_MAGIC= 0x4A484953;
+	private static final int JOURNAL_VERSION= 2;
+	private static final int MAX_JOURNAL_RECORDS= 10 * MAX_HISTORY_SIZE;
+
+	private static final byte RECORD_ACCESSED= 1;
+	private static final byte RECORD_REMOVED= 2;
+	private static final byte RECORD_UPDATED= 3;
+
+	/**
+	 * An element that has been accessed, removed or updated since the last save.
+	 */
+	private static final class JournalRecord {
+		final byte fKind;
+		final Object fObject;
+
+		JournalRecord(byte kind, Object object) {
+			fKind= kind;
+			fObject= object;
+		}
+	}
+
 	private static JavaUIException createException(Throwable t, String message) {
 		return new JavaUIException(JavaUIStatus.createError(IStatus.ERROR, message, t));
 	}
@@ -77,6 +104,14 @@ public abstract class History {
 	private final String fRootNodeName;
 	private final String fInfoNodeName;
 
+	private final List<JournalRecord> fPendingRecords;
+	/**
+	 * The number of records in the journal, or <code>-1</code> if the journal has to be
+	 * rewritten on the next save.
+	 */
+	private int fJournalRecords;
+	private Document fDocument;
+
 	public History(String fileName, String rootNodeName, String infoNodeName) {
 		fHistory= new LinkedHashMap<Object, Object>(80, 0.75f, true) {
 			private static final long serialVersionUID= 1L;
@@ -89,6 +124,8 @@ public abstract class History {
 		fRootNodeName= rootNodeName;
 		fInfoNodeName= infoNodeName;
 		fPositions= new Hashtable<Object, Integer>(MAX_HISTORY_SIZE);
+		fPendingRecords= new ArrayList<JournalRecord>();
+		fJournalRecords= -1;
 	}
 
 	public History(String fileName) {
@@ -98,6 +135,18 @@ public abstract class History {
 	public synchronized void accessed(Object object) {
 		fHistory.put(getKey(object), object);
 		rebuildPositions();
+		addRecord(RECORD_ACCESSED, object);
+	}
+
+	/**
+	 * Records that the attributes stored for an element have changed, without
+	 * changing the position of the element in the history.
+	 *
+	 * @param object the changed element
+	 */
+	public synchronized void updated(Object object) {
+		if (fHistory.containsKey(getKey(object)))
+			addRecord(RECORD_UPDATED, object);
 	}
 
 	public synchronized boolean contains(Object object) {
@@ -115,12 +164,16 @@ public abstract class History {
 	public synchronized Object remove(Object object) {
 		Object removed= fHistory.remove(getKey(object));
 		rebuildPositions();
+		if (removed != null)
+			addRecord(RECORD_REMOVED, removed);
 		return removed;
 	}
 
 	public synchronized Object removeKey(Object key) {
 		Object removed= fHistory.remove(key);
 		rebuildPositions();
+		if (removed != null)
+			addRecord(RECORD_REMOVED, removed);
 		return removed;
 	}
 
@@ -159,6 +212,17 @@ public abstract class History {
 	}
 
 	public synchronized void load() {
+		File journal= getJournalFile();
+		if (journal.exists()) {
+			try {
+				loadJournal(journal);
+			} catch (CoreException e) {
+				JavaPlugin.log(e);
+			}
+			rebuildPositions();
+			return;
+		}
+
 		IPath stateLocation= JavaPlugin.getDefault().getStateLocation().append(fFileName);
 		File file= stateLocation.toFile();
 		if (file.exists()) {
@@ -182,28 +246,18 @@ public abstract class History {
 	}
 
 	public synchronized void save() {
-		IPath stateLocation= JavaPlugin.getDefault().getStateLocation().append(fFileName);
-		File file= stateLocation.toFile();
-		OutputStream out= null;
+		File journal= getJournalFile();
 		try {
-			out= new FileOutputStream(file);
-			save(out);
-		} catch (IOException e) {
-			JavaPlugin.log(e);
+			if (fJournalRecords < 0 || fJournalRecords + fPendingRecords.size() > MAX_JOURNAL_RECORDS || !journal.exists()) {
+				compactJournal(journal);
+				File file= JavaPlugin.getDefault().getStateLocation().append(fFileName).toFile();
+				if (file.isFile())
+					file.delete(); // replaced by the journal
+			} else if (!fPendingRecords.isEmpty()) {
+				appendToJournal(journal);
+			}
 		} catch (CoreException e) {
 			JavaPlugin.log(e);
-		} catch (TransformerFactoryConfigurationError e) {
-			// The XML library can be misconficgured (e.g. via
-			// -Djava.endorsed.dirs=C:\notExisting\xerces-2_7_1)
-			JavaPlugin.log(e);
-		} finally {
-			try {
-				if (out != null) {
-					out.close();
-				}
-			} catch (IOException e) {
-				JavaPlugin.log(e);
-			}
 		}
 	}
 
@@ -285,36 +339,169 @@ public abstract class History {
 		rebuildPositions();
 	}
 
-	private void save(OutputStream stream) throws CoreException {
+	private File getJournalFile() {
+		String name= fFileName;
+		if (name.endsWith(".xml")) //$NON-NLS-1$
+			name= name.substring(0, name.length() - 4);
+		return JavaPlugin.getDefault().getStateLocation().append(name + JOURNAL_EXTENSION).toFile();
+	}
+
+	private void addRecord(byte kind, Object object) {
+		if (fJournalRecords < 0)
+			return; // the journal will be rewritten anyway
+		if (fJournalRecords + fPendingRecords.size() >= MAX_JOURNAL_RECORDS) {
+			fPendingRecords.clear();
+			fJournalRecords= -1;
+			return;
+		}
+		fPendingRecords.add(new JournalRecord(kind, object));
+	}
+
+	private void loadJournal(File journal) throws CoreException {
+		DataInputStream in= null;
+		int records= 0;
+		try {
+			in= new DataInputStream(new BufferedInputStream(new FileInputStream(journal)));
+			if (in.readInt() != JOURNAL_MAGIC)
+				throw createException(null, Messages.format(CorextMessages.History_error_read, BasicElementLabels.getResourceName(journal.getName())));
+			int version= in.readInt();
+			if (version < 1 || version > JOURNAL_VERSION)
+				throw createException(null, Messages.format(CorextMessages.History_error_read, BasicElementLabels.getResourceName(journal.getName())));
+			int kind;
+			while ((kind= in.read()) != -1) {
+				if (kind != RECORD_ACCESSED && kind != RECORD_REMOVED && kind != RECORD_UPDATED)
+					throw new IOException(journal.getPath());
+				Object object= readObject(in);
+				if (object != null) {
+					if (kind == RECORD_ACCESSED)
+						fHistory.put(getKey(object), object);
+					else if (kind == RECORD_REMOVED)
+						fHistory.remove(getKey(object));
+					else
+						update(object);
+				}
+				records++;
+			}
+			// journals of an older version are rewritten with the current version on the next save
+			fJournalRecords= version == JOURNAL_VERSION ? records : -1;
+		} catch (EOFException e) {
+			// the last record has not been written completely, keep the complete records
+			// and rewrite the journal on the next save
+		} catch (IOException e) {
+			throw createException(e, Messages.format(CorextMessages.History_error_read, BasicElementLabels.getResourceName(journal.getName())));
+		} finally {
+			try {
+				if (in != null)
+					in.close();
+			} catch (IOException e) {
+				JavaPlugin.log(e);
+			}
+		}
+	}
+
+	/*
+	 * Replaces the element with the same key without moving it, since put() would
+	 * access it.
+	 */
+	private void update(Object object) {
+		Object key= getKey(object);
+		for (Iterator<Map.Entry<Object, Object>> iter= fHistory.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry<Object, Object> entry= iter.next();
+			if (entry.getKey().equals(key)) {
+				entry.setValue(object);
+				return;
+			}
+		}
+	}
+
+	private void appendToJournal(File journal) throws CoreException {
+		DataOutputStream out= null;
+		try {
+			out= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journal, true)));
+			for (Iterator<JournalRecord> iter= fPendingRecords.iterator(); iter.hasNext();) {
+				JournalRecord record= iter.next();
+				out.writeByte(record.fKind);
+				writeObject(record.fObject, out);
+			}
+			out.close();
+			out= null;
+			fJournalRecords+= fPendingRecords.size();
+			fPendingRecords.clear();
+		} catch (IOException e) {
+			fJournalRecords= -1;
+			throw createException(e, Messages.format(CorextMessages.History_error_serialize, BasicElementLabels.getResourceName(journal.getName())));
+		} finally {
+			close(out);
+		}
+	}
+
+	private void compactJournal(File journal) throws CoreException {
+		File temp= new File(journal.getPath() + ".tmp"); //$NON-NLS-1$
+		DataOutputStream out= null;
 		try {
-			DocumentBuilderFactory factory= DocumentBuilderFactory.newInstance();
-			DocumentBuilder builder= factory.newDocumentBuilder();
-			Document document= builder.newDocument();
-
-			Element rootElement = document.createElement(fRootNodeName);
-			document.appendChild(rootElement);
-
-			Iterator<Object> values= getValues().iterator();
-			while (values.hasNext()) {
-				Object object= values.next();
-				Element element= document.createElement(fInfoNodeName);
-				setAttributes(object, element);
-				rootElement.appendChild(element);
+			out= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			out.writeInt(JOURNAL_MAGIC);
+			out.writeInt(JOURNAL_VERSION);
+			Collection<Object> values= getValues();
+			for (Iterator<Object> iter= values.iterator(); iter.hasNext();) {
+				out.writeByte(RECORD_ACCESSED);
+				writeObject(iter.next(), out);
 			}
+			out.close();
+			out= null;
+			journal.delete();
+			if (!temp.renameTo(journal))
+				throw new IOException(temp.getPath());
+			fJournalRecords= values.size();
+			fPendingRecords.clear();
+		} catch (IOException e) {
+			throw createException(e, Messages.format(CorextMessages.History_error_serialize, BasicElementLabels.getResourceName(journal.getName())));
+		} finally {
+			close(out);
+		}
+	}
 
-			Transformer transformer=TransformerFactory.newInstance().newTransformer();
-			transformer.setOutputProperty(OutputKeys.METHOD, "xml"); //$NON-NLS-1$
-			transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8"); //$NON-NLS-1$
-			transformer.setOutputProperty(OutputKeys.INDENT, "yes"); //$NON-NLS-1$
-			DOMSource source = new DOMSource(document);
-			StreamResult result = new StreamResult(stream);
+	private static void close(DataOutputStream out) {
+		try {
+			if (out != null)
+				out.close();
+		} catch (IOException e) {
+			JavaPlugin.log(e);
+		}
+	}
 
-			transformer.transform(source, result);
-		} catch (TransformerException e) {
-			throw createException(e, Messages.format(CorextMessages.History_error_serialize, BasicElementLabels.getResourceName(fFileName)));
-		} catch (ParserConfigurationException e) {
-			throw createException(e, Messages.format(CorextMessages.History_error_serialize, BasicElementLabels.getResourceName(fFileName)));
+	private void writeObject(Object object, DataOutputStream out) throws IOException {
+		Element element= getDocument().createElement(fInfoNodeName);
+		setAttributes(object, element);
+		NamedNodeMap attributes= element.getAttributes();
+		int length= attributes.getLength();
+		out.writeShort(length);
+		for (int i= 0; i < length; i++) {
+			Attr attribute= (Attr) attributes.item(i);
+			out.writeUTF(attribute.getName());
+			out.writeUTF(attribute.getValue());
+		}
+	}
+
+	private Object readObject(DataInputStream in) throws IOException {
+		Element element= getDocument().createElement(fInfoNodeName);
+		int length= in.readUnsignedShort();
+		for (int i= 0; i < length; i++) {
+			String name= in.readUTF();
+			element.setAttribute(name, in.readUTF());
+		}
+		return createFromElement(element);
+	}
+
+	private Document getDocument() throws IOException {
+		if (fDocument == null) {
+			try {
+				fDocument= DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+			} catch (ParserConfigurationException e) {
+				throw new IOException(e.getMessage());
+			}
 		}
+		return fDocument;
 	}
 
 }
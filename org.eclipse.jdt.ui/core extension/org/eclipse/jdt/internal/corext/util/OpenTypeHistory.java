@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -54,6 +54,12 @@ import org.eclipse.jdt.internal.corext.CorextMessages;
 
 /**
  * History for the open type dialog. Object and keys are both {@link TypeNameMatch}s.
+ * <p>
+ * The history is available as soon as it has been loaded. Its elements are validated
+ * against the time stamps of their containers by a background job, or by
+ * {@link #checkConsistency(IProgressMonitor)}. Validated time stamps are saved
+ * without changing the order of the history.
+ * </p>
  */
 public class OpenTypeHistory extends History {
 
@@ -243,11 +249,9 @@ public class OpenTypeHistory extends History {
 	}
 
 	public synchronized void accessed(TypeNameMatch info) {
-		// Fetching the timestamp might not be cheap (remote file system
-		// external Jars. So check if we alreay have one.
-		if (!fTimestampMapping.containsKey(info)) {
-			fTimestampMapping.put(info, new Long(getContainerTimestamp(info)));
-		}
+		// Fetching the timestamp might not be cheap (remote file system,
+		// external Jars) and this is called from the UI thread. Types without
+		// a timestamp get one on the next consistency check.
 		super.accessed(info);
 	}
 
@@ -256,9 +260,13 @@ public class OpenTypeHistory extends History {
 		return (TypeNameMatch)super.remove(info);
 	}
 
-	public synchronized void replace(TypeNameMatch old, TypeNameMatch newMatch) {
+	public void replace(TypeNameMatch old, TypeNameMatch newMatch) {
+		replace(old, newMatch, getContainerTimestamp(newMatch));
+	}
+
+	private synchronized void replace(TypeNameMatch old, TypeNameMatch newMatch, long timestamp) {
 		fTimestampMapping.remove(old);
-		fTimestampMapping.put(newMatch, new Long(getContainerTimestamp(newMatch)));
+		fTimestampMapping.put(newMatch, new Long(timestamp));
 		super.remove(old);
 		super.accessed(newMatch);
 	}
@@ -293,34 +301,55 @@ public class OpenTypeHistory extends History {
 		return object;
 	}
 
-	private synchronized void internalCheckConsistency(IProgressMonitor monitor) throws OperationCanceledException {
+	private void internalCheckConsistency(IProgressMonitor monitor) throws OperationCanceledException {
 		// Setting fNeedsConsistencyCheck is necessary here since
 		// markAsInconsistent isn't synchronized.
 		fNeedsConsistencyCheck= true;
-		List<Object> typesToCheck= new ArrayList<Object>(getKeys());
+		List<Object> typesToCheck;
+		synchronized (this) {
+			typesToCheck= new ArrayList<Object>(getKeys());
+		}
 		monitor.beginTask(CorextMessages.TypeInfoHistory_consistency_check, typesToCheck.size());
 		monitor.setTaskName(CorextMessages.TypeInfoHistory_consistency_check);
 		for (Iterator<Object> iter= typesToCheck.iterator(); iter.hasNext();) {
 			TypeNameMatch type= (TypeNameMatch)iter.next();
+			// Fetching the timestamp and checking the type might not be cheap, so
+			// the history is only locked to read and update the entry. This way the
+			// UI thread does not wait for the check when it accesses the history.
 			long currentTimestamp= getContainerTimestamp(type);
-			Long lastTested= fTimestampMapping.get(type);
-			if (lastTested != null && currentTimestamp != IResource.NULL_STAMP && currentTimestamp == lastTested.longValue() && !isContainerDirty(type))
-				continue;
-			try {
-				IType jType= type.getType();
-				if (jType == null || !jType.exists()) {
-					remove(type);
-				} else {
-					// copy over the modifiers since they may have changed
-					int modifiers= jType.getFlags();
-					if (modifiers != type.getModifiers()) {
-						replace(type, SearchEngine.createTypeNameMatch(jType, modifiers));
+			Long lastTested;
+			synchronized (this) {
+				lastTested= fTimestampMapping.get(type);
+			}
+			if (lastTested == null || currentTimestamp == IResource.NULL_STAMP || currentTimestamp != lastTested.longValue() || isContainerDirty(type)) {
+				TypeNameMatch newMatch= type;
+				try {
+					IType jType= type.getType();
+					if (jType == null || !jType.exists()) {
+						newMatch= null;
 					} else {
-						fTimestampMapping.put(type, new Long(currentTimestamp));
+						// copy over the modifiers since they may have changed
+						int modifiers= jType.getFlags();
+						if (modifiers != type.getModifiers())
+							newMatch= SearchEngine.createTypeNameMatch(jType, modifiers);
+					}
+				} catch (JavaModelException e) {
+					newMatch= null;
+				}
+				synchronized (this) {
+					// the type may have been removed or replaced in the meantime
+					if (contains(type)) {
+						if (newMatch == null) {
+							remove(type);
+						} else if (newMatch != type) {
+							replace(type, newMatch, currentTimestamp);
+						} else if (lastTested == null || lastTested.longValue() != currentTimestamp) {
+							fTimestampMapping.put(type, new Long(currentTimestamp));
+							// journal the new stamp, so that the type is not checked again after a restart
+							updated(type);
+						}
 					}
 				}
-			} catch (JavaModelException e) {
-				remove(type);
 			}
 			if (monitor.isCanceled())
 				throw new OperationCanceledException();
@@ -12,7 +12,12 @@ package org.eclipse.jdt.internal.corext.util;
 
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 
@@ -23,18 +28,31 @@ import org.eclipse.jdt.core.JavaModelException;
 
 /**
  * A thread-safe cache for super type hierarchies.
- * 
+ * <p>
+ * Every type contained in a cached hierarchy is a key of the cache, so lookups don't
+ * need to scan the cached hierarchies and don't take a lock. Adding and removing
+ * hierarchies is serialized. The cache is bounded by the estimated heap retained by
+ * the hierarchies and their {@link MethodOverrideTester}s and evicts the least recently
+ * used hierarchies first. A hierarchy is removed when it changes.
+ * </p>
+ *
  * @see JDTUIHelperClasses
  */
 public class SuperTypeHierarchyCache {
 
 	private static class HierarchyCacheEntry implements ITypeHierarchyChangedListener {
 
-		private ITypeHierarchy fTypeHierarchy;
-		private long fLastAccess;
+		private volatile ITypeHierarchy fTypeHierarchy;
+		private final IType[] fTypes;
+		private final ConcurrentMap<IType, MethodOverrideTester> fMethodOverrideTesters;
+		private final AtomicLong fEstimatedSize;
+		private volatile long fLastAccess;
 
 		public HierarchyCacheEntry(ITypeHierarchy hierarchy) {
 			fTypeHierarchy= hierarchy;
+			fTypes= hierarchy.getAllTypes();
+			fMethodOverrideTesters= new ConcurrentHashMap<IType, MethodOverrideTester>(4);
+			fEstimatedSize= new AtomicLong(ENTRY_OVERHEAD + BYTES_PER_TYPE * fTypes.length);
 			fTypeHierarchy.addTypeHierarchyChangedListener(this);
 			markAsAccessed();
 		}
@@ -48,7 +66,7 @@ public class SuperTypeHierarchyCache {
 		}
 
 		public void markAsAccessed() {
-			fLastAccess= System.currentTimeMillis();
+			fLastAccess= fgAccessCounter.incrementAndGet();
 		}
 
 		public long getLastAccess() {
@@ -56,10 +74,12 @@ public class SuperTypeHierarchyCache {
 		}
 
 		public void dispose() {
-			if (fTypeHierarchy != null) {
-				fTypeHierarchy.removeTypeHierarchyChangedListener(this);
+			ITypeHierarchy hierarchy= fTypeHierarchy;
+			if (hierarchy != null) {
+				hierarchy.removeTypeHierarchyChangedListener(this);
 				fTypeHierarchy= null;
 			}
+			fMethodOverrideTesters.clear();
 		}
 
 		/* (non-Javadoc)
@@ -67,19 +87,52 @@ public class SuperTypeHierarchyCache {
 		 */
 		@Override
 		public String toString() {
-			return "Super hierarchy of: " + fTypeHierarchy.getType().getElementName(); //$NON-NLS-1$
+			ITypeHierarchy hierarchy= fTypeHierarchy;
+			return "Super hierarchy of: " + (hierarchy != null ? hierarchy.getType().getElementName() : "<disposed>"); //$NON-NLS-1$ //$NON-NLS-2$
 		}
 
 	}
 
+	/**
+	 * Estimated heap in bytes retained by a super type hierarchy, independent of the
+	 * number of types it contains.
+	 */
+	private static final long ENTRY_OVERHEAD= 4 * 1024;
+
+	/**
+	 * Estimated heap in bytes retained per type of a super type hierarchy.
+	 */
+	private static final long BYTES_PER_TYPE= 1024;
+
+	/**
+	 * Estimated heap in bytes retained by a method override tester.
+	 */
+	private static final long BYTES_PER_TESTER= 2 * 1024;
+
+	/**
+	 * Default maximal estimated size of all cached hierarchies.
+	 */
+	private static final long DEFAULT_MAX_SIZE= Math.min(8 * 1024 * 1024, Runtime.getRuntime().maxMemory() / 64);
 
-	private static final int CACHE_SIZE= 8;
+	/**
+	 * Maps each type contained in a cached hierarchy to the entry of the most recently
+	 * added hierarchy that contains it.
+	 */
+	private static final ConcurrentMap<IType, HierarchyCacheEntry> fgTypeIndex= new ConcurrentHashMap<IType, HierarchyCacheEntry>();
 
-	private static ArrayList<HierarchyCacheEntry> fgHierarchyCache= new ArrayList<HierarchyCacheEntry>(CACHE_SIZE);
-	private static Map<IType, MethodOverrideTester> fgMethodOverrideTesterCache= new LRUMap<IType, MethodOverrideTester>(CACHE_SIZE);
+	/**
+	 * The cached entries. Guarded by itself, which is also the lock that serializes
+	 * adding and removing entries.
+	 */
+	private static final Set<HierarchyCacheEntry> fgHierarchyCache= new LinkedHashSet<HierarchyCacheEntry>();
 
-	private static int fgCacheHits= 0;
-	private static int fgCacheMisses= 0;
+	private static final AtomicLong fgAccessCounter= new AtomicLong();
+	private static final AtomicLong fgSize= new AtomicLong();
+	private static volatile long fgMaxSize= DEFAULT_MAX_SIZE;
+
+	private static final AtomicInteger fgCacheHits= new AtomicInteger();
+	private static final AtomicInteger fgCacheMisses= new AtomicInteger();
+	private static final AtomicInteger fgEvictions= new AtomicInteger();
 
 	/**
 	 * Returns a super type hierarchy that contains the given type.
@@ -97,34 +150,30 @@ public class SuperTypeHierarchyCache {
 	}
 
 	public static MethodOverrideTester getMethodOverrideTester(IType type) throws JavaModelException {
-		MethodOverrideTester test= null;
-		synchronized (fgMethodOverrideTesterCache) {
-			test= fgMethodOverrideTesterCache.get(type);
+		HierarchyCacheEntry entry= findEntryInCache(type);
+		if (entry != null) {
+			MethodOverrideTester test= entry.fMethodOverrideTesters.get(type);
+			if (test != null)
+				return test;
 		}
-		if (test == null) {
-			ITypeHierarchy hierarchy= getTypeHierarchy(type); // don't nest the locks
-			synchronized (fgMethodOverrideTesterCache) {
-				test= fgMethodOverrideTesterCache.get(type); // test again after waiting a long time for 'getTypeHierarchy'
-				if (test == null) {
-					test= new MethodOverrideTester(type, hierarchy);
-					fgMethodOverrideTesterCache.put(type, test);
+		ITypeHierarchy hierarchy= getTypeHierarchy(type);
+		MethodOverrideTester test= new MethodOverrideTester(type, hierarchy);
+		entry= findEntryInCache(type);
+		if (entry != null && entry.getTypeHierarchy() == hierarchy) {
+			MethodOverrideTester existing= entry.fMethodOverrideTesters.putIfAbsent(type, test);
+			if (existing != null)
+				return existing;
+			synchronized (fgHierarchyCache) {
+				if (fgHierarchyCache.contains(entry)) {
+					entry.fEstimatedSize.addAndGet(BYTES_PER_TESTER);
+					fgSize.addAndGet(BYTES_PER_TESTER);
+					evict(entry);
 				}
 			}
 		}
 		return test;
 	}
 
-	private static void removeMethodOverrideTester(ITypeHierarchy hierarchy) {
-		synchronized (fgMethodOverrideTesterCache) {
-			for (Iterator<MethodOverrideTester> iter= fgMethodOverrideTesterCache.values().iterator(); iter.hasNext();) {
-				MethodOverrideTester curr= iter.next();
-				if (curr.getTypeHierarchy().equals(hierarchy)) {
-					iter.remove();
-				}
-			}
-		}
-	}
-
 	/**
 	 * Returns a super type hierarchy that contains the given type.
 	 * The returned hierarchy may actually be based on a subtype of the
@@ -138,45 +187,67 @@ public class SuperTypeHierarchyCache {
 	 * @throws JavaModelException if a problem occurs
 	 */
 	public static ITypeHierarchy getTypeHierarchy(IType type, IProgressMonitor progressMonitor) throws JavaModelException {
-		ITypeHierarchy hierarchy= findTypeHierarchyInCache(type);
-		if (hierarchy == null) {
-			fgCacheMisses++;
-			hierarchy= type.newSupertypeHierarchy(progressMonitor);
-			addTypeHierarchyToCache(hierarchy);
-		} else {
-			fgCacheHits++;
+		HierarchyCacheEntry entry= findEntryInCache(type);
+		if (entry != null) {
+			ITypeHierarchy hierarchy= entry.getTypeHierarchy();
+			if (hierarchy != null) {
+				fgCacheHits.incrementAndGet();
+				return hierarchy;
+			}
 		}
+		fgCacheMisses.incrementAndGet();
+		ITypeHierarchy hierarchy= type.newSupertypeHierarchy(progressMonitor);
+		addTypeHierarchyToCache(hierarchy);
 		return hierarchy;
 	}
 
 	private static void addTypeHierarchyToCache(ITypeHierarchy hierarchy) {
 		synchronized (fgHierarchyCache) {
-			int nEntries= fgHierarchyCache.size();
-			if (nEntries >= CACHE_SIZE) {
-				// find obsolete entries or remove entry that was least recently accessed
-				HierarchyCacheEntry oldest= null;
-				ArrayList<HierarchyCacheEntry> obsoleteHierarchies= new ArrayList<HierarchyCacheEntry>(CACHE_SIZE);
-				for (int i= 0; i < nEntries; i++) {
-					HierarchyCacheEntry entry= fgHierarchyCache.get(i);
-					ITypeHierarchy curr= entry.getTypeHierarchy();
-					if (!curr.exists() || hierarchy.contains(curr.getType())) {
-						obsoleteHierarchies.add(entry);
-					} else {
-						if (oldest == null || entry.getLastAccess() < oldest.getLastAccess()) {
-							oldest= entry;
-						}
-					}
-				}
-				if (!obsoleteHierarchies.isEmpty()) {
-					for (int i= 0; i < obsoleteHierarchies.size(); i++) {
-						removeHierarchyEntryFromCache(obsoleteHierarchies.get(i));
-					}
-				} else if (oldest != null) {
-					removeHierarchyEntryFromCache(oldest);
-				}
-			}
+			// the entry listens to changes from here on, which are delivered once it is in the cache
 			HierarchyCacheEntry newEntry= new HierarchyCacheEntry(hierarchy);
+			if (!hierarchy.exists()) {
+				newEntry.dispose();
+				return;
+			}
+
+			// remove obsolete entries and entries that are covered by the new hierarchy
+			ArrayList<HierarchyCacheEntry> obsoleteEntries= new ArrayList<HierarchyCacheEntry>();
+			for (Iterator<HierarchyCacheEntry> iter= fgHierarchyCache.iterator(); iter.hasNext();) {
+				HierarchyCacheEntry entry= iter.next();
+				ITypeHierarchy curr= entry.getTypeHierarchy();
+				if (curr == null || !curr.exists() || hierarchy.contains(curr.getType()))
+					obsoleteEntries.add(entry);
+			}
+			for (int i= 0; i < obsoleteEntries.size(); i++)
+				removeEntry(obsoleteEntries.get(i));
+
 			fgHierarchyCache.add(newEntry);
+			fgSize.addAndGet(newEntry.fEstimatedSize.get());
+			for (int i= 0; i < newEntry.fTypes.length; i++)
+				fgTypeIndex.put(newEntry.fTypes[i], newEntry);
+
+			evict(newEntry);
+		}
+	}
+
+	/**
+	 * Removes the least recently used entries until the cache is within its size.
+	 * Must be called while holding the lock on {@link #fgHierarchyCache}.
+	 *
+	 * @param keep the entry that is not removed, or <code>null</code>
+	 */
+	private static void evict(HierarchyCacheEntry keep) {
+		while (fgSize.get() > fgMaxSize) {
+			HierarchyCacheEntry oldest= null;
+			for (Iterator<HierarchyCacheEntry> iter= fgHierarchyCache.iterator(); iter.hasNext();) {
+				HierarchyCacheEntry entry= iter.next();
+				if (entry != keep && (oldest == null || entry.getLastAccess() < oldest.getLastAccess()))
+					oldest= entry;
+			}
+			if (oldest == null)
+				return;
+			removeEntry(oldest);
+			fgEvictions.incrementAndGet();
 		}
 	}
 
@@ -187,43 +258,79 @@ public class SuperTypeHierarchyCache {
 	 * @return <code>true</code> if a hierarchy for the given type is cached
 	 */
 	public static boolean hasInCache(IType type) {
-		return findTypeHierarchyInCache(type) != null;
+		return findEntryInCache(type) != null;
 	}
 
 
-	private static ITypeHierarchy findTypeHierarchyInCache(IType type) {
-		synchronized (fgHierarchyCache) {
-			for (int i= fgHierarchyCache.size() - 1; i>= 0; i--) {
-				HierarchyCacheEntry curr= fgHierarchyCache.get(i);
-				ITypeHierarchy hierarchy= curr.getTypeHierarchy();
-				if (!hierarchy.exists()) {
-					removeHierarchyEntryFromCache(curr);
-				} else {
-					if (hierarchy.contains(type)) {
-						curr.markAsAccessed();
-						return hierarchy;
-					}
-				}
-			}
+	private static HierarchyCacheEntry findEntryInCache(IType type) {
+		HierarchyCacheEntry entry= fgTypeIndex.get(type);
+		if (entry == null)
+			return null;
+		ITypeHierarchy hierarchy= entry.getTypeHierarchy();
+		if (hierarchy == null)
+			return null;
+		if (!hierarchy.exists()) {
+			removeHierarchyEntryFromCache(entry);
+			return null;
 		}
-		return null;
+		entry.markAsAccessed();
+		return entry;
 	}
 
 	private static void removeHierarchyEntryFromCache(HierarchyCacheEntry entry) {
 		synchronized (fgHierarchyCache) {
-			removeMethodOverrideTester(entry.getTypeHierarchy());
-			entry.dispose();
-			fgHierarchyCache.remove(entry);
+			removeEntry(entry);
 		}
 	}
 
+	/**
+	 * Removes the given entry. Must be called while holding the lock on {@link #fgHierarchyCache}.
+	 *
+	 * @param entry the entry to remove
+	 */
+	private static void removeEntry(HierarchyCacheEntry entry) {
+		if (!fgHierarchyCache.remove(entry))
+			return;
+		for (int i= 0; i < entry.fTypes.length; i++)
+			fgTypeIndex.remove(entry.fTypes[i], entry);
+		fgSize.addAndGet(-entry.fEstimatedSize.get());
+		entry.dispose();
+	}
+
+
+	/**
+	 * Sets the maximal estimated size of all cached hierarchies and evicts the least
+	 * recently used hierarchies if the cache exceeds the new size.
+	 *
+	 * @param maxSize the maximal estimated size in bytes
+	 */
+	public static void setMaxSize(long maxSize) {
+		synchronized (fgHierarchyCache) {
+			fgMaxSize= maxSize;
+			evict(null);
+		}
+	}
+
+	/**
+	 * @return the maximal estimated size in bytes of all cached hierarchies
+	 */
+	public static long getMaxSize() {
+		return fgMaxSize;
+	}
+
+	/**
+	 * @return the estimated size in bytes of all cached hierarchies
+	 */
+	public static long getEstimatedSize() {
+		return fgSize.get();
+	}
 
 	/**
 	 * Gets the number of times the hierarchy could be taken from the hierarchy.
 	 * @return Returns a int
 	 */
 	public static int getCacheHits() {
-		return fgCacheHits;
+		return fgCacheHits.get();
 	}
 
 	/**
@@ -231,6 +338,24 @@ public class SuperTypeHierarchyCache {
 	 * @return Returns a int
 	 */
 	public static int getCacheMisses() {
-		return fgCacheMisses;
+		return fgCacheMisses.get();
+	}
+
+	/**
+	 * Returns the ratio of requests for a hierarchy that were served from the cache.
+	 *
+	 * @return the hit ratio between 0 and 1, or 0 if no hierarchy has been requested
+	 */
+	public static double getHitRatio() {
+		int hits= fgCacheHits.get();
+		int total= hits + fgCacheMisses.get();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * @return the number of hierarchies which have been evicted to stay within the size bound
+	 */
+	public static int getEvictions() {
+		return fgEvictions.get();
 	}
 }
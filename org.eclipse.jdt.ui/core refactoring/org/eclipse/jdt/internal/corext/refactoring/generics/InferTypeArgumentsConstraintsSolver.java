@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,15 +14,19 @@ package org.eclipse.jdt.internal.corext.refactoring.generics;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -71,10 +75,28 @@ public class InferTypeArgumentsConstraintsSolver {
 
 	private InferTypeArgumentsUpdate fUpdate;
 
+	/**
+	 * Tells whether type estimates are propagated as bit sets (see {@link BitSetPropagation})
+	 * rather than as symbolic {@link TypeSet}s.
+	 */
+	private final boolean fUseBitSets;
+
 
 	public InferTypeArgumentsConstraintsSolver(InferTypeArgumentsTCModel typeConstraintFactory) {
+		this(typeConstraintFactory, true);
+	}
+
+	/**
+	 * Creates a solver.
+	 *
+	 * @param typeConstraintFactory the type constraints model
+	 * @param useBitSets <code>true</code> to propagate type estimates as bit sets over the
+	 *            types of the model, <code>false</code> to propagate them as symbolic type sets
+	 */
+	public InferTypeArgumentsConstraintsSolver(InferTypeArgumentsTCModel typeConstraintFactory, boolean useBitSets) {
 		fTCModel= typeConstraintFactory;
 		fWorkList= new LinkedList<ConstraintVariable2>();
+		fUseBitSets= useBitSets;
 	}
 
 	public InferTypeArgumentsUpdate solveConstraints(IProgressMonitor pm) {
@@ -119,11 +141,19 @@ public class InferTypeArgumentsConstraintsSolver {
 			fTCModel.createElementEqualsConstraints(typeConstraint.getLeft(), typeConstraint.getRight());
 		}
 
-		initializeTypeEstimates(allConstraintVariables);
-		if (pm.isCanceled())
-			throw new OperationCanceledException();
-		fWorkList.addAll(Arrays.asList(allConstraintVariables));
-		runSolver(new SubProgressMonitor(pm, 1));
+		if (fUseBitSets) {
+			BitSetPropagation propagation= new BitSetPropagation(allConstraintVariables);
+			if (pm.isCanceled())
+				throw new OperationCanceledException();
+			propagation.run(new SubProgressMonitor(pm, 1));
+			propagation.storeTypeEstimates();
+		} else {
+			initializeTypeEstimates(allConstraintVariables);
+			if (pm.isCanceled())
+				throw new OperationCanceledException();
+			fWorkList.addAll(Arrays.asList(allConstraintVariables));
+			runSolver(new SubProgressMonitor(pm, 1));
+		}
 		chooseTypes(allConstraintVariables, new SubProgressMonitor(pm, 1));
 		findCastsToRemove(fTCModel.getCastVariables());
 		return fUpdate;
@@ -152,7 +182,41 @@ public class InferTypeArgumentsConstraintsSolver {
 		}
 	}
 
+	/**
+	 * Creates the initial estimate of a type equivalence set like
+	 * {@link #initializeTypeEstimates(ConstraintVariable2[])}.
+	 *
+	 * @param cvs the contributing variables of the set
+	 * @return the initial estimate
+	 */
+	private TypeSet createInitialEstimate(ConstraintVariable2[] cvs) {
+		if (cvs.length == 1)
+			return createInitialEstimate(cvs[0]);
+		TypeSet typeEstimate= fTypeSetEnvironment.getUniverseTypeSet();
+		for (int j= 0; j < cvs.length; j++)
+			typeEstimate= typeEstimate.intersectedWith(createInitialEstimate(cvs[j]));
+		return typeEstimate;
+	}
+
 	private TypeSet createInitialEstimate(ConstraintVariable2 cv) {
+		TType type= getInitialEstimateType(cv);
+		if (type == null) {
+			return fTypeSetEnvironment.getUniverseTypeSet();
+		} else if (type.isVoidType()) {
+			return fTypeSetEnvironment.getEmptyTypeSet();
+		} else {
+			return new SingletonTypeSet(type, fTypeSetEnvironment);
+		}
+	}
+
+	/**
+	 * Returns the single type of the initial type estimate of the given variable.
+	 *
+	 * @param cv the constraint variable
+	 * @return the type of the initial estimate, <code>null</code> if the initial estimate
+	 *         is the universe, or the void type if it is empty
+	 */
+	private static TType getInitialEstimateType(ConstraintVariable2 cv) {
 		// TODO: check assumption: only immutable CVs have a type
 //		ParametricStructure parametricStructure= fElemStructureEnv.elemStructure(cv);
 //		if (parametricStructure != null && parametricStructure != ParametricStructureComputer.ParametricStructure.NONE) {
@@ -161,10 +225,10 @@ public class InferTypeArgumentsConstraintsSolver {
 
 		TType type= cv.getType();
 		if (type == null) {
-			return fTypeSetEnvironment.getUniverseTypeSet();
+			return null;
 
 		} else if (cv instanceof IndependentTypeVariable2) {
-			return fTypeSetEnvironment.getUniverseTypeSet();
+			return null;
 			//TODO: solve problem with recursive bounds
 //			TypeVariable tv= (TypeVariable) type;
 //			TType[] bounds= tv.getBounds();
@@ -175,18 +239,16 @@ public class InferTypeArgumentsConstraintsSolver {
 //			return result;
 
 		} else if (cv instanceof ArrayTypeVariable2) {
-			return fTypeSetEnvironment.getUniverseTypeSet();
+			return null;
 		} else if (cv instanceof ArrayElementVariable2) {
 			if (cv.getType() != null && cv.getType().isTypeVariable()) {
-				return fTypeSetEnvironment.getUniverseTypeSet();
+				return null;
 			} else {
-				return new SingletonTypeSet(type, fTypeSetEnvironment);
+				return type;
 			}
 
-		} else if (type.isVoidType()) {
-			return fTypeSetEnvironment.getEmptyTypeSet();
 		} else {
-			return new SingletonTypeSet(type, fTypeSetEnvironment);
+			return type;
 		}
 	}
 
@@ -265,6 +327,210 @@ public class InferTypeArgumentsConstraintsSolver {
 		}
 	}
 
+	/**
+	 * Propagates type estimates as bit sets over the ids of a {@link TypeClosureIndex}.
+	 * <p>
+	 * The nodes of the constraint graph are the {@link TypeEquivalenceSet}s. The estimate
+	 * of a node is <code>null</code> for the universe. A node is put back on the work list
+	 * only when its estimate has shrunk, and then only the constraints it is used in are
+	 * re-evaluated.
+	 * </p>
+	 * <p>
+	 * The bit sets decide whether an estimate must shrink. Each node also keeps the symbolic
+	 * {@link TypeSet} that the symbolic solver would compute, which is intersected only when the
+	 * bit set shrinks. These symbolic estimates are the result, so that choosing types and
+	 * removing casts see the same type sets as with the symbolic solver.
+	 * </p>
+	 */
+	private class BitSetPropagation {
+
+		private final TypeClosureIndex fIndex;
+
+		private final TypeEquivalenceSet[] fSets;
+		private final BitSet[] fEstimates;
+		private final TypeSet[] fTypeSets;
+		private final int[][] fUsedIn;
+
+		private final int[] fLefts;
+		private final int[] fRights;
+
+		private final int[] fQueue;
+		private final boolean[] fQueued;
+		private int fQueueHead;
+		private int fQueueSize;
+
+		public BitSetPropagation(ConstraintVariable2[] allConstraintVariables) {
+			Map<TypeEquivalenceSet, Integer> setIds= new HashMap<TypeEquivalenceSet, Integer>();
+			List<TypeEquivalenceSet> sets= new ArrayList<TypeEquivalenceSet>();
+			for (int i= 0; i < allConstraintVariables.length; i++) {
+				ConstraintVariable2 cv= allConstraintVariables[i];
+				TypeEquivalenceSet set= cv.getTypeEquivalenceSet();
+				if (set == null) {
+					set= new TypeEquivalenceSet(cv);
+					cv.setTypeEquivalenceSet(set);
+				}
+				if (! setIds.containsKey(set)) {
+					setIds.put(set, Integer.valueOf(sets.size()));
+					sets.add(set);
+				}
+			}
+			fSets= sets.toArray(new TypeEquivalenceSet[sets.size()]);
+
+			Set<TType> seeds= new LinkedHashSet<TType>();
+			for (int i= 0; i < fSets.length; i++) {
+				ConstraintVariable2[] cvs= fSets[i].getContributingVariables();
+				for (int j= 0; j < cvs.length; j++) {
+					TType type= getInitialEstimateType(cvs[j]);
+					if (type != null && ! type.isVoidType())
+						seeds.add(type);
+				}
+			}
+			fIndex= new TypeClosureIndex(fTypeSetEnvironment.getJavaLangObject(), seeds);
+
+			fEstimates= new BitSet[fSets.length];
+			fTypeSets= new TypeSet[fSets.length];
+			for (int i= 0; i < fSets.length; i++) {
+				ConstraintVariable2[] cvs= fSets[i].getContributingVariables();
+				fTypeSets[i]= createInitialEstimate(cvs);
+				BitSet estimate= null;
+				for (int j= 0; j < cvs.length; j++) {
+					TType type= getInitialEstimateType(cvs[j]);
+					if (type == null)
+						continue;
+					BitSet initial= new BitSet();
+					if (! type.isVoidType())
+						initial.set(fIndex.getId(type));
+					if (estimate == null)
+						estimate= initial;
+					else
+						estimate.and(initial);
+				}
+				fEstimates[i]= estimate;
+			}
+
+			Map<ITypeConstraint2, Integer> constraintIds= new HashMap<ITypeConstraint2, Integer>();
+			List<ITypeConstraint2> constraints= new ArrayList<ITypeConstraint2>();
+			fUsedIn= new int[fSets.length][];
+			Set<Integer> usedIn= new LinkedHashSet<Integer>();
+			for (int i= 0; i < fSets.length; i++) {
+				usedIn.clear();
+				ConstraintVariable2[] cvs= fSets[i].getContributingVariables();
+				for (int j= 0; j < cvs.length; j++) {
+					for (Iterator<ITypeConstraint2> iter= fTCModel.getUsedIn(cvs[j]).iterator(); iter.hasNext();) {
+						ITypeConstraint2 tc= iter.next();
+						Integer id= constraintIds.get(tc);
+						if (id == null) {
+							Integer left= setIds.get(tc.getLeft().getTypeEquivalenceSet());
+							Integer right= setIds.get(tc.getRight().getTypeEquivalenceSet());
+							if (left == null || right == null)
+								continue; // has no estimate
+							id= Integer.valueOf(constraints.size());
+							constraintIds.put(tc, id);
+							constraints.add(tc);
+						}
+						usedIn.add(id);
+					}
+				}
+				int[] ids= new int[usedIn.size()];
+				int k= 0;
+				for (Iterator<Integer> iter= usedIn.iterator(); iter.hasNext();)
+					ids[k++]= iter.next().intValue();
+				fUsedIn[i]= ids;
+			}
+
+			fLefts= new int[constraints.size()];
+			fRights= new int[constraints.size()];
+			for (int i= 0; i < fLefts.length; i++) {
+				ITypeConstraint2 tc= constraints.get(i);
+				fLefts[i]= setIds.get(tc.getLeft().getTypeEquivalenceSet()).intValue();
+				fRights[i]= setIds.get(tc.getRight().getTypeEquivalenceSet()).intValue();
+			}
+
+			fQueue= new int[fSets.length];
+			fQueued= new boolean[fSets.length];
+			for (int i= 0; i < fSets.length; i++)
+				enqueue(i);
+		}
+
+		private void enqueue(int set) {
+			if (fQueued[set])
+				return;
+			fQueued[set]= true;
+			fQueue[(fQueueHead + fQueueSize) % fQueue.length]= set;
+			fQueueSize++;
+		}
+
+		private int dequeue() {
+			int set= fQueue[fQueueHead];
+			fQueueHead= (fQueueHead + 1) % fQueue.length;
+			fQueueSize--;
+			fQueued[set]= false;
+			return set;
+		}
+
+		public void run(IProgressMonitor pm) {
+			pm.beginTask("", fSets.length * 3); //$NON-NLS-1$
+			while (fQueueSize > 0) {
+				int[] usedIn= fUsedIn[dequeue()];
+				for (int i= 0; i < usedIn.length; i++)
+					maintainSimpleConstraint(usedIn[i]);
+				pm.worked(1);
+				if (pm.isCanceled())
+					throw new OperationCanceledException();
+			}
+			pm.done();
+		}
+
+		/**
+		 * Restricts the estimates of the two sides of the given constraint
+		 * like {@link InferTypeArgumentsConstraintsSolver#maintainSimpleConstraint(ITypeConstraint2)}.
+		 *
+		 * @param constraint the id of the constraint
+		 */
+		private void maintainSimpleConstraint(int constraint) {
+			int left= fLefts[constraint];
+			int right= fRights[constraint];
+			BitSet leftEstimate= fEstimates[left];
+			BitSet rightEstimate= fEstimates[right];
+
+			if (leftEstimate == null && rightEstimate == null)
+				return; // nothing to do
+
+			if (leftEstimate != null && leftEstimate.equals(rightEstimate))
+				return; // nothing to do
+
+			BitSet lhsSuperTypes= leftEstimate == null ? null : fIndex.superTypes(leftEstimate);
+			BitSet rhsSubTypes= rightEstimate == null ? null : fIndex.subTypes(rightEstimate);
+			TypeSet leftTypeSet= fTypeSets[left];
+			TypeSet rightTypeSet= fTypeSets[right];
+
+			if (rhsSubTypes != null && (leftEstimate == null || ! TypeClosureIndex.containsAll(rhsSubTypes, leftEstimate))) {
+				if (leftEstimate == null)
+					fEstimates[left]= rhsSubTypes;
+				else
+					leftEstimate.and(rhsSubTypes);
+				fTypeSets[left]= leftTypeSet.intersectedWith(rightTypeSet.subTypes());
+				enqueue(left);
+			}
+			if (lhsSuperTypes != null && (rightEstimate == null || ! TypeClosureIndex.containsAll(lhsSuperTypes, rightEstimate))) {
+				if (rightEstimate == null)
+					fEstimates[right]= lhsSuperTypes;
+				else
+					rightEstimate.and(lhsSuperTypes);
+				fTypeSets[right]= rightTypeSet.intersectedWith(leftTypeSet.superTypes());
+				enqueue(right);
+			}
+		}
+
+		/**
+		 * Stores the symbolic estimates in the type equivalence sets.
+		 */
+		public void storeTypeEstimates() {
+			for (int i= 0; i < fSets.length; i++)
+				fSets[i].setTypeEstimate(fTypeSets[i]);
+		}
+	}
+
 	private void chooseTypes(ConstraintVariable2[] allConstraintVariables, SubProgressMonitor pm) {
 		pm.beginTask("", allConstraintVariables.length); //$NON-NLS-1$
 		for (int i= 0; i < allConstraintVariables.length; i++) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -64,6 +64,7 @@ import org.eclipse.jdt.core.refactoring.descriptors.InferTypeArgumentsDescriptor
 
 import org.eclipse.jdt.internal.core.refactoring.descriptors.RefactoringSignatureDescriptorFactory;
 import org.eclipse.jdt.internal.corext.SourceRangeFactory;
+import org.eclipse.jdt.internal.corext.dom.ASTBatchParser;
 import org.eclipse.jdt.internal.corext.refactoring.Checks;
 import org.eclipse.jdt.internal.corext.refactoring.JDTRefactoringDescriptorComment;
 import org.eclipse.jdt.internal.corext.refactoring.JavaRefactoringArguments;
@@ -90,7 +91,6 @@ import org.eclipse.jdt.ui.JavaElementLabels;
 
 import org.eclipse.jdt.internal.ui.IJavaStatusConstants;
 import org.eclipse.jdt.internal.ui.JavaPlugin;
-import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
 import org.eclipse.jdt.internal.ui.viewsupport.BasicElementLabels;
 
 public class InferTypeArgumentsRefactoring extends Refactoring {
@@ -106,6 +106,7 @@ public class InferTypeArgumentsRefactoring extends Refactoring {
 
 	private boolean fAssumeCloneReturnsSameType;
 	private boolean fLeaveUnconstrainedRaw;
+	private boolean fUseBitSetSolver= true;
 
 	/**
 	 * Creates a new infer type arguments refactoring.
@@ -145,6 +146,17 @@ public class InferTypeArgumentsRefactoring extends Refactoring {
 		return fLeaveUnconstrainedRaw;
 	}
 
+	/**
+	 * Sets whether the constraints are solved with type estimates represented as bit sets
+	 * (the default) or as symbolic type sets.
+	 *
+	 * @param useBitSets <code>true</code> to solve with bit sets
+	 * @see InferTypeArgumentsConstraintsSolver#InferTypeArgumentsConstraintsSolver(InferTypeArgumentsTCModel, boolean)
+	 */
+	public void setUseBitSetSolver(boolean useBitSets) {
+		fUseBitSetSolver= useBitSets;
+	}
+
 	/*
 	 * @see org.eclipse.ltk.core.refactoring.Refactoring#checkInitialConditions(org.eclipse.core.runtime.IProgressMonitor)
 	 */
@@ -169,61 +181,56 @@ public class InferTypeArgumentsRefactoring extends Refactoring {
 
 			for (Iterator<Entry<IJavaProject, ArrayList<IJavaElement>>> iter= projectsToElements.entrySet().iterator(); iter.hasNext(); ) {
 				Entry<IJavaProject, ArrayList<IJavaElement>> entry= iter.next();
-				IJavaProject project= entry.getKey();
 				ArrayList<IJavaElement> javaElementsList= entry.getValue();
 				IJavaElement[] javaElements= javaElementsList.toArray(new IJavaElement[javaElementsList.size()]);
 				List<ICompilationUnit> cus= Arrays.asList(JavaModelUtil.getAllCompilationUnits(javaElements));
 
-				int batchSize= 150;
-				int batches= ((cus.size()-1) / batchSize) + 1;
-				SubProgressMonitor projectMonitor= new SubProgressMonitor(pm, 1);
-				projectMonitor.beginTask("", batches); //$NON-NLS-1$
+				final SubProgressMonitor projectMonitor= new SubProgressMonitor(pm, 1);
 				projectMonitor.setTaskName(RefactoringCoreMessages.InferTypeArgumentsRefactoring_building);
-				for (int i= 0; i < batches; i++) {
-					List<ICompilationUnit> batch= cus.subList(i * batchSize, Math.min(cus.size(), (i + 1) * batchSize));
-					ICompilationUnit[] batchCus= batch.toArray(new ICompilationUnit[batch.size()]);
-					final SubProgressMonitor batchMonitor= new SubProgressMonitor(projectMonitor, 1);
-					batchMonitor.subTask(RefactoringCoreMessages.InferTypeArgumentsRefactoring_calculating_dependencies);
-
-					ASTParser parser= ASTParser.newParser(ASTProvider.SHARED_AST_LEVEL);
-					parser.setProject(project);
-					parser.setCompilerOptions(RefactoringASTParser.getCompilerOptions(project));
-					parser.setResolveBindings(true);
-					parser.createASTs(batchCus, new String[0], new ASTRequestor() {
-						@Override
-						public void acceptAST(final ICompilationUnit source, final CompilationUnit ast) {
-							batchMonitor.subTask(BasicElementLabels.getFileName(source));
-
-							SafeRunner.run(new ISafeRunnable() {
-								public void run() throws Exception {
-									IProblem[] problems= ast.getProblems();
-									for (int p= 0; p < problems.length; p++) {
-										if (problems[p].isError()) {
-											String cuName= JavaElementLabels.getElementLabel(source, JavaElementLabels.CU_QUALIFIED);
-											String msg= Messages.format(RefactoringCoreMessages.InferTypeArgumentsRefactoring_error_in_cu_skipped, new Object[] {cuName});
-											result.addError(msg, JavaStatusContext.create(source, SourceRangeFactory.create(problems[p])));
-											return;
-										}
+				projectMonitor.subTask(RefactoringCoreMessages.InferTypeArgumentsRefactoring_calculating_dependencies);
+
+				ASTBatchParser parser= new ASTBatchParser() {
+					@Override
+					protected ASTParser createParser(IJavaProject javaProject) {
+						ASTParser parser= super.createParser(javaProject);
+						parser.setCompilerOptions(RefactoringASTParser.getCompilerOptions(javaProject));
+						return parser;
+					}
+				};
+				parser.createASTs(cus.toArray(new ICompilationUnit[cus.size()]), new String[0], new ASTRequestor() {
+					@Override
+					public void acceptAST(final ICompilationUnit source, final CompilationUnit ast) {
+						projectMonitor.subTask(BasicElementLabels.getFileName(source));
+
+						SafeRunner.run(new ISafeRunnable() {
+							public void run() throws Exception {
+								IProblem[] problems= ast.getProblems();
+								for (int p= 0; p < problems.length; p++) {
+									if (problems[p].isError()) {
+										String cuName= JavaElementLabels.getElementLabel(source, JavaElementLabels.CU_QUALIFIED);
+										String msg= Messages.format(RefactoringCoreMessages.InferTypeArgumentsRefactoring_error_in_cu_skipped, new Object[] {cuName});
+										result.addError(msg, JavaStatusContext.create(source, SourceRangeFactory.create(problems[p])));
+										return;
 									}
-									ast.accept(unitCollector);
 								}
-								public void handleException(Throwable exception) {
-									String cuName= JavaElementLabels.getElementLabel(source, JavaElementLabels.CU_QUALIFIED);
-									String msg= Messages.format(RefactoringCoreMessages.InferTypeArgumentsRefactoring_internal_error, new Object[] {cuName});
-									JavaPlugin.log(new Status(IStatus.ERROR, JavaPlugin.getPluginId(), IJavaStatusConstants.INTERNAL_ERROR, msg, null));
-									String msg2= Messages.format(RefactoringCoreMessages.InferTypeArgumentsRefactoring_error_skipped, new Object[] {cuName});
-									result.addError(msg2, JavaStatusContext.create(source));
-								}
-							});
-
-							fTCModel.newCu();
-						}
-						@Override
-						public void acceptBinding(String bindingKey, IBinding binding) {
-							//do nothing
-						}
-					}, batchMonitor);
-				}
+								ast.accept(unitCollector);
+							}
+							public void handleException(Throwable exception) {
+								String cuName= JavaElementLabels.getElementLabel(source, JavaElementLabels.CU_QUALIFIED);
+								String msg= Messages.format(RefactoringCoreMessages.InferTypeArgumentsRefactoring_internal_error, new Object[] {cuName});
+								JavaPlugin.log(new Status(IStatus.ERROR, JavaPlugin.getPluginId(), IJavaStatusConstants.INTERNAL_ERROR, msg, null));
+								String msg2= Messages.format(RefactoringCoreMessages.InferTypeArgumentsRefactoring_error_skipped, new Object[] {cuName});
+								result.addError(msg2, JavaStatusContext.create(source));
+							}
+						});
+
+						fTCModel.newCu();
+					}
+					@Override
+					public void acceptBinding(String bindingKey, IBinding binding) {
+						//do nothing
+					}
+				}, projectMonitor);
 
 				projectMonitor.done();
 				fTCModel.newCu();
@@ -236,7 +243,7 @@ public class InferTypeArgumentsRefactoring extends Refactoring {
 //			});
 
 			pm.setTaskName(RefactoringCoreMessages.InferTypeArgumentsRefactoring_solving);
-			InferTypeArgumentsConstraintsSolver solver= new InferTypeArgumentsConstraintsSolver(fTCModel);
+			InferTypeArgumentsConstraintsSolver solver= new InferTypeArgumentsConstraintsSolver(fTCModel, fUseBitSetSolver);
 			InferTypeArgumentsUpdate updates= solver.solveConstraints(new SubProgressMonitor(pm, 1));
 			solver= null; //free caches
 
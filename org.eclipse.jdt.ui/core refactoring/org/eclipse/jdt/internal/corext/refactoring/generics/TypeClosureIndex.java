@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.refactoring.generics;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.ArrayType;
+import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.TType;
+import org.eclipse.jdt.internal.corext.refactoring.typeconstraints2.TTypes;
+
+/**
+ * Assigns dense integer ids to a finite set of types and precomputes the reflexive
+ * super type and sub type closures of each type, so that type estimates can be
+ * represented as {@link BitSet}s.
+ * <p>
+ * The set of types is the closure of the given seed types under the super type and
+ * sub type relations known to the type environment. The closures are those enumerated
+ * by <code>SuperTypesOfSingleton</code> and <code>SubTypesOfSingleton</code>. Array
+ * types are closed over the element type with the same number of dimensions.
+ * The sub types of <code>java.lang.Object</code> are the universe and are not enumerated.
+ * </p>
+ * <p>
+ * Like {@link TTypes#canAssignTo(TType, TType)}, the closures ignore type arguments: all
+ * generic, raw and parameterized types of one type declaration belong to the same class,
+ * and a type is in a closure iff its class is. The closures are computed over the classes,
+ * and a seed such as <code>ArrayList&lt;String&gt;</code> is a sub type of
+ * <code>Collection&lt;Integer&gt;</code>, as in the symbolic type sets.
+ * </p>
+ * <p>
+ * Closures are stored as rows of sorted class ids rather than as dense bit matrices, whose size
+ * would be quadratic in the number of types.
+ * </p>
+ */
+/*package*/ final class TypeClosureIndex {
+
+	private static final int[] EMPTY_ROW= new int[0];
+
+	private final Map<TType, Integer> fIds= new HashMap<TType, Integer>();
+	private final List<TType> fTypes= new ArrayList<TType>();
+	private final List<Integer> fClassOfList= new ArrayList<Integer>();
+
+	private final Map<TType, Integer> fClassIds= new HashMap<TType, Integer>();
+	private final List<TType> fClasses= new ArrayList<TType>();
+	private final List<BitSet> fMembers= new ArrayList<BitSet>();
+
+	private final int[] fClassOf;
+	private final int fJavaLangObjectClass;
+
+	private final int[][] fSuperClasses;
+	private final int[][] fSubClasses;
+
+	/**
+	 * Creates the index for the closure of the given types.
+	 *
+	 * @param javaLangObject the type <code>java.lang.Object</code>
+	 * @param seeds the types whose super and sub types are indexed
+	 */
+	public TypeClosureIndex(TType javaLangObject, Collection<TType> seeds) {
+		fJavaLangObjectClass= fClassOfList.get(getOrCreateId(javaLangObject)).intValue();
+		for (Iterator<TType> iter= seeds.iterator(); iter.hasNext();)
+			getOrCreateId(iter.next());
+
+		List<int[]> superClasses= new ArrayList<int[]>();
+		List<int[]> subClasses= new ArrayList<int[]>();
+		BitSet row= new BitSet();
+		for (int id= 0; id < fClasses.size(); id++) { // grows while the closures are computed
+			TType type= fClasses.get(id);
+			superClasses.add(toRow(id, enumerateProperSuperTypes(type), row));
+			if (id == fJavaLangObjectClass)
+				subClasses.add(EMPTY_ROW);
+			else
+				subClasses.add(toRow(id, enumerateSubTypes(type), row));
+		}
+		fSuperClasses= superClasses.toArray(new int[superClasses.size()][]);
+		fSubClasses= subClasses.toArray(new int[subClasses.size()][]);
+
+		fClassOf= new int[fClassOfList.size()];
+		for (int i= 0; i < fClassOf.length; i++)
+			fClassOf[i]= fClassOfList.get(i).intValue();
+	}
+
+	private int getOrCreateId(TType type) {
+		Integer id= fIds.get(type);
+		if (id != null)
+			return id.intValue();
+		int result= fTypes.size();
+		fIds.put(type, Integer.valueOf(result));
+		fTypes.add(type);
+		fClassOfList.add(null);
+		int classId= getOrCreateClassId(getClassType(type));
+		fClassOfList.set(result, Integer.valueOf(classId));
+		fMembers.get(classId).set(result);
+		return result;
+	}
+
+	private int getOrCreateClassId(TType classType) {
+		Integer id= fClassIds.get(classType);
+		if (id != null)
+			return id.intValue();
+		int result= fClasses.size();
+		fClassIds.put(classType, Integer.valueOf(result));
+		fClasses.add(classType);
+		fMembers.add(new BitSet());
+		getOrCreateId(classType); // the enumerated types are members of their own class
+		return result;
+	}
+
+	/**
+	 * Returns the type that represents the class of types which
+	 * {@link TTypes#canAssignTo(TType, TType)} does not distinguish.
+	 *
+	 * @param type a type
+	 * @return the type declaration for hierarchy types and arrays of them, the type itself otherwise
+	 */
+	private static TType getClassType(TType type) {
+		if (type.isHierarchyType())
+			return type.getTypeDeclaration();
+		if (type instanceof ArrayType) {
+			ArrayType arrayType= (ArrayType) type;
+			TType elementType= arrayType.getElementType();
+			if (elementType.isHierarchyType() && ! elementType.equals(elementType.getTypeDeclaration()))
+				return TTypes.createArrayType(elementType.getTypeDeclaration(), arrayType.getDimensions());
+		}
+		return type;
+	}
+
+	private int[] toRow(int classId, Iterator<TType> types, BitSet row) {
+		row.clear();
+		row.set(classId);
+		while (types.hasNext())
+			row.set(fClassOfList.get(getOrCreateId(types.next())).intValue());
+		int[] result= new int[row.cardinality()];
+		int i= 0;
+		for (int bit= row.nextSetBit(0); bit >= 0; bit= row.nextSetBit(bit + 1))
+			result[i++]= bit;
+		return result;
+	}
+
+	private static Iterator<TType> enumerateProperSuperTypes(TType type) {
+		if (type instanceof ArrayType) {
+			ArrayType arrayType= (ArrayType) type;
+			List<TType> result= new ArrayList<TType>();
+			result.add(type.getEnvironment().getJavaLangObject());
+			for (Iterator<TType> iter= TTypes.getAllSuperTypesIterator(arrayType.getElementType()); iter.hasNext();)
+				result.add(TTypes.createArrayType(iter.next(), arrayType.getDimensions()));
+			return result.iterator();
+		}
+		return TTypes.getAllSuperTypesIterator(type);
+	}
+
+	private static Iterator<TType> enumerateSubTypes(TType type) {
+		if (type instanceof ArrayType) {
+			ArrayType arrayType= (ArrayType) type;
+			List<TType> result= new ArrayList<TType>();
+			for (Iterator<TType> iter= TTypes.getAllSubTypesIterator(arrayType.getElementType()); iter.hasNext();)
+				result.add(TTypes.createArrayType(iter.next(), arrayType.getDimensions()));
+			return result.iterator();
+		}
+		return TTypes.getAllSubTypesIterator(type);
+	}
+
+	/**
+	 * @return the number of indexed types
+	 */
+	public int size() {
+		return fTypes.size();
+	}
+
+	/**
+	 * @param type an indexed type
+	 * @return the id of the type, or <code>-1</code> if the type is not indexed
+	 */
+	public int getId(TType type) {
+		Integer id= fIds.get(type);
+		return id == null ? -1 : id.intValue();
+	}
+
+	/**
+	 * @param id a type id
+	 * @return the type with the given id
+	 */
+	public TType getType(int id) {
+		return fTypes.get(id);
+	}
+
+	/**
+	 * Computes the super types of the given types.
+	 *
+	 * @param types a set of type ids
+	 * @return a new set holding the given types and all their super types
+	 */
+	public BitSet superTypes(BitSet types) {
+		BitSet classes= new BitSet(fClasses.size());
+		for (int id= types.nextSetBit(0); id >= 0; id= types.nextSetBit(id + 1))
+			setAll(classes, fSuperClasses[fClassOf[id]]);
+		return getMembers(classes);
+	}
+
+	/**
+	 * Computes the sub types of the given types.
+	 *
+	 * @param types a set of type ids
+	 * @return a new set holding the given types and all their sub types, or
+	 *         <code>null</code> for the universe if the types contain <code>java.lang.Object</code>
+	 */
+	public BitSet subTypes(BitSet types) {
+		BitSet classes= new BitSet(fClasses.size());
+		for (int id= types.nextSetBit(0); id >= 0; id= types.nextSetBit(id + 1)) {
+			int classId= fClassOf[id];
+			if (classId == fJavaLangObjectClass)
+				return null;
+			setAll(classes, fSubClasses[classId]);
+		}
+		return getMembers(classes);
+	}
+
+	private BitSet getMembers(BitSet classes) {
+		BitSet result= new BitSet(fTypes.size());
+		for (int classId= classes.nextSetBit(0); classId >= 0; classId= classes.nextSetBit(classId + 1))
+			result.or(fMembers.get(classId));
+		return result;
+	}
+
+	private static void setAll(BitSet set, int[] row) {
+		for (int i= 0; i < row.length; i++)
+			set.set(row[i]);
+	}
+
+	/**
+	 * @param set a set of type ids
+	 * @param subset a set of type ids
+	 * @return <code>true</code> iff all types of <code>subset</code> are in <code>set</code>
+	 */
+	public static boolean containsAll(BitSet set, BitSet subset) {
+		for (int id= subset.nextSetBit(0); id >= 0; id= subset.nextSetBit(id + 1)) {
+			if (! set.get(id))
+				return false;
+		}
+		return true;
+	}
+}
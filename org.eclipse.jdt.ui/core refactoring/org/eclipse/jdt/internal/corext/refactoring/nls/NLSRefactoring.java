@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -62,6 +62,12 @@ public class NLSRefactoring extends Refactoring {
 
 	public static final String DEFAULT_PROPERTY_FILENAME= "messages"; //$NON-NLS-1$
 
+	/**
+	 * Maximum number of problems which are reported with their context. Further
+	 * problems are summarized.
+	 */
+	private static final int MAX_STATUS_ENTRIES= 200;
+
 	//private IPath fPropertyFilePath;
 
 	private String fAccessorClassName;
@@ -177,7 +183,7 @@ public class NLSRefactoring extends Refactoring {
 
 			pm.beginTask(NLSMessages.NLSRefactoring_checking, 5);
 
-			RefactoringStatus result= new RefactoringStatus();
+			RefactoringStatus result= RefactoringStatus.createBoundedStatus(MAX_STATUS_ENTRIES);
 
 			result.merge(checkIfAnythingToDo());
 			if (result.hasFatalError()) {
@@ -354,7 +360,7 @@ public class NLSRefactoring extends Refactoring {
 	}
 
 	private RefactoringStatus checkKeys() {
-		RefactoringStatus result= new RefactoringStatus();
+		RefactoringStatus result= RefactoringStatus.createBoundedStatus(MAX_STATUS_ENTRIES);
 		NLSSubstitution[] subs= fSubstitutions;
 		for (int i= 0; i < subs.length; i++) {
 			NLSSubstitution substitution= subs[i];
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -21,6 +21,7 @@ import java.util.Map.Entry;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.SubProgressMonitor;
 
@@ -64,6 +65,7 @@ import org.eclipse.jdt.internal.corext.refactoring.RefactoringCoreMessages;
 import org.eclipse.jdt.internal.corext.refactoring.SearchResultGroup;
 import org.eclipse.jdt.internal.corext.refactoring.base.JavaStatusContext;
 import org.eclipse.jdt.internal.corext.refactoring.base.JavaStringStatusContext;
+import org.eclipse.jdt.internal.corext.refactoring.util.ParallelTasks;
 import org.eclipse.jdt.internal.corext.refactoring.util.RefactoringASTParser;
 import org.eclipse.jdt.internal.corext.refactoring.util.TextChangeManager;
 import org.eclipse.jdt.internal.corext.util.Messages;
@@ -181,15 +183,49 @@ class RenameAnalyzeUtil {
 		return null;
 	}
 
-	static ICompilationUnit[] createNewWorkingCopies(ICompilationUnit[] compilationUnitsToModify, TextChangeManager manager, WorkingCopyOwner owner, SubProgressMonitor pm) throws CoreException {
-		pm.beginTask("", compilationUnitsToModify.length); //$NON-NLS-1$
+	/**
+	 * Creates working copies that contain the preview contents of the given changes and
+	 * reconciles them. The working copies are reconciled in parallel.
+	 *
+	 * @param compilationUnitsToModify the compilation units
+	 * @param manager the text change manager holding the changes of the compilation units
+	 * @param owner the working copy owner
+	 * @param pm the progress monitor
+	 * @return the new working copies, in the order of <code>compilationUnitsToModify</code>
+	 * @throws CoreException if a working copy could not be created
+	 */
+	static ICompilationUnit[] createNewWorkingCopies(ICompilationUnit[] compilationUnitsToModify, TextChangeManager manager, final WorkingCopyOwner owner, SubProgressMonitor pm) throws CoreException {
+		pm.beginTask("", 2 * compilationUnitsToModify.length); //$NON-NLS-1$
+		final Map<ICompilationUnit, String> previewContents= new HashMap<ICompilationUnit, String>();
 		ICompilationUnit[] newWorkingCopies= new ICompilationUnit[compilationUnitsToModify.length];
-		for (int i= 0; i < compilationUnitsToModify.length; i++) {
-			ICompilationUnit cu= compilationUnitsToModify[i];
-			newWorkingCopies[i]= createNewWorkingCopy(cu, manager, owner, new SubProgressMonitor(pm, 1));
+		boolean success= false;
+		try {
+			// the text changes and working copy handles are shared, so they are only accessed from this thread
+			for (int i= 0; i < compilationUnitsToModify.length; i++) {
+				ICompilationUnit cu= compilationUnitsToModify[i];
+				newWorkingCopies[i]= cu.getWorkingCopy(owner, null);
+				previewContents.put(newWorkingCopies[i], manager.get(cu).getPreviewContent(new NullProgressMonitor()));
+				pm.worked(1);
+			}
+			ParallelTasks.run(newWorkingCopies, new ParallelTasks.Task<ICompilationUnit, Object>() {
+				@Override
+				public Object run(ICompilationUnit newWc, IProgressMonitor monitor) throws CoreException {
+					newWc.getBuffer().setContents(previewContents.get(newWc));
+					newWc.reconcile(ICompilationUnit.NO_AST, false, owner, monitor);
+					return null;
+				}
+			}, new SubProgressMonitor(pm, compilationUnitsToModify.length));
+			success= true;
+			return newWorkingCopies;
+		} finally {
+			if (!success) {
+				for (int i= 0; i < newWorkingCopies.length; i++) {
+					if (newWorkingCopies[i] != null)
+						newWorkingCopies[i].discardWorkingCopy();
+				}
+			}
+			pm.done();
 		}
-		pm.done();
-		return newWorkingCopies;
 	}
 
 	static ICompilationUnit createNewWorkingCopy(ICompilationUnit cu, TextChangeManager manager,
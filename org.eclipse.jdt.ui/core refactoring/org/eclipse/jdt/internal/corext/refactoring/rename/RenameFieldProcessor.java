@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -429,6 +429,7 @@ public class RenameFieldProcessor extends JavaRenameProcessor implements IRefere
 
 	@Override
 	protected RefactoringStatus doCheckFinalConditions(IProgressMonitor pm, CheckConditionsContext context) throws CoreException {
+		RenamePhaseTimer timer= new RenamePhaseTimer(this);
 		try{
 			pm.beginTask("", 18); //$NON-NLS-1$
 			pm.setTaskName(RefactoringCoreMessages.RenameFieldRefactoring_checking);
@@ -445,6 +446,7 @@ public class RenameFieldProcessor extends JavaRenameProcessor implements IRefere
 
 			if (fUpdateReferences){
 				pm.setTaskName(RefactoringCoreMessages.RenameFieldRefactoring_searching);
+				timer.start(RenamePhaseTimer.SEARCH);
 				fReferences= getReferences(new SubProgressMonitor(pm, 3), result);
 				pm.setTaskName(RefactoringCoreMessages.RenameFieldRefactoring_checking);
 			} else {
@@ -452,6 +454,7 @@ public class RenameFieldProcessor extends JavaRenameProcessor implements IRefere
 				pm.worked(3);
 			}
 
+			timer.start(RenamePhaseTimer.ANALYSIS);
 			if (fUpdateReferences)
 				result.merge(analyzeAffectedCompilationUnits());
 			else
@@ -471,12 +474,14 @@ public class RenameFieldProcessor extends JavaRenameProcessor implements IRefere
 				pm.worked(1);
 			}
 
+			timer.start(RenamePhaseTimer.CHANGES);
 			result.merge(createChanges(new SubProgressMonitor(pm, 10)));
 			if (result.hasFatalError())
 				return result;
 
 			return result;
 		} finally{
+			timer.done();
 			pm.done();
 		}
 	}
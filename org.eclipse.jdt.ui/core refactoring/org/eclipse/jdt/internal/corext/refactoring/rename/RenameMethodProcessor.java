@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -307,6 +307,7 @@ public abstract class RenameMethodProcessor extends JavaRenameProcessor implemen
 
 	@Override
 	protected RefactoringStatus doCheckFinalConditions(IProgressMonitor pm, CheckConditionsContext context) throws CoreException {
+		RenamePhaseTimer timer= new RenamePhaseTimer(this);
 		try{
 			RefactoringStatus result= new RefactoringStatus();
 			pm.beginTask("", 9); //$NON-NLS-1$
@@ -323,6 +324,7 @@ public abstract class RenameMethodProcessor extends JavaRenameProcessor implemen
 			if (result.hasFatalError())
 				return result;
 
+			timer.start(RenamePhaseTimer.SEARCH);
 			boolean mustAnalyzeShadowing;
 			IMethod[] newNameMethods= searchForDeclarationsOfClashingMethods(new SubProgressMonitor(pm, 1));
 			if (newNameMethods.length == 0) {
@@ -374,6 +376,7 @@ public abstract class RenameMethodProcessor extends JavaRenameProcessor implemen
 
 			pm.setTaskName(RefactoringCoreMessages.RenameMethodRefactoring_taskName_checkingPreconditions);
 
+			timer.start(RenamePhaseTimer.ANALYSIS);
 			if (fUpdateReferences)
 				result.merge(checkRelatedMethods());
 
@@ -383,6 +386,7 @@ public abstract class RenameMethodProcessor extends JavaRenameProcessor implemen
 			if (result.hasFatalError())
 				return result;
 
+			timer.start(RenamePhaseTimer.CHANGES);
 			createChanges(new SubProgressMonitor(pm, 1), result);
 			if (fUpdateReferences & mustAnalyzeShadowing)
 				result.merge(analyzeRenameChanges(new SubProgressMonitor(pm, 1)));
@@ -391,6 +395,7 @@ public abstract class RenameMethodProcessor extends JavaRenameProcessor implemen
 
 			return result;
 		} finally{
+			timer.done();
 			pm.done();
 		}
 	}
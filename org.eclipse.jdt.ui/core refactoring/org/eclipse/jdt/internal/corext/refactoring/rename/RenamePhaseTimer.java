@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.refactoring.rename;
+
+import org.eclipse.core.runtime.Platform;
+
+/**
+ * Measures the time spent in the phases of the final condition checking of a rename
+ * refactoring. The timings are only collected and printed if the
+ * <code>org.eclipse.jdt.ui/debug/RenameRefactoring</code> debug option is set.
+ *
+ * @since 3.10
+ */
+final class RenamePhaseTimer {
+
+	private static final boolean DEBUG= "true".equalsIgnoreCase(Platform.getDebugOption("org.eclipse.jdt.ui/debug/RenameRefactoring")); //$NON-NLS-1$//$NON-NLS-2$
+
+	static final String SEARCH= "search"; //$NON-NLS-1$
+	static final String ANALYSIS= "analysis"; //$NON-NLS-1$
+	static final String CHANGES= "changes"; //$NON-NLS-1$
+
+	private final String fName;
+	private StringBuffer fTimings;
+	private String fPhase;
+	private long fPhaseStart;
+
+	/**
+	 * @param processor the processor whose phases are measured
+	 */
+	RenamePhaseTimer(Object processor) {
+		fName= processor.getClass().getName();
+	}
+
+	/**
+	 * Ends the current phase, if any, and starts a new one.
+	 *
+	 * @param phase the name of the phase
+	 */
+	void start(String phase) {
+		if (!DEBUG)
+			return;
+		end();
+		fPhase= phase;
+		fPhaseStart= System.currentTimeMillis();
+	}
+
+	/**
+	 * Ends the current phase and prints the timings of all phases.
+	 */
+	void done() {
+		if (!DEBUG)
+			return;
+		end();
+		if (fTimings != null)
+			System.out.println("RenameRefactoring: " + fName + fTimings); //$NON-NLS-1$
+		fTimings= null;
+	}
+
+	private void end() {
+		if (fPhase == null)
+			return;
+		if (fTimings == null)
+			fTimings= new StringBuffer();
+		fTimings.append(' ').append(fPhase).append('=').append(System.currentTimeMillis() - fPhaseStart).append("ms"); //$NON-NLS-1$
+		fPhase= null;
+	}
+}
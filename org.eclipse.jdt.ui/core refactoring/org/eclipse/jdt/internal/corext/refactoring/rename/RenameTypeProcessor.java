@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2012 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -107,6 +107,7 @@ import org.eclipse.jdt.internal.corext.refactoring.tagging.ISimilarDeclarationUp
 import org.eclipse.jdt.internal.corext.refactoring.tagging.ITextUpdating;
 import org.eclipse.jdt.internal.corext.refactoring.util.Changes;
 import org.eclipse.jdt.internal.corext.refactoring.util.JavaElementUtil;
+import org.eclipse.jdt.internal.corext.refactoring.util.ParallelTasks;
 import org.eclipse.jdt.internal.corext.refactoring.util.QualifiedNameFinder;
 import org.eclipse.jdt.internal.corext.refactoring.util.QualifiedNameSearchResult;
 import org.eclipse.jdt.internal.corext.refactoring.util.RefactoringASTParser;
@@ -468,6 +469,7 @@ public class RenameTypeProcessor extends JavaRenameProcessor implements ITextUpd
 		int createChangeTicks = 5;
 		int qualifiedNamesTicks= fUpdateQualifiedNames ? 50 : 0;
 
+		RenamePhaseTimer timer= new RenamePhaseTimer(this);
 		try{
 			pm.beginTask("", 12 + referenceSearchTicks + affectedCusTicks + similarElementTicks + createChangeTicks + qualifiedNamesTicks); //$NON-NLS-1$
 			pm.setTaskName(RefactoringCoreMessages.RenameTypeRefactoring_checking);
@@ -531,6 +533,7 @@ public class RenameTypeProcessor extends JavaRenameProcessor implements ITextUpd
 			// Load references, including similarly named elements
 			if (fUpdateReferences || fUpdateSimilarElements) {
 				pm.setTaskName(RefactoringCoreMessages.RenameTypeRefactoring_searching);
+				timer.start(RenamePhaseTimer.SEARCH);
 				result.merge(initializeReferences(new SubProgressMonitor(pm, referenceSearchTicks)));
 			} else {
 				fReferences= new SearchResultGroup[0];
@@ -540,6 +543,7 @@ public class RenameTypeProcessor extends JavaRenameProcessor implements ITextUpd
 			if (pm.isCanceled())
 				throw new OperationCanceledException();
 
+			timer.start(RenamePhaseTimer.ANALYSIS);
 			if (fUpdateReferences || fUpdateSimilarElements) {
 				result.merge(analyzeAffectedCompilationUnits(new SubProgressMonitor(pm, affectedCusTicks)));
 			} else {
@@ -556,6 +560,7 @@ public class RenameTypeProcessor extends JavaRenameProcessor implements ITextUpd
 					return result;
 			}
 
+			timer.start(RenamePhaseTimer.CHANGES);
 			createChanges(new SubProgressMonitor(pm, createChangeTicks));
 
 			if (fUpdateQualifiedNames)
@@ -563,6 +568,7 @@ public class RenameTypeProcessor extends JavaRenameProcessor implements ITextUpd
 
 			return result;
 		} finally {
+			timer.done();
 			pm.done();
 		}
 	}
@@ -960,59 +966,112 @@ public class RenameTypeProcessor extends JavaRenameProcessor implements ITextUpd
 	 */
 	private RefactoringStatus analyzeAffectedCompilationUnits(IProgressMonitor pm) throws CoreException {
 		RefactoringStatus result= new RefactoringStatus();
+		pm.beginTask("", 2); //$NON-NLS-1$
+		try {
+			result.merge(checkCompileErrorsInAffectedFiles(new SubProgressMonitor(pm, 1)));
+			result.merge(checkConflictingTypes(new SubProgressMonitor(pm, 1)));
+			return result;
+		} finally {
+			pm.done();
+		}
+	}
 
-		result.merge(Checks.checkCompileErrorsInAffectedFiles(fReferences, fType.getResource()));
+	/*
+	 * Reads the problem markers of the affected files in parallel. The warnings are added in the
+	 * order of the references, followed by the declaring file if it has no references.
+	 */
+	private RefactoringStatus checkCompileErrorsInAffectedFiles(IProgressMonitor pm) throws CoreException {
+		List<IResource> resources= new ArrayList<IResource>(fReferences.length + 1);
+		IResource declaring= fType.getResource();
+		for (int i= 0; i < fReferences.length; i++) {
+			IResource resource= fReferences[i].getResource();
+			if (resource.equals(declaring))
+				declaring= null;
+			resources.add(resource);
+		}
+		if (declaring != null)
+			resources.add(declaring);
 
-		pm.beginTask("", fReferences.length); //$NON-NLS-1$
-		result.merge(checkConflictingTypes(pm));
+		List<RefactoringStatus> statuses= ParallelTasks.run(resources.toArray(new IResource[resources.size()]), new ParallelTasks.Task<IResource, RefactoringStatus>() {
+			@Override
+			public RefactoringStatus run(IResource resource, IProgressMonitor monitor) throws CoreException {
+				RefactoringStatus status= new RefactoringStatus();
+				Checks.checkCompileErrorsInAffectedFile(status, resource);
+				return status;
+			}
+		}, pm);
+
+		RefactoringStatus result= new RefactoringStatus();
+		for (Iterator<RefactoringStatus> iter= statuses.iterator(); iter.hasNext();) {
+			result.merge(iter.next());
+		}
 		return result;
 	}
 
 	private RefactoringStatus checkConflictingTypes(IProgressMonitor pm) throws CoreException {
 		RefactoringStatus result= new RefactoringStatus();
-		IJavaSearchScope scope= RefactoringScopeFactory.create(fType);
-		SearchPattern pattern= SearchPattern.createPattern(getNewElementName(),
-				IJavaSearchConstants.TYPE, IJavaSearchConstants.ALL_OCCURRENCES, SearchUtils.GENERICS_AGNOSTIC_MATCH_RULE);
-		ICompilationUnit[] cusWithReferencesToConflictingTypes= RefactoringSearchEngine.findAffectedCompilationUnits(pattern, scope, pm, result);
-		if (cusWithReferencesToConflictingTypes.length == 0)
-			return result;
-		ICompilationUnit[] 	cusWithReferencesToRenamedType= getCus(fReferences);
-
-		Set<ICompilationUnit> conflicts= getIntersection(cusWithReferencesToRenamedType, cusWithReferencesToConflictingTypes);
-		if (cusWithReferencesToConflictingTypes.length > 0) {
-			cus: for (ICompilationUnit cu : cusWithReferencesToConflictingTypes) {
-				String packageName= fType.getPackageFragment().getElementName();
-				if (((IPackageFragment) cu.getParent()).getElementName().equals(packageName)) {
-					boolean hasOnDemandImport= false;
-					IImportDeclaration[] imports= cu.getImports();
-					for (IImportDeclaration importDecl : imports) {
-						if (importDecl.isOnDemand()) {
-							hasOnDemandImport= true;
-						} else {
-							String importName= importDecl.getElementName();
-							int packageLength= importName.length() - getNewElementName().length() - 1;
-							if (packageLength > 0
-									&& importName.endsWith(getNewElementName())
-									&& importName.charAt(packageLength) == '.') {
-								continue cus; // explicit import from another package => no problem
-							}
-						}
-					}
-					if (hasOnDemandImport) {
-						// the renamed type in the same package will shadow the *-imported type
-						conflicts.add(cu);
-					}
+		pm.beginTask("", 2); //$NON-NLS-1$
+		try {
+			IJavaSearchScope scope= RefactoringScopeFactory.create(fType);
+			SearchPattern pattern= SearchPattern.createPattern(getNewElementName(),
+					IJavaSearchConstants.TYPE, IJavaSearchConstants.ALL_OCCURRENCES, SearchUtils.GENERICS_AGNOSTIC_MATCH_RULE);
+			ICompilationUnit[] cusWithReferencesToConflictingTypes= RefactoringSearchEngine.findAffectedCompilationUnits(pattern, scope, new SubProgressMonitor(pm, 1), result);
+			if (cusWithReferencesToConflictingTypes.length == 0)
+				return result;
+			ICompilationUnit[] 	cusWithReferencesToRenamedType= getCus(fReferences);
+
+			Set<ICompilationUnit> conflicts= getIntersection(cusWithReferencesToRenamedType, cusWithReferencesToConflictingTypes);
+
+			// reading the imports opens the compilation units, so this is done in parallel
+			List<Boolean> shadowed= ParallelTasks.run(cusWithReferencesToConflictingTypes, new ParallelTasks.Task<ICompilationUnit, Boolean>() {
+				@Override
+				public Boolean run(ICompilationUnit cu, IProgressMonitor monitor) throws CoreException {
+					return Boolean.valueOf(isShadowedByRenamedType(cu));
 				}
+			}, new SubProgressMonitor(pm, 1));
+			for (int i= 0; i < cusWithReferencesToConflictingTypes.length; i++) {
+				if (shadowed.get(i).booleanValue())
+					conflicts.add(cusWithReferencesToConflictingTypes[i]);
+			}
+
+			for (ICompilationUnit conflict : conflicts) {
+				RefactoringStatusContext context= JavaStatusContext.create(conflict);
+				String message= Messages.format(RefactoringCoreMessages.RenameTypeRefactoring_another_type,
+					new String[] { getNewElementLabel(), BasicElementLabels.getFileName(conflict)});
+				result.addError(message, context);
 			}
+			return result;
+		} finally {
+			pm.done();
 		}
-		
-		for (ICompilationUnit conflict : conflicts) {
-			RefactoringStatusContext context= JavaStatusContext.create(conflict);
-			String message= Messages.format(RefactoringCoreMessages.RenameTypeRefactoring_another_type,
-				new String[] { getNewElementLabel(), BasicElementLabels.getFileName(conflict)});
-			result.addError(message, context);
+	}
+
+	/*
+	 * Returns whether a compilation unit in the package of the renamed type *-imports another
+	 * type with the new name, which the renamed type would shadow.
+	 */
+	private boolean isShadowedByRenamedType(ICompilationUnit cu) throws JavaModelException {
+		String packageName= fType.getPackageFragment().getElementName();
+		if (!((IPackageFragment) cu.getParent()).getElementName().equals(packageName))
+			return false;
+
+		boolean hasOnDemandImport= false;
+		IImportDeclaration[] imports= cu.getImports();
+		for (IImportDeclaration importDecl : imports) {
+			if (importDecl.isOnDemand()) {
+				hasOnDemandImport= true;
+			} else {
+				String importName= importDecl.getElementName();
+				int packageLength= importName.length() - getNewElementName().length() - 1;
+				if (packageLength > 0
+						&& importName.endsWith(getNewElementName())
+						&& importName.charAt(packageLength) == '.') {
+					return false; // explicit import from another package => no problem
+				}
+			}
 		}
-		return result;
+		// the renamed type in the same package will shadow the *-imported type
+		return hasOnDemandImport;
 	}
 
 	private static Set<ICompilationUnit> getIntersection(ICompilationUnit[] a1, ICompilationUnit[] a2){
@@ -1183,6 +1242,10 @@ public class RenameTypeProcessor extends JavaRenameProcessor implements ITextUpd
 		}
 	}
 
+	/*
+	 * Creates the edits of each compilation unit in parallel. The text change manager is not
+	 * thread safe, so the edits are added on the calling thread in the order of the references.
+	 */
 	private void addReferenceUpdates(TextChangeManager manager, IProgressMonitor pm) {
 		pm.beginTask("", fReferences.length); //$NON-NLS-1$
 		for (int i= 0; i < fReferences.length; i++){
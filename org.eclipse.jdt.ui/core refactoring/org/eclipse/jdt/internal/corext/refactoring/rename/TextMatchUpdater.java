@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.runtime.Assert;
@@ -47,6 +48,7 @@ import org.eclipse.jdt.internal.corext.refactoring.SearchResultGroup;
 import org.eclipse.jdt.internal.corext.refactoring.changes.TextChangeCompatibility;
 import org.eclipse.jdt.internal.corext.refactoring.rename.RefactoringScanner.TextMatch;
 import org.eclipse.jdt.internal.corext.refactoring.tagging.ITextUpdating;
+import org.eclipse.jdt.internal.corext.refactoring.util.ParallelTasks;
 import org.eclipse.jdt.internal.corext.refactoring.util.TextChangeManager;
 
 class TextMatchUpdater {
@@ -63,7 +65,8 @@ class TextMatchUpdater {
 	private final SearchResultGroup[] fReferences;
 	private final boolean fOnlyQualified;
 
-	private final RefactoringScanner fScanner;
+	private final String fCurrentName;
+	private final String fCurrentQualifier;
 	private final String fNewName;
 	private final int fCurrentNameLength;
 
@@ -77,8 +80,9 @@ class TextMatchUpdater {
 		fOnlyQualified= onlyQualified;
 
 		fNewName= newName;
+		fCurrentName= currentName;
+		fCurrentQualifier= currentQualifier;
 		fCurrentNameLength= currentName.length();
-		fScanner= new RefactoringScanner(currentName, currentQualifier);
 	}
 
 	static void perform(IProgressMonitor pm, IJavaSearchScope scope, String currentName, String currentQualifier, String newName, TextChangeManager manager, SearchResultGroup[] references, boolean onlyQualified) throws JavaModelException{
@@ -93,13 +97,15 @@ class TextMatchUpdater {
 		try{
 			IProject[] projectsInScope= getProjectsInScope();
 
-			pm.beginTask("", projectsInScope.length); //$NON-NLS-1$
+			pm.beginTask("", 2 * projectsInScope.length); //$NON-NLS-1$
 
+			List<ICompilationUnit> cus= new ArrayList<ICompilationUnit>();
 			for (int i =0 ; i < projectsInScope.length; i++){
 				if (pm.isCanceled())
 					throw new OperationCanceledException();
-				addTextMatches(projectsInScope[i], new SubProgressMonitor(pm, 1));
+				collectCompilationUnits(projectsInScope[i], cus, new SubProgressMonitor(pm, 1));
 			}
+			addTextMatches(cus.toArray(new ICompilationUnit[cus.size()]), new SubProgressMonitor(pm, projectsInScope.length));
 		} finally{
 			pm.done();
 		}
@@ -120,19 +126,14 @@ class TextMatchUpdater {
 		return projectsInScope.toArray(new IProject[projectsInScope.size()]);
 	}
 
-	private void addTextMatches(IResource resource, IProgressMonitor pm) throws JavaModelException{
+	private void collectCompilationUnits(IResource resource, List<ICompilationUnit> cus, IProgressMonitor pm) throws JavaModelException{
 		try{
 			String task= RefactoringCoreMessages.TextMatchUpdater_searching + resource.getFullPath();
 			if (resource instanceof IFile){
 				IJavaElement element= JavaCore.create(resource);
 				// don't start pm task (flickering label updates; finally {pm.done()} is enough)
-				if (!(element instanceof ICompilationUnit))
-					return;
-				if (! element.exists())
-					return;
-				if (! fScope.encloses(element))
-					return;
-				addCuTextMatches((ICompilationUnit) element);
+				if (element instanceof ICompilationUnit)
+					cus.add((ICompilationUnit) element);
 
 			} else if (resource instanceof IContainer){
 				IResource[] members= ((IContainer) resource).members();
@@ -142,7 +143,7 @@ class TextMatchUpdater {
 					if (pm.isCanceled())
 						throw new OperationCanceledException();
 
-					addTextMatches(members[i], new SubProgressMonitor(pm, 1));
+					collectCompilationUnits(members[i], cus, new SubProgressMonitor(pm, 1));
 				}
 			}
 		} catch (JavaModelException e){
@@ -154,12 +155,42 @@ class TextMatchUpdater {
 		}
 	}
 
-	private void addCuTextMatches(ICompilationUnit cu) throws JavaModelException{
-		fScanner.scan(cu);
-		Set<TextMatch> matches= fScanner.getMatches(); //Set of TextMatch
-		if (matches.size() == 0)
-			return;
+	/**
+	 * Scans the compilation units in parallel, each with its own scanner. The text edits are
+	 * added on the calling thread in the order of the compilation units.
+	 *
+	 * @param cus the compilation units to scan
+	 * @param pm the progress monitor
+	 * @throws JavaModelException if a compilation unit could not be read
+	 */
+	private void addTextMatches(ICompilationUnit[] cus, IProgressMonitor pm) throws JavaModelException{
+		List<Set<TextMatch>> allMatches;
+		try {
+			allMatches= ParallelTasks.run(cus, new ParallelTasks.Task<ICompilationUnit, Set<TextMatch>>() {
+				@Override
+				public Set<TextMatch> run(ICompilationUnit cu, IProgressMonitor monitor) throws CoreException {
+					if (! cu.exists())
+						return null;
+					if (! fScope.encloses(cu))
+						return null;
+					RefactoringScanner scanner= new RefactoringScanner(fCurrentName, fCurrentQualifier);
+					scanner.scan(cu);
+					return scanner.getMatches();
+				}
+			}, pm);
+		} catch (JavaModelException e){
+			throw e;
+		} catch (CoreException e){
+			throw new JavaModelException(e);
+		}
+		for (int i= 0; i < cus.length; i++) {
+			Set<TextMatch> matches= allMatches.get(i);
+			if (matches != null && matches.size() != 0)
+				addCuTextMatches(cus[i], matches);
+		}
+	}
 
+	private void addCuTextMatches(ICompilationUnit cu, Set<TextMatch> matches) {
 		removeReferences(cu, matches);
 		if (matches.size() != 0)
 			addTextUpdates(cu, matches);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2012 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -89,6 +89,7 @@ import org.eclipse.jdt.core.search.SearchPattern;
 import org.eclipse.jdt.internal.corext.codemanipulation.CodeGenerationSettings;
 import org.eclipse.jdt.internal.corext.codemanipulation.ContextSensitiveImportRewriteContext;
 import org.eclipse.jdt.internal.corext.codemanipulation.StubUtility;
+import org.eclipse.jdt.internal.corext.dom.ASTBatchParser;
 import org.eclipse.jdt.internal.corext.dom.ASTNodes;
 import org.eclipse.jdt.internal.corext.refactoring.JDTRefactoringDescriptorComment;
 import org.eclipse.jdt.internal.corext.refactoring.RefactoringCoreMessages;
@@ -131,9 +132,6 @@ public abstract class SuperTypeRefactoringProcessor extends RefactoringProcessor
 	protected static final GroupCategorySet SET_SUPER_TYPE= new GroupCategorySet(new GroupCategory("org.eclipse.jdt.internal.corext.superType", //$NON-NLS-1$
 			RefactoringCoreMessages.SuperTypeRefactoringProcessor_category_name, RefactoringCoreMessages.SuperTypeRefactoringProcessor_category_description));
 
-	/** Number of compilation units to parse at once */
-	private static final int SIZE_BATCH= 500;
-
 	/**
 	 * Returns a new ast node corresponding to the given type.
 	 * 
@@ -1139,7 +1137,6 @@ public abstract class SuperTypeRefactoringProcessor extends RefactoringProcessor
 			IJavaProject project= null;
 			Collection<SearchResultGroup> collection= null;
 			try {
-				final ASTParser parser= ASTParser.newParser(ASTProvider.SHARED_AST_LEVEL);
 				Object element= null;
 				ICompilationUnit current= null;
 				SearchResultGroup group= null;
@@ -1192,45 +1189,37 @@ public abstract class SuperTypeRefactoringProcessor extends RefactoringProcessor
 									}
 								}
 							}
-							final List<ICompilationUnit> batches= new ArrayList<ICompilationUnit>(units);
-							final int size= batches.size();
-							final int iterations= (size - 1) / SIZE_BATCH + 1;
 							final IProgressMonitor subsubMonitor= new SubProgressMonitor(subMonitor, 100);
 							try {
-								subsubMonitor.beginTask("", iterations * 100); //$NON-NLS-1$
+								subsubMonitor.beginTask("", units.size() * 100); //$NON-NLS-1$
 								subsubMonitor.setTaskName(RefactoringCoreMessages.SuperTypeRefactoringProcessor_creating);
 								final Map<String, String> options= RefactoringASTParser.getCompilerOptions(project);
-								for (int index= 0; index < iterations; index++) {
-									final List<ICompilationUnit> iteration= batches.subList(index * SIZE_BATCH, Math.min(size, (index + 1) * SIZE_BATCH));
-									parser.setWorkingCopyOwner(fOwner);
-									parser.setResolveBindings(true);
-									parser.setProject(project);
-									parser.setCompilerOptions(options);
-									final IProgressMonitor subsubsubMonitor= new SubProgressMonitor(subsubMonitor, 100);
-									try {
-										final int count= iteration.size();
-										subsubsubMonitor.beginTask("", count * 100); //$NON-NLS-1$
-										subsubsubMonitor.setTaskName(RefactoringCoreMessages.SuperTypeRefactoringProcessor_creating);
-										parser.createASTs(iteration.toArray(new ICompilationUnit[count]), new String[0], new ASTRequestor() {
+								final ASTBatchParser batchParser= new ASTBatchParser() {
 
-											@Override
-											public final void acceptAST(final ICompilationUnit unit, final CompilationUnit node) {
-												if (!processed.contains(unit)) {
-													performFirstPass(creator, secondPass, groups, unit, node, new SubProgressMonitor(subsubsubMonitor, 100));
-													processed.add(unit);
-												} else
-													subsubsubMonitor.worked(100);
-											}
+									@Override
+									protected final ASTParser createParser(final IJavaProject javaProject) {
+										final ASTParser result= super.createParser(javaProject);
+										result.setWorkingCopyOwner(fOwner);
+										result.setCompilerOptions(options);
+										return result;
+									}
+								};
+								batchParser.createASTs(units.toArray(new ICompilationUnit[units.size()]), new String[0], new ASTRequestor() {
 
-											@Override
-											public final void acceptBinding(final String key, final IBinding binding) {
-												// Do nothing
-											}
-										}, new NullProgressMonitor());
-									} finally {
-										subsubsubMonitor.done();
+									@Override
+									public final void acceptAST(final ICompilationUnit unit, final CompilationUnit node) {
+										if (!processed.contains(unit)) {
+											performFirstPass(creator, secondPass, groups, unit, node, new SubProgressMonitor(subsubMonitor, 100));
+											processed.add(unit);
+										} else
+											subsubMonitor.worked(100);
 									}
-								}
+
+									@Override
+									public final void acceptBinding(final String key, final IBinding binding) {
+										// Do nothing
+									}
+								}, new NullProgressMonitor());
 							} finally {
 								subsubMonitor.done();
 							}
@@ -1254,15 +1243,22 @@ public abstract class SuperTypeRefactoringProcessor extends RefactoringProcessor
 						Collection<ICompilationUnit> cuCollection= null;
 						cuCollection= secondPass.get(project);
 						if (cuCollection != null) {
-							parser.setWorkingCopyOwner(fOwner);
-							parser.setResolveBindings(true);
-							parser.setProject(project);
-							parser.setCompilerOptions(RefactoringASTParser.getCompilerOptions(project));
 							final IProgressMonitor subsubMonitor= new SubProgressMonitor(subMonitor, 100);
 							try {
 								subsubMonitor.beginTask("", cuCollection.size() * 100); //$NON-NLS-1$
 								subsubMonitor.setTaskName(RefactoringCoreMessages.SuperTypeRefactoringProcessor_creating);
-								parser.createASTs(cuCollection.toArray(new ICompilationUnit[cuCollection.size()]), new String[0], new ASTRequestor() {
+								final Map<String, String> options= RefactoringASTParser.getCompilerOptions(project);
+								final ASTBatchParser batchParser= new ASTBatchParser() {
+
+									@Override
+									protected final ASTParser createParser(final IJavaProject javaProject) {
+										final ASTParser result= super.createParser(javaProject);
+										result.setWorkingCopyOwner(fOwner);
+										result.setCompilerOptions(options);
+										return result;
+									}
+								};
+								batchParser.createASTs(cuCollection.toArray(new ICompilationUnit[cuCollection.size()]), new String[0], new ASTRequestor() {
 
 									@Override
 									public final void acceptAST(final ICompilationUnit unit, final CompilationUnit node) {
@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.refactoring.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubProgressMonitor;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+/**
+ * Runs a task on each element of an array, using one worker thread per processor. Used by
+ * refactorings and clean ups that process independent compilation units or groups of them.
+ * <p>
+ * The task must not modify state that is shared between elements. Results are returned in the
+ * order of the elements, so callers can merge them into shared structures (e.g. a
+ * {@link TextChangeManager}) deterministically on the calling thread. Progress is reported by
+ * the calling thread, the workers only see cancellation.
+ * </p>
+ *
+ * @since 3.10
+ */
+public final class ParallelTasks {
+
+	/**
+	 * A task that is run on a single element.
+	 *
+	 * @param <E> the type of the elements
+	 * @param <R> the type of the results
+	 */
+	public static abstract class Task<E, R> {
+
+		/**
+		 * Runs the task on an element. Can be called from any thread.
+		 *
+		 * @param element the element
+		 * @param monitor the progress monitor, only to be used for cancellation and for
+		 *            passing on to Java model operations
+		 * @return the result for this element, can be <code>null</code>
+		 * @throws CoreException if the task failed
+		 */
+		public abstract R run(E element, IProgressMonitor monitor) throws CoreException;
+
+		/**
+		 * Returns the amount of work that is reported when the task has completed for an
+		 * element. The default is 1.
+		 *
+		 * @param element the element
+		 * @return the amount of work
+		 */
+		public int getWork(E element) {
+			return 1;
+		}
+
+		/**
+		 * Called on the calling thread when the task has completed for an element, in the order
+		 * of completion. Does nothing by default.
+		 *
+		 * @param element the element
+		 * @param result the result for the element
+		 */
+		public void completed(E element, R result) {
+		}
+	}
+
+	/**
+	 * Progress monitor used by the workers. Progress is reported by the calling thread only,
+	 * the workers just forward cancellation.
+	 */
+	private static class CancelForwardingMonitor extends NullProgressMonitor {
+
+		private final IProgressMonitor fParent;
+
+		public CancelForwardingMonitor(IProgressMonitor parent) {
+			fParent= parent;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isCanceled() {
+			return super.isCanceled() || fParent.isCanceled();
+		}
+	}
+
+	/**
+	 * Time in ms the calling thread waits for a task to complete before it checks for
+	 * cancellation again.
+	 */
+	private static final long POLL_INTERVAL= 100;
+
+	private static volatile int fgThreadLimit= 0;
+
+	private ParallelTasks() {
+	}
+
+	/**
+	 * Limits the number of worker threads. Intended for tests that compare the parallel
+	 * results with the results of the calling thread.
+	 *
+	 * @param limit the maximum number of worker threads, 1 to run all tasks on the calling
+	 *            thread, or 0 to use one thread per processor
+	 * @return the previous limit
+	 */
+	public static int setThreadLimit(int limit) {
+		int previous= fgThreadLimit;
+		fgThreadLimit= limit;
+		return previous;
+	}
+
+	/**
+	 * Runs a task on each of the given elements. The task is run sequentially on the calling
+	 * thread if there is only one element or one processor.
+	 *
+	 * @param elements the elements
+	 * @param task the task to run
+	 * @param pm the progress monitor, the work of each element is reported when its task has
+	 *            completed
+	 * @return the results, in the order of <code>elements</code>
+	 * @throws CoreException if the task failed for one of the elements. The remaining tasks
+	 *             are canceled, and this method returns only after all workers have stopped.
+	 * @throws OperationCanceledException if the progress monitor has been canceled
+	 */
+	public static <E, R> List<R> run(E[] elements, Task<E, R> task, IProgressMonitor pm) throws CoreException {
+		int work= 0;
+		for (int i= 0; i < elements.length; i++) {
+			work+= task.getWork(elements[i]);
+		}
+		pm.beginTask("", work); //$NON-NLS-1$
+		try {
+			int threads= fgThreadLimit > 0 ? fgThreadLimit : Runtime.getRuntime().availableProcessors();
+			threads= Math.min(threads, elements.length);
+			if (threads <= 1)
+				return runSequentially(elements, task, pm);
+			return runParallel(elements, task, threads, pm);
+		} finally {
+			pm.done();
+		}
+	}
+
+	private static <E, R> List<R> runSequentially(E[] elements, Task<E, R> task, IProgressMonitor pm) throws CoreException {
+		List<R> results= new ArrayList<R>(elements.length);
+		for (int i= 0; i < elements.length; i++) {
+			if (pm.isCanceled())
+				throw new OperationCanceledException();
+			R result= task.run(elements[i], new SubProgressMonitor(pm, task.getWork(elements[i])));
+			task.completed(elements[i], result);
+			results.add(result);
+		}
+		return results;
+	}
+
+	private static <E, R> List<R> runParallel(E[] elements, final Task<E, R> task, int threads, IProgressMonitor pm) throws CoreException {
+		ExecutorService executor= Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread= new Thread(runnable, "Refactoring Worker"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		final IProgressMonitor workerMonitor= new CancelForwardingMonitor(pm);
+		try {
+			final List<R> results= new ArrayList<R>(Collections.<R>nCopies(elements.length, null));
+			CompletionService<Integer> completionService= new ExecutorCompletionService<Integer>(executor);
+			for (int i= 0; i < elements.length; i++) {
+				final Integer index= new Integer(i);
+				final E element= elements[i];
+				completionService.submit(new Callable<Integer>() {
+					public Integer call() throws Exception {
+						if (workerMonitor.isCanceled())
+							throw new OperationCanceledException();
+						results.set(index.intValue(), task.run(element, workerMonitor));
+						return index;
+					}
+				});
+			}
+
+			int remaining= elements.length;
+			while (remaining > 0) {
+				if (pm.isCanceled()) {
+					workerMonitor.setCanceled(true);
+					throw new OperationCanceledException();
+				}
+
+				Future<Integer> future;
+				try {
+					future= completionService.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					workerMonitor.setCanceled(true);
+					throw new OperationCanceledException();
+				}
+				if (future == null)
+					continue;
+
+				int index= getIndex(future, workerMonitor);
+				remaining--;
+				// the result stored by the worker is visible once its future is done
+				task.completed(elements[index], results.get(index));
+				pm.worked(task.getWork(elements[index]));
+			}
+			return results;
+		} finally {
+			// the remaining tasks must not touch elements the caller discards after a failure
+			workerMonitor.setCanceled(true);
+			executor.shutdownNow();
+			awaitTermination(executor);
+		}
+	}
+
+	private static void awaitTermination(ExecutorService executor) {
+		boolean interrupted= false;
+		try {
+			while (true) {
+				try {
+					if (executor.awaitTermination(POLL_INTERVAL, TimeUnit.MILLISECONDS))
+						return;
+				} catch (InterruptedException e) {
+					interrupted= true;
+				}
+			}
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	private static int getIndex(Future<Integer> future, IProgressMonitor workerMonitor) throws CoreException {
+		try {
+			return future.get().intValue();
+		} catch (InterruptedException e) {
+			workerMonitor.setCanceled(true);
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			workerMonitor.setCanceled(true);
+			Throwable cause= e.getCause();
+			if (cause instanceof CoreException)
+				throw (CoreException)cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if (cause instanceof Error)
+				throw (Error)cause;
+			throw new CoreException(new Status(IStatus.ERROR, JavaPlugin.getPluginId(), cause.getMessage(), cause));
+		}
+	}
+}
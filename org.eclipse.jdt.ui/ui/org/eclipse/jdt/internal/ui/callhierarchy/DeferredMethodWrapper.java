@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,8 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.ui.callhierarchy;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.eclipse.swt.widgets.Display;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -25,17 +27,36 @@ import org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper;
 import org.eclipse.jdt.internal.ui.JavaPlugin;
 
 public class DeferredMethodWrapper extends MethodWrapperWorkbenchAdapter implements IDeferredWorkbenchAdapter {
+
+	/**
+	 * The maximum number of children that are fetched concurrently, e.g. when expanding
+	 * all levels of a hierarchy.
+	 *
+	 * @since 3.10
+	 */
+	private static final int MAX_CONCURRENT_FETCHES= Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+
+	/**
+	 * The slot of the next fetch job.
+	 *
+	 * @since 3.10
+	 */
+	private static final AtomicInteger fgNextSlot= new AtomicInteger();
+
     private final CallHierarchyContentProvider fProvider;
 
     /**
      * A simple job scheduling rule for serializing jobs that shouldn't be run
-     * concurrently.
+     * concurrently. Jobs are spread over a fixed number of slots, so that at
+     * most that many jobs run at the same time.
      */
     private class BatchSimilarSchedulingRule implements ISchedulingRule {
         public String id;
+        public int slot;
 
-        public BatchSimilarSchedulingRule(String id) {
+        public BatchSimilarSchedulingRule(String id, int slot) {
             this.id = id;
+            this.slot = slot;
         }
 
         /*
@@ -43,7 +64,8 @@ public class DeferredMethodWrapper extends MethodWrapperWorkbenchAdapter impleme
          */
         public boolean isConflicting(ISchedulingRule rule) {
             if (rule instanceof BatchSimilarSchedulingRule) {
-                return ((BatchSimilarSchedulingRule) rule).id.equals(id);
+                BatchSimilarSchedulingRule other= (BatchSimilarSchedulingRule) rule;
+                return other.id.equals(id) && other.slot == slot;
             }
             return false;
         }
@@ -61,8 +83,12 @@ public class DeferredMethodWrapper extends MethodWrapperWorkbenchAdapter impleme
         this.fProvider = provider;
     }
 
-    private Object getCalls(IProgressMonitor monitor) {
-        return getMethodWrapper().getCalls(monitor);
+    private void getCalls(final IElementCollector collector, final IProgressMonitor monitor) {
+        getMethodWrapper().getCalls(monitor, new MethodWrapper.IChildrenCollector() {
+			public void add(MethodWrapper[] children) {
+				collector.add(children, monitor);
+			}
+		});
     }
 
     /*
@@ -76,7 +102,7 @@ public class DeferredMethodWrapper extends MethodWrapperWorkbenchAdapter impleme
     	final DeferredMethodWrapper deferredMethodWrapper= (DeferredMethodWrapper)object;
     	try {
             fProvider.startFetching();
-            collector.add((Object[]) deferredMethodWrapper.getCalls(monitor), monitor);
+            deferredMethodWrapper.getCalls(collector, monitor);
             collector.done();
         } catch (OperationCanceledException e) {
         	final MethodWrapper methodWrapper= deferredMethodWrapper.getMethodWrapper();
@@ -111,7 +137,8 @@ public class DeferredMethodWrapper extends MethodWrapperWorkbenchAdapter impleme
      * @see org.eclipse.ui.progress.IDeferredWorkbenchAdapter#getRule()
      */
     public ISchedulingRule getRule(Object o) {
-        return new BatchSimilarSchedulingRule("org.eclipse.jdt.ui.callhierarchy.methodwrapper"); //$NON-NLS-1$
+        int slot= (fgNextSlot.getAndIncrement() & Integer.MAX_VALUE) % MAX_CONCURRENT_FETCHES;
+        return new BatchSimilarSchedulingRule("org.eclipse.jdt.ui.callhierarchy.methodwrapper", slot); //$NON-NLS-1$
     }
 
     /*
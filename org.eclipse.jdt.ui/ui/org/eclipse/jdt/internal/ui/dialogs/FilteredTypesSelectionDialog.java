@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2012 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -29,6 +29,7 @@ import org.eclipse.swt.graphics.TextStyle;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Text;
 
@@ -36,6 +37,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
@@ -82,13 +84,11 @@ import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaConventions;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
-import org.eclipse.jdt.core.WorkingCopyOwner;
 import org.eclipse.jdt.core.search.IJavaSearchConstants;
 import org.eclipse.jdt.core.search.IJavaSearchScope;
 import org.eclipse.jdt.core.search.SearchEngine;
 import org.eclipse.jdt.core.search.SearchPattern;
 import org.eclipse.jdt.core.search.TypeNameMatch;
-import org.eclipse.jdt.core.search.TypeNameMatchRequestor;
 import org.eclipse.jdt.core.search.TypeNameRequestor;
 
 import org.eclipse.jdt.internal.corext.util.CollectionsUtil;
@@ -182,6 +182,8 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 
 	private TypeItemsFilter fFilter;
 
+	private volatile IndexQuery fLastIndexQuery;
+
 	/**
 	 * Creates new FilteredTypesSelectionDialog instance
 	 *
@@ -509,9 +511,50 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 				}
 			}
 		}
+		startConsistencyCheck();
 		return super.open();
 	}
 
+	/*
+	 * The dialog opens with the history as it has been loaded. Types that have been removed or
+	 * changed since are removed from the dialog once the consistency check has finished.
+	 */
+	private void startConsistencyCheck() {
+		final OpenTypeHistory history= OpenTypeHistory.getInstance();
+		if (!history.needConsistencyCheck())
+			return;
+		final Display display= Display.getCurrent();
+		Job job= new Job(JavaUIMessages.TypeSelectionDialog_progress_consistency) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					history.checkConsistency(monitor);
+				} catch (OperationCanceledException e) {
+					return Status.CANCEL_STATUS;
+				}
+				if (display != null && !display.isDisposed()) {
+					display.asyncExec(new Runnable() {
+						public void run() {
+							historyChecked();
+						}
+					});
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		job.setPriority(Job.SHORT);
+		job.setSystem(true);
+		job.schedule();
+	}
+
+	private void historyChecked() {
+		Shell shell= getShell();
+		if (shell == null || shell.isDisposed())
+			return;
+		if (((TypeSelectionHistory) getSelectionHistory()).synchronize())
+			applyFilter();
+	}
+
 	/**
 	 * Sets a new validator.
 	 *
@@ -552,35 +595,41 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 	@Override
 	protected void fillContentProvider(AbstractContentProvider provider, ItemsFilter itemsFilter, IProgressMonitor progressMonitor) throws CoreException {
 		TypeItemsFilter typeSearchFilter= (TypeItemsFilter) itemsFilter;
-		TypeSearchRequestor requestor= new TypeSearchRequestor(provider, typeSearchFilter);
-		SearchEngine engine= new SearchEngine((WorkingCopyOwner) null);
-		String packPattern= typeSearchFilter.getPackagePattern();
 		progressMonitor.setTaskName(JavaUIMessages.FilteredTypesSelectionDialog_searchJob_taskName);
 
 		/*
-		 * Setting the filter into match everything mode avoids filtering twice
-		 * by the same pattern (the search engine only provides filtered
-		 * matches). For the case when the pattern is a camel case pattern with
-		 * a terminator, the filter is not set to match everything mode because
-		 * jdt.core's SearchPattern does not support that case.
+		 * The candidates come from the type name index, or from the result of the previous
+		 * query if the pattern has only been narrowed since and the workspace did not change.
 		 */
-		String typePattern= typeSearchFilter.getNamePattern();
-		int matchRule= typeSearchFilter.getMatchRule();
-		typeSearchFilter.setMatchEverythingMode(true);
+		TypeNameIndex index= TypeNameIndex.getDefault();
+		int stamp= index.getStamp();
+		IndexQuery lastQuery= fLastIndexQuery;
+		TypeNameMatch[] candidates;
+		if (lastQuery != null && lastQuery.fStamp == stamp && lastQuery.fFilter.isSubFilter(typeSearchFilter)
+				&& lastQuery.fFilter.getSearchScope() == typeSearchFilter.getSearchScope()) {
+			candidates= lastQuery.fResult;
+		} else {
+			candidates= index.getCandidates(typeSearchFilter.getNamePattern(), typeSearchFilter.getMatchRule(), progressMonitor);
+		}
 
+		List<TypeNameMatch> result= new ArrayList<TypeNameMatch>();
+		for (int i= 0; i < candidates.length; i++) {
+			if (progressMonitor.isCanceled())
+				return;
+			TypeNameMatch match= candidates[i];
+			if (!TypeFilter.isFiltered(match) && typeSearchFilter.matchItem(match))
+				result.add(match);
+		}
+
+		// avoid matching the items a second time when adding them
+		typeSearchFilter.setMatchEverythingMode(true);
 		try {
-			engine.searchAllTypeNames(packPattern == null ? null : packPattern.toCharArray(),
-					typeSearchFilter.getPackageFlags(),
-					typePattern.toCharArray(),
-					matchRule,
-					typeSearchFilter.getElementKind(),
-					typeSearchFilter.getSearchScope(),
-					requestor,
-					IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH,
-					progressMonitor);
+			for (int i= 0; i < result.size(); i++)
+				provider.add(result.get(i), typeSearchFilter);
 		} finally {
 			typeSearchFilter.setMatchEverythingMode(false);
 		}
+		fLastIndexQuery= new IndexQuery(typeSearchFilter, stamp, result.toArray(new TypeNameMatch[result.size()]));
 	}
 
 	/*
@@ -638,8 +687,9 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 	}
 
 	/*
-	 * We only have to ensure history consistency here since the search engine
-	 * takes care of working copies.
+	 * We only have to ensure that the search indices are ready here since the search engine
+	 * takes care of working copies. The history consistency is checked in the background,
+	 * see startConsistencyCheck().
 	 */
 	private static class ConsistencyRunnable implements IRunnableWithProgress {
 		public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
@@ -648,24 +698,13 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 				IJobManager manager= Job.getJobManager();
 				manager.join(JavaUI.ID_PLUGIN, monitor);
 			}
-			OpenTypeHistory history= OpenTypeHistory.getInstance();
-			if (fgFirstTime || history.isEmpty()) {
-				if (history.needConsistencyCheck()) {
-					monitor.beginTask(JavaUIMessages.TypeSelectionDialog_progress_consistency, 100);
-					refreshSearchIndices(new SubProgressMonitor(monitor, 90));
-					history.checkConsistency(new SubProgressMonitor(monitor, 10));
-				} else {
-					refreshSearchIndices(monitor);
-				}
-				monitor.done();
-				fgFirstTime= false;
-			} else {
-				history.checkConsistency(monitor);
-			}
+			refreshSearchIndices(monitor);
+			monitor.done();
+			fgFirstTime= false;
 		}
 		public static boolean needsExecution() {
 			OpenTypeHistory history= OpenTypeHistory.getInstance();
-			return fgFirstTime || history.isEmpty() || history.needConsistencyCheck();
+			return fgFirstTime || history.isEmpty();
 		}
 		private void refreshSearchIndices(IProgressMonitor monitor) throws InvocationTargetException {
 			try {
@@ -1317,39 +1356,21 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 	}
 
 	/**
-	 * A <code>TypeSearchRequestor</code> collects matches filtered using
-	 * <code>TypeItemsFilter</code>. The attached content provider is filled
-	 * on the basis of the collected entries (instances of
-	 * <code>TypeNameMatch</code>).
+	 * The result of a query of the {@link TypeNameIndex}.
 	 */
-	private static class TypeSearchRequestor extends TypeNameMatchRequestor {
-		private volatile boolean fStop;
+	private static class IndexQuery {
 
-		private final AbstractContentProvider fContentProvider;
+		final TypeItemsFilter fFilter;
 
-		private final TypeItemsFilter fTypeItemsFilter;
+		final int fStamp;
 
-		public TypeSearchRequestor(AbstractContentProvider contentProvider, TypeItemsFilter typeItemsFilter) {
-			super();
-			fContentProvider= contentProvider;
-			fTypeItemsFilter= typeItemsFilter;
-		}
+		final TypeNameMatch[] fResult;
 
-		/*
-		 * (non-Javadoc)
-		 *
-		 * @see org.eclipse.jdt.core.search.TypeNameMatchRequestor#acceptTypeNameMatch(org.eclipse.jdt.core.search.TypeNameMatch)
-		 */
-		@Override
-		public void acceptTypeNameMatch(TypeNameMatch match) {
-			if (fStop)
-				return;
-			if (TypeFilter.isFiltered(match))
-				return;
-			if (fTypeItemsFilter.matchesFilterExtension(match))
-				fContentProvider.add(match, fTypeItemsFilter);
+		public IndexQuery(TypeItemsFilter filter, int stamp, TypeNameMatch[] result) {
+			fFilter= filter;
+			fStamp= stamp;
+			fResult= result;
 		}
-
 	}
 
 	/**
@@ -1563,6 +1584,33 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 			persistHistory();
 		}
 
+		/**
+		 * Updates the local history after the consistency check of the persistent
+		 * history container.
+		 *
+		 * @return <code>true</code> if the local history has changed
+		 */
+		synchronized boolean synchronize() {
+			OpenTypeHistory history= OpenTypeHistory.getInstance();
+			boolean changed= false;
+			Object[] items= getHistoryItems();
+			for (int i= 0; i < items.length; i++) {
+				if (!history.contains((TypeNameMatch) items[i])) {
+					super.remove(items[i]);
+					changed= true;
+				}
+			}
+			// types whose modifiers have changed have been replaced
+			TypeNameMatch[] types= history.getTypeInfos();
+			for (int i= types.length - 1; i >= 0; i--) {
+				if (!contains(types[i])) {
+					accessed(types[i]);
+					changed= true;
+				}
+			}
+			return changed;
+		}
+
 		/**
 		 * Stores contents of the local history into persistent history
 		 * container.
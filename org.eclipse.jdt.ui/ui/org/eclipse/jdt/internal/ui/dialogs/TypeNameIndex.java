@@ -0,0 +1,396 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.dialogs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.TypeNameMatch;
+import org.eclipse.jdt.core.search.TypeNameMatchRequestor;
+
+import org.eclipse.jdt.internal.corext.util.JavaModelUtil;
+
+/**
+ * In-memory index of the names of all types in the workspace scope, used by the
+ * {@link FilteredTypesSelectionDialog} to answer queries without running the search engine.
+ * <p>
+ * The types are sorted by their simple name, ignoring case, so that the types that can
+ * match a prefix, exact, camel case or wildcard pattern form a contiguous range: all these
+ * patterns fix at least the first character of the name. The candidates still have to be
+ * matched against the actual pattern.
+ * </p>
+ * <p>
+ * The index is built with one search on the first query and kept current from Java element
+ * deltas: changed compilation units are read again on the next query, structural changes
+ * such as class path changes cause a rebuild.
+ * </p>
+ *
+ * @since 3.10
+ */
+public final class TypeNameIndex {
+
+	/**
+	 * Flags of a changed compilation unit delta that cannot add, remove or modify types.
+	 */
+	private static final int IGNORED_UNIT_FLAGS= IJavaElementDelta.F_OPENED | IJavaElementDelta.F_CLOSED | IJavaElementDelta.F_AST_AFFECTED;
+
+	/**
+	 * Flags of a changed project or package fragment root delta that change the set of types.
+	 */
+	private static final int CONTAINER_FLAGS= IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED
+			| IJavaElementDelta.F_OPENED | IJavaElementDelta.F_CLOSED | IJavaElementDelta.F_ADDED_TO_CLASSPATH
+			| IJavaElementDelta.F_REMOVED_FROM_CLASSPATH | IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED;
+
+	private static final Comparator<Object[]> ENTRY_COMPARATOR= new Comparator<Object[]>() {
+		public int compare(Object[] o1, Object[] o2) {
+			return ((String) o1[0]).compareTo((String) o2[0]);
+		}
+	};
+
+	private static TypeNameIndex fgInstance;
+
+	private class DeltaListener implements IElementChangedListener {
+		public void elementChanged(ElementChangedEvent event) {
+			Set<ICompilationUnit> changedUnits= new HashSet<ICompilationUnit>();
+			boolean invalid= processDelta(event.getDelta(), changedUnits);
+			if (invalid || !changedUnits.isEmpty())
+				changed(invalid, changedUnits);
+		}
+	}
+
+	private final IElementChangedListener fDeltaListener;
+
+	/**
+	 * Serializes building and updating the index.
+	 */
+	private final Object fUpdateLock= new Object();
+
+	// The following fields are guarded by 'this'
+
+	/**
+	 * The types, sorted by {@link #fKeys}, or <code>null</code> if the index has not been built.
+	 */
+	private TypeNameMatch[] fTypes;
+
+	/**
+	 * The simple names of the types, folded to lower case.
+	 */
+	private String[] fKeys;
+
+	private boolean fValid;
+
+	private final Set<ICompilationUnit> fChangedUnits= new HashSet<ICompilationUnit>();
+
+	private int fStamp;
+
+	public static synchronized TypeNameIndex getDefault() {
+		if (fgInstance == null)
+			fgInstance= new TypeNameIndex();
+		return fgInstance;
+	}
+
+	public static synchronized void shutdown() {
+		if (fgInstance == null)
+			return;
+		JavaCore.removeElementChangedListener(fgInstance.fDeltaListener);
+		fgInstance= null;
+	}
+
+	private TypeNameIndex() {
+		fDeltaListener= new DeltaListener();
+		JavaCore.addElementChangedListener(fDeltaListener, ElementChangedEvent.POST_CHANGE | ElementChangedEvent.POST_RECONCILE);
+	}
+
+	/**
+	 * Returns a stamp that changes whenever the Java model has changed in a way that
+	 * affects the index. Query results obtained while the stamp did not change can be
+	 * refined instead of querying again.
+	 *
+	 * @return the current stamp
+	 */
+	public synchronized int getStamp() {
+		return fStamp;
+	}
+
+	/**
+	 * Returns the types whose simple names can match the given pattern. Builds or updates
+	 * the index if necessary.
+	 *
+	 * @param namePattern the simple name pattern, see {@link org.eclipse.jdt.internal.ui.util.PatternMatcher}
+	 * @param matchRule the match kind of the pattern, one of the <code>SearchPattern.R_*</code> constants
+	 * @param monitor a progress monitor, or <code>null</code>
+	 * @return the candidates, sorted by simple name
+	 * @throws JavaModelException if the index could not be built
+	 */
+	public TypeNameMatch[] getCandidates(String namePattern, int matchRule, IProgressMonitor monitor) throws JavaModelException {
+		if (monitor == null)
+			monitor= new NullProgressMonitor();
+		synchronized (fUpdateLock) {
+			update(monitor);
+		}
+
+		String prefix= fold(getPrefix(namePattern, matchRule));
+		TypeNameMatch[] types;
+		String[] keys;
+		synchronized (this) {
+			types= fTypes;
+			keys= fKeys;
+		}
+		int start= lowerBound(keys, prefix);
+		int end= start;
+		while (end < keys.length && keys[end].startsWith(prefix))
+			end++;
+		TypeNameMatch[] result= new TypeNameMatch[end - start];
+		System.arraycopy(types, start, result, 0, result.length);
+		return result;
+	}
+
+	/**
+	 * Returns the part of the pattern that every matching name starts with, ignoring case.
+	 *
+	 * @param namePattern the simple name pattern
+	 * @param matchRule the match kind of the pattern
+	 * @return the prefix
+	 */
+	private static String getPrefix(String namePattern, int matchRule) {
+		if (namePattern.length() == 0)
+			return namePattern;
+		switch (matchRule) {
+			case SearchPattern.R_EXACT_MATCH:
+			case SearchPattern.R_PREFIX_MATCH:
+				return namePattern;
+			case SearchPattern.R_PATTERN_MATCH:
+				int i= 0;
+				while (i < namePattern.length() && namePattern.charAt(i) != '*' && namePattern.charAt(i) != '?')
+					i++;
+				return namePattern.substring(0, i);
+			default:
+				// camel case patterns, including their prefix fall back, fix the first character
+				return namePattern.substring(0, 1);
+		}
+	}
+
+	private void update(IProgressMonitor monitor) throws JavaModelException {
+		ICompilationUnit[] changedUnits;
+		TypeNameMatch[] types;
+		String[] keys;
+		synchronized (this) {
+			if (!fValid || fTypes == null) {
+				fValid= true;
+				fChangedUnits.clear();
+				changedUnits= null;
+			} else if (!fChangedUnits.isEmpty()) {
+				changedUnits= fChangedUnits.toArray(new ICompilationUnit[fChangedUnits.size()]);
+				fChangedUnits.clear();
+			} else {
+				return;
+			}
+			types= fTypes;
+			keys= fKeys;
+		}
+
+		List<Object[]> entries;
+		if (changedUnits == null) {
+			entries= build(monitor);
+		} else {
+			entries= update(types, keys, changedUnits);
+		}
+
+		types= new TypeNameMatch[entries.size()];
+		keys= new String[entries.size()];
+		for (int i= 0; i < types.length; i++) {
+			Object[] entry= entries.get(i);
+			keys[i]= (String) entry[0];
+			types[i]= (TypeNameMatch) entry[1];
+		}
+		synchronized (this) {
+			fTypes= types;
+			fKeys= keys;
+		}
+	}
+
+	private List<Object[]> build(IProgressMonitor monitor) throws JavaModelException {
+		final List<Object[]> entries= new ArrayList<Object[]>();
+		final Map<String, String> names= new HashMap<String, String>();
+		TypeNameMatchRequestor requestor= new TypeNameMatchRequestor() {
+			@Override
+			public void acceptTypeNameMatch(TypeNameMatch match) {
+				entries.add(createEntry(match, names));
+			}
+		};
+		try {
+			new SearchEngine().searchAllTypeNames(null, 0, null, 0, IJavaSearchConstants.TYPE,
+					SearchEngine.createWorkspaceScope(), requestor, IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, monitor);
+		} catch (JavaModelException e) {
+			invalidate();
+			throw e;
+		} catch (RuntimeException e) { // canceled
+			invalidate();
+			throw e;
+		}
+		Collections.sort(entries, ENTRY_COMPARATOR);
+		return entries;
+	}
+
+	private List<Object[]> update(TypeNameMatch[] types, String[] keys, ICompilationUnit[] changedUnits) {
+		Set<ICompilationUnit> units= new HashSet<ICompilationUnit>(Arrays.asList(changedUnits));
+		Map<String, String> names= new HashMap<String, String>();
+		List<Object[]> added= new ArrayList<Object[]>();
+		for (int i= 0; i < changedUnits.length; i++) {
+			ICompilationUnit unit= changedUnits[i];
+			try {
+				if (!unit.exists())
+					continue;
+				IType[] unitTypes= unit.getAllTypes();
+				for (int j= 0; j < unitTypes.length; j++)
+					added.add(createEntry(SearchEngine.createTypeNameMatch(unitTypes[j], unitTypes[j].getFlags()), names));
+			} catch (JavaModelException e) {
+				// the unit does not contribute types
+			}
+		}
+		Collections.sort(added, ENTRY_COMPARATOR);
+
+		List<Object[]> entries= new ArrayList<Object[]>(types.length + added.size());
+		Iterator<Object[]> addedIter= added.iterator();
+		Object[] next= addedIter.hasNext() ? addedIter.next() : null;
+		for (int i= 0; i < types.length; i++) {
+			if (units.contains(types[i].getType().getCompilationUnit()))
+				continue;
+			while (next != null && ((String) next[0]).compareTo(keys[i]) < 0) {
+				entries.add(next);
+				next= addedIter.hasNext() ? addedIter.next() : null;
+			}
+			entries.add(new Object[] { keys[i], types[i] });
+		}
+		while (next != null) {
+			entries.add(next);
+			next= addedIter.hasNext() ? addedIter.next() : null;
+		}
+		return entries;
+	}
+
+	private static Object[] createEntry(TypeNameMatch match, Map<String, String> names) {
+		String key= fold(match.getSimpleTypeName());
+		String shared= names.get(key);
+		if (shared == null) {
+			names.put(key, key);
+			shared= key;
+		}
+		return new Object[] { shared, match };
+	}
+
+	private synchronized void invalidate() {
+		fValid= false;
+		fStamp++;
+	}
+
+	private synchronized void changed(boolean invalid, Set<ICompilationUnit> changedUnits) {
+		if (invalid)
+			fValid= false;
+		else
+			fChangedUnits.addAll(changedUnits);
+		fStamp++;
+	}
+
+	/**
+	 * Collects the compilation units whose types might have changed.
+	 *
+	 * @param delta the Java element delta
+	 * @param changedUnits the set to add changed units to
+	 * @return <code>true</code> if the index has to be rebuilt
+	 */
+	private static boolean processDelta(IJavaElementDelta delta, Set<ICompilationUnit> changedUnits) {
+		IJavaElement element= delta.getElement();
+		int kind= delta.getKind();
+		switch (element.getElementType()) {
+			case IJavaElement.JAVA_MODEL:
+				return processChildren(delta, changedUnits);
+			case IJavaElement.JAVA_PROJECT:
+			case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+				if (kind != IJavaElementDelta.CHANGED || (delta.getFlags() & CONTAINER_FLAGS) != 0)
+					return true;
+				return processChildren(delta, changedUnits);
+			case IJavaElement.PACKAGE_FRAGMENT:
+				if (kind != IJavaElementDelta.CHANGED)
+					return true;
+				return processChildren(delta, changedUnits);
+			case IJavaElement.COMPILATION_UNIT:
+				ICompilationUnit unit= (ICompilationUnit) element;
+				if (!JavaModelUtil.isPrimary(unit))
+					return false;
+				if (kind != IJavaElementDelta.CHANGED || (delta.getFlags() & ~IGNORED_UNIT_FLAGS) != 0)
+					changedUnits.add(unit);
+				return false;
+			case IJavaElement.CLASS_FILE:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private static boolean processChildren(IJavaElementDelta delta, Set<ICompilationUnit> changedUnits) {
+		IJavaElementDelta[] children= delta.getAffectedChildren();
+		for (int i= 0; i < children.length; i++) {
+			if (processDelta(children[i], changedUnits))
+				return true;
+		}
+		return false;
+	}
+
+	private static int lowerBound(String[] keys, String key) {
+		int low= 0;
+		int high= keys.length;
+		while (low < high) {
+			int mid= (low + high) >>> 1;
+			if (keys[mid].compareTo(key) < 0)
+				low= mid + 1;
+			else
+				high= mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Folds the case of a name so that names that are equal ignoring case
+	 * (see {@link String#equalsIgnoreCase(String)}) have the same key.
+	 *
+	 * @param name the name
+	 * @return the folded name
+	 */
+	private static String fold(String name) {
+		char[] chars= name.toCharArray();
+		for (int i= 0; i < chars.length; i++)
+			chars[i]= Character.toLowerCase(Character.toUpperCase(chars[i]));
+		return new String(chars);
+	}
+}
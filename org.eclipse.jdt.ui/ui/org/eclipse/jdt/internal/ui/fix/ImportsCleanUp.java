@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -22,6 +22,7 @@ import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 
 import org.eclipse.jdt.internal.corext.codemanipulation.CodeGenerationSettings;
+import org.eclipse.jdt.internal.corext.codemanipulation.OrganizeImportsOperation.TypeNameCache;
 import org.eclipse.jdt.internal.corext.fix.CleanUpConstants;
 import org.eclipse.jdt.internal.corext.fix.ImportsFix;
 
@@ -33,8 +34,16 @@ import org.eclipse.jdt.internal.ui.preferences.JavaPreferencesSettings;
 
 public class ImportsCleanUp extends AbstractCleanUp {
 
+	/**
+	 * Number of compilation units of a project from which on the types of the project are
+	 * searched once and shared by all units, instead of searching the unresolved names of
+	 * each unit.
+	 */
+	private static final int TYPE_NAME_CACHE_THRESHOLD= 10;
+
 	private CodeGenerationSettings fCodeGeneratorSettings;
 	private RefactoringStatus fStatus;
+	private TypeNameCache fTypeNameCache;
 
 	public ImportsCleanUp(Map<String, String> options) {
 		super(options);
@@ -63,7 +72,7 @@ public class ImportsCleanUp extends AbstractCleanUp {
     		return null;
 
 		return ImportsFix.createCleanUp(compilationUnit, fCodeGeneratorSettings,
-				isEnabled(CleanUpConstants.ORGANIZE_IMPORTS), fStatus);
+				isEnabled(CleanUpConstants.ORGANIZE_IMPORTS), fStatus, fTypeNameCache);
 	}
 
     /**
@@ -75,6 +84,8 @@ public class ImportsCleanUp extends AbstractCleanUp {
 		if (isEnabled(CleanUpConstants.ORGANIZE_IMPORTS)) {
     		fCodeGeneratorSettings= JavaPreferencesSettings.getCodeGenerationSettings(project);
     		fStatus= new RefactoringStatus();
+    		if (compilationUnits.length >= TYPE_NAME_CACHE_THRESHOLD)
+    			fTypeNameCache= new TypeNameCache(project);
 		}
 
 		return super.checkPreConditions(project, compilationUnits, monitor);
@@ -86,6 +97,7 @@ public class ImportsCleanUp extends AbstractCleanUp {
     @Override
 	public RefactoringStatus checkPostConditions(IProgressMonitor monitor) throws CoreException {
     	fCodeGeneratorSettings= null;
+    	fTypeNameCache= null;
     	try {
 	    	if (fStatus == null || fStatus.isOK()) {
 	    		return super.checkPostConditions(monitor);
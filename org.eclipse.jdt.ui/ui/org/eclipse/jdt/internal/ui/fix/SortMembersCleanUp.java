@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -65,10 +65,14 @@ public class SortMembersCleanUp extends AbstractCleanUp {
 		boolean sortMembers= isEnabled(CleanUpConstants.SORT_MEMBERS);
 		ICleanUpFix fix= SortMembersFix.createCleanUp(compilationUnit, sortMembers, sortMembers && isEnabled(CleanUpConstants.SORT_MEMBERS_ALL));
 		if (fix != null) {
-			if (fTouchedFiles == null) {
-				fTouchedFiles= new HashSet<IResource>();
+			IResource resource= ((ICompilationUnit)compilationUnit.getJavaElement()).getResource();
+			// the units of a project can be cleaned up concurrently
+			synchronized (this) {
+				if (fTouchedFiles == null) {
+					fTouchedFiles= new HashSet<IResource>();
+				}
+				fTouchedFiles.add(resource);
 			}
-			fTouchedFiles.add(((ICompilationUnit)compilationUnit.getJavaElement()).getResource());
 		}
 		return fix;
 	}
@@ -78,17 +82,22 @@ public class SortMembersCleanUp extends AbstractCleanUp {
 	 */
 	@Override
 	public RefactoringStatus checkPostConditions(IProgressMonitor monitor) throws CoreException {
-		if (fTouchedFiles == null) {
+		HashSet<IResource> touchedFiles;
+		synchronized (this) {
+			touchedFiles= fTouchedFiles;
+			fTouchedFiles= null;
+		}
+		if (touchedFiles == null) {
 			return super.checkPostConditions(monitor);
 		} else {
 			if (monitor == null)
 				monitor= new NullProgressMonitor();
 
-			monitor.beginTask("", fTouchedFiles.size()); //$NON-NLS-1$
+			monitor.beginTask("", touchedFiles.size()); //$NON-NLS-1$
 
 			try {
 				RefactoringStatus result= new RefactoringStatus();
-    			for (Iterator<IResource> iterator= fTouchedFiles.iterator(); iterator.hasNext();) {
+    			for (Iterator<IResource> iterator= touchedFiles.iterator(); iterator.hasNext();) {
     	            IFile file= (IFile)iterator.next();
     	            if (containsRelevantMarkers(file)) {
     	            	String fileLocation= BasicElementLabels.getPathLabel(file.getProjectRelativePath(), false);
@@ -102,7 +111,6 @@ public class SortMembersCleanUp extends AbstractCleanUp {
     			return result;
 			} finally {
 				monitor.done();
-				fTouchedFiles= null;
 			}
 
 		}
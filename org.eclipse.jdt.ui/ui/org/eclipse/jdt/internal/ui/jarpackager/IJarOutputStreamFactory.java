@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.jarpackager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Creates the stream to which a {@link org.eclipse.jdt.ui.jarpackager.JarWriter3} writes the
+ * archive.
+ *
+ * @since 3.10
+ */
+public interface IJarOutputStreamFactory {
+
+	/**
+	 * Creates the stream to which the archive is written.
+	 *
+	 * @param out the stream of the JAR file
+	 * @param manifest the manifest, or <code>null</code> if the JAR does not have a manifest
+	 * @return the stream to which the archive is written
+	 * @throws IOException if an I/O error has occurred
+	 */
+	JarOutputStream create(OutputStream out, Manifest manifest) throws IOException;
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2009 IBM Corporation and others.
+ * Copyright (c) 2007, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,7 +18,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -33,21 +36,86 @@ import org.eclipse.jdt.internal.corext.util.Messages;
 import org.eclipse.jdt.ui.jarpackager.JarPackageData;
 import org.eclipse.jdt.ui.jarpackager.JarWriter3;
 
+import org.eclipse.jdt.internal.ui.jarpackager.IJarOutputStreamFactory;
 import org.eclipse.jdt.internal.ui.jarpackager.JarPackagerMessages;
 import org.eclipse.jdt.internal.ui.jarpackager.JarPackagerUtil;
 import org.eclipse.jdt.internal.ui.viewsupport.BasicElementLabels;
 
 
 /**
+ * Writes the JAR of a fat JAR export. Entries are compressed concurrently, and entries of
+ * libraries that are already compressed are copied without compressing them again.
+ * 
  * @since 3.4
  */
 public class JarWriter4 extends JarWriter3 {
 
 	private final JarPackageData fJarPackage;
 
+	/**
+	 * Creates the stream that compresses entries concurrently and remembers it.
+	 * 
+	 * @since 3.10
+	 */
+	private static class ParallelJarOutputStreamFactory implements IJarOutputStreamFactory {
+
+		private ParallelJarOutputStream fStream;
+
+		public JarOutputStream create(OutputStream out, Manifest manifest) throws IOException {
+			fStream= new ParallelJarOutputStream(out, manifest, Runtime.getRuntime().availableProcessors());
+			return fStream;
+		}
+	}
+
+	/**
+	 * @since 3.10
+	 */
+	private static volatile boolean fgConcurrent= true;
+
+	/**
+	 * The stream the archive is written to, or <code>null</code> if entries are not compressed
+	 * concurrently.
+	 * 
+	 * @since 3.10
+	 */
+	private final ParallelJarOutputStream fJarOutputStream;
+
+	/**
+	 * The archive of the last library entry that has been copied raw, or <code>null</code>.
+	 * 
+	 * @since 3.10
+	 */
+	private String fRawZipFileName;
+
+	/**
+	 * @since 3.10
+	 */
+	private RawZipFile fRawZipFile;
+
 	public JarWriter4(JarPackageData jarPackage, Shell parent) throws CoreException {
-		super(jarPackage, parent);
+		this(jarPackage, parent, fgConcurrent ? new ParallelJarOutputStreamFactory() : null);
+	}
+
+	private JarWriter4(JarPackageData jarPackage, Shell parent, ParallelJarOutputStreamFactory factory) throws CoreException {
+		super(jarPackage, parent, factory);
 		fJarPackage= jarPackage;
+		fJarOutputStream= factory != null ? factory.fStream : null;
+	}
+
+	/**
+	 * Sets whether new writers compress entries concurrently and copy compressed library entries
+	 * raw. Intended for tests that compare the archive with the one written by
+	 * {@link JarWriter3}.
+	 * 
+	 * @param concurrent <code>true</code> to compress concurrently, <code>false</code> to write
+	 *            all entries through a plain {@link JarOutputStream}
+	 * @return the previous setting
+	 * @since 3.10
+	 */
+	public static boolean setConcurrent(boolean concurrent) {
+		boolean previous= fgConcurrent;
+		fgConcurrent= concurrent;
+		return previous;
 	}
 
 	public void addZipEntry(ZipEntry zipEntry, ZipFile zipFile, String path) throws IOException {
@@ -70,9 +138,59 @@ public class JarWriter4 extends JarWriter3 {
 		// Set modification time
 		newEntry.setTime(lastModified);
 
+		if (fJarPackage.isCompressed() && addRawZipEntry(newEntry, zipEntry, zipFile))
+			return;
 		addEntry(newEntry, zipFile.getInputStream(zipEntry));
 	}
 
+	/**
+	 * Copies the compressed content of a library entry if it has been compressed with the
+	 * deflate method.
+	 * 
+	 * @param newEntry the entry to write
+	 * @param zipEntry the entry of the library
+	 * @param zipFile the library
+	 * @return <code>true</code> if the entry has been written, <code>false</code> if it has to
+	 *         be inflated and compressed again
+	 * @throws IOException if an I/O error occurred
+	 * @since 3.10
+	 */
+	private boolean addRawZipEntry(JarEntry newEntry, ZipEntry zipEntry, ZipFile zipFile) throws IOException {
+		if (fJarOutputStream == null || zipEntry.getMethod() != ZipEntry.DEFLATED)
+			return false;
+		if (!zipFile.getName().equals(fRawZipFileName)) {
+			if (fRawZipFile != null)
+				fRawZipFile.close();
+			fRawZipFileName= zipFile.getName();
+			fRawZipFile= RawZipFile.open(new File(fRawZipFileName));
+		}
+		if (fRawZipFile == null)
+			return false;
+		InputStream content= fRawZipFile.getRawInputStream(zipEntry);
+		if (content == null)
+			return false;
+		try {
+			fJarOutputStream.putRawEntry(newEntry, zipEntry.getCrc(), zipEntry.getSize(), zipEntry.getCompressedSize(), content);
+		} finally {
+			content.close();
+		}
+		return true;
+	}
+
+	/*
+	 * @see org.eclipse.jdt.ui.jarpackager.JarWriter3#close()
+	 * @since 3.10
+	 */
+	@Override
+	public void close() throws CoreException {
+		if (fRawZipFile != null) {
+			fRawZipFile.close();
+			fRawZipFile= null;
+			fRawZipFileName= null;
+		}
+		super.close();
+	}
+
 	public void addZipEntryStream(ZipEntry zipEntry, InputStream is, String path) throws IOException {
 		if (fJarPackage.areDirectoryEntriesIncluded())
 			addDirectories(path);
@@ -0,0 +1,723 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.jarpackagerfat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * A JAR output stream that compresses entries on worker threads and that can copy entries
+ * which are already compressed without inflating and compressing them again.
+ * <p>
+ * The entries are written in the order in which they have been put, by the thread that
+ * writes to this stream. All entries are compressed with the same settings, so that the
+ * archive does not depend on the number of worker threads or on their scheduling. Small
+ * entries are buffered until they have been compressed. Entries that are too large to be
+ * buffered and stored entries are written directly once all previous entries have been
+ * written.
+ * </p>
+ * <p>
+ * The stream is not thread safe and does not write ZIP64 entries, but it writes a ZIP64
+ * end of central directory record for archives with more than 65535 entries.
+ * </p>
+ *
+ * @since 3.10
+ */
+/*package*/ final class ParallelJarOutputStream extends JarOutputStream {
+
+	private static final int LOCAL_HEADER_SIGNATURE= 0x04034b50;
+	private static final int DATA_DESCRIPTOR_SIGNATURE= 0x08074b50;
+	private static final int CENTRAL_HEADER_SIGNATURE= 0x02014b50;
+	private static final int ZIP64_END_SIGNATURE= 0x06064b50;
+	private static final int ZIP64_LOCATOR_SIGNATURE= 0x07064b50;
+	private static final int END_SIGNATURE= 0x06054b50;
+
+	private static final int FLAG_DATA_DESCRIPTOR= 0x0008;
+	private static final int FLAG_UTF8= 0x0800;
+
+	private static final int JAR_MAGIC= 0xCAFE;
+	private static final int ZIP64_EXTRA= 0x0001;
+
+	private static final long MAX_INT= 0xFFFFFFFFL;
+	private static final int MAX_SHORT= 0xFFFF;
+
+	/**
+	 * Entries up to this size are compressed on a worker thread.
+	 */
+	private static final int MAX_BUFFERED_ENTRY= 1024 * 1024;
+
+	/**
+	 * Maximum number of uncompressed bytes in entries that wait to be written.
+	 */
+	private static final long MAX_PENDING_BYTES= 32 * 1024 * 1024;
+
+	/**
+	 * An entry in the central directory.
+	 */
+	private static class CentralEntry {
+		byte[] fName;
+		byte[] fExtra;
+		byte[] fComment;
+		int fFlags;
+		int fMethod;
+		long fDosTime;
+		long fCrc;
+		long fCompressedSize;
+		long fSize;
+		long fOffset;
+	}
+
+	/**
+	 * The compressed content of an entry.
+	 */
+	private static class CompressedContent {
+		final byte[] fData;
+		final int fLength;
+		final long fCrc;
+		final long fSize;
+
+		CompressedContent(byte[] data, int length, long crc, long size) {
+			fData= data;
+			fLength= length;
+			fCrc= crc;
+			fSize= size;
+		}
+	}
+
+	/**
+	 * An entry that waits to be written.
+	 */
+	private static class PendingEntry {
+		final CentralEntry fEntry;
+		final long fSize;
+		final Future<CompressedContent> fFuture;
+		final CompressedContent fContent;
+
+		PendingEntry(CentralEntry entry, long size, Future<CompressedContent> future, CompressedContent content) {
+			fEntry= entry;
+			fSize= size;
+			fFuture= future;
+			fContent= content;
+		}
+	}
+
+	/**
+	 * Buffer that gives access to its content without copying.
+	 */
+	private static class EntryBuffer extends ByteArrayOutputStream {
+		EntryBuffer() {
+			super(8192);
+		}
+
+		byte[] getBuffer() {
+			return buf;
+		}
+	}
+
+	private final int fThreads;
+	private ExecutorService fExecutor;
+
+	private final List<CentralEntry> fCentralEntries= new ArrayList<CentralEntry>();
+	private final Set<String> fNames= new HashSet<String>();
+	private final LinkedList<PendingEntry> fPendingEntries= new LinkedList<PendingEntry>();
+	private long fPendingBytes;
+	private long fWritten;
+
+	private int fLevel= Deflater.DEFAULT_COMPRESSION;
+	private byte[] fComment;
+	private boolean fIsFirstEntry= true;
+	private boolean fFinished;
+	private boolean fClosed;
+
+	/** The entry that is currently written, or <code>null</code> */
+	private CentralEntry fCurrent;
+	private ZipEntry fCurrentZipEntry;
+	private final EntryBuffer fBuffer= new EntryBuffer();
+	/** The deflater of the current entry if it is written directly, or <code>null</code> */
+	private Deflater fDeflater;
+	private final CRC32 fCrc= new CRC32();
+	private long fCurrentSize;
+	private byte[] fDeflaterBuffer;
+
+	private final Calendar fCalendar= Calendar.getInstance();
+
+	/**
+	 * Creates a JAR output stream.
+	 *
+	 * @param out the stream to write the archive to
+	 * @param manifest the manifest, or <code>null</code> if the archive does not have a manifest
+	 * @param threads the number of threads used to compress entries
+	 * @throws IOException if an I/O error occurred
+	 */
+	public ParallelJarOutputStream(OutputStream out, Manifest manifest, int threads) throws IOException {
+		super(out);
+		fThreads= threads;
+		if (manifest != null) {
+			putNextEntry(new ZipEntry(JarFile.MANIFEST_NAME));
+			manifest.write(this);
+			closeEntry();
+		}
+	}
+
+	/*
+	 * @see java.util.zip.ZipOutputStream#setComment(java.lang.String)
+	 */
+	@Override
+	public void setComment(String comment) {
+		fComment= comment != null ? encode(comment) : null;
+		if (fComment != null && fComment.length > MAX_SHORT)
+			throw new IllegalArgumentException("ZIP file comment too long."); //$NON-NLS-1$
+	}
+
+	/*
+	 * @see java.util.zip.ZipOutputStream#setLevel(int)
+	 */
+	@Override
+	public void setLevel(int level) {
+		if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION)
+			throw new IllegalArgumentException("invalid compression level"); //$NON-NLS-1$
+		fLevel= level;
+	}
+
+	/*
+	 * @see java.util.zip.ZipOutputStream#putNextEntry(java.util.zip.ZipEntry)
+	 */
+	@Override
+	public void putNextEntry(ZipEntry entry) throws IOException {
+		ensureOpen();
+		closeEntry();
+
+		int method= entry.getMethod() == -1 ? DEFLATED : entry.getMethod();
+		if (method == STORED) {
+			if (entry.getSize() == -1 || entry.getCrc() == -1 || entry.getCompressedSize() != -1 && entry.getCompressedSize() != entry.getSize())
+				throw new ZipException("STORED entry missing size, compressed size, or crc-32"); //$NON-NLS-1$
+		} else if (method != DEFLATED) {
+			throw new ZipException("invalid compression method"); //$NON-NLS-1$
+		}
+		CentralEntry centralEntry= createCentralEntry(entry, method);
+
+		fCurrent= centralEntry;
+		fCurrentZipEntry= entry;
+		fCurrentSize= 0;
+		fCrc.reset();
+		fBuffer.reset();
+		if (method == STORED) {
+			centralEntry.fCrc= entry.getCrc();
+			centralEntry.fSize= entry.getSize();
+			centralEntry.fCompressedSize= entry.getSize();
+			writePendingEntries(true);
+			writeLocalHeader(centralEntry);
+		}
+	}
+
+	/**
+	 * Writes an entry whose content has already been compressed with the deflate method.
+	 *
+	 * @param entry the entry
+	 * @param crc the CRC-32 of the uncompressed content
+	 * @param size the size of the uncompressed content
+	 * @param compressedSize the size of the compressed content
+	 * @param compressedContent the compressed content, will not be closed
+	 * @throws IOException if an I/O error occurred
+	 */
+	public void putRawEntry(ZipEntry entry, long crc, long size, long compressedSize, InputStream compressedContent) throws IOException {
+		ensureOpen();
+		closeEntry();
+		if (size > MAX_INT || compressedSize > MAX_INT)
+			throw new ZipException("entry too large: " + entry.getName()); //$NON-NLS-1$
+
+		CentralEntry centralEntry= createCentralEntry(entry, DEFLATED);
+		centralEntry.fCrc= crc;
+		centralEntry.fSize= size;
+		centralEntry.fCompressedSize= compressedSize;
+		if (compressedSize <= MAX_BUFFERED_ENTRY) {
+			byte[] data= new byte[(int) compressedSize];
+			readFully(compressedContent, data);
+			fPendingEntries.add(new PendingEntry(centralEntry, compressedSize, null, new CompressedContent(data, data.length, crc, size)));
+			fPendingBytes+= compressedSize;
+			writePendingEntries(false);
+		} else {
+			writePendingEntries(true);
+			writeLocalHeader(centralEntry);
+			byte[] buffer= new byte[8192];
+			long remaining= compressedSize;
+			while (remaining > 0) {
+				int count= compressedContent.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (count == -1)
+					throw new ZipException("unexpected end of entry: " + entry.getName()); //$NON-NLS-1$
+				writeBytes(buffer, 0, count);
+				remaining-= count;
+			}
+			fCentralEntries.add(centralEntry);
+		}
+	}
+
+	/*
+	 * @see java.util.zip.ZipOutputStream#write(byte[], int, int)
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if (off < 0 || len < 0 || off > b.length - len)
+			throw new IndexOutOfBoundsException();
+		if (fCurrent == null)
+			throw new ZipException("no current ZIP entry"); //$NON-NLS-1$
+		if (len == 0)
+			return;
+
+		fCurrentSize+= len;
+		if (fCurrent.fMethod == STORED) {
+			fCrc.update(b, off, len);
+			writeBytes(b, off, len);
+		} else if (fDeflater == null) {
+			fBuffer.write(b, off, len);
+			if (fBuffer.size() > MAX_BUFFERED_ENTRY) {
+				startDeflating();
+			}
+		} else {
+			deflate(b, off, len);
+		}
+	}
+
+	/*
+	 * @see java.util.zip.DeflaterOutputStream#write(int)
+	 */
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	/*
+	 * @see java.util.zip.ZipOutputStream#closeEntry()
+	 */
+	@Override
+	public void closeEntry() throws IOException {
+		ensureOpen();
+		CentralEntry entry= fCurrent;
+		if (entry == null)
+			return;
+		fCurrent= null;
+
+		if (entry.fMethod == STORED) {
+			if (fCurrentSize != entry.fSize)
+				throw new ZipException("invalid entry size (expected " + entry.fSize + " but got " + fCurrentSize + " bytes)"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			if (fCrc.getValue() != entry.fCrc)
+				throw new ZipException("invalid entry crc-32 (expected 0x" + Long.toHexString(entry.fCrc) + " but got 0x" + Long.toHexString(fCrc.getValue()) + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			fCentralEntries.add(entry);
+		} else if (fDeflater == null) {
+			final byte[] content= fBuffer.toByteArray();
+			final int level= fLevel;
+			fBuffer.reset();
+			if (fThreads > 1) {
+				Future<CompressedContent> future= getExecutor().submit(new Callable<CompressedContent>() {
+					public CompressedContent call() throws Exception {
+						return compress(content, level);
+					}
+				});
+				fPendingEntries.add(new PendingEntry(entry, content.length, future, null));
+			} else {
+				fPendingEntries.add(new PendingEntry(entry, content.length, null, compress(content, fLevel)));
+			}
+			fPendingBytes+= content.length;
+			writePendingEntries(false);
+		} else {
+			finishDeflating(entry);
+		}
+		if (fCurrentZipEntry.getSize() != -1 && fCurrentZipEntry.getSize() != fCurrentSize)
+			throw new ZipException("invalid entry size (expected " + fCurrentZipEntry.getSize() + " but got " + fCurrentSize + " bytes)"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		fCurrentZipEntry= null;
+	}
+
+	/*
+	 * @see java.util.zip.ZipOutputStream#finish()
+	 */
+	@Override
+	public void finish() throws IOException {
+		ensureOpen();
+		if (fFinished)
+			return;
+		closeEntry();
+		writePendingEntries(true);
+		shutdownExecutor();
+
+		long centralOffset= fWritten;
+		for (int i= 0; i < fCentralEntries.size(); i++) {
+			writeCentralHeader(fCentralEntries.get(i));
+		}
+		writeEnd(centralOffset, fWritten - centralOffset);
+		fFinished= true;
+		out.flush();
+	}
+
+	/*
+	 * @see java.util.zip.DeflaterOutputStream#flush()
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		out.flush();
+	}
+
+	/*
+	 * @see java.util.zip.ZipOutputStream#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		if (fClosed)
+			return;
+		try {
+			finish();
+		} finally {
+			fClosed= true;
+			shutdownExecutor();
+			if (fDeflater != null) {
+				fDeflater.end();
+				fDeflater= null;
+			}
+			def.end();
+			out.close();
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (fClosed)
+			throw new IOException("Stream closed"); //$NON-NLS-1$
+	}
+
+	private CentralEntry createCentralEntry(ZipEntry entry, int method) throws ZipException {
+		String name= entry.getName();
+		if (!fNames.add(name))
+			throw new ZipException("duplicate entry: " + name); //$NON-NLS-1$
+		if (entry.getTime() == -1)
+			entry.setTime(System.currentTimeMillis());
+
+		CentralEntry centralEntry= new CentralEntry();
+		centralEntry.fName= encode(name);
+		centralEntry.fMethod= method;
+		centralEntry.fDosTime= toDosTime(entry.getTime());
+		centralEntry.fComment= entry.getComment() != null ? encode(entry.getComment()) : null;
+		centralEntry.fExtra= entry.getExtra();
+		if (fIsFirstEntry) {
+			centralEntry.fExtra= addJarMagic(centralEntry.fExtra);
+			fIsFirstEntry= false;
+		}
+		if (!isAscii(centralEntry.fName) || centralEntry.fComment != null && !isAscii(centralEntry.fComment))
+			centralEntry.fFlags|= FLAG_UTF8;
+		return centralEntry;
+	}
+
+	private void startDeflating() throws IOException {
+		writePendingEntries(true);
+		fCurrent.fFlags|= FLAG_DATA_DESCRIPTOR;
+		writeLocalHeader(fCurrent);
+		fDeflater= new Deflater(fLevel, true);
+		if (fDeflaterBuffer == null)
+			fDeflaterBuffer= new byte[8192];
+		byte[] buffered= fBuffer.getBuffer();
+		int count= fBuffer.size();
+		fBuffer.reset();
+		deflate(buffered, 0, count);
+	}
+
+	private void deflate(byte[] b, int off, int len) throws IOException {
+		fCrc.update(b, off, len);
+		fDeflater.setInput(b, off, len);
+		while (!fDeflater.needsInput()) {
+			int count= fDeflater.deflate(fDeflaterBuffer, 0, fDeflaterBuffer.length);
+			writeBytes(fDeflaterBuffer, 0, count);
+		}
+	}
+
+	private void finishDeflating(CentralEntry entry) throws IOException {
+		fDeflater.finish();
+		while (!fDeflater.finished()) {
+			int count= fDeflater.deflate(fDeflaterBuffer, 0, fDeflaterBuffer.length);
+			writeBytes(fDeflaterBuffer, 0, count);
+		}
+		entry.fCrc= fCrc.getValue();
+		entry.fSize= fDeflater.getBytesRead();
+		entry.fCompressedSize= fDeflater.getBytesWritten();
+		fDeflater.end();
+		fDeflater= null;
+		if (entry.fSize > MAX_INT || entry.fCompressedSize > MAX_INT)
+			throw new ZipException("entry too large: " + fCurrentZipEntry.getName()); //$NON-NLS-1$
+
+		writeInt(DATA_DESCRIPTOR_SIGNATURE);
+		writeInt(entry.fCrc);
+		writeInt(entry.fCompressedSize);
+		writeInt(entry.fSize);
+		fCentralEntries.add(entry);
+	}
+
+	private static CompressedContent compress(byte[] content, int level) {
+		CRC32 crc= new CRC32();
+		crc.update(content, 0, content.length);
+		Deflater deflater= new Deflater(level, true);
+		try {
+			deflater.setInput(content, 0, content.length);
+			deflater.finish();
+			byte[] data= new byte[Math.max(64, content.length + content.length / 1000 + 64)];
+			int length= 0;
+			while (!deflater.finished()) {
+				if (length == data.length) {
+					byte[] larger= new byte[data.length * 2];
+					System.arraycopy(data, 0, larger, 0, length);
+					data= larger;
+				}
+				length+= deflater.deflate(data, length, data.length - length);
+			}
+			return new CompressedContent(data, length, crc.getValue(), content.length);
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Writes the pending entries in order. Waits for the compression of entries until the
+	 * pending entries fit into {@link #MAX_PENDING_BYTES}, and then writes all entries that
+	 * have already been compressed.
+	 *
+	 * @param all <code>true</code> to wait until all pending entries have been written
+	 * @throws IOException if an I/O error occurred
+	 */
+	private void writePendingEntries(boolean all) throws IOException {
+		while (!fPendingEntries.isEmpty()) {
+			PendingEntry pending= fPendingEntries.getFirst();
+			if (!all && fPendingBytes <= MAX_PENDING_BYTES && pending.fFuture != null && !pending.fFuture.isDone())
+				return;
+			fPendingEntries.removeFirst();
+			fPendingBytes-= pending.fSize;
+			writePendingEntry(pending);
+		}
+	}
+
+	private void writePendingEntry(PendingEntry pending) throws IOException {
+		CompressedContent content= pending.fContent;
+		if (content == null) {
+			try {
+				content= pending.fFuture.get();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			} catch (ExecutionException e) {
+				IOException exception= new IOException(e.getCause().getMessage());
+				exception.initCause(e.getCause());
+				throw exception;
+			}
+		}
+		CentralEntry entry= pending.fEntry;
+		entry.fCrc= content.fCrc;
+		entry.fSize= content.fSize;
+		entry.fCompressedSize= content.fLength;
+		writeLocalHeader(entry);
+		writeBytes(content.fData, 0, content.fLength);
+		fCentralEntries.add(entry);
+	}
+
+	private ExecutorService getExecutor() {
+		if (fExecutor == null) {
+			fExecutor= Executors.newFixedThreadPool(fThreads, new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread= new Thread(runnable, "JAR Export Compressor"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return fExecutor;
+	}
+
+	private void shutdownExecutor() {
+		if (fExecutor != null) {
+			fExecutor.shutdownNow();
+			fExecutor= null;
+		}
+	}
+
+	private void writeLocalHeader(CentralEntry entry) throws IOException {
+		entry.fOffset= fWritten;
+		boolean hasDescriptor= (entry.fFlags & FLAG_DATA_DESCRIPTOR) != 0;
+		writeInt(LOCAL_HEADER_SIGNATURE);
+		writeShort(entry.fMethod == STORED ? 10 : 20);
+		writeShort(entry.fFlags);
+		writeShort(entry.fMethod);
+		writeInt(entry.fDosTime);
+		writeInt(hasDescriptor ? 0 : entry.fCrc);
+		writeInt(hasDescriptor ? 0 : entry.fCompressedSize);
+		writeInt(hasDescriptor ? 0 : entry.fSize);
+		writeShort(entry.fName.length);
+		writeShort(entry.fExtra != null ? entry.fExtra.length : 0);
+		writeBytes(entry.fName, 0, entry.fName.length);
+		if (entry.fExtra != null)
+			writeBytes(entry.fExtra, 0, entry.fExtra.length);
+	}
+
+	private void writeCentralHeader(CentralEntry entry) throws IOException {
+		boolean isZip64= entry.fOffset >= MAX_INT;
+		int extraLength= entry.fExtra != null ? entry.fExtra.length : 0;
+		if (isZip64)
+			extraLength+= 12;
+		int version= isZip64 ? 45 : entry.fMethod == STORED ? 10 : 20;
+		writeInt(CENTRAL_HEADER_SIGNATURE);
+		writeShort(version);
+		writeShort(version);
+		writeShort(entry.fFlags);
+		writeShort(entry.fMethod);
+		writeInt(entry.fDosTime);
+		writeInt(entry.fCrc);
+		writeInt(entry.fCompressedSize);
+		writeInt(entry.fSize);
+		writeShort(entry.fName.length);
+		writeShort(extraLength);
+		writeShort(entry.fComment != null ? entry.fComment.length : 0);
+		writeShort(0); // disk number
+		writeShort(0); // internal attributes
+		writeInt(0); // external attributes
+		writeInt(isZip64 ? MAX_INT : entry.fOffset);
+		writeBytes(entry.fName, 0, entry.fName.length);
+		if (isZip64) {
+			writeShort(ZIP64_EXTRA);
+			writeShort(8);
+			writeLong(entry.fOffset);
+		}
+		if (entry.fExtra != null)
+			writeBytes(entry.fExtra, 0, entry.fExtra.length);
+		if (entry.fComment != null)
+			writeBytes(entry.fComment, 0, entry.fComment.length);
+	}
+
+	private void writeEnd(long centralOffset, long centralSize) throws IOException {
+		int count= fCentralEntries.size();
+		boolean isZip64= count >= MAX_SHORT || centralOffset >= MAX_INT || centralSize >= MAX_INT;
+		if (isZip64) {
+			long endOffset= fWritten;
+			writeInt(ZIP64_END_SIGNATURE);
+			writeLong(44);
+			writeShort(45);
+			writeShort(45);
+			writeInt(0);
+			writeInt(0);
+			writeLong(count);
+			writeLong(count);
+			writeLong(centralSize);
+			writeLong(centralOffset);
+
+			writeInt(ZIP64_LOCATOR_SIGNATURE);
+			writeInt(0);
+			writeLong(endOffset);
+			writeInt(1);
+		}
+		writeInt(END_SIGNATURE);
+		writeShort(0);
+		writeShort(0);
+		writeShort(Math.min(count, MAX_SHORT));
+		writeShort(Math.min(count, MAX_SHORT));
+		writeInt(Math.min(centralSize, MAX_INT));
+		writeInt(Math.min(centralOffset, MAX_INT));
+		writeShort(fComment != null ? fComment.length : 0);
+		if (fComment != null)
+			writeBytes(fComment, 0, fComment.length);
+	}
+
+	private void writeShort(int value) throws IOException {
+		out.write(value & 0xFF);
+		out.write((value >>> 8) & 0xFF);
+		fWritten+= 2;
+	}
+
+	private void writeInt(long value) throws IOException {
+		writeShort((int) (value & 0xFFFF));
+		writeShort((int) ((value >>> 16) & 0xFFFF));
+	}
+
+	private void writeLong(long value) throws IOException {
+		writeInt(value & MAX_INT);
+		writeInt(value >>> 32);
+	}
+
+	private void writeBytes(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		fWritten+= len;
+	}
+
+	private static void readFully(InputStream in, byte[] data) throws IOException {
+		int offset= 0;
+		while (offset < data.length) {
+			int count= in.read(data, offset, data.length - offset);
+			if (count == -1)
+				throw new ZipException("unexpected end of entry"); //$NON-NLS-1$
+			offset+= count;
+		}
+	}
+
+	private static byte[] addJarMagic(byte[] extra) {
+		if (extra != null) {
+			for (int i= 0; i + 4 <= extra.length; i+= 4 + ((extra[i + 2] & 0xFF) | (extra[i + 3] & 0xFF) << 8)) {
+				if (((extra[i] & 0xFF) | (extra[i + 1] & 0xFF) << 8) == JAR_MAGIC)
+					return extra;
+			}
+		}
+		int length= extra != null ? extra.length : 0;
+		byte[] result= new byte[length + 4];
+		result[0]= (byte) (JAR_MAGIC & 0xFF);
+		result[1]= (byte) (JAR_MAGIC >>> 8);
+		if (extra != null)
+			System.arraycopy(extra, 0, result, 4, length);
+		return result;
+	}
+
+	private static byte[] encode(String string) {
+		try {
+			return string.getBytes("UTF-8"); //$NON-NLS-1$
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	private static boolean isAscii(byte[] bytes) {
+		for (int i= 0; i < bytes.length; i++) {
+			if (bytes[i] < 0)
+				return false;
+		}
+		return true;
+	}
+
+	private long toDosTime(long time) {
+		fCalendar.setTimeInMillis(time);
+		int year= fCalendar.get(Calendar.YEAR);
+		if (year < 1980)
+			return (1 << 21) | (1 << 16);
+		return (year - 1980) << 25 | (fCalendar.get(Calendar.MONTH) + 1) << 21 | fCalendar.get(Calendar.DAY_OF_MONTH) << 16
+				| fCalendar.get(Calendar.HOUR_OF_DAY) << 11 | fCalendar.get(Calendar.MINUTE) << 5 | fCalendar.get(Calendar.SECOND) >> 1;
+	}
+}
@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.jarpackagerfat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+
+/**
+ * Gives access to the compressed content of the entries of a ZIP file, so that they can be
+ * copied to another archive without inflating them.
+ * <p>
+ * Only the entries that are compressed with the deflate method and that are not encrypted
+ * can be read. Archives that use ZIP64 extensions are not supported.
+ * </p>
+ *
+ * @since 3.10
+ */
+/*package*/ final class RawZipFile {
+
+	private static final int LOCAL_HEADER_SIGNATURE= 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE= 0x02014b50;
+	private static final int END_SIGNATURE= 0x06054b50;
+
+	private static final int END_LENGTH= 22;
+	private static final int LOCAL_HEADER_LENGTH= 30;
+	private static final int CENTRAL_HEADER_LENGTH= 46;
+	private static final int MAX_COMMENT_LENGTH= 0xFFFF;
+
+	private static final int FLAG_ENCRYPTED= 0x0001;
+
+	/**
+	 * Location and sizes of an entry.
+	 */
+	private static class RawEntry {
+		final long fCrc;
+		final long fCompressedSize;
+		final long fSize;
+		final long fLocalHeaderOffset;
+
+		RawEntry(long crc, long compressedSize, long size, long localHeaderOffset) {
+			fCrc= crc;
+			fCompressedSize= compressedSize;
+			fSize= size;
+			fLocalHeaderOffset= localHeaderOffset;
+		}
+	}
+
+	/**
+	 * Stream on a range of the file.
+	 */
+	private class RangeInputStream extends InputStream {
+		private long fPosition;
+		private final long fEnd;
+
+		RangeInputStream(long start, long length) {
+			fPosition= start;
+			fEnd= start + length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b= new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (fPosition >= fEnd)
+				return -1;
+			int count= (int) Math.min(len, fEnd - fPosition);
+			fFile.seek(fPosition);
+			count= fFile.read(b, off, count);
+			if (count > 0)
+				fPosition+= count;
+			return count;
+		}
+	}
+
+	private final RandomAccessFile fFile;
+
+	/**
+	 * The deflated entries, by name. Names of ambiguous entries are mapped to <code>null</code>.
+	 */
+	private final Map<String, RawEntry> fEntries= new HashMap<String, RawEntry>();
+
+	private RawZipFile(RandomAccessFile file) {
+		fFile= file;
+	}
+
+	/**
+	 * Opens a ZIP file and reads its central directory.
+	 *
+	 * @param file the ZIP file
+	 * @return the raw ZIP file, or <code>null</code> if the file cannot be read or is not supported
+	 */
+	public static RawZipFile open(File file) {
+		RandomAccessFile randomAccessFile= null;
+		try {
+			randomAccessFile= new RandomAccessFile(file, "r"); //$NON-NLS-1$
+			RawZipFile zipFile= new RawZipFile(randomAccessFile);
+			if (zipFile.readCentralDirectory()) {
+				randomAccessFile= null;
+				return zipFile;
+			}
+			return null;
+		} catch (IOException e) {
+			return null;
+		} finally {
+			if (randomAccessFile != null) {
+				try {
+					randomAccessFile.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a stream on the deflated content of the given entry.
+	 *
+	 * @param entry the entry, as returned by a {@link java.util.zip.ZipFile} on the same file
+	 * @return the stream, or <code>null</code> if the content of the entry cannot be read raw
+	 * @throws IOException if an I/O error occurred
+	 */
+	public InputStream getRawInputStream(ZipEntry entry) throws IOException {
+		RawEntry rawEntry= fEntries.get(entry.getName());
+		if (rawEntry == null || rawEntry.fCrc != entry.getCrc() || rawEntry.fSize != entry.getSize() || rawEntry.fCompressedSize != entry.getCompressedSize())
+			return null;
+
+		byte[] header= new byte[LOCAL_HEADER_LENGTH];
+		fFile.seek(rawEntry.fLocalHeaderOffset);
+		fFile.readFully(header);
+		if (getInt(header, 0) != LOCAL_HEADER_SIGNATURE)
+			return null;
+		long start= rawEntry.fLocalHeaderOffset + LOCAL_HEADER_LENGTH + getShort(header, 26) + getShort(header, 28);
+		if (start + rawEntry.fCompressedSize > fFile.length())
+			return null;
+		return new RangeInputStream(start, rawEntry.fCompressedSize);
+	}
+
+	/**
+	 * Closes the file.
+	 */
+	public void close() {
+		try {
+			fFile.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	private boolean readCentralDirectory() throws IOException {
+		long length= fFile.length();
+		int tailLength= (int) Math.min(length, END_LENGTH + MAX_COMMENT_LENGTH);
+		byte[] tail= new byte[tailLength];
+		fFile.seek(length - tailLength);
+		fFile.readFully(tail);
+
+		int end= -1;
+		for (int i= tailLength - END_LENGTH; i >= 0; i--) {
+			if (getInt(tail, i) == END_SIGNATURE && i + END_LENGTH + getShort(tail, i + 20) == tailLength) {
+				end= i;
+				break;
+			}
+		}
+		if (end == -1)
+			return false;
+
+		int count= getShort(tail, end + 10);
+		long centralSize= getInt(tail, end + 12);
+		long centralOffset= getInt(tail, end + 16);
+		if (count == 0xFFFF || centralSize == 0xFFFFFFFFL || centralOffset == 0xFFFFFFFFL)
+			return false; // ZIP64
+		long centralStart= length - tailLength + end - centralSize;
+		long base= centralStart - centralOffset; // data prepended to the archive
+		if (base < 0 || centralSize > Integer.MAX_VALUE)
+			return false;
+
+		byte[] central= new byte[(int) centralSize];
+		fFile.seek(centralStart);
+		fFile.readFully(central);
+		int position= 0;
+		for (int i= 0; i < count; i++) {
+			if (position + CENTRAL_HEADER_LENGTH > central.length || getInt(central, position) != CENTRAL_HEADER_SIGNATURE)
+				return false;
+			int flags= getShort(central, position + 8);
+			int method= getShort(central, position + 10);
+			long crc= getInt(central, position + 16);
+			long compressedSize= getInt(central, position + 20);
+			long size= getInt(central, position + 24);
+			int nameLength= getShort(central, position + 28);
+			int extraLength= getShort(central, position + 30);
+			int commentLength= getShort(central, position + 32);
+			long localHeaderOffset= getInt(central, position + 42);
+			if (position + CENTRAL_HEADER_LENGTH + nameLength > central.length)
+				return false;
+			String name= decode(central, position + CENTRAL_HEADER_LENGTH, nameLength);
+			position+= CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+
+			if (fEntries.containsKey(name)) {
+				fEntries.put(name, null);
+			} else if (method == ZipEntry.DEFLATED && (flags & FLAG_ENCRYPTED) == 0
+					&& compressedSize != 0xFFFFFFFFL && size != 0xFFFFFFFFL && localHeaderOffset != 0xFFFFFFFFL) {
+				fEntries.put(name, new RawEntry(crc, compressedSize, size, base + localHeaderOffset));
+			} else {
+				fEntries.put(name, null);
+			}
+		}
+		return true;
+	}
+
+	private static int getShort(byte[] b, int offset) {
+		return (b[offset] & 0xFF) | (b[offset + 1] & 0xFF) << 8;
+	}
+
+	private static long getInt(byte[] b, int offset) {
+		return (getShort(b, offset) | (long) getShort(b, offset + 2) << 16) & 0xFFFFFFFFL;
+	}
+
+	private static String decode(byte[] b, int offset, int length) {
+		try {
+			return new String(b, offset, length, "UTF-8"); //$NON-NLS-1$
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.javaeditor;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import org.eclipse.jdt.core.ITypeRoot;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+
+/**
+ * Caches the shared ASTs of recently active Java editors. Entries are keyed by the
+ * editor's input element and are only returned if the modification stamp of the
+ * input did not change since the AST has been created. The cache is bounded by the
+ * estimated heap retained by the ASTs and evicts the least recently used entries first.
+ * <p>
+ * This class is thread safe.
+ * </p>
+ *
+ * @since 3.10
+ */
+public final class ASTCache {
+
+	private static class CacheEntry {
+
+		private final CompilationUnit fAST;
+		private final long fModificationStamp;
+		private final long fEstimatedSize;
+
+		public CacheEntry(CompilationUnit ast, long modificationStamp) {
+			fAST= ast;
+			fModificationStamp= modificationStamp;
+			fEstimatedSize= estimateSize(ast);
+		}
+	}
+
+	/**
+	 * Estimated heap in bytes retained by an AST with resolved bindings, independent
+	 * of the size of its source. Accounts for the binding environment.
+	 */
+	private static final long ENTRY_OVERHEAD= 2 * 1024 * 1024;
+
+	/**
+	 * Estimated heap in bytes retained per source character of an AST.
+	 */
+	private static final long BYTES_PER_CHAR= 100;
+
+	private final LinkedHashMap<ITypeRoot, CacheEntry> fEntries;
+	private final long fMaxSize;
+	private long fSize;
+	private int fHits;
+	private int fMisses;
+	private int fEvictions;
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param maxSize the maximal estimated size in bytes of all cached ASTs
+	 */
+	public ASTCache(long maxSize) {
+		fMaxSize= maxSize;
+		fEntries= new LinkedHashMap<ITypeRoot, CacheEntry>(16, 0.75f, true);
+	}
+
+	/**
+	 * Returns the cached AST for the given element if it has been created for the
+	 * given modification stamp.
+	 *
+	 * @param input the Java element
+	 * @param modificationStamp the current modification stamp of the element
+	 * @return the cached AST or <code>null</code> if there is no valid one
+	 */
+	public synchronized CompilationUnit get(ITypeRoot input, long modificationStamp) {
+		CacheEntry entry= fEntries.get(input);
+		if (entry == null) {
+			fMisses++;
+			return null;
+		}
+		if (entry.fModificationStamp != modificationStamp) {
+			removeEntry(input);
+			fMisses++;
+			return null;
+		}
+		fHits++;
+		return entry.fAST;
+	}
+
+	/**
+	 * Adds the given AST to the cache, evicting the least recently used entries if
+	 * the cache would exceed its size.
+	 *
+	 * @param input the Java element
+	 * @param ast the AST of the element
+	 * @param modificationStamp the modification stamp of the element when the AST was created
+	 */
+	public synchronized void put(ITypeRoot input, CompilationUnit ast, long modificationStamp) {
+		removeEntry(input);
+
+		CacheEntry entry= new CacheEntry(ast, modificationStamp);
+		if (entry.fEstimatedSize > fMaxSize)
+			return;
+
+		fEntries.put(input, entry);
+		fSize+= entry.fEstimatedSize;
+
+		for (Iterator<Entry<ITypeRoot, CacheEntry>> iter= fEntries.entrySet().iterator(); fSize > fMaxSize && iter.hasNext();) {
+			CacheEntry eldest= iter.next().getValue();
+			iter.remove();
+			fSize-= eldest.fEstimatedSize;
+			fEvictions++;
+		}
+	}
+
+	/**
+	 * Removes the AST of the given element from the cache.
+	 *
+	 * @param input the Java element
+	 * @return the removed AST or <code>null</code> if none was cached
+	 */
+	public synchronized CompilationUnit remove(ITypeRoot input) {
+		CacheEntry entry= removeEntry(input);
+		return entry != null ? entry.fAST : null;
+	}
+
+	/**
+	 * Removes all ASTs from the cache.
+	 */
+	public synchronized void clear() {
+		fEntries.clear();
+		fSize= 0;
+	}
+
+	private CacheEntry removeEntry(ITypeRoot input) {
+		CacheEntry entry= fEntries.remove(input);
+		if (entry != null)
+			fSize-= entry.fEstimatedSize;
+		return entry;
+	}
+
+	/**
+	 * Tells whether the given AST is cached.
+	 *
+	 * @param ast the AST
+	 * @return <code>true</code> if the AST is cached
+	 */
+	public synchronized boolean contains(CompilationUnit ast) {
+		for (Iterator<CacheEntry> iter= fEntries.values().iterator(); iter.hasNext();) {
+			if (iter.next().fAST == ast)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of requests which have been served from the cache
+	 */
+	public synchronized int getHits() {
+		return fHits;
+	}
+
+	/**
+	 * @return the number of requests for which no valid AST was cached
+	 */
+	public synchronized int getMisses() {
+		return fMisses;
+	}
+
+	/**
+	 * @return the number of ASTs which have been evicted to stay within the size bound
+	 */
+	public synchronized int getEvictions() {
+		return fEvictions;
+	}
+
+	/**
+	 * @return the number of cached ASTs
+	 */
+	public synchronized int getEntryCount() {
+		return fEntries.size();
+	}
+
+	/**
+	 * @return the estimated size in bytes of all cached ASTs
+	 */
+	public synchronized long getEstimatedSize() {
+		return fSize;
+	}
+
+	/**
+	 * @return the maximal estimated size in bytes of all cached ASTs
+	 */
+	public long getMaxSize() {
+		return fMaxSize;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return "ASTCache [entries: " + fEntries.size() + ", size: " + fSize + ", hits: " + fHits + ", misses: " + fMisses + ", evictions: " + fEvictions + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+	}
+
+	private static long estimateSize(CompilationUnit ast) {
+		return ENTRY_OVERHEAD + BYTES_PER_CHAR * ast.getLength();
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,6 +20,15 @@ import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.core.runtime.Status;
 
+import org.eclipse.core.resources.IResource;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.LocationKind;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+
 import org.eclipse.ui.IPartListener2;
 import org.eclipse.ui.IWindowListener;
 import org.eclipse.ui.IWorkbenchPart;
@@ -27,8 +36,12 @@ import org.eclipse.ui.IWorkbenchPartReference;
 import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.PlatformUI;
 
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IClassFile;
 import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
 import org.eclipse.jdt.core.ITypeRoot;
+import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
@@ -48,6 +61,9 @@ import org.eclipse.jdt.internal.ui.JavaPlugin;
 /**
  * Provides a shared AST for clients. The shared AST is
  * the AST of the active Java editor's input element.
+ * The ASTs of recently active editors are kept in an
+ * {@link ASTCache} until the Java model changes. They are
+ * only returned for {@link SharedASTProvider#WAIT_ACTIVE_ONLY}.
  *
  * @since 3.0
  */
@@ -104,6 +120,14 @@ public final class ASTProvider {
 		 * @see org.eclipse.ui.IPartListener2#partClosed(org.eclipse.ui.IWorkbenchPartReference)
 		 */
 		public void partClosed(IWorkbenchPartReference ref) {
+			if (isJavaEditor(ref)) {
+				IWorkbenchPart part= ref.getPart(false);
+				if (part instanceof JavaEditor) {
+					ITypeRoot javaElement= ((JavaEditor)part).getInputJavaElement();
+					if (javaElement != null)
+						fRecentASTs.remove(javaElement);
+				}
+			}
 			if (isActiveEditor(ref)) {
 				if (DEBUG)
 					System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "closed active editor: " + ref.getTitle()); //$NON-NLS-1$ //$NON-NLS-2$
@@ -208,10 +232,25 @@ public final class ASTProvider {
 
 	private static final String DEBUG_PREFIX= "ASTProvider > "; //$NON-NLS-1$
 
+	/**
+	 * Modification stamp of elements for which no reliable stamp can be computed.
+	 * ASTs for such elements are not kept in the cache of recent ASTs.
+	 */
+	private static final long UNKNOWN_MODIFICATION_STAMP= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+
+	/**
+	 * Maximal estimated size of the ASTs of recently active editors.
+	 */
+	private static final long MAX_RECENT_AST_SIZE= Math.min(64 * 1024 * 1024, Runtime.getRuntime().maxMemory() / 16);
+
 
 	private ITypeRoot fReconcilingJavaElement;
 	private ITypeRoot fActiveJavaElement;
 	private CompilationUnit fAST;
+	private long fASTModificationStamp= UNKNOWN_MODIFICATION_STAMP;
+	private long fReconcilingModificationStamp= UNKNOWN_MODIFICATION_STAMP;
+	private final ASTCache fRecentASTs= new ASTCache(MAX_RECENT_AST_SIZE);
+	private IElementChangedListener fElementChangedListener;
 	private ActivationListener fActivationListener;
 	private Object fReconcileLock= new Object();
 	private Object fWaitLock= new Object();
@@ -248,6 +287,15 @@ public final class ASTProvider {
 		IWorkbenchWindow[] windows= PlatformUI.getWorkbench().getWorkbenchWindows();
 		for (int i= 0, length= windows.length; i < length; i++)
 			windows[i].getPartService().addPartListener(fActivationListener);
+
+		// Bindings of recent ASTs may be stale after any change to the Java model,
+		// including the reconcile of a working copy they depend on
+		fElementChangedListener= new IElementChangedListener() {
+			public void elementChanged(ElementChangedEvent event) {
+				fRecentASTs.clear();
+			}
+		};
+		JavaCore.addElementChangedListener(fElementChangedListener, ElementChangedEvent.POST_CHANGE | ElementChangedEvent.POST_RECONCILE);
 	}
 
 	void activeJavaEditorChanged(IWorkbenchPart editor) {
@@ -256,10 +304,34 @@ public final class ASTProvider {
 		if (editor instanceof JavaEditor)
 			javaElement= ((JavaEditor)editor).getInputJavaElement();
 
+		long modificationStamp= javaElement != null ? getModificationStamp(javaElement) : UNKNOWN_MODIFICATION_STAMP;
+		boolean reusedRecentAST= false;
 		synchronized (this) {
+			if (fActiveJavaElement != null && fAST != null && fASTModificationStamp != UNKNOWN_MODIFICATION_STAMP)
+				fRecentASTs.put(fActiveJavaElement, fAST, fASTModificationStamp);
+
 			fActiveEditor= editor;
 			fActiveJavaElement= javaElement;
 			cache(null, javaElement);
+
+			if (javaElement != null) {
+				CompilationUnit recentAST= fRecentASTs.get(javaElement, modificationStamp);
+				if (recentAST != null) {
+					fRecentASTs.remove(javaElement);
+					if (DEBUG)
+						System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "reusing recent AST: " + toString(recentAST) + " for: " + toString(javaElement) + " - " + fRecentASTs); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+					fAST= recentAST;
+					fASTModificationStamp= modificationStamp;
+					reusedRecentAST= true;
+				}
+			}
+		}
+
+		if (reusedRecentAST) {
+			// wake up clients that wait for the AST of the new active element
+			synchronized (fWaitLock) {
+				fWaitLock.notifyAll();
+			}
 		}
 
 		if (DEBUG)
@@ -284,7 +356,18 @@ public final class ASTProvider {
 	 * @return <code>true</code> if the given AST is the cached one
 	 */
 	public boolean isCached(CompilationUnit ast) {
-		return ast != null && fAST == ast;
+		return ast != null && (fAST == ast || fRecentASTs.contains(ast));
+	}
+
+	/**
+	 * Returns the cache holding the ASTs of recently active editors. Clients
+	 * can use it to retrieve hit and miss statistics.
+	 *
+	 * @return the cache of recent ASTs
+	 * @since 3.10
+	 */
+	public ASTCache getRecentASTCache() {
+		return fRecentASTs;
 	}
 
 	/**
@@ -313,8 +396,10 @@ public final class ASTProvider {
 		if (DEBUG)
 			System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "about to reconcile: " + toString(javaElement)); //$NON-NLS-1$ //$NON-NLS-2$
 
+		long modificationStamp= getModificationStamp(javaElement);
 		synchronized (fReconcileLock) {
 			fReconcilingJavaElement= javaElement;
+			fReconcilingModificationStamp= modificationStamp;
 			fIsReconciling= true;
 		}
 		cache(null, javaElement);
@@ -332,6 +417,7 @@ public final class ASTProvider {
 			System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "disposing AST: " + toString(fAST) + " for: " + toString(fActiveJavaElement)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
 		fAST= null;
+		fASTModificationStamp= UNKNOWN_MODIFICATION_STAMP;
 
 		cache(null, null);
 	}
@@ -374,6 +460,17 @@ public final class ASTProvider {
 	 * @param javaElement the java element
 	 */
 	private synchronized void cache(CompilationUnit ast, ITypeRoot javaElement) {
+		cache(ast, javaElement, UNKNOWN_MODIFICATION_STAMP);
+	}
+
+	/**
+	 * Caches the given compilation unit AST for the given Java element.
+	 *
+	 * @param ast the ast
+	 * @param javaElement the java element
+	 * @param modificationStamp the modification stamp of the element when the AST was created
+	 */
+	private synchronized void cache(CompilationUnit ast, ITypeRoot javaElement, long modificationStamp) {
 
 		if (fActiveJavaElement != null && !fActiveJavaElement.equals(javaElement)) {
 			if (DEBUG && javaElement != null) // don't report call from disposeAST()
@@ -388,6 +485,7 @@ public final class ASTProvider {
 			disposeAST();
 
 		fAST= ast;
+		fASTModificationStamp= ast != null ? modificationStamp : UNKNOWN_MODIFICATION_STAMP;
 
 		// Signal AST change
 		synchronized (fWaitLock) {
@@ -414,9 +512,20 @@ public final class ASTProvider {
 		if (progressMonitor != null && progressMonitor.isCanceled())
 			return null;
 
+		long modificationStamp= getModificationStamp(input);
 		boolean isActiveElement;
 		synchronized (this) {
 			isActiveElement= input.equals(fActiveJavaElement);
+			if (!isActiveElement && waitFlag == SharedASTProvider.WAIT_ACTIVE_ONLY) {
+				// WAIT_YES must create an AST that is up to date, WAIT_NO must not return ASTs of other elements
+				CompilationUnit recentAST= fRecentASTs.get(input, modificationStamp);
+				if (recentAST != null) {
+					if (DEBUG)
+						System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "returning recent AST:" + toString(recentAST) + " for: " + input.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+					return recentAST;
+				}
+			}
 			if (isActiveElement) {
 				if (fAST != null) {
 					if (DEBUG)
@@ -586,7 +695,11 @@ public final class ASTProvider {
 		PlatformUI.getWorkbench().removeWindowListener(fActivationListener);
 		fActivationListener= null;
 
+		JavaCore.removeElementChangedListener(fElementChangedListener);
+		fElementChangedListener= null;
+
 		disposeAST();
+		fRecentASTs.clear();
 
 		synchronized (fWaitLock) {
 			fWaitLock.notifyAll();
@@ -621,8 +734,34 @@ public final class ASTProvider {
 
 				return;
 			}
-			cache(ast, javaElement);
+			cache(ast, javaElement, fReconcilingModificationStamp);
+		}
+	}
+
+	/**
+	 * Returns the modification stamp of the given element's content. For compilation
+	 * units this is the stamp of the connected document, which also changes for
+	 * unsaved modifications.
+	 *
+	 * @param javaElement the Java element
+	 * @return the modification stamp or {@link #UNKNOWN_MODIFICATION_STAMP} if unknown
+	 */
+	private static long getModificationStamp(ITypeRoot javaElement) {
+		if (javaElement instanceof IClassFile)
+			return 0; // class files only change with the class path, which clears the cache
+
+		IResource resource= javaElement.getResource();
+		if (resource == null)
+			return UNKNOWN_MODIFICATION_STAMP;
+
+		ITextFileBuffer buffer= FileBuffers.getTextFileBufferManager().getTextFileBuffer(resource.getFullPath(), LocationKind.IFILE);
+		if (buffer != null) {
+			IDocument document= buffer.getDocument();
+			if (document instanceof IDocumentExtension4)
+				return ((IDocumentExtension4)document).getModificationStamp();
+			return UNKNOWN_MODIFICATION_STAMP;
 		}
+		return resource.getModificationStamp();
 	}
 
 	private static String getThreadName() {
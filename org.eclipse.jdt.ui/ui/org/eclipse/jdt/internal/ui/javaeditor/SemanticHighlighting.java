@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -90,6 +90,19 @@ public abstract class SemanticHighlighting {
 	 */
 	public abstract boolean consumes(SemanticToken token);
 
+	/**
+	 * Returns the node types of the parents of the simple names that this semantic
+	 * highlighting can consume. {@link #consumes(SemanticToken)} is only called for
+	 * simple names whose parent has one of these node types.
+	 *
+	 * @return the node types as defined by {@link org.eclipse.jdt.core.dom.ASTNode#getNodeType()},
+	 *         or <code>null</code> if simple names with any parent can be consumed
+	 * @since 3.10
+	 */
+	public int[] getConsumedParentNodeTypes() {
+		return null;
+	}
+
 	/**
 	 * Returns <code>true</code> iff the semantic highlighting consumes the
 	 * semantic token.
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,7 @@
 package org.eclipse.jdt.internal.ui.javaeditor;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import org.eclipse.swt.widgets.Display;
@@ -22,9 +23,15 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextInputListener;
+import org.eclipse.jface.text.IViewportListener;
 import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.TextPresentation;
 import org.eclipse.jface.text.source.ISourceViewer;
 
@@ -38,8 +45,12 @@ import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.ConstructorInvocation;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.Initializer;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.NodeFinder;
 import org.eclipse.jdt.core.dom.NumberLiteral;
 import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.StructuralPropertyDescriptor;
 import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
 
 import org.eclipse.jdt.internal.corext.dom.GenericVisitor;
@@ -68,11 +79,30 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 		/** The semantic token */
 		private SemanticToken fToken= new SemanticToken();
 
+		/** Start of the reconciled range */
+		private int fRangeStart;
+		/** End of the reconciled range (exclusive) */
+		private int fRangeEnd;
+
+		/**
+		 * Restricts the collected positions to those starting in the given range.
+		 *
+		 * @param start the start of the range
+		 * @param end the end of the range (exclusive)
+		 */
+		public void setRange(int start, int end) {
+			fRangeStart= start;
+			fRangeEnd= end;
+		}
+
 		/*
 		 * @see org.eclipse.jdt.internal.corext.dom.GenericVisitor#visitNode(org.eclipse.jdt.core.dom.ASTNode)
 		 */
 		@Override
 		protected boolean visitNode(ASTNode node) {
+			int offset= node.getStartPosition();
+			if (offset >= fRangeEnd || offset + node.getLength() <= fRangeStart)
+				return false;
 			if ((node.getFlags() & ASTNode.MALFORMED) == ASTNode.MALFORMED) {
 				retainPositions(node.getStartPosition(), node.getLength());
 				return false;
@@ -163,14 +193,22 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 		 */
 		@Override
 		public boolean visit(SimpleName node) {
+			int offset= node.getStartPosition();
+			if (offset < fRangeStart || offset >= fRangeEnd)
+				return false;
+
+			int parentType= node.getParent().getNodeType();
+			int[] consumers= parentType < fJobConsumers.length ? fJobConsumers[parentType] : fJobAnyParentConsumers;
+			if (consumers.length == 0)
+				return false;
+
 			fToken.update(node);
-			for (int i= 0, n= fJobSemanticHighlightings.length; i < n; i++) {
-				SemanticHighlighting semanticHighlighting= fJobSemanticHighlightings[i];
-				if (fJobHighlightings[i].isEnabled() && semanticHighlighting.consumes(fToken)) {
-					int offset= node.getStartPosition();
+			for (int i= 0, n= consumers.length; i < n; i++) {
+				int index= consumers[i];
+				if (fJobSemanticHighlightings[index].consumes(fToken)) {
 					int length= node.getLength();
 					if (offset > -1 && length > 0)
-						addPosition(offset, length, fJobHighlightings[i]);
+						addPosition(offset, length, fJobHighlightings[index]);
 					break;
 				}
 			}
@@ -185,15 +223,17 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 		 * @param highlighting The highlighting
 		 */
 		private void addPosition(int offset, int length, Highlighting highlighting) {
+			if (offset < fRangeStart || offset >= fRangeEnd)
+				return;
+
 			boolean isExisting= false;
-			// TODO: use binary search
-			for (int i= 0, n= fRemovedPositions.size(); i < n; i++) {
+			for (int i= computeIndexAtOffset(fRemovedPositions, offset), n= fRemovedPositions.size(); i < n; i++) {
 				HighlightedPosition position= (HighlightedPosition) fRemovedPositions.get(i);
-				if (position == null)
-					continue;
-				if (position.isEqual(offset, length, highlighting)) {
+				if (position.getOffset() > offset)
+					break;
+				if (!fRetainedPositions.get(i) && position.isEqual(offset, length, highlighting)) {
 					isExisting= true;
-					fRemovedPositions.set(i, null);
+					fRetainedPositions.set(i);
 					fNOfRemovedPositions--;
 					break;
 				}
@@ -211,20 +251,145 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 		 * @param length The range length
 		 */
 		private void retainPositions(int offset, int length) {
-			// TODO: use binary search
-			for (int i= 0, n= fRemovedPositions.size(); i < n; i++) {
+			for (int i= computeIndexAtOffset(fRemovedPositions, offset), n= fRemovedPositions.size(); i < n; i++) {
 				HighlightedPosition position= (HighlightedPosition) fRemovedPositions.get(i);
-				if (position != null && position.isContained(offset, length)) {
-					fRemovedPositions.set(i, null);
+				if (position.getOffset() >= offset + length)
+					break;
+				if (!fRetainedPositions.get(i) && position.isContained(offset, length)) {
+					fRetainedPositions.set(i);
 					fNOfRemovedPositions--;
 				}
 			}
 		}
 	}
 
+	/**
+	 * Tracks the document range changed since the last reconcile and the visible range.
+	 * <p>
+	 * NOTE: Called in the UI thread.
+	 * </p>
+	 *
+	 * @since 3.10
+	 */
+	private class ChangeTracker implements IDocumentListener, ITextInputListener, IViewportListener {
+
+		/*
+		 * @see org.eclipse.jface.text.IDocumentListener#documentAboutToBeChanged(org.eclipse.jface.text.DocumentEvent)
+		 */
+		public void documentAboutToBeChanged(DocumentEvent event) {
+			int offset= event.getOffset();
+			int end= offset + event.getLength();
+			String text= event.getText();
+			int newEnd= offset + (text == null ? 0 : text.length());
+			boolean isStructural= isStructuralChange(event);
+			synchronized (fDirtyRegionLock) {
+				// a region taken for the next reconcile does not match its AST anymore
+				fReconcileDirtyRegion= null;
+				if (isStructural) {
+					fIsFullReconcileNeeded= true;
+				} else if (fDirtyStart == -1) {
+					fDirtyStart= offset;
+					fDirtyEnd= newEnd;
+				} else {
+					fDirtyStart= Math.min(fDirtyStart, offset);
+					fDirtyEnd= Math.max(fDirtyEnd >= end ? fDirtyEnd + newEnd - end : fDirtyEnd, newEnd);
+				}
+			}
+		}
+
+		/**
+		 * Tells whether the change may alter the structure of the AST outside of the
+		 * changed range, e.g. by adding or removing braces, quotes or comments.
+		 *
+		 * @param event the document event
+		 * @return <code>true</code> if the change cannot be confined to the changed range
+		 */
+		private boolean isStructuralChange(DocumentEvent event) {
+			try {
+				return containsStructuralCharacter(event.getText()) || containsStructuralCharacter(event.getDocument().get(event.getOffset(), event.getLength()));
+			} catch (BadLocationException e) {
+				return true;
+			}
+		}
+
+		private boolean containsStructuralCharacter(String text) {
+			if (text == null)
+				return false;
+			for (int i= 0, n= text.length(); i < n; i++) {
+				switch (text.charAt(i)) {
+					case '{':
+					case '}':
+					case '"':
+					case '\'':
+					case '/':
+					case '*':
+						return true;
+					default:
+						break;
+				}
+			}
+			return false;
+		}
+
+		/*
+		 * @see org.eclipse.jface.text.IDocumentListener#documentChanged(org.eclipse.jface.text.DocumentEvent)
+		 */
+		public void documentChanged(DocumentEvent event) {
+			// Do nothing
+		}
+
+		/*
+		 * @see org.eclipse.jface.text.ITextInputListener#inputDocumentAboutToBeChanged(org.eclipse.jface.text.IDocument, org.eclipse.jface.text.IDocument)
+		 */
+		public void inputDocumentAboutToBeChanged(IDocument oldInput, IDocument newInput) {
+			if (oldInput != null)
+				oldInput.removeDocumentListener(this);
+		}
+
+		/*
+		 * @see org.eclipse.jface.text.ITextInputListener#inputDocumentChanged(org.eclipse.jface.text.IDocument, org.eclipse.jface.text.IDocument)
+		 */
+		public void inputDocumentChanged(IDocument oldInput, IDocument newInput) {
+			synchronized (fDirtyRegionLock) {
+				fReconcileDirtyRegion= null;
+				fIsFullReconcileNeeded= true;
+			}
+			if (newInput != null)
+				newInput.addDocumentListener(this);
+		}
+
+		/*
+		 * @see org.eclipse.jface.text.IViewportListener#viewportChanged(int)
+		 */
+		public void viewportChanged(int verticalOffset) {
+			updateViewport();
+		}
+
+		/**
+		 * Remembers the document range shown in the viewer.
+		 */
+		public void updateViewport() {
+			ISourceViewer sourceViewer= fSourceViewer;
+			if (sourceViewer == null || sourceViewer.getTextWidget() == null || sourceViewer.getTextWidget().isDisposed())
+				return;
+			int start= sourceViewer.getTopIndexStartOffset();
+			int end= sourceViewer.getBottomIndexEndOffset();
+			if (start < 0 || end < start)
+				return;
+			fViewportStart= start;
+			fViewportEnd= end + 1;
+		}
+	}
+
 	/** Position collector */
 	private PositionCollector fCollector= new PositionCollector();
 
+	/**
+	 * Change tracker.
+	 * @since 3.10
+	 */
+	private ChangeTracker fChangeTracker;
+
 	/** The Java editor this semantic highlighting reconciler is installed on */
 	private JavaEditor fEditor;
 	/** The source viewer this semantic highlighting reconciler is installed on */
@@ -238,11 +403,58 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 
 	/** Background job's added highlighted positions */
 	private List<Position> fAddedPositions= new ArrayList<Position>();
-	/** Background job's removed highlighted positions */
+	/** Background job's removed highlighted positions, ordered by offset */
 	private List<Position> fRemovedPositions= new ArrayList<Position>();
+	/**
+	 * Indices of the positions in {@link #fRemovedPositions} that are still valid.
+	 * @since 3.10
+	 */
+	private BitSet fRetainedPositions= new BitSet();
 	/** Number of removed positions */
 	private int fNOfRemovedPositions;
 
+	/**
+	 * Dirty region lock.
+	 * @since 3.10
+	 */
+	private final Object fDirtyRegionLock= new Object();
+	/**
+	 * Start of the document range changed since the last reconcile, <code>-1</code> if unchanged.
+	 * @since 3.10
+	 */
+	private int fDirtyStart= -1;
+	/**
+	 * End of the document range changed since the last reconcile (exclusive).
+	 * @since 3.10
+	 */
+	private int fDirtyEnd;
+	/**
+	 * <code>true</code> iff the changes since the last reconcile cannot be confined to the dirty range.
+	 * @since 3.10
+	 */
+	private boolean fIsFullReconcileNeeded= true;
+	/**
+	 * <code>true</code> iff {@link #aboutToBeReconciled()} has taken the dirty region for the next reconcile.
+	 * @since 3.10
+	 */
+	private boolean fHasReconcileDirtyRegion;
+	/**
+	 * The dirty region for the next reconcile, <code>null</code> if the whole AST has to be reconciled.
+	 * @since 3.10
+	 */
+	private IRegion fReconcileDirtyRegion;
+
+	/**
+	 * Start of the document range shown in the viewer.
+	 * @since 3.10
+	 */
+	private volatile int fViewportStart;
+	/**
+	 * End of the document range shown in the viewer (exclusive).
+	 * @since 3.10
+	 */
+	private volatile int fViewportEnd;
+
 	/** Background job */
 	private Job fJob;
 	/** Background job lock */
@@ -265,6 +477,18 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	private SemanticHighlighting[] fJobSemanticHighlightings;
 	/** Highlightings - cache for background thread, only valid during {@link #reconciled(CompilationUnit, boolean, IProgressMonitor)} */
 	private Highlighting[] fJobHighlightings;
+	/**
+	 * Indices of the enabled semantic highlightings that may consume a simple name, by the node type of the name's parent -
+	 * cache for background thread, only valid during {@link #reconciled(CompilationUnit, boolean, IProgressMonitor)}
+	 * @since 3.10
+	 */
+	private int[][] fJobConsumers;
+	/**
+	 * Indices of the enabled semantic highlightings that may consume a simple name with any parent -
+	 * cache for background thread, only valid during {@link #reconciled(CompilationUnit, boolean, IProgressMonitor)}
+	 * @since 3.10
+	 */
+	private int[] fJobAnyParentConsumers;
 
 	/**
 	 * XXX Hack for performance reasons (should loop over fJobSemanticHighlightings can call consumes(*))
@@ -276,24 +500,61 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	 * @see org.eclipse.jdt.internal.ui.text.java.IJavaReconcilingListener#aboutToBeReconciled()
 	 */
 	public void aboutToBeReconciled() {
-		// Do nothing
+		synchronized (fDirtyRegionLock) {
+			if (fIsFullReconcileNeeded || fDirtyStart == -1 || fHasReconcileDirtyRegion)
+				fReconcileDirtyRegion= null;
+			else
+				fReconcileDirtyRegion= new Region(fDirtyStart, fDirtyEnd - fDirtyStart);
+			fHasReconcileDirtyRegion= true;
+			fIsFullReconcileNeeded= false;
+			fDirtyStart= -1;
+		}
+	}
+
+	/**
+	 * Takes the dirty region that has been recorded for this reconcile by {@link #aboutToBeReconciled()}.
+	 *
+	 * @return the dirty region, or <code>null</code> if the whole AST has to be reconciled
+	 * @since 3.10
+	 */
+	private IRegion takeReconcileDirtyRegion() {
+		synchronized (fDirtyRegionLock) {
+			IRegion dirtyRegion= fHasReconcileDirtyRegion ? fReconcileDirtyRegion : null;
+			fHasReconcileDirtyRegion= false;
+			fReconcileDirtyRegion= null;
+			return dirtyRegion;
+		}
+	}
+
+	/**
+	 * Makes the next reconcile visit the whole AST.
+	 *
+	 * @since 3.10
+	 */
+	private void setFullReconcileNeeded() {
+		synchronized (fDirtyRegionLock) {
+			fIsFullReconcileNeeded= true;
+		}
 	}
 
 	/*
 	 * @see org.eclipse.jdt.internal.ui.text.java.IJavaReconcilingListener#reconciled(CompilationUnit, boolean, IProgressMonitor)
 	 */
 	public void reconciled(CompilationUnit ast, boolean forced, IProgressMonitor progressMonitor) {
+		IRegion dirtyRegion= takeReconcileDirtyRegion();
 		// ensure at most one thread can be reconciling at any time
 		synchronized (fReconcileLock) {
-			if (fIsReconciling)
+			if (fIsReconciling) {
+				setFullReconcileNeeded();
 				return;
-			else
+			} else
 				fIsReconciling= true;
 		}
 		fJobPresenter= fPresenter;
 		fJobSemanticHighlightings= fSemanticHighlightings;
 		fJobHighlightings= fHighlightings;
 
+		boolean isComplete= false;
 		try {
 			if (fJobPresenter == null || fJobSemanticHighlightings == null || fJobHighlightings == null)
 				return;
@@ -303,37 +564,31 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 			if (ast == null || fJobPresenter.isCanceled())
 				return;
 
-			ASTNode[] subtrees= getAffectedSubtrees(ast);
-			if (subtrees.length == 0)
-				return;
-
-			startReconcilingPositions();
+			IRegion[] regions= getAffectedRegions(ast, forced ? null : dirtyRegion);
 
-			if (!fJobPresenter.isCanceled()) {
-				fJobDeprecatedMemberHighlighting= null;
-				for (int i= 0, n= fJobSemanticHighlightings.length; i < n; i++) {
-					SemanticHighlighting semanticHighlighting= fJobSemanticHighlightings[i];
-					if (fJobHighlightings[i].isEnabled() && semanticHighlighting instanceof DeprecatedMemberHighlighting) {
-						fJobDeprecatedMemberHighlighting= fJobHighlightings[i];
-						break;
-					}
+			fJobDeprecatedMemberHighlighting= null;
+			for (int i= 0, n= fJobSemanticHighlightings.length; i < n; i++) {
+				SemanticHighlighting semanticHighlighting= fJobSemanticHighlightings[i];
+				if (fJobHighlightings[i].isEnabled() && semanticHighlighting instanceof DeprecatedMemberHighlighting) {
+					fJobDeprecatedMemberHighlighting= fJobHighlightings[i];
+					break;
 				}
-				reconcilePositions(subtrees);
 			}
+			initializeConsumers();
 
-			TextPresentation textPresentation= null;
-			if (!fJobPresenter.isCanceled())
-				textPresentation= fJobPresenter.createPresentation(fAddedPositions, fRemovedPositions);
-
-			if (!fJobPresenter.isCanceled())
-				updatePresentation(textPresentation, fAddedPositions, fRemovedPositions);
+			for (int i= 0; i < regions.length && !fJobPresenter.isCanceled(); i++)
+				reconcileRegion(ast, regions[i]);
 
-			stopReconcilingPositions();
+			isComplete= !fJobPresenter.isCanceled();
 		} finally {
+			if (!isComplete)
+				setFullReconcileNeeded();
 			fJobPresenter= null;
 			fJobSemanticHighlightings= null;
 			fJobHighlightings= null;
 			fJobDeprecatedMemberHighlighting= null;
+			fJobConsumers= null;
+			fJobAnyParentConsumers= null;
 			synchronized (fReconcileLock) {
 				fIsReconciling= false;
 			}
@@ -341,44 +596,190 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	}
 
 	/**
-	 * @param node Root node
-	 * @return Array of subtrees that may be affected by past document changes
+	 * Returns the document regions whose highlighting may be affected by past document changes.
+	 * Changes inside of a method or initializer body only affect that body. Otherwise, the
+	 * visible region is returned first, followed by the rest of the document.
+	 *
+	 * @param ast the AST
+	 * @param dirtyRegion the document region changed since the last reconcile, or
+	 *            <code>null</code> if unknown
+	 * @return the regions to reconcile, in order
+	 * @since 3.10
 	 */
-	private ASTNode[] getAffectedSubtrees(ASTNode node) {
-		// TODO: only return nodes which are affected by document changes - would require an 'anchor' concept for taking distant effects into account
-		return new ASTNode[] { node };
+	private IRegion[] getAffectedRegions(CompilationUnit ast, IRegion dirtyRegion) {
+		if (dirtyRegion != null) {
+			ASTNode body= getEnclosingBody(ast, dirtyRegion);
+			if (body != null)
+				return new IRegion[] { new Region(body.getStartPosition(), body.getLength()) };
+		}
+
+		int viewportStart= fViewportStart;
+		int viewportEnd= fViewportEnd;
+		if (viewportStart >= viewportEnd)
+			return new IRegion[] { new Region(0, Integer.MAX_VALUE) };
+		return new IRegion[] {
+				new Region(viewportStart, viewportEnd - viewportStart),
+				new Region(0, viewportStart),
+				new Region(viewportEnd, Integer.MAX_VALUE - viewportEnd)
+		};
 	}
 
 	/**
-	 * Start reconciling positions.
+	 * Returns the outermost method or initializer body that contains the given region.
+	 *
+	 * @param ast the AST
+	 * @param region the region
+	 * @return the body, or <code>null</code> if the region is not strictly inside of a body
+	 * @since 3.10
 	 */
-	private void startReconcilingPositions() {
-		fJobPresenter.addAllPositions(fRemovedPositions);
-		fNOfRemovedPositions= fRemovedPositions.size();
+	private static ASTNode getEnclosingBody(CompilationUnit ast, IRegion region) {
+		int start= region.getOffset();
+		int end= start + region.getLength();
+		ASTNode body= null;
+		for (ASTNode node= NodeFinder.perform(ast, start, region.getLength()); node != null; node= node.getParent()) {
+			StructuralPropertyDescriptor location= node.getLocationInParent();
+			if (location == MethodDeclaration.BODY_PROPERTY || location == Initializer.BODY_PROPERTY)
+				body= node;
+		}
+		if (body == null || start <= body.getStartPosition() || end >= body.getStartPosition() + body.getLength())
+			return null;
+		return body;
 	}
 
 	/**
-	 * Reconcile positions based on the AST subtrees
+	 * Computes the dispatch table from the node type of the parent of a simple name to the
+	 * enabled semantic highlightings that may consume the name.
 	 *
-	 * @param subtrees the AST subtrees
+	 * @since 3.10
 	 */
-	private void reconcilePositions(ASTNode[] subtrees) {
-		// FIXME: remove positions not covered by subtrees
+	private void initializeConsumers() {
+		int n= fJobSemanticHighlightings.length;
+		int[][] parentNodeTypes= new int[n][];
+		int maxNodeType= -1;
+		for (int i= 0; i < n; i++) {
+			parentNodeTypes[i]= fJobSemanticHighlightings[i].getConsumedParentNodeTypes();
+			if (parentNodeTypes[i] != null) {
+				for (int j= 0; j < parentNodeTypes[i].length; j++)
+					maxNodeType= Math.max(maxNodeType, parentNodeTypes[i][j]);
+			}
+		}
+
+		fJobAnyParentConsumers= getConsumers(parentNodeTypes, -1);
+		fJobConsumers= new int[maxNodeType + 1][];
+		for (int nodeType= 0; nodeType <= maxNodeType; nodeType++)
+			fJobConsumers[nodeType]= getConsumers(parentNodeTypes, nodeType);
+	}
+
+	/**
+	 * @param parentNodeTypes the consumed parent node types of each semantic highlighting
+	 * @param nodeType the parent node type, or <code>-1</code> for node types that no
+	 *            semantic highlighting consumes explicitly
+	 * @return the indices of the enabled semantic highlightings that may consume a simple name
+	 *         with the given parent node type, in order of precedence
+	 * @since 3.10
+	 */
+	private int[] getConsumers(int[][] parentNodeTypes, int nodeType) {
+		int[] consumers= new int[parentNodeTypes.length];
+		int count= 0;
+		for (int i= 0; i < parentNodeTypes.length; i++) {
+			if (fJobHighlightings[i].isEnabled() && (parentNodeTypes[i] == null || contains(parentNodeTypes[i], nodeType)))
+				consumers[count++]= i;
+		}
+		int[] result= new int[count];
+		System.arraycopy(consumers, 0, result, 0, count);
+		return result;
+	}
+
+	private static boolean contains(int[] array, int value) {
+		for (int i= 0; i < array.length; i++) {
+			if (array[i] == value)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Reconciles and updates the positions that start in the given region.
+	 *
+	 * @param ast the AST
+	 * @param region the region
+	 * @since 3.10
+	 */
+	private void reconcileRegion(CompilationUnit ast, IRegion region) {
+		if (region.getLength() <= 0)
+			return;
+
+		int start= region.getOffset();
+		int end= start + region.getLength();
+		startReconcilingPositions(start, end);
+
+		if (!fJobPresenter.isCanceled())
+			reconcilePositions(ast, start, end);
+
+		TextPresentation textPresentation= null;
+		if (!fJobPresenter.isCanceled())
+			textPresentation= fJobPresenter.createPresentation(fAddedPositions, fRemovedPositions);
+
+		if (!fJobPresenter.isCanceled())
+			updatePresentation(textPresentation, fAddedPositions, fRemovedPositions);
 
+		stopReconcilingPositions();
+	}
 
+	/**
+	 * Start reconciling positions.
+	 *
+	 * @param start the start of the reconciled range
+	 * @param end the end of the reconciled range (exclusive)
+	 */
+	private void startReconcilingPositions(int start, int end) {
+		List<Position> positions= new ArrayList<Position>();
+		fJobPresenter.addAllPositions(positions);
+		fRemovedPositions= new ArrayList<Position>(positions.subList(computeIndexAtOffset(positions, start), computeIndexAtOffset(positions, end)));
+		fRetainedPositions.clear();
+		fNOfRemovedPositions= fRemovedPositions.size();
+	}
 
-		for (int i= 0, n= subtrees.length; i < n; i++)
-			subtrees[i].accept(fCollector);
+	/**
+	 * Reconcile positions based on the AST.
+	 *
+	 * @param ast the AST
+	 * @param start the start of the reconciled range
+	 * @param end the end of the reconciled range (exclusive)
+	 */
+	private void reconcilePositions(CompilationUnit ast, int start, int end) {
+		fCollector.setRange(start, end);
+		ast.accept(fCollector);
 		List<Position> oldPositions= fRemovedPositions;
 		List<Position> newPositions= new ArrayList<Position>(fNOfRemovedPositions);
 		for (int i= 0, n= oldPositions.size(); i < n; i ++) {
-			Position current= oldPositions.get(i);
-			if (current != null)
-				newPositions.add(current);
+			if (!fRetainedPositions.get(i))
+				newPositions.add(oldPositions.get(i));
 		}
 		fRemovedPositions= newPositions;
 	}
 
+	/**
+	 * Returns the index of the first position with an offset greater than or equal to the given offset.
+	 *
+	 * @param positions the positions, ordered by offset
+	 * @param offset the offset
+	 * @return the index of the first position at or after the offset
+	 * @since 3.10
+	 */
+	private static int computeIndexAtOffset(List<Position> positions, int offset) {
+		int i= -1;
+		int j= positions.size();
+		while (j - i > 1) {
+			int k= (i + j) >> 1;
+			if (positions.get(k).getOffset() >= offset)
+				j= k;
+			else
+				i= k;
+		}
+		return j;
+	}
+
 	/**
 	 * Update the presentation.
 	 *
@@ -415,6 +816,7 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	 */
 	private void stopReconcilingPositions() {
 		fRemovedPositions.clear();
+		fRetainedPositions.clear();
 		fNOfRemovedPositions= 0;
 		fAddedPositions.clear();
 	}
@@ -435,6 +837,14 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 		fEditor= editor;
 		fSourceViewer= sourceViewer;
 
+		fChangeTracker= new ChangeTracker();
+		fSourceViewer.addTextInputListener(fChangeTracker);
+		fSourceViewer.addViewportListener(fChangeTracker);
+		IDocument document= fSourceViewer.getDocument();
+		if (document != null)
+			document.addDocumentListener(fChangeTracker);
+		fChangeTracker.updateViewport();
+
 		if (fEditor instanceof CompilationUnitEditor) {
 			((CompilationUnitEditor)fEditor).addReconcileListener(this);
 		} else if (fEditor == null) {
@@ -458,6 +868,15 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 			fEditor= null;
 		}
 
+		if (fChangeTracker != null) {
+			fSourceViewer.removeTextInputListener(fChangeTracker);
+			fSourceViewer.removeViewportListener(fChangeTracker);
+			IDocument document= fSourceViewer.getDocument();
+			if (document != null)
+				document.removeDocumentListener(fChangeTracker);
+			fChangeTracker= null;
+		}
+
 		fSourceViewer= null;
 		fSemanticHighlightings= null;
 		fHighlightings= null;
@@ -492,7 +911,7 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 						if (monitor.isCanceled())
 							return Status.CANCEL_STATUS;
 						CompilationUnit ast= SharedASTProvider.getAST(element, SharedASTProvider.WAIT_YES, monitor);
-						reconciled(ast, false, monitor);
+						reconciled(ast, true, monitor);
 						synchronized (fJobLock) {
 							// allow the job to be gc'ed
 							if (fJob == this)
@@ -557,6 +557,14 @@ public class SemanticHighlightings {
 			StructuralPropertyDescriptor location= token.getNode().getLocationInParent();
 			return location == MethodDeclaration.NAME_PROPERTY || location == AnnotationTypeMemberDeclaration.NAME_PROPERTY;
 		}
+
+		/*
+		 * @see org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlighting#getConsumedParentNodeTypes()
+		 */
+		@Override
+		public int[] getConsumedParentNodeTypes() {
+			return new int[] { ASTNode.METHOD_DECLARATION, ASTNode.ANNOTATION_TYPE_MEMBER_DECLARATION };
+		}
 	}
 
 	/**
@@ -695,6 +703,14 @@ public class SemanticHighlightings {
 
 			return false;
 		}
+
+		/*
+		 * @see org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlighting#getConsumedParentNodeTypes()
+		 */
+		@Override
+		public int[] getConsumedParentNodeTypes() {
+			return new int[] { ASTNode.MEMBER_VALUE_PAIR };
+		}
 	}
 
 	/**
@@ -1027,6 +1043,14 @@ public class SemanticHighlightings {
 			}
 			return false;
 		}
+
+		/*
+		 * @see org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlighting#getConsumedParentNodeTypes()
+		 */
+		@Override
+		public int[] getConsumedParentNodeTypes() {
+			return new int[] { ASTNode.VARIABLE_DECLARATION_FRAGMENT, ASTNode.SINGLE_VARIABLE_DECLARATION };
+		}
 	}
 
 	/**
@@ -1368,6 +1392,14 @@ public class SemanticHighlightings {
 			IBinding binding= token.getBinding();
 			return binding instanceof ITypeBinding && ((ITypeBinding) binding).isTypeVariable();
 		}
+
+		/*
+		 * @see org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlighting#getConsumedParentNodeTypes()
+		 */
+		@Override
+		public int[] getConsumedParentNodeTypes() {
+			return new int[] { ASTNode.SIMPLE_TYPE, ASTNode.TYPE_PARAMETER };
+		}
 	}
 
 	/**
@@ -1447,6 +1479,14 @@ public class SemanticHighlightings {
 			IBinding binding= token.getBinding();
 			return binding instanceof ITypeBinding && ((ITypeBinding) binding).isClass();
 		}
+
+		/*
+		 * @see org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlighting#getConsumedParentNodeTypes()
+		 */
+		@Override
+		public int[] getConsumedParentNodeTypes() {
+			return new int[] { ASTNode.SIMPLE_TYPE, ASTNode.THIS_EXPRESSION, ASTNode.QUALIFIED_TYPE, ASTNode.QUALIFIED_NAME, ASTNode.TYPE_DECLARATION, ASTNode.METHOD_INVOCATION };
+		}
 	}
 
 	/**
@@ -1527,6 +1567,14 @@ public class SemanticHighlightings {
 			IBinding binding= token.getBinding();
 			return binding instanceof ITypeBinding && ((ITypeBinding) binding).isEnum();
 		}
+
+		/*
+		 * @see org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlighting#getConsumedParentNodeTypes()
+		 */
+		@Override
+		public int[] getConsumedParentNodeTypes() {
+			return new int[] { ASTNode.METHOD_INVOCATION, ASTNode.SIMPLE_TYPE, ASTNode.QUALIFIED_TYPE, ASTNode.QUALIFIED_NAME, ASTNode.ENUM_DECLARATION };
+		}
 	}
 
 	/**
@@ -1606,6 +1654,14 @@ public class SemanticHighlightings {
 			IBinding binding= token.getBinding();
 			return binding instanceof ITypeBinding && ((ITypeBinding) binding).isInterface();
 		}
+
+		/*
+		 * @see org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlighting#getConsumedParentNodeTypes()
+		 */
+		@Override
+		public int[] getConsumedParentNodeTypes() {
+			return new int[] { ASTNode.SIMPLE_TYPE, ASTNode.QUALIFIED_TYPE, ASTNode.QUALIFIED_NAME, ASTNode.TYPE_DECLARATION };
+		}
 	}
 
 	/**
@@ -1686,6 +1742,14 @@ public class SemanticHighlightings {
 			IBinding binding= token.getBinding();
 			return binding instanceof ITypeBinding && ((ITypeBinding) binding).isAnnotation();
 		}
+
+		/*
+		 * @see org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlighting#getConsumedParentNodeTypes()
+		 */
+		@Override
+		public int[] getConsumedParentNodeTypes() {
+			return new int[] { ASTNode.SIMPLE_TYPE, ASTNode.QUALIFIED_TYPE, ASTNode.QUALIFIED_NAME, ASTNode.ANNOTATION_TYPE_DECLARATION, ASTNode.MARKER_ANNOTATION, ASTNode.NORMAL_ANNOTATION, ASTNode.SINGLE_MEMBER_ANNOTATION };
+		}
 	}
 
 	/**
@@ -1762,6 +1826,14 @@ public class SemanticHighlightings {
 
 			return false;
 		}
+
+		/*
+		 * @see org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlighting#getConsumedParentNodeTypes()
+		 */
+		@Override
+		public int[] getConsumedParentNodeTypes() {
+			return new int[] { ASTNode.SIMPLE_TYPE, ASTNode.QUALIFIED_TYPE };
+		}
 	}
 
 	/**
@@ -1826,6 +1898,14 @@ public class SemanticHighlightings {
 			return false;
 		}
 
+		/*
+		 * @see org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlighting#getConsumedParentNodeTypes()
+		 */
+		@Override
+		public int[] getConsumedParentNodeTypes() {
+			return new int[0];
+		}
+
 		/*
 		 * @see org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlighting#consumesLiteral(org.eclipse.jdt.internal.ui.javaeditor.SemanticToken)
 		 */
@@ -1919,6 +1999,14 @@ public class SemanticHighlightings {
 
 			return false;
 		}
+
+		/*
+		 * @see org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlighting#getConsumedParentNodeTypes()
+		 */
+		@Override
+		public int[] getConsumedParentNodeTypes() {
+			return new int[] { ASTNode.SIMPLE_TYPE, ASTNode.THIS_EXPRESSION, ASTNode.QUALIFIED_TYPE, ASTNode.QUALIFIED_NAME, ASTNode.TYPE_DECLARATION, ASTNode.METHOD_INVOCATION };
+		}
 	}
 
 	/**
@@ -15,7 +15,9 @@ package org.eclipse.jdt.internal.ui.text.java;
 
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import org.osgi.framework.Bundle;
 
@@ -329,10 +331,27 @@ public final class CompletionProposalCategory {
 	 *         {@link org.eclipse.jface.text.contentassist.ICompletionProposal})
 	 */
 	public List<ICompletionProposal> computeCompletionProposals(ContentAssistInvocationContext context, String partition, SubProgressMonitor monitor) {
+		return computeCompletionProposals(context, partition, Collections.<CompletionProposalComputerDescriptor>emptySet(), monitor);
+	}
+
+	/**
+	 * Safely computes completion proposals of the computers of this category, except for the
+	 * given ones, which are run elsewhere.
+	 *
+	 * @param context the invocation context passed on to the extension
+	 * @param partition the partition type where to invocation occurred
+	 * @param excluded the computers to skip
+	 * @param monitor the progress monitor passed on to the extension
+	 * @return the list of computed completion proposals
+	 * @since 3.10
+	 */
+	List<ICompletionProposal> computeCompletionProposals(ContentAssistInvocationContext context, String partition, Set<CompletionProposalComputerDescriptor> excluded, SubProgressMonitor monitor) {
 		fLastError= null;
 		List<ICompletionProposal> result= new ArrayList<ICompletionProposal>();
 		List<CompletionProposalComputerDescriptor> descriptors= new ArrayList<CompletionProposalComputerDescriptor>(fRegistry.getProposalComputerDescriptors(partition));
 		for (CompletionProposalComputerDescriptor desc : descriptors) {
+			if (excluded.contains(desc))
+				continue;
 			if (desc.getCategory() == this)
 				result.addAll(desc.computeCompletionProposals(context, monitor));
 			if (fLastError == null && desc.getErrorMessage() != null)
@@ -341,6 +360,23 @@ public final class CompletionProposalCategory {
 		return result;
 	}
 
+	/**
+	 * Returns the computers of this category that apply to a partition.
+	 *
+	 * @param partition the partition type
+	 * @return the computer descriptors
+	 * @since 3.10
+	 */
+	List<CompletionProposalComputerDescriptor> getComputerDescriptors(String partition) {
+		List<CompletionProposalComputerDescriptor> result= new ArrayList<CompletionProposalComputerDescriptor>();
+		List<CompletionProposalComputerDescriptor> descriptors= new ArrayList<CompletionProposalComputerDescriptor>(fRegistry.getProposalComputerDescriptors(partition));
+		for (CompletionProposalComputerDescriptor desc : descriptors) {
+			if (desc.getCategory() == this)
+				result.add(desc);
+		}
+		return result;
+	}
+
 	/**
 	 * Safely computes context information objects of all computers of this category through their
 	 * extension. If an extension is disabled, throws an exception or otherwise does not adhere to
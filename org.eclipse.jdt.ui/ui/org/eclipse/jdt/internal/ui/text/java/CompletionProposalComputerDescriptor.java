@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2012 IBM Corporation and others.
+ * Copyright (c) 2005, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -31,6 +31,10 @@ import org.eclipse.core.runtime.PerformanceStats;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Display;
+
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.contentassist.ICompletionProposal;
 import org.eclipse.jface.text.contentassist.IContextInformation;
@@ -64,6 +68,11 @@ final class CompletionProposalComputerDescriptor {
 	private static final String ACTIVATE= "activate"; //$NON-NLS-1$
 	/** The extension schema name of the needsSortingAfterFiltering attribute. */
 	private static final String NEEDS_SORTING_AFTER_FILTERING= "needsSortingAfterFiltering"; //$NON-NLS-1$
+	/**
+	 * The extension schema name of the concurrent attribute.
+	 * @since 3.10
+	 */
+	private static final String CONCURRENT= "concurrent"; //$NON-NLS-1$
 	/** The extension schema name of the partition child elements. */
 	private static final String PARTITION= "partition"; //$NON-NLS-1$
 	/** Set of Java partition types. */
@@ -88,6 +97,17 @@ final class CompletionProposalComputerDescriptor {
 	private static final String COMPUTE_CONTEXT_INFORMATION= "computeContextInformation()"; //$NON-NLS-1$
 	private static final String SESSION_STARTED= "sessionStarted()"; //$NON-NLS-1$
 	private static final String SESSION_ENDED= "sessionEnded()"; //$NON-NLS-1$
+	/**
+	 * The number of consecutive missed deadlines after which a computer is skipped.
+	 * @since 3.10
+	 */
+	private static final int MAX_DEADLINE_MISSES= 3;
+	/**
+	 * The number of invocations for which a computer that repeatedly missed the deadline is
+	 * skipped before it is tried again.
+	 * @since 3.10
+	 */
+	private static final int SKIPPED_INVOCATIONS= 10;
 
 	static {
 		Set<String> partitions= new HashSet<String>();
@@ -127,8 +147,33 @@ final class CompletionProposalComputerDescriptor {
 	 * longer due to plug-in activation and initialization.
 	 */
 	private boolean fIsReportingDelay= false;
-	/** The start of the last operation. */
-	private long fStart;
+	/**
+	 * Latencies of {@link #computeCompletionProposals(ContentAssistInvocationContext, IProgressMonitor)}.
+	 * @since 3.10
+	 */
+	private final LatencyHistogram fLatencies= new LatencyHistogram();
+	/**
+	 * Tells whether the computer failed when called outside the UI thread.
+	 * @since 3.10
+	 */
+	private volatile boolean fRequiresUIThread= false;
+	/**
+	 * Tells whether the computer is currently computing completion proposals.
+	 * @since 3.10
+	 */
+	private volatile boolean fComputing= false;
+	/**
+	 * The number of consecutive invocations whose deadline the computer missed when running
+	 * concurrently.
+	 * @since 3.10
+	 */
+	private volatile int fDeadlineMisses= 0;
+	/**
+	 * The number of invocations for which the computer has been skipped since it last ran.
+	 * Only accessed in the calling thread.
+	 * @since 3.10
+	 */
+	private int fSkippedInvocations= 0;
 	/**
 	 * Tells whether we tried to load the computer.
 	 * @since 3.4
@@ -144,6 +189,12 @@ final class CompletionProposalComputerDescriptor {
 	 */
 	private boolean fNeedsSortingAfterFiltering;
 
+	/**
+	 * Tells whether the extension allows to compute completion proposals outside the UI thread.
+	 *
+	 * @since 3.10
+	 */
+	private final boolean fConcurrent;
 
 	/**
 	 * Creates a new descriptor.
@@ -189,6 +240,9 @@ final class CompletionProposalComputerDescriptor {
 		String needsSortingAfterFilteringAttribute= element.getAttribute(NEEDS_SORTING_AFTER_FILTERING);
 		fNeedsSortingAfterFiltering= Boolean.valueOf(needsSortingAfterFilteringAttribute).booleanValue();
 
+		String concurrentAttribute= element.getAttribute(CONCURRENT);
+		fConcurrent= Boolean.valueOf(concurrentAttribute).booleanValue();
+
 		fClass= element.getAttribute(CLASS);
 		checkNotNull(fClass, CLASS);
 
@@ -328,10 +382,16 @@ final class CompletionProposalComputerDescriptor {
 			if (computer == null) // not active yet
 				return Collections.emptyList();
 
+			fComputing= true;
 			try {
+				long start= System.currentTimeMillis();
 				PerformanceStats stats= startMeter(context, computer);
 				List<ICompletionProposal> proposals= computer.computeCompletionProposals(context, monitor);
-				stopMeter(stats, COMPUTE_COMPLETION_PROPOSALS);
+				long latency= System.currentTimeMillis() - start;
+				fLatencies.record(latency);
+				if (latency < ConcurrentProposalComputers.DEADLINE)
+					fDeadlineMisses= 0;
+				stopMeter(stats, COMPUTE_COMPLETION_PROPOSALS, start);
 
 				if (proposals != null) {
 					fLastError= computer.getErrorMessage();
@@ -339,6 +399,7 @@ final class CompletionProposalComputerDescriptor {
 				}
 			} finally {
 				fIsReportingDelay= true;
+				fComputing= false;
 			}
 			status= createAPIViolationStatus(COMPUTE_COMPLETION_PROPOSALS);
 		} catch (InvalidRegistryObjectException x) {
@@ -346,6 +407,11 @@ final class CompletionProposalComputerDescriptor {
 		} catch (CoreException x) {
 			status= createExceptionStatus(x);
 		} catch (RuntimeException x) {
+			if (isInvalidThreadAccess(x)) {
+				// the computer needs the UI thread, the caller runs it again from there
+				fRequiresUIThread= true;
+				return Collections.emptyList();
+			}
 			status= createExceptionStatus(x);
 		} finally {
 			monitor.done();
@@ -376,9 +442,10 @@ final class CompletionProposalComputerDescriptor {
 			if (computer == null) // not active yet
 				return Collections.emptyList();
 
+			long start= System.currentTimeMillis();
 			PerformanceStats stats= startMeter(context, computer);
 			List<IContextInformation> proposals= computer.computeContextInformation(context, monitor);
-			stopMeter(stats, COMPUTE_CONTEXT_INFORMATION);
+			stopMeter(stats, COMPUTE_CONTEXT_INFORMATION, start);
 
 			if (proposals != null) {
 				fLastError= computer.getErrorMessage();
@@ -419,9 +486,10 @@ final class CompletionProposalComputerDescriptor {
 			if (computer == null) // not active yet
 				return;
 
+			long start= System.currentTimeMillis();
 			PerformanceStats stats= startMeter(SESSION_STARTED, computer);
 			computer.sessionStarted();
-			stopMeter(stats, SESSION_ENDED);
+			stopMeter(stats, SESSION_ENDED, start);
 
 			return;
 		} catch (InvalidRegistryObjectException x) {
@@ -452,9 +520,10 @@ final class CompletionProposalComputerDescriptor {
 			if (computer == null) // not active yet
 				return;
 
+			long start= System.currentTimeMillis();
 			PerformanceStats stats= startMeter(SESSION_ENDED, computer);
 			computer.sessionEnded();
-			stopMeter(stats, SESSION_ENDED);
+			stopMeter(stats, SESSION_ENDED, start);
 
 			return;
 		} catch (InvalidRegistryObjectException x) {
@@ -477,14 +546,10 @@ final class CompletionProposalComputerDescriptor {
 			stats= null;
 		}
 
-		if (fIsReportingDelay) {
-			fStart= System.currentTimeMillis();
-		}
-
 		return stats;
 	}
 
-	private void stopMeter(final PerformanceStats stats, String operation) {
+	private void stopMeter(final PerformanceStats stats, String operation, long start) {
 		if (MEASURE_PERFORMANCE) {
 			stats.endRun();
 			if (stats.isFailure()) {
@@ -496,13 +561,17 @@ final class CompletionProposalComputerDescriptor {
 
 		if (fIsReportingDelay) {
 			long current= System.currentTimeMillis();
-			if (current - fStart > MAX_DELAY) {
+			if (current - start > MAX_DELAY) {
 				IStatus status= createPerformanceStatus(operation);
 				fRegistry.informUser(this, status);
 			}
 		}
 	}
 
+	private static boolean isInvalidThreadAccess(RuntimeException x) {
+		return x instanceof SWTException && ((SWTException) x).code == SWT.ERROR_THREAD_INVALID_ACCESS && Display.getCurrent() == null;
+	}
+
 	private IStatus createExceptionStatus(InvalidRegistryObjectException x) {
 		// extension has become invalid - log & disable
 		String blame= createBlameMessage();
@@ -579,6 +648,88 @@ final class CompletionProposalComputerDescriptor {
         }
     }
 
+	/**
+	 * Tells whether the described extension can compute completion proposals outside the UI
+	 * thread, concurrently with other extensions. This is the case for extensions that set the
+	 * <code>concurrent</code> attribute, once their computer has been created, as long as they
+	 * did not fail with an invalid thread access.
+	 *
+	 * @return <code>true</code> if the extension can run concurrently
+	 * @since 3.10
+	 */
+	boolean canComputeConcurrently() {
+		if (!fConcurrent || fRequiresUIThread)
+			return false;
+		synchronized (this) {
+			// the first invocation, which loads the computer, runs in the calling thread
+			return fComputer != null;
+		}
+	}
+
+	/**
+	 * Records that the computer missed the deadline of an invocation. After
+	 * {@value #MAX_DEADLINE_MISSES} consecutive misses, the computer is skipped, see
+	 * {@link #isSkipped()}.
+	 *
+	 * @since 3.10
+	 */
+	void deadlineMissed() {
+		fDeadlineMisses++;
+	}
+
+	/**
+	 * Tells whether a concurrent computer is skipped for the current invocation, because it
+	 * repeatedly missed the deadline. Its proposals would be dropped anyway. Every
+	 * {@value #SKIPPED_INVOCATIONS} invocations the computer runs again, still concurrently, and
+	 * is no longer skipped once it is faster than the deadline. Must be called once per
+	 * invocation.
+	 *
+	 * @return <code>true</code> if the computer is not run for this invocation
+	 * @since 3.10
+	 */
+	boolean isSkipped() {
+		if (fDeadlineMisses < MAX_DEADLINE_MISSES)
+			return false;
+		if (fSkippedInvocations < SKIPPED_INVOCATIONS) {
+			fSkippedInvocations++;
+			return true;
+		}
+		fSkippedInvocations= 0;
+		return false;
+	}
+
+	/**
+	 * Tells whether the described extension is currently computing completion proposals, for
+	 * example for a previous invocation whose deadline has passed.
+	 *
+	 * @return <code>true</code> if the extension is computing completion proposals
+	 * @since 3.10
+	 */
+	boolean isComputing() {
+		return fComputing;
+	}
+
+	/**
+	 * Tells whether the described extension failed when called outside the UI thread.
+	 *
+	 * @return <code>true</code> if the extension must be called in the UI thread
+	 * @since 3.10
+	 */
+	boolean requiresUIThread() {
+		return fRequiresUIThread;
+	}
+
+	/**
+	 * Returns the histogram of the latencies of computing completion proposals, including the
+	 * invocations whose results arrived too late to be shown.
+	 *
+	 * @return the latency histogram
+	 * @since 3.10
+	 */
+	LatencyHistogram getLatencyHistogram() {
+		return fLatencies;
+	}
+
 	/**
 	 * Returns the <code>needsSortingAfterFiltering</code> flag of the described extension.
 	 * 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -28,6 +28,7 @@ import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Link;
 
 import org.eclipse.core.runtime.CoreException;
@@ -429,7 +430,16 @@ public final class CompletionProposalComputerRegistry {
 	 * @param descriptor the descriptor of the misbehaving extension
 	 * @param status a status object that will be logged
 	 */
-	void informUser(CompletionProposalComputerDescriptor descriptor, IStatus status) {
+	void informUser(final CompletionProposalComputerDescriptor descriptor, final IStatus status) {
+		if (Display.getCurrent() == null) {
+			// computers that run concurrently report from a worker thread
+			Display.getDefault().asyncExec(new Runnable() {
+				public void run() {
+					informUser(descriptor, status);
+				}
+			});
+			return;
+		}
 		JavaPlugin.log(status);
         String title= JavaTextMessages.CompletionProposalComputerRegistry_error_dialog_title;
         CompletionProposalCategory category= descriptor.getCategory();
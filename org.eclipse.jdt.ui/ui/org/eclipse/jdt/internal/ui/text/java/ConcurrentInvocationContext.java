@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.text.java;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+
+import org.eclipse.ui.IEditorPart;
+
+import org.eclipse.jdt.core.CompletionContext;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IType;
+
+import org.eclipse.jdt.ui.text.java.CompletionProposalLabelProvider;
+import org.eclipse.jdt.ui.text.java.IJavaCompletionProposal;
+import org.eclipse.jdt.ui.text.java.JavaContentAssistInvocationContext;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+/**
+ * The invocation context shared by the completion proposal computers that run concurrently.
+ * <p>
+ * The context is initialized in the calling thread after the computers of the calling thread
+ * have run, from the context they used. It therefore reuses the core context of their
+ * <code>codeComplete</code> run instead of running <code>codeComplete</code> again. After
+ * initialization the context is immutable, and its document is a copy of the document at
+ * invocation time, so the computers can keep using it while the user continues typing.
+ * </p>
+ *
+ * @since 3.10
+ */
+final class ConcurrentInvocationContext extends JavaContentAssistInvocationContext {
+
+	private final JavaContentAssistInvocationContext fContext;
+
+	private IDocument fDocument;
+	private ICompilationUnit fUnit;
+	private CompletionContext fCoreContext;
+	private IJavaCompletionProposal[] fKeywordProposals;
+	private IType fExpectedType;
+	private CompletionProposalLabelProvider fLabelProvider;
+
+	/**
+	 * Creates a new context.
+	 *
+	 * @param context the context of the calling thread
+	 * @param editor the editor that content assist is invoked in
+	 */
+	ConcurrentInvocationContext(JavaContentAssistInvocationContext context, IEditorPart editor) {
+		super(context.getViewer(), context.getInvocationOffset(), editor);
+		fContext= context;
+	}
+
+	/**
+	 * Copies the state of the context of the calling thread. Must be called in the calling thread
+	 * before the context is handed to other threads.
+	 */
+	void initialize() {
+		IDocument document= fContext.getDocument();
+		if (document != null)
+			fDocument= new Document(document.get());
+		fUnit= fContext.getCompilationUnit();
+		fCoreContext= fContext.getCoreContext();
+		fKeywordProposals= fContext.getKeywordProposals();
+		fExpectedType= fContext.getExpectedType();
+		fLabelProvider= fContext.getLabelProvider();
+		try {
+			computeIdentifierPrefix();
+		} catch (BadLocationException e) {
+			JavaPlugin.log(e);
+		}
+		getHistoryRelevance(""); //$NON-NLS-1$ // initializes the lazily computed history
+	}
+
+	/*
+	 * @see org.eclipse.jdt.ui.text.java.ContentAssistInvocationContext#getDocument()
+	 */
+	@Override
+	public IDocument getDocument() {
+		return fDocument;
+	}
+
+	/*
+	 * @see org.eclipse.jdt.ui.text.java.JavaContentAssistInvocationContext#getCompilationUnit()
+	 */
+	@Override
+	public ICompilationUnit getCompilationUnit() {
+		return fUnit;
+	}
+
+	/*
+	 * @see org.eclipse.jdt.ui.text.java.JavaContentAssistInvocationContext#getCoreContext()
+	 */
+	@Override
+	public CompletionContext getCoreContext() {
+		return fCoreContext;
+	}
+
+	/*
+	 * @see org.eclipse.jdt.ui.text.java.JavaContentAssistInvocationContext#getKeywordProposals()
+	 */
+	@Override
+	public IJavaCompletionProposal[] getKeywordProposals() {
+		return fKeywordProposals;
+	}
+
+	/*
+	 * @see org.eclipse.jdt.ui.text.java.JavaContentAssistInvocationContext#getExpectedType()
+	 */
+	@Override
+	public IType getExpectedType() {
+		return fExpectedType;
+	}
+
+	/*
+	 * @see org.eclipse.jdt.ui.text.java.JavaContentAssistInvocationContext#getLabelProvider()
+	 */
+	@Override
+	public CompletionProposalLabelProvider getLabelProvider() {
+		return fLabelProvider;
+	}
+}
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.text.java;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.jface.text.contentassist.ICompletionProposal;
+
+import org.eclipse.jdt.ui.text.java.ContentAssistInvocationContext;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+/**
+ * Runs the completion proposal computers that allow it in worker threads, for one content assist
+ * invocation. See the <code>concurrent</code> attribute of the
+ * <code>org.eclipse.jdt.ui.javaCompletionProposalComputer</code> extension point.
+ * <p>
+ * The concurrent computers are started after the other computers have run in the calling thread,
+ * and share one invocation context that reuses the core context computed by them. Their results
+ * are waited for until a deadline after the start. Computers that miss the deadline are canceled
+ * through their progress monitor and their proposals are dropped, so a slow computer cannot delay
+ * the proposal popup. A computer that is still busy with a previous invocation is skipped.
+ * </p>
+ * <p>
+ * A computer that repeatedly missed the deadline is skipped, and only started again every few
+ * invocations to check whether it is fast again. It is never moved to the calling thread, where
+ * it would delay the popup.
+ * </p>
+ * <p>
+ * The first invocation of a computer, which loads it, runs in the calling thread. So does a
+ * computer that failed with an invalid thread access, which is also run again in the calling
+ * thread for the invocation where it failed.
+ * </p>
+ *
+ * @since 3.10
+ */
+final class ConcurrentProposalComputers {
+
+	/**
+	 * The time in milliseconds after the start of an invocation after which the proposals of
+	 * concurrent computers are no longer waited for.
+	 */
+	static final long DEADLINE= 500;
+
+	private static ExecutorService fgExecutor;
+
+	private static class Computation {
+		final CompletionProposalComputerDescriptor fDescriptor;
+		final NullProgressMonitor fMonitor= new NullProgressMonitor();
+		Future<List<ICompletionProposal>> fFuture;
+
+		Computation(CompletionProposalComputerDescriptor descriptor) {
+			fDescriptor= descriptor;
+		}
+	}
+
+	private final ConcurrentInvocationContext fContext;
+
+	private long fDeadline;
+
+	private final Map<CompletionProposalComputerDescriptor, Computation> fComputations= new LinkedHashMap<CompletionProposalComputerDescriptor, Computation>();
+
+	/** The concurrent computers that are started or still busy with a previous invocation. */
+	private final Set<CompletionProposalComputerDescriptor> fDescriptors= new HashSet<CompletionProposalComputerDescriptor>();
+
+	/**
+	 * Selects the computers of the given categories that run concurrently.
+	 *
+	 * @param categories the categories of this invocation
+	 * @param partition the partition type where the invocation occurred
+	 * @param context the context to share between the concurrent computers, or <code>null</code>
+	 *            if all computers have to run in the calling thread
+	 */
+	ConcurrentProposalComputers(List<CompletionProposalCategory> categories, String partition, ConcurrentInvocationContext context) {
+		fContext= context;
+		for (CompletionProposalCategory category : categories) {
+			for (CompletionProposalComputerDescriptor desc : category.getComputerDescriptors(partition)) {
+				if (desc.isComputing()) {
+					// still busy, skip it rather than piling up threads or calling it reentrantly
+					fDescriptors.add(desc);
+				} else if (context != null && desc.canComputeConcurrently()) {
+					fDescriptors.add(desc);
+					if (!desc.isSkipped())
+						fComputations.put(desc, new Computation(desc));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts the concurrent computers. Must be called after the other computers have run in the
+	 * calling thread, so that the shared context can reuse their core context.
+	 */
+	void start() {
+		if (fComputations.isEmpty())
+			return;
+		fContext.initialize();
+		fDeadline= System.currentTimeMillis() + DEADLINE;
+		for (final Computation computation : fComputations.values()) {
+			computation.fFuture= getExecutor().submit(new Callable<List<ICompletionProposal>>() {
+				public List<ICompletionProposal> call() throws Exception {
+					return computation.fDescriptor.computeCompletionProposals(fContext, computation.fMonitor);
+				}
+			});
+		}
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (fgExecutor == null) {
+			// computers that do not stop on cancellation are not started again until they
+			// return, so the number of threads stays bounded by the number of computers
+			fgExecutor= Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread= new Thread(runnable, "Content Assist Worker"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return fgExecutor;
+	}
+
+	/**
+	 * Returns the computers that must not run in the calling thread, because they run
+	 * concurrently or are still busy with a previous invocation.
+	 *
+	 * @return the computer descriptors
+	 */
+	Set<CompletionProposalComputerDescriptor> getDescriptors() {
+		return fDescriptors;
+	}
+
+	/**
+	 * Returns the proposals of the concurrent computers of a category, waiting for them until the
+	 * deadline.
+	 *
+	 * @param category the category
+	 * @param context the invocation context, used for computers that have to run again in the
+	 *            calling thread
+	 * @return the proposals
+	 */
+	List<ICompletionProposal> getProposals(CompletionProposalCategory category, ContentAssistInvocationContext context) {
+		List<ICompletionProposal> result= new ArrayList<ICompletionProposal>();
+		for (Computation computation : fComputations.values()) {
+			CompletionProposalComputerDescriptor desc= computation.fDescriptor;
+			if (desc.getCategory() != category)
+				continue;
+			List<ICompletionProposal> proposals= waitFor(computation);
+			if (proposals.isEmpty() && computation.fFuture.isDone() && desc.requiresUIThread())
+				proposals= desc.computeCompletionProposals(context, new NullProgressMonitor());
+			result.addAll(proposals);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the first error message of the concurrent computers of a category.
+	 *
+	 * @param category the category
+	 * @return the error message, or <code>null</code>
+	 */
+	String getErrorMessage(CompletionProposalCategory category) {
+		for (Computation computation : fComputations.values()) {
+			CompletionProposalComputerDescriptor desc= computation.fDescriptor;
+			if (desc.getCategory() == category && computation.fFuture.isDone() && desc.getErrorMessage() != null)
+				return desc.getErrorMessage();
+		}
+		return null;
+	}
+
+	/**
+	 * Cancels the computers that are still running.
+	 */
+	void cancel() {
+		for (Computation computation : fComputations.values()) {
+			if (computation.fFuture != null && !computation.fFuture.isDone())
+				computation.fMonitor.setCanceled(true);
+		}
+	}
+
+	private List<ICompletionProposal> waitFor(Computation computation) {
+		long remaining= fDeadline - System.currentTimeMillis();
+		try {
+			return computation.fFuture.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			// too late for this invocation
+			computation.fMonitor.setCanceled(true);
+			computation.fDescriptor.deadlineMissed();
+		} catch (InterruptedException e) {
+			computation.fMonitor.setCanceled(true);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// the descriptor already handles the exceptions of the computer
+			JavaPlugin.log(e.getCause());
+		}
+		return Collections.emptyList();
+	}
+}
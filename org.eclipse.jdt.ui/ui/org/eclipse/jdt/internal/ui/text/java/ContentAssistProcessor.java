@@ -208,6 +208,8 @@ public class ContentAssistProcessor implements IContentAssistProcessor {
 
 	private static final boolean DEBUG= "true".equalsIgnoreCase(Platform.getDebugOption("org.eclipse.jdt.ui/debug/ResultCollector"));  //$NON-NLS-1$//$NON-NLS-2$
 
+	private static final boolean DEBUG_LATENCY= "true".equalsIgnoreCase(Platform.getDebugOption("org.eclipse.jdt.ui/debug/ContentAssistLatency"));  //$NON-NLS-1$//$NON-NLS-2$
+
 	/**
 	 * Dialog settings key for the "all categories are disabled" warning dialog. See
 	 * {@link OptionalMessageDialog}.
@@ -321,19 +323,44 @@ public class ContentAssistProcessor implements IContentAssistProcessor {
 		boolean needsSortingAfterFiltering= false;
 		List<ICompletionProposal> proposals= new ArrayList<ICompletionProposal>();
 		List<CompletionProposalCategory> providers= getCategories();
-		for (CompletionProposalCategory cat : providers) {
-			List<ICompletionProposal> computed= cat.computeCompletionProposals(context, fPartition, new SubProgressMonitor(monitor, 1));
-			proposals.addAll(computed);
-			needsSortingAfterFiltering= needsSortingAfterFiltering || (cat.isSortingAfterFilteringNeeded() && !computed.isEmpty());
-			if (fErrorMessage == null)
-				fErrorMessage= cat.getErrorMessage();
+		// computers that allow it run concurrently after ours, until the deadline
+		ConcurrentProposalComputers concurrent= new ConcurrentProposalComputers(providers, fPartition, createConcurrentContext(context));
+		try {
+			for (CompletionProposalCategory cat : providers) {
+				List<ICompletionProposal> computed= cat.computeCompletionProposals(context, fPartition, concurrent.getDescriptors(), new SubProgressMonitor(monitor, 1));
+				proposals.addAll(computed);
+				needsSortingAfterFiltering= needsSortingAfterFiltering || (cat.isSortingAfterFilteringNeeded() && !computed.isEmpty());
+				if (fErrorMessage == null)
+					fErrorMessage= cat.getErrorMessage();
+			}
+			concurrent.start();
+			for (CompletionProposalCategory cat : providers) {
+				List<ICompletionProposal> computed= concurrent.getProposals(cat, context);
+				proposals.addAll(computed);
+				needsSortingAfterFiltering= needsSortingAfterFiltering || (cat.isSortingAfterFilteringNeeded() && !computed.isEmpty());
+				if (fErrorMessage == null)
+					fErrorMessage= concurrent.getErrorMessage(cat);
+			}
+		} finally {
+			concurrent.cancel();
 		}
+		if (DEBUG_LATENCY)
+			printLatencies(providers);
 		if (fNeedsSortingAfterFiltering && !needsSortingAfterFiltering)
 			fAssistant.setSorter(null);
 		fNeedsSortingAfterFiltering= needsSortingAfterFiltering;
 		return proposals;
 	}
 
+	private void printLatencies(List<CompletionProposalCategory> categories) {
+		for (CompletionProposalCategory cat : categories) {
+			for (CompletionProposalComputerDescriptor desc : cat.getComputerDescriptors(fPartition)) {
+				LatencyHistogram latencies= desc.getLatencyHistogram();
+				System.err.println("Code Assist Latency (" + desc.getId() + "): p50 " + latencies.getPercentile(50) + "ms, p95 " + latencies.getPercentile(95) + "ms, " + latencies); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+			}
+		}
+	}
+
 	/**
 	 * Filters and sorts the proposals. The passed list may be modified
 	 * and returned, or a new list may be created and returned.
@@ -468,6 +495,19 @@ public class ContentAssistProcessor implements IContentAssistProcessor {
 		return new ContentAssistInvocationContext(viewer, offset);
 	}
 
+	/**
+	 * Creates the context that is shared by the completion proposal computers that run
+	 * concurrently.
+	 *
+	 * @param context the context passed to the computers in the calling thread
+	 * @return the shared context, or <code>null</code> if all computers have to run in the
+	 *         calling thread
+	 * @since 3.10
+	 */
+	ConcurrentInvocationContext createConcurrentContext(ContentAssistInvocationContext context) {
+		return null;
+	}
+
 	private List<CompletionProposalCategory> getCategories() {
 		if (fCategoryIteration == null)
 			return fCategories;
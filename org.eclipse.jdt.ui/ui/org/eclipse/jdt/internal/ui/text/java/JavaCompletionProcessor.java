@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2012 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -125,4 +125,15 @@ public class JavaCompletionProcessor extends ContentAssistProcessor {
 	protected ContentAssistInvocationContext createContext(ITextViewer viewer, int offset) {
 		return new JavaContentAssistInvocationContext(viewer, offset, fEditor);
 	}
+
+	/*
+	 * @see org.eclipse.jdt.internal.ui.text.java.ContentAssistProcessor#createConcurrentContext(org.eclipse.jdt.ui.text.java.ContentAssistInvocationContext)
+	 */
+	@Override
+	ConcurrentInvocationContext createConcurrentContext(ContentAssistInvocationContext context) {
+		// subclasses create their own context types, which computers may depend on
+		if (context.getClass() != JavaContentAssistInvocationContext.class)
+			return null;
+		return new ConcurrentInvocationContext((JavaContentAssistInvocationContext) context, fEditor);
+	}
 }
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.text.java;
+
+/**
+ * Histogram of the latencies of an operation, in buckets with fixed upper bounds. This class is
+ * thread safe.
+ *
+ * @since 3.10
+ */
+final class LatencyHistogram {
+
+	/**
+	 * The exclusive upper bounds of the buckets in milliseconds. The last bucket has no upper
+	 * bound.
+	 */
+	private static final long[] BOUNDS= { 10, 20, 50, 100, 200, 500, 1000, 2000, 5000 };
+
+	private final int[] fCounts= new int[BOUNDS.length + 1];
+
+	private int fTotal;
+
+	private long fMax;
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param millis the latency in milliseconds
+	 */
+	public synchronized void record(long millis) {
+		int bucket= 0;
+		while (bucket < BOUNDS.length && millis >= BOUNDS[bucket])
+			bucket++;
+		fCounts[bucket]++;
+		fTotal++;
+		fMax= Math.max(fMax, millis);
+	}
+
+	/**
+	 * Returns the number of recorded latencies.
+	 *
+	 * @return the number of recorded latencies
+	 */
+	public synchronized int getCount() {
+		return fTotal;
+	}
+
+	/**
+	 * Returns the maximum recorded latency.
+	 *
+	 * @return the maximum latency in milliseconds, or <code>0</code> if none has been recorded
+	 */
+	public synchronized long getMax() {
+		return fMax;
+	}
+
+	/**
+	 * Returns an upper bound of the given percentile of the recorded latencies.
+	 *
+	 * @param percentile the percentile, between <code>0</code> and <code>100</code>
+	 * @return the upper bound of the bucket that contains the percentile, or the maximum latency
+	 *         for the last bucket, or <code>0</code> if no latency has been recorded
+	 */
+	public synchronized long getPercentile(int percentile) {
+		int rank= (int) Math.ceil(fTotal * percentile / 100.0);
+		int count= 0;
+		for (int i= 0; i < BOUNDS.length; i++) {
+			count+= fCounts[i];
+			if (count >= rank && count > 0)
+				return Math.min(BOUNDS[i], fMax);
+		}
+		return fMax;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuffer buf= new StringBuffer();
+		for (int i= 0; i < fCounts.length; i++) {
+			if (i > 0)
+				buf.append(", "); //$NON-NLS-1$
+			if (i < BOUNDS.length)
+				buf.append('<').append(BOUNDS[i]);
+			else
+				buf.append(">=").append(BOUNDS[BOUNDS.length - 1]); //$NON-NLS-1$
+			buf.append("ms: ").append(fCounts[i]); //$NON-NLS-1$
+		}
+		buf.append(" (max ").append(fMax).append("ms)"); //$NON-NLS-1$ //$NON-NLS-2$
+		return buf.toString();
+	}
+}
@@ -492,6 +492,18 @@ public class JavadocContentAccess2 {
 	 * @throws JavaModelException is thrown when the element's Javadoc cannot be accessed
 	 */
 	public static String getHTMLContent(IMember member, boolean useAttachedJavadoc) throws JavaModelException {
+		JavadocContentCache cache= JavadocContentCache.getDefault();
+		JavadocContentCache.CachedContent cached= cache.get(member, useAttachedJavadoc);
+		if (cached != null)
+			return cached.getContent();
+
+		String stamp= cache.getStamp(member);
+		String content= computeHTMLContent(member, useAttachedJavadoc);
+		cache.put(member, useAttachedJavadoc, stamp, content);
+		return content;
+	}
+
+	private static String computeHTMLContent(IMember member, boolean useAttachedJavadoc) throws JavaModelException {
 		String sourceJavadoc= getHTMLContentFromSource(member);
 		if (sourceJavadoc == null || sourceJavadoc.length() == 0 || sourceJavadoc.trim().equals("{@inheritDoc}")) { //$NON-NLS-1$
 			if (useAttachedJavadoc) {
@@ -0,0 +1,466 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.text.javadoc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IPath;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IClasspathAttribute;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+
+import org.eclipse.jdt.internal.corext.util.JavaModelUtil;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+/**
+ * Cache of the rendered Javadoc of library members, used by
+ * {@link JavadocContentAccess2#getHTMLContent(IMember, boolean)}.
+ * <p>
+ * Only members in archives are cached: their Javadoc is rendered from attached source or
+ * fetched from an attached Javadoc location, and only changes when the class path changes.
+ * The content is kept in an in-memory LRU cache and in a bounded store in the plug-in's
+ * state location, so that it survives restarts.
+ * </p>
+ * <p>
+ * Entries are keyed by the member's handle identifier and stamped with a digest of the
+ * resolved class path of the member's project, including the modification times of the
+ * archives and their source attachments. Entries with a different stamp are ignored.
+ * Class path, archive and source attachment deltas clear the in-memory cache and the
+ * stamps. Content is stored with the stamp taken before it was computed, and is dropped if
+ * the stamp has changed in the meantime.
+ * </p>
+ *
+ * @since 3.10
+ */
+public final class JavadocContentCache {
+
+	/**
+	 * Content returned by a cache lookup. The content can be <code>null</code> if the member
+	 * has no Javadoc.
+	 */
+	public static final class CachedContent {
+
+		private final String fContent;
+
+		private CachedContent(String content) {
+			fContent= content;
+		}
+
+		public String getContent() {
+			return fContent;
+		}
+	}
+
+	private static final String CACHE_DIR= "javadocCache"; //$NON-NLS-1$
+
+	private static final String FILE_EXTENSION= ".html"; //$NON-NLS-1$
+
+	private static final int FILE_VERSION= 1;
+
+	private static final int MEMORY_CAPACITY= 500;
+
+	private static final int DISK_CAPACITY= 5000;
+
+	/**
+	 * Flags of a changed project or package fragment root delta that can change the
+	 * rendered Javadoc of library members.
+	 */
+	private static final int CLASSPATH_FLAGS= IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED
+			| IJavaElementDelta.F_ADDED_TO_CLASSPATH | IJavaElementDelta.F_REMOVED_FROM_CLASSPATH | IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED
+			| IJavaElementDelta.F_SOURCEATTACHED | IJavaElementDelta.F_SOURCEDETACHED;
+
+	private static JavadocContentCache fgInstance;
+
+	private class DeltaListener implements IElementChangedListener {
+		public void elementChanged(ElementChangedEvent event) {
+			if (affectsLibraries(event.getDelta()))
+				invalidate();
+		}
+	}
+
+	private final IElementChangedListener fDeltaListener;
+
+	// The following fields are guarded by 'this'
+
+	private final LinkedHashMap<String, CachedContent> fMemoryCache= new LinkedHashMap<String, CachedContent>(MEMORY_CAPACITY, 0.75f, true) {
+		private static final long serialVersionUID= 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedContent> eldest) {
+			return size() > MEMORY_CAPACITY;
+		}
+	};
+
+	/**
+	 * Map from project to the stamp of its resolved class path.
+	 */
+	private final Map<IJavaProject, String> fStamps= new HashMap<IJavaProject, String>();
+
+	/**
+	 * The directory of the disk store, or <code>null</code> if there is no state location.
+	 */
+	private final File fCacheDir;
+
+	/**
+	 * Number of files in the disk store, or <code>-1</code> if not counted yet.
+	 */
+	private int fDiskEntries= -1;
+
+	public static synchronized JavadocContentCache getDefault() {
+		if (fgInstance == null)
+			fgInstance= new JavadocContentCache();
+		return fgInstance;
+	}
+
+	public static synchronized void shutdown() {
+		if (fgInstance == null)
+			return;
+		JavaCore.removeElementChangedListener(fgInstance.fDeltaListener);
+		fgInstance= null;
+	}
+
+	private JavadocContentCache() {
+		fCacheDir= getCacheDir();
+		fDeltaListener= new DeltaListener();
+		JavaCore.addElementChangedListener(fDeltaListener, ElementChangedEvent.POST_CHANGE);
+	}
+
+	private static File getCacheDir() {
+		try {
+			File cacheDir= JavaPlugin.getDefault().getStateLocation().append(CACHE_DIR).toFile();
+			if (!cacheDir.exists())
+				cacheDir.mkdir();
+			if (!cacheDir.isDirectory()) {
+				JavaPlugin.logErrorMessage("Failed to create Javadoc cache directory " + cacheDir.toString()); //$NON-NLS-1$
+				return null;
+			}
+			return cacheDir;
+		} catch (IllegalStateException e) {
+			// no state location
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the cached Javadoc of a member.
+	 *
+	 * @param member the member
+	 * @param useAttachedJavadoc whether the content was computed using attached Javadoc
+	 * @return the cached content, or <code>null</code> if the content of the member is not
+	 *         cached
+	 * @throws JavaModelException if the class path of the member's project cannot be accessed
+	 */
+	public synchronized CachedContent get(IMember member, boolean useAttachedJavadoc) throws JavaModelException {
+		if (!isCacheable(member))
+			return null;
+		String key= getKey(member, useAttachedJavadoc);
+		CachedContent content= fMemoryCache.get(key);
+		if (content != null)
+			return content;
+
+		content= readEntry(key, getStamp(member.getJavaProject()));
+		if (content != null)
+			fMemoryCache.put(key, content);
+		return content;
+	}
+
+	/**
+	 * Returns the stamp of the class path of a member's project. Must be called before the
+	 * content that is passed to {@link #put(IMember, boolean, String, String)} is computed.
+	 *
+	 * @param member the member
+	 * @return the stamp, or <code>null</code> if the member is not in an archive
+	 * @throws JavaModelException if the class path of the member's project cannot be accessed
+	 */
+	public synchronized String getStamp(IMember member) throws JavaModelException {
+		if (!isCacheable(member))
+			return null;
+		return getStamp(member.getJavaProject());
+	}
+
+	/**
+	 * Stores the Javadoc of a member. Does nothing if the member is not in an archive, or if
+	 * the class path has changed since the stamp has been taken.
+	 *
+	 * @param member the member
+	 * @param useAttachedJavadoc whether the content was computed using attached Javadoc
+	 * @param stamp the stamp returned by {@link #getStamp(IMember)} before the content was
+	 *            computed
+	 * @param content the content, can be <code>null</code>
+	 * @throws JavaModelException if the class path of the member's project cannot be accessed
+	 */
+	public synchronized void put(IMember member, boolean useAttachedJavadoc, String stamp, String content) throws JavaModelException {
+		if (stamp == null || !isCacheable(member))
+			return;
+		// a delta during the computation has cleared the stamps, the content may be stale
+		if (!stamp.equals(getStamp(member.getJavaProject())))
+			return;
+		String key= getKey(member, useAttachedJavadoc);
+		CachedContent cachedContent= new CachedContent(content);
+		fMemoryCache.put(key, cachedContent);
+		writeEntry(key, stamp, cachedContent);
+	}
+
+	private synchronized void invalidate() {
+		fMemoryCache.clear();
+		fStamps.clear();
+	}
+
+	/**
+	 * Removes all entries from the memory cache and from the disk store.
+	 */
+	public synchronized void clear() {
+		invalidate();
+		if (fCacheDir == null)
+			return;
+		File[] files= listEntryFiles();
+		for (int i= 0; i < files.length; i++)
+			files[i].delete();
+		fDiskEntries= -1;
+	}
+
+	private static boolean isCacheable(IMember member) {
+		IPackageFragmentRoot root= JavaModelUtil.getPackageFragmentRoot(member);
+		return root != null && root.isArchive();
+	}
+
+	private static String getKey(IMember member, boolean useAttachedJavadoc) {
+		return (useAttachedJavadoc ? 'A' : 'S') + member.getHandleIdentifier();
+	}
+
+	private String getStamp(IJavaProject project) throws JavaModelException {
+		String stamp= fStamps.get(project);
+		if (stamp == null) {
+			stamp= computeStamp(project);
+			fStamps.put(project, stamp);
+		}
+		return stamp;
+	}
+
+	private static String computeStamp(IJavaProject project) throws JavaModelException {
+		StringBuffer buf= new StringBuffer();
+		IClasspathEntry[] entries= project.getResolvedClasspath(true);
+		for (int i= 0; i < entries.length; i++) {
+			IClasspathEntry entry= entries[i];
+			buf.append(entry.getEntryKind()).append(':');
+			appendPath(buf, entry.getPath());
+			appendPath(buf, entry.getSourceAttachmentPath());
+			IClasspathAttribute[] attributes= entry.getExtraAttributes();
+			for (int j= 0; j < attributes.length; j++)
+				buf.append(attributes[j].getName()).append('=').append(attributes[j].getValue()).append(';');
+			buf.append('\n');
+		}
+		return digest(buf.toString());
+	}
+
+	private static void appendPath(StringBuffer buf, IPath path) {
+		if (path == null)
+			return;
+		buf.append(path.toString());
+		File file= getFile(path);
+		if (file != null)
+			buf.append('@').append(file.lastModified()).append('/').append(file.length());
+		buf.append(';');
+	}
+
+	private static File getFile(IPath path) {
+		IResource resource= ResourcesPlugin.getWorkspace().getRoot().findMember(path);
+		if (resource == null)
+			return path.toFile(); // external archive or folder
+		IPath location= resource.getLocation();
+		return location != null ? location.toFile() : null;
+	}
+
+	private static String digest(String value) {
+		try {
+			byte[] digest= MessageDigest.getInstance("SHA-1").digest(value.getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+			StringBuffer buf= new StringBuffer(digest.length * 2);
+			for (int i= 0; i < digest.length; i++) {
+				int b= digest[i] & 0xFF;
+				if (b < 0x10)
+					buf.append('0');
+				buf.append(Integer.toHexString(b));
+			}
+			return buf.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e.getMessage());
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	private File getEntryFile(String key) {
+		return new File(fCacheDir, digest(key) + FILE_EXTENSION);
+	}
+
+	private CachedContent readEntry(String key, String stamp) {
+		if (fCacheDir == null)
+			return null;
+		File file= getEntryFile(key);
+		if (!file.isFile())
+			return null;
+		try {
+			DataInputStream in= new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (in.readInt() != FILE_VERSION || !key.equals(in.readUTF()) || !stamp.equals(in.readUTF()))
+					return null;
+				String content= null;
+				if (in.readBoolean()) {
+					byte[] bytes= new byte[in.readInt()];
+					in.readFully(bytes);
+					content= new String(bytes, "UTF-8"); //$NON-NLS-1$
+				}
+				// keep recently used entries when the store is trimmed
+				file.setLastModified(System.currentTimeMillis());
+				return new CachedContent(content);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			// a truncated or otherwise unreadable entry is a miss, it is replaced on the next put
+			return null;
+		}
+	}
+
+	private void writeEntry(String key, String stamp, CachedContent content) {
+		if (fCacheDir == null)
+			return;
+		File file= getEntryFile(key);
+		boolean existed= file.exists();
+		try {
+			DataOutputStream out= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			try {
+				out.writeInt(FILE_VERSION);
+				out.writeUTF(key);
+				out.writeUTF(stamp);
+				String html= content.getContent();
+				out.writeBoolean(html != null);
+				if (html != null) {
+					byte[] bytes= html.getBytes("UTF-8"); //$NON-NLS-1$
+					out.writeInt(bytes.length);
+					out.write(bytes);
+				}
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			JavaPlugin.log(e);
+			file.delete();
+			return;
+		}
+		if (!existed)
+			added();
+	}
+
+	/**
+	 * Deletes the least recently used quarter of the store when it exceeds its capacity.
+	 */
+	private void added() {
+		if (fDiskEntries == -1) {
+			fDiskEntries= listEntryFiles().length;
+		} else {
+			fDiskEntries++;
+		}
+		if (fDiskEntries <= DISK_CAPACITY)
+			return;
+
+		File[] files= listEntryFiles();
+		final long[] stamps= new long[files.length];
+		Integer[] order= new Integer[files.length];
+		for (int i= 0; i < files.length; i++) {
+			stamps[i]= files[i].lastModified();
+			order[i]= new Integer(i);
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer o1, Integer o2) {
+				long s1= stamps[o1.intValue()];
+				long s2= stamps[o2.intValue()];
+				return s1 < s2 ? -1 : s1 == s2 ? 0 : 1;
+			}
+		});
+		int remaining= files.length;
+		for (int i= 0; i < order.length && remaining > DISK_CAPACITY * 3 / 4; i++) {
+			if (files[order[i].intValue()].delete())
+				remaining--;
+		}
+		fDiskEntries= remaining;
+	}
+
+	private File[] listEntryFiles() {
+		File[] files= fCacheDir.listFiles();
+		if (files == null)
+			return new File[0];
+		int count= 0;
+		for (int i= 0; i < files.length; i++) {
+			if (files[i].getName().endsWith(FILE_EXTENSION))
+				files[count++]= files[i];
+		}
+		File[] result= new File[count];
+		System.arraycopy(files, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	 * Tells whether a delta can change the rendered Javadoc of library members.
+	 *
+	 * @param delta the Java element delta
+	 * @return <code>true</code> if the cache has to be invalidated
+	 */
+	private static boolean affectsLibraries(IJavaElementDelta delta) {
+		IJavaElement element= delta.getElement();
+		switch (element.getElementType()) {
+			case IJavaElement.JAVA_MODEL:
+				break;
+			case IJavaElement.JAVA_PROJECT:
+				if (delta.getKind() != IJavaElementDelta.CHANGED || (delta.getFlags() & (CLASSPATH_FLAGS | IJavaElementDelta.F_CLOSED)) != 0)
+					return true;
+				break;
+			case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+				return ((IPackageFragmentRoot) element).isArchive()
+						&& (delta.getKind() != IJavaElementDelta.CHANGED || (delta.getFlags() & CLASSPATH_FLAGS) != 0);
+			default:
+				return false;
+		}
+		IJavaElementDelta[] children= delta.getAffectedChildren();
+		for (int i= 0; i < children.length; i++) {
+			if (affectsLibraries(children[i]))
+				return true;
+		}
+		return false;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,7 @@
 package org.eclipse.jdt.internal.ui.text.spelling.engine;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -18,6 +19,7 @@ import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
@@ -27,6 +29,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -104,6 +107,12 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	 */
 	private static final String UTF_8= "UTF-8"; //$NON-NLS-1$
 
+	/**
+	 * Name of the directory in the plug-in state location that holds the precompiled word lists
+	 * @since 3.10
+	 */
+	private static final String PRECOMPILED_DIRECTORY= "spelling"; //$NON-NLS-1$
+
 	/** The bucket capacity */
 	protected static final int BUCKET_CAPACITY= 4;
 
@@ -113,6 +122,13 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	/** The distance threshold */
 	protected static final int DISTANCE_THRESHOLD= 160;
 
+	/**
+	 * Maximal number of candidates per phonetic hash considered for proposals,
+	 * see https://bugs.eclipse.org/bugs/show_bug.cgi?id=195357
+	 * @since 3.10
+	 */
+	private static final int MAX_CANDIDATES= 500;
+
 	/**
 	 * The hash load factor
 	 * @since 3.6
@@ -128,6 +144,13 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	/** The phonetic hash provider */
 	private IPhoneticHashProvider fHashProvider= new DefaultPhoneticHashProvider();
 
+	/**
+	 * The precompiled word list, or <code>null</code> if the word list is held in
+	 * {@link #fHashBuckets}. Words added after loading are always held in the buckets.
+	 * @since 3.10
+	 */
+	private volatile PhoneticHashTable fPrecompiled;
+
 	/** Is the dictionary already loaded? */
 	private boolean fLoaded= false;
 	/**
@@ -152,22 +175,78 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 		return 32;
 	}
 
+	/**
+	 * Returns the UTF-8 encoding of the given string.
+	 *
+	 * @param string the string to encode
+	 * @return the encoded string, or <code>null</code> if UTF-8 is not supported
+	 * @since 3.10
+	 */
+	private static byte[] getBytes(String string) {
+		try {
+			return string.getBytes(UTF_8);
+		} catch (UnsupportedEncodingException e) {
+			JavaPlugin.log(e);
+			return null;
+		}
+	}
+
 	/**
 	 * Returns all candidates with the same phonetic hash.
+	 * <p>
+	 * The candidates are read from the precompiled word list first and from the words
+	 * held in memory second.
+	 * </p>
 	 *
 	 * @param hash
 	 *                   The hash to retrieve the candidates of
-	 * @return Array of candidates for the phonetic hash
+	 * @param limit
+	 *                   The maximal number of candidates to return
+	 * @return List of candidates for the phonetic hash
+	 * @since 3.10
+	 */
+	private List<String> getCandidates(final String hash, final int limit) {
+		final ArrayList<String> result= new ArrayList<String>(BUCKET_CAPACITY);
+		final byte[] hashBytes= getBytes(hash);
+		if (hashBytes == null)
+			return result;
+
+		final PhoneticHashTable precompiled= fPrecompiled;
+		if (precompiled != null) {
+			final int bucket= precompiled.findBucket(hashBytes);
+			if (bucket >= 0) {
+				final int end= Math.min(precompiled.getEndWord(bucket), precompiled.getFirstWord(bucket) + limit);
+				for (int word= precompiled.getFirstWord(bucket); word < end; word++)
+					result.add(precompiled.getWord(word));
+			}
+		}
+
+		final Object candidates= fHashBuckets.get(new ByteArrayWrapper(hashBytes));
+		if (candidates instanceof byte[]) {
+			if (result.size() < limit)
+				result.add(toString((byte[])candidates));
+		} else if (candidates != null) {
+			@SuppressWarnings("unchecked")
+			final ArrayList<byte[]> candidateList= (ArrayList<byte[]>)candidates;
+			for (int index= 0; index < candidateList.size() && result.size() < limit; index++)
+				result.add(toString(candidateList.get(index)));
+		}
+		return result;
+	}
+
+	/**
+	 * Decodes a UTF-8 encoded string.
+	 *
+	 * @param bytes the encoded string
+	 * @return the decoded string
+	 * @since 3.10
 	 */
-	protected final Object getCandidates(final String hash) {
-		ByteArrayWrapper hashBytes;
+	private static String toString(byte[] bytes) {
 		try {
-			hashBytes= new ByteArrayWrapper(hash.getBytes(UTF_8));
+			return new String(bytes, UTF_8);
 		} catch (UnsupportedEncodingException e) {
-			JavaPlugin.log(e);
-			return null;
+			throw new IllegalStateException(e.getMessage());
 		}
-		return fHashBuckets.get(hashBytes);
 	}
 
 	/**
@@ -186,49 +265,16 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	protected final Set<RankedWordProposal> getCandidates(final String word, final boolean sentence, final ArrayList<String> hashs) {
 
 		int distance= 0;
-		String hash= null;
 
 		final StringBuffer buffer= new StringBuffer(BUFFER_CAPACITY);
 		final HashSet<RankedWordProposal> result= new HashSet<RankedWordProposal>(BUCKET_CAPACITY * hashs.size());
 
 		for (int index= 0; index < hashs.size(); index++) {
 
-			hash= hashs.get(index);
-
-			final Object candidates= getCandidates(hash);
-			if (candidates == null)
-				continue;
-			else if (candidates instanceof byte[]) {
-				String candidate;
-				try {
-					candidate= new String((byte[])candidates, UTF_8);
-				} catch (UnsupportedEncodingException e) {
-					JavaPlugin.log(e);
-					return result;
-				}
-				distance= fDistanceAlgorithm.getDistance(word, candidate);
-				if (distance < DISTANCE_THRESHOLD) {
-					buffer.setLength(0);
-					buffer.append(candidate);
-					if (sentence)
-						buffer.setCharAt(0, Character.toUpperCase(buffer.charAt(0)));
-					result.add(new RankedWordProposal(buffer.toString(), -distance));
-				}
-				continue;
-			}
-
-			@SuppressWarnings("unchecked")
-			final ArrayList<byte[]> candidateList= (ArrayList<byte[]>)candidates;
-			int candidateSize= Math.min(500, candidateList.size()); // see https://bugs.eclipse.org/bugs/show_bug.cgi?id=195357
-			for (int offset= 0; offset < candidateSize; offset++) {
+			final List<String> candidates= getCandidates(hashs.get(index), MAX_CANDIDATES);
+			for (int offset= 0; offset < candidates.size(); offset++) {
 
-				String candidate;
-				try {
-					candidate= new String(candidateList.get(offset), UTF_8);
-				} catch (UnsupportedEncodingException e) {
-					JavaPlugin.log(e);
-					return result;
-				}
+				final String candidate= candidates.get(offset);
 				distance= fDistanceAlgorithm.getDistance(word, candidate);
 
 				if (distance < DISTANCE_THRESHOLD) {
@@ -266,37 +312,11 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 
 		StringBuffer buffer= new StringBuffer(BUFFER_CAPACITY);
 
-		final Object candidates= getCandidates(fHashProvider.getHash(word));
-		if (candidates == null)
-			return;
-		else if (candidates instanceof byte[]) {
-			String candidate;
-			try {
-				candidate= new String((byte[])candidates, UTF_8);
-			} catch (UnsupportedEncodingException e) {
-				JavaPlugin.log(e);
-				return;
-			}
-			distance= fDistanceAlgorithm.getDistance(word, candidate);
-			buffer.append(candidate);
-			if (sentence)
-				buffer.setCharAt(0, Character.toUpperCase(buffer.charAt(0)));
-			result.add(new RankedWordProposal(buffer.toString(), -distance));
-			return;
-		}
-
-		@SuppressWarnings("unchecked")
-		final ArrayList<byte[]> candidateList= (ArrayList<byte[]>)candidates;
-		final ArrayList<RankedWordProposal> matches= new ArrayList<RankedWordProposal>(candidateList.size());
+		final List<String> candidates= getCandidates(fHashProvider.getHash(word), Integer.MAX_VALUE);
+		final ArrayList<RankedWordProposal> matches= new ArrayList<RankedWordProposal>(candidates.size());
 
-		for (int index= 0; index < candidateList.size(); index++) {
-			String candidate;
-			try {
-				candidate= new String(candidateList.get(index), UTF_8);
-			} catch (UnsupportedEncodingException e) {
-				JavaPlugin.log(e);
-				return;
-			}
+		for (int index= 0; index < candidates.size(); index++) {
+			final String candidate= candidates.get(index);
 			distance= fDistanceAlgorithm.getDistance(word, candidate);
 
 			if (distance <= minimum) {
@@ -325,7 +345,7 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	 * @since 3.3
 	 */
 	protected boolean isEmpty() {
-		return fHashBuckets.size() == 0;
+		return fHashBuckets.size() == 0 && (fPrecompiled == null || fPrecompiled.getWordCount() == 0);
 	}
 
 	/**
@@ -477,15 +497,11 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	protected final void hashWord(final String word) {
 
 		final String hash= fHashProvider.getHash(word);
-		ByteArrayWrapper hashBytes;
-		byte[] wordBytes;
-		try {
-			hashBytes= new ByteArrayWrapper(hash.getBytes(UTF_8));
-			wordBytes= word.getBytes(UTF_8);
-		} catch (UnsupportedEncodingException e) {
-			JavaPlugin.log(e);
+		final byte[] hashArray= getBytes(hash);
+		final byte[] wordBytes= getBytes(word);
+		if (hashArray == null || wordBytes == null)
 			return;
-		}
+		final ByteArrayWrapper hashBytes= new ByteArrayWrapper(hashArray);
 
 		Object bucket= fHashBuckets.get(hashBytes);
 
@@ -522,32 +538,32 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 			// Do nothing
 		}
 
-		final Object candidates= getCandidates(fHashProvider.getHash(word));
-		if (candidates == null)
+		final byte[] hashBytes= getBytes(fHashProvider.getHash(word));
+		final byte[] wordBytes= getBytes(word);
+		final byte[] lowercaseWordBytes= getBytes(word.toLowerCase());
+		if (hashBytes == null || wordBytes == null || lowercaseWordBytes == null)
 			return false;
-		else if (candidates instanceof byte[]) {
-			String candidate;
-			try {
-				candidate= new String((byte[])candidates, UTF_8);
-			} catch (UnsupportedEncodingException e) {
-				JavaPlugin.log(e);
-				return false;
+
+		final PhoneticHashTable precompiled= fPrecompiled;
+		if (precompiled != null) {
+			final int bucket= precompiled.findBucket(hashBytes);
+			if (bucket >= 0) {
+				for (int candidate= precompiled.getFirstWord(bucket), end= precompiled.getEndWord(bucket); candidate < end; candidate++) {
+					if (precompiled.isWord(candidate, wordBytes) || precompiled.isWord(candidate, lowercaseWordBytes))
+						return true;
+				}
 			}
-			if (candidate.equals(word) || candidate.equals(word.toLowerCase()))
-				return true;
+		}
+
+		final Object candidates= fHashBuckets.get(new ByteArrayWrapper(hashBytes));
+		if (candidates == null)
 			return false;
+		else if (candidates instanceof byte[]) {
+			byte[] candidate= (byte[])candidates;
+			return Arrays.equals(candidate, wordBytes) || Arrays.equals(candidate, lowercaseWordBytes);
 		}
 		@SuppressWarnings("unchecked")
 		final ArrayList<byte[]> candidateList= (ArrayList<byte[]>)candidates;
-		byte[] wordBytes;
-		byte[] lowercaseWordBytes;
-		try {
-			wordBytes= word.getBytes(UTF_8);
-			lowercaseWordBytes= word.toLowerCase().getBytes(UTF_8);
-		} catch (UnsupportedEncodingException e) {
-			JavaPlugin.log(e);
-			return false;
-		}
 		for (int index= 0; index < candidateList.size(); index++) {
 			byte[] candidate= candidateList.get(index);
 			if (Arrays.equals(candidate, wordBytes) || Arrays.equals(candidate, lowercaseWordBytes)) {
@@ -596,7 +612,7 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 	 * @see org.eclipse.jdt.ui.text.spelling.engine.ISpellDictionary#isLoaded()
 	 */
 	public synchronized final boolean isLoaded() {
-		return fLoaded || fHashBuckets.size() > 0;
+		return fLoaded || !isEmpty();
 	}
 
 	/**
@@ -611,6 +627,20 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 		 if (!fMustLoad)
 			 return fLoaded;
 
+		String precompiledName= null;
+		String precompiledKey= null;
+		if (url != null && isPrecompiled()) {
+			precompiledName= getPrecompiledName(url);
+			precompiledKey= getPrecompiledKey(url);
+			if (precompiledKey != null) {
+				fPrecompiled= PhoneticHashTable.open(getPrecompiledDirectory(), precompiledName, precompiledKey);
+				if (fPrecompiled != null) {
+					fMustLoad= false;
+					return true;
+				}
+			}
+		}
+
 		if (url != null) {
 			InputStream stream= null;
 			int line= 0;
@@ -647,6 +677,8 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 						if (doRead)
 							hashWord(word);
 					}
+					if (precompiledKey != null)
+						precompile(precompiledName, precompiledKey);
 					return true;
 				}
 			} catch (FileNotFoundException ex) {
@@ -679,6 +711,112 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 		return false;
 	}
 
+	/**
+	 * Tells whether the word list of this dictionary is compiled into a file in the
+	 * plug-in state location when it is loaded the first time, and memory-mapped from
+	 * that file on subsequent loads as long as the word list does not change.
+	 * <p>
+	 * Subclasses with large word lists that are read from a URL should return <code>true</code>.
+	 * </p>
+	 *
+	 * @return <code>true</code> iff the word list is precompiled, <code>false</code> by default
+	 * @since 3.10
+	 */
+	protected boolean isPrecompiled() {
+		return false;
+	}
+
+	/**
+	 * Tells whether the words of the word list are read from the memory-mapped precompiled
+	 * word list.
+	 *
+	 * @return <code>true</code> iff the precompiled word list is mapped
+	 * @since 3.10
+	 */
+	public final boolean isPrecompiledWordListMapped() {
+		return fPrecompiled != null;
+	}
+
+	/**
+	 * Returns the directory that holds the precompiled word lists.
+	 *
+	 * @return the directory
+	 * @since 3.10
+	 */
+	private static File getPrecompiledDirectory() {
+		return JavaPlugin.getDefault().getStateLocation().append(PRECOMPILED_DIRECTORY).toFile();
+	}
+
+	/**
+	 * Returns the name of the precompiled word list, which is shared by all its versions.
+	 *
+	 * @param url the URL of the word list
+	 * @return the name of the precompiled word list
+	 * @since 3.10
+	 */
+	private static String getPrecompiledName(URL url) {
+		return Integer.toHexString(url.toExternalForm().hashCode());
+	}
+
+	/**
+	 * Returns the key that identifies the word list a precompiled file has been
+	 * compiled from. The key changes when the word list is modified or read with
+	 * a different encoding or phonetic hash provider.
+	 *
+	 * @param url the URL of the word list
+	 * @return the key, or <code>null</code> if the word list does not exist
+	 * @since 3.10
+	 */
+	private String getPrecompiledKey(URL url) {
+		long lastModified;
+		int length;
+		try {
+			URLConnection connection= url.openConnection();
+			lastModified= connection.getLastModified();
+			length= connection.getContentLength();
+			connection.getInputStream().close();
+		} catch (IOException exception) {
+			return null;
+		}
+		if (lastModified == 0 || length < 0)
+			return null;
+		return url.toExternalForm() + '|' + getEncoding() + '|' + fHashProvider.getClass().getName() + '|' + lastModified + '|' + length;
+	}
+
+	/**
+	 * Compiles the words held in memory into the given file and replaces them
+	 * by the memory-mapped file. The words stay in memory if this fails.
+	 *
+	 * @param name the name of the precompiled word list
+	 * @param key the key of the word list
+	 * @since 3.10
+	 */
+	private void precompile(String name, String key) {
+		final byte[][] hashes= new byte[fHashBuckets.size()][];
+		final byte[][][] words= new byte[hashes.length][][];
+		int index= 0;
+		for (Iterator<Map.Entry<ByteArrayWrapper, Object>> iter= fHashBuckets.entrySet().iterator(); iter.hasNext(); index++) {
+			Map.Entry<ByteArrayWrapper, Object> entry= iter.next();
+			hashes[index]= entry.getKey().byteArray;
+			Object bucket= entry.getValue();
+			if (bucket instanceof byte[]) {
+				words[index]= new byte[][] { (byte[])bucket };
+			} else {
+				@SuppressWarnings("unchecked")
+				ArrayList<byte[]> bucketList= (ArrayList<byte[]>)bucket;
+				words[index]= bucketList.toArray(new byte[bucketList.size()][]);
+			}
+		}
+		try {
+			fPrecompiled= PhoneticHashTable.write(getPrecompiledDirectory(), name, key, hashes, words);
+		} catch (IOException exception) {
+			JavaPlugin.log(exception);
+			return;
+		}
+		if (fPrecompiled != null)
+			fHashBuckets.clear();
+	}
+
 	/**
 	 * Compacts the dictionary.
 	 *
@@ -720,6 +858,7 @@ public abstract class AbstractSpellDictionary implements ISpellDictionary {
 		fLoaded= false;
 		fMustLoad= true;
 		fHashBuckets.clear();
+		fPrecompiled= null;
 	}
 
 	/*
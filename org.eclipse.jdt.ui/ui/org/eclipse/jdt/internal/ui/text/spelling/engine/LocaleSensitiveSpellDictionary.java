@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -66,4 +66,13 @@ public class LocaleSensitiveSpellDictionary extends AbstractSpellDictionary {
 	protected int getInitialSize() {
 		return 32 * 1024;
 	}
+
+	/*
+	 * @see org.eclipse.jdt.internal.ui.text.spelling.engine.AbstractSpellDictionary#isPrecompiled()
+	 * @since 3.10
+	 */
+	@Override
+	protected boolean isPrecompiled() {
+		return true;
+	}
 }
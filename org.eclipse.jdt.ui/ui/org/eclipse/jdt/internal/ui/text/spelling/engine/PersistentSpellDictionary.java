@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -97,4 +97,13 @@ public class PersistentSpellDictionary extends AbstractSpellDictionary {
 	protected final URL getURL() {
 		return fLocation;
 	}
+
+	/*
+	 * @see org.eclipse.jdt.internal.ui.text.spelling.engine.AbstractSpellDictionary#isPrecompiled()
+	 * @since 3.10
+	 */
+	@Override
+	protected boolean isPrecompiled() {
+		return true;
+	}
 }
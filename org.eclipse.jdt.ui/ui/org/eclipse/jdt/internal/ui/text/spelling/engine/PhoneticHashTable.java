@@ -0,0 +1,395 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.text.spelling.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Read-only table from phonetic hashes to word lists, stored in a precompiled file
+ * that is memory-mapped and queried without materializing the words.
+ * <p>
+ * The file starts with a header holding a magic number, the format version, a key
+ * that identifies the word list the file was compiled from, the number of buckets
+ * and the number of words. It is followed by the offsets of the sorted hashes,
+ * the index of the first word of each bucket, the offsets of the words, and the
+ * UTF-8 encoded hashes and words. Buckets are sorted by the unsigned byte order of
+ * their hashes and are found by binary search.
+ * </p>
+ * <p>
+ * A file that is mapped must not be modified, so every compilation writes a new version
+ * with a unique file name. The name starts with the name of the word list and a hash of
+ * its key. Stale versions are deleted when another version is opened or written. On
+ * platforms that cannot delete mapped files, a deletion fails until the file has been
+ * unmapped and is retried on the next open or write.
+ * </p>
+ *
+ * @since 3.10
+ */
+/*package*/ final class PhoneticHashTable {
+
+	private static final int MAGIC= 0x4A535044; // "JSPD"
+
+	private static final int VERSION= 1;
+
+	private static final String UTF_8= "UTF-8"; //$NON-NLS-1$
+
+	private static final String EXTENSION= ".dictionary"; //$NON-NLS-1$
+
+	private static final String TEMPORARY_EXTENSION= ".tmp"; //$NON-NLS-1$
+
+	/**
+	 * Age in ms after which a temporary file is considered to be left over from an
+	 * interrupted write.
+	 */
+	private static final long TEMPORARY_FILE_AGE= 60 * 60 * 1000;
+
+	/** Maximal number of attempts to find an unused file name for a new version */
+	private static final int MAX_VERSION_ATTEMPTS= 100;
+
+	/**
+	 * Compares byte arrays by their unsigned lexicographic order.
+	 */
+	private static final Comparator<byte[]> BYTES_COMPARATOR= new Comparator<byte[]>() {
+		public int compare(byte[] left, byte[] right) {
+			int length= Math.min(left.length, right.length);
+			for (int index= 0; index < length; index++) {
+				int difference= (left[index] & 0xFF) - (right[index] & 0xFF);
+				if (difference != 0)
+					return difference;
+			}
+			return left.length - right.length;
+		}
+	};
+
+	private final ByteBuffer fBuffer;
+
+	private final int fBucketCount;
+
+	private final int fWordCount;
+
+	private final int fHashOffsets;
+
+	private final int fBucketStarts;
+
+	private final int fWordOffsets;
+
+	private final int fData;
+
+	private PhoneticHashTable(ByteBuffer buffer, int bucketCount, int wordCount) {
+		fBuffer= buffer;
+		fBucketCount= bucketCount;
+		fWordCount= wordCount;
+		fHashOffsets= buffer.position();
+		fBucketStarts= fHashOffsets + 4 * (bucketCount + 1);
+		fWordOffsets= fBucketStarts + 4 * (bucketCount + 1);
+		fData= fWordOffsets + 4 * (wordCount + 1);
+	}
+
+	/**
+	 * Maps the precompiled table of a word list and deletes its stale versions.
+	 *
+	 * @param directory the directory that holds the precompiled tables
+	 * @param name the name of the word list, must not contain '_'
+	 * @param key the key of the word list the table must have been compiled from
+	 * @return the table, or <code>null</code> if there is no valid version that has been
+	 *         compiled from this word list
+	 */
+	public static PhoneticHashTable open(File directory, String name, String key) {
+		File[] files= directory.listFiles();
+		if (files == null)
+			return null;
+		String prefix= getPrefix(name, key);
+		for (int index= 0; index < files.length; index++) {
+			File file= files[index];
+			if (file.getName().startsWith(prefix) && file.getName().endsWith(EXTENSION)) {
+				PhoneticHashTable table= open(file, key);
+				if (table != null) {
+					deleteStaleVersions(directory, name, file);
+					return table;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Maps a precompiled table from a file.
+	 *
+	 * @param file the precompiled file
+	 * @param key the key of the word list the table must have been compiled from
+	 * @return the table, or <code>null</code> if the file does not exist, is corrupt
+	 *         or has been compiled from a different word list
+	 */
+	private static PhoneticHashTable open(File file, String key) {
+		if (!file.isFile())
+			return null;
+		RandomAccessFile input= null;
+		try {
+			input= new RandomAccessFile(file, "r"); //$NON-NLS-1$
+			FileChannel channel= input.getChannel();
+			MappedByteBuffer buffer= channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+				return null;
+			byte[] keyBytes= new byte[buffer.getInt()];
+			buffer.get(keyBytes);
+			if (!Arrays.equals(keyBytes, key.getBytes(UTF_8)))
+				return null;
+			int bucketCount= buffer.getInt();
+			int wordCount= buffer.getInt();
+			PhoneticHashTable table= new PhoneticHashTable(buffer, bucketCount, wordCount);
+			if (table.fData < 0 || table.fData + table.getInt(table.fWordOffsets, wordCount) != buffer.limit())
+				return null;
+			return table;
+		} catch (IOException exception) {
+			return null;
+		} catch (BufferUnderflowException exception) {
+			return null;
+		} catch (IndexOutOfBoundsException exception) {
+			return null;
+		} catch (IllegalArgumentException exception) {
+			return null;
+		} finally {
+			try {
+				if (input != null)
+					input.close(); // the mapping stays valid
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * Compiles the given buckets into a new version of the precompiled table of a word
+	 * list, maps it and deletes the stale versions. The new version is written to a
+	 * temporary file first and then renamed to an unused name, so that a concurrent reader
+	 * never sees a partial file and no mapped file is ever replaced.
+	 *
+	 * @param directory the directory that holds the precompiled tables
+	 * @param name the name of the word list, must not contain '_'
+	 * @param key the key of the word list the buckets have been read from
+	 * @param hashes the UTF-8 encoded phonetic hashes
+	 * @param words the UTF-8 encoded words of each hash, in the order they are proposed
+	 * @return the table, or <code>null</code> if the new version could not be mapped
+	 * @throws IOException if the file could not be written
+	 */
+	public static PhoneticHashTable write(File directory, String name, String key, byte[][] hashes, byte[][][] words) throws IOException {
+		Integer[] order= new Integer[hashes.length];
+		for (int index= 0; index < order.length; index++)
+			order[index]= new Integer(index);
+		final byte[][] sortedHashes= hashes;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer left, Integer right) {
+				return BYTES_COMPARATOR.compare(sortedHashes[left.intValue()], sortedHashes[right.intValue()]);
+			}
+		});
+
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException(directory.toString());
+		File temporary= File.createTempFile(name + '_', TEMPORARY_EXTENSION, directory);
+		DataOutputStream output= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), 64 * 1024));
+		boolean written= false;
+		try {
+			byte[] keyBytes= key.getBytes(UTF_8);
+			int wordCount= 0;
+			for (int index= 0; index < words.length; index++)
+				wordCount+= words[index].length;
+
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(keyBytes.length);
+			output.write(keyBytes);
+			output.writeInt(hashes.length);
+			output.writeInt(wordCount);
+
+			int offset= 0;
+			for (int index= 0; index < order.length; index++) {
+				output.writeInt(offset);
+				offset+= hashes[order[index].intValue()].length;
+			}
+			output.writeInt(offset);
+
+			int start= 0;
+			for (int index= 0; index < order.length; index++) {
+				output.writeInt(start);
+				start+= words[order[index].intValue()].length;
+			}
+			output.writeInt(start);
+
+			for (int index= 0; index < order.length; index++) {
+				byte[][] bucket= words[order[index].intValue()];
+				for (int word= 0; word < bucket.length; word++) {
+					output.writeInt(offset);
+					offset+= bucket[word].length;
+				}
+			}
+			output.writeInt(offset);
+
+			for (int index= 0; index < order.length; index++)
+				output.write(hashes[order[index].intValue()]);
+			for (int index= 0; index < order.length; index++) {
+				byte[][] bucket= words[order[index].intValue()];
+				for (int word= 0; word < bucket.length; word++)
+					output.write(bucket[word]);
+			}
+			written= true;
+		} finally {
+			output.close();
+			if (!written)
+				temporary.delete();
+		}
+
+		String prefix= getPrefix(name, key);
+		long version= System.currentTimeMillis();
+		for (int attempt= 0; attempt < MAX_VERSION_ATTEMPTS; attempt++, version++) {
+			File file= new File(directory, prefix + Long.toHexString(version) + EXTENSION);
+			if (!file.exists() && temporary.renameTo(file)) {
+				PhoneticHashTable table= open(file, key);
+				if (table != null)
+					deleteStaleVersions(directory, name, file);
+				return table;
+			}
+		}
+		temporary.delete();
+		throw new IOException(directory.toString());
+	}
+
+	private static String getPrefix(String name, String key) {
+		return name + '_' + Integer.toHexString(key.hashCode()) + '_';
+	}
+
+	/**
+	 * Deletes all versions of the precompiled table of a word list except the given one, and
+	 * the temporary files left over from interrupted writes. Versions that are still mapped
+	 * cannot be deleted on some platforms, they are deleted by a later call.
+	 *
+	 * @param directory the directory that holds the precompiled tables
+	 * @param name the name of the word list
+	 * @param current the version to keep
+	 */
+	private static void deleteStaleVersions(File directory, String name, File current) {
+		File[] files= directory.listFiles();
+		if (files == null)
+			return;
+		String prefix= name + '_';
+		long expired= System.currentTimeMillis() - TEMPORARY_FILE_AGE;
+		for (int index= 0; index < files.length; index++) {
+			File file= files[index];
+			String fileName= file.getName();
+			if (!fileName.startsWith(prefix) || file.equals(current))
+				continue;
+			if (fileName.endsWith(EXTENSION) || (fileName.endsWith(TEMPORARY_EXTENSION) && file.lastModified() < expired))
+				file.delete();
+		}
+	}
+
+	private int getInt(int table, int index) {
+		return fBuffer.getInt(table + 4 * index);
+	}
+
+	/**
+	 * Returns the bucket of a phonetic hash.
+	 *
+	 * @param hash the UTF-8 encoded phonetic hash
+	 * @return the index of the bucket, or <code>-1</code> if there are no words with this hash
+	 */
+	public int findBucket(byte[] hash) {
+		int low= 0;
+		int high= fBucketCount - 1;
+		while (low <= high) {
+			int middle= (low + high) >>> 1;
+			int start= fData + getInt(fHashOffsets, middle);
+			int end= fData + getInt(fHashOffsets, middle + 1);
+			int comparison= compare(start, end, hash);
+			if (comparison < 0)
+				low= middle + 1;
+			else if (comparison > 0)
+				high= middle - 1;
+			else
+				return middle;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param bucket the index of a bucket
+	 * @return the index of the first word in the bucket
+	 */
+	public int getFirstWord(int bucket) {
+		return getInt(fBucketStarts, bucket);
+	}
+
+	/**
+	 * @param bucket the index of a bucket
+	 * @return the index after the last word in the bucket
+	 */
+	public int getEndWord(int bucket) {
+		return getInt(fBucketStarts, bucket + 1);
+	}
+
+	/**
+	 * Decodes a word.
+	 *
+	 * @param word the index of the word
+	 * @return the word
+	 */
+	public String getWord(int word) {
+		int start= getInt(fWordOffsets, word);
+		byte[] bytes= new byte[getInt(fWordOffsets, word + 1) - start];
+		for (int index= 0; index < bytes.length; index++)
+			bytes[index]= fBuffer.get(fData + start + index);
+		try {
+			return new String(bytes, UTF_8);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Tells whether a word is equal to the given bytes, without decoding the word.
+	 *
+	 * @param word the index of the word
+	 * @param bytes the UTF-8 encoded word to compare with
+	 * @return <code>true</code> iff the word is equal to the bytes
+	 */
+	public boolean isWord(int word, byte[] bytes) {
+		int start= fData + getInt(fWordOffsets, word);
+		int end= fData + getInt(fWordOffsets, word + 1);
+		return end - start == bytes.length && compare(start, end, bytes) == 0;
+	}
+
+	/**
+	 * @return the number of words in this table
+	 */
+	public int getWordCount() {
+		return fWordCount;
+	}
+
+	private int compare(int start, int end, byte[] bytes) {
+		int length= Math.min(end - start, bytes.length);
+		for (int index= 0; index < length; index++) {
+			int difference= (fBuffer.get(start + index) & 0xFF) - (bytes[index] & 0xFF);
+			if (difference != 0)
+				return difference;
+		}
+		return (end - start) - bytes.length;
+	}
+}
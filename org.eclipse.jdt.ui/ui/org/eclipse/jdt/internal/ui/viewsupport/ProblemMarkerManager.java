@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -110,6 +110,12 @@ public class ProblemMarkerManager implements IResourceChangeListener, IAnnotatio
 
 	private UIJob fNotifierJob;
 
+	/**
+	 * The severity index, or <code>null</code> while this manager is not attached to
+	 * the workspace.
+	 */
+	private volatile ProblemSeverityIndex fSeverityIndex;
+
 	public ProblemMarkerManager() {
 		fListeners= new ListenerList();
 		fResourcesWithMarkerChanges= new HashSet<IResource>();
@@ -124,8 +130,12 @@ public class ProblemMarkerManager implements IResourceChangeListener, IAnnotatio
 
 		try {
 			IResourceDelta delta= event.getDelta();
-			if (delta != null)
+			if (delta != null) {
+				ProblemSeverityIndex severityIndex= fSeverityIndex;
+				if (severityIndex != null)
+					severityIndex.update(delta);
 				delta.accept(new ProjectErrorVisitor(changedElements));
+			}
 		} catch (CoreException e) {
 			JavaPlugin.log(e.getStatus());
 		}
@@ -179,6 +189,7 @@ public class ProblemMarkerManager implements IResourceChangeListener, IAnnotatio
 	 */
 	public void addListener(IProblemChangedListener listener) {
 		if (fListeners.isEmpty()) {
+			fSeverityIndex= new ProblemSeverityIndex();
 			JavaPlugin.getWorkspace().addResourceChangeListener(this);
 			JavaPlugin.getDefault().getCompilationUnitDocumentProvider().addGlobalAnnotationModelListener(this);
 		}
@@ -193,10 +204,23 @@ public class ProblemMarkerManager implements IResourceChangeListener, IAnnotatio
 		fListeners.remove(listener);
 		if (fListeners.isEmpty()) {
 			JavaPlugin.getWorkspace().removeResourceChangeListener(this);
+			fSeverityIndex= null;
 			JavaPlugin.getDefault().getCompilationUnitDocumentProvider().removeGlobalAnnotationModelListener(this);
 		}
 	}
 
+	/**
+	 * Returns the index of the maximum problem severity of resources. The index is only
+	 * available while listeners are registered, since it is updated from the resource
+	 * deltas received by this manager.
+	 *
+	 * @return the severity index, or <code>null</code> if no listeners are registered
+	 * @since 3.10
+	 */
+	public ProblemSeverityIndex getSeverityIndex() {
+		return fSeverityIndex;
+	}
+
 	private void fireChanges() {
 		Display display= PlatformUI.getWorkbench().getDisplay();
 		if (display != null && !display.isDisposed()) {
@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.viewsupport;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IMarkerDelta;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IWorkspaceRoot;
+
+/**
+ * Index of the maximum severity of the problem markers on and below each resource.
+ * <p>
+ * The markers of a project are read with a single marker search when the project is
+ * queried for the first time. After that, the index is kept up to date from the
+ * resource deltas passed to {@link #update(IResourceDelta)}, and
+ * {@link #findMaxProblemSeverity(IResource, int)} answers from per-resource counters
+ * without looking at markers.
+ * </p>
+ * <p>
+ * Markers are tracked by id, so applying a delta whose markers are already indexed
+ * has no effect. This class is thread safe.
+ * </p>
+ *
+ * @since 3.10
+ */
+public class ProblemSeverityIndex {
+
+	/**
+	 * Severities are {@link IMarker#SEVERITY_INFO}, {@link IMarker#SEVERITY_WARNING} and
+	 * {@link IMarker#SEVERITY_ERROR}, which are used as index into the counters.
+	 */
+	private static final int SEVERITIES= 3;
+
+	private static class Node {
+		final String fName;
+		final Node fParent;
+		Map<String, Node> fChildren;
+		/**
+		 * Map from marker id to the severity of the problem markers on this resource.
+		 */
+		Map<Long, Integer> fMarkers;
+		final int[] fOwnCounts= new int[SEVERITIES];
+		final int[] fTreeCounts= new int[SEVERITIES];
+
+		Node(String name, Node parent) {
+			fName= name;
+			fParent= parent;
+		}
+
+		Node getChild(String name, boolean create) {
+			Node child= fChildren != null ? fChildren.get(name) : null;
+			if (child == null && create) {
+				if (fChildren == null)
+					fChildren= new HashMap<String, Node>(4);
+				child= new Node(name, this);
+				fChildren.put(name, child);
+			}
+			return child;
+		}
+
+		void count(int severity, int delta) {
+			fOwnCounts[severity]+= delta;
+			for (Node node= this; node != null; node= node.fParent)
+				node.fTreeCounts[severity]+= delta;
+		}
+
+		void remove() {
+			for (Node node= fParent; node != null; node= node.fParent) {
+				for (int i= 0; i < SEVERITIES; i++)
+					node.fTreeCounts[i]-= fTreeCounts[i];
+			}
+			fParent.fChildren.remove(fName);
+		}
+
+		static int getMaxSeverity(int[] counts) {
+			for (int i= SEVERITIES - 1; i >= 0; i--) {
+				if (counts[i] > 0)
+					return i;
+			}
+			return -1;
+		}
+	}
+
+	private class DeltaVisitor implements IResourceDeltaVisitor {
+		public boolean visit(IResourceDelta delta) throws CoreException {
+			IResource resource= delta.getResource();
+			switch (resource.getType()) {
+				case IResource.ROOT:
+					return true;
+				case IResource.PROJECT:
+					if (!fIndexedProjects.contains(resource))
+						return false;
+					if (delta.getKind() == IResourceDelta.REMOVED || (delta.getFlags() & IResourceDelta.OPEN) != 0) {
+						removeProject((IProject) resource);
+						return false;
+					}
+					break;
+				default:
+					if (delta.getKind() == IResourceDelta.REMOVED) {
+						Node node= findNode(resource);
+						if (node != null)
+							node.remove();
+						return false;
+					}
+					if (delta.getKind() == IResourceDelta.ADDED) {
+						// also covers the markers that are moved or copied along with the resource
+						indexMarkers(resource);
+						return false;
+					}
+			}
+			if ((delta.getFlags() & IResourceDelta.MARKERS) != 0)
+				updateMarkers(resource, delta.getMarkerDeltas());
+			return true;
+		}
+	}
+
+	private final Node fRoot= new Node("", null); //$NON-NLS-1$
+
+	private final Set<IProject> fIndexedProjects= new HashSet<IProject>();
+
+	/**
+	 * Returns the maximum severity of the problem markers on a resource, like
+	 * {@link IResource#findMaxProblemSeverity(String, boolean, int)} for
+	 * {@link IMarker#PROBLEM} and its subtypes.
+	 *
+	 * @param resource the resource
+	 * @param depth the depth, one of the <code>IResource.DEPTH_*</code> constants
+	 * @return the maximum severity, or <code>-1</code> if there are no problem markers
+	 * @throws CoreException if the markers of the project could not be read
+	 */
+	public synchronized int findMaxProblemSeverity(IResource resource, int depth) throws CoreException {
+		if (resource instanceof IWorkspaceRoot) {
+			IProject[] projects= ((IWorkspaceRoot) resource).getProjects();
+			for (int i= 0; i < projects.length; i++)
+				indexProject(projects[i]);
+		} else {
+			indexProject(resource.getProject());
+		}
+
+		Node node= findNode(resource);
+		if (node == null)
+			return -1;
+		switch (depth) {
+			case IResource.DEPTH_ZERO:
+				return Node.getMaxSeverity(node.fOwnCounts);
+			case IResource.DEPTH_ONE:
+				int severity= Node.getMaxSeverity(node.fOwnCounts);
+				if (node.fChildren != null) {
+					for (Iterator<Node> iter= node.fChildren.values().iterator(); iter.hasNext();)
+						severity= Math.max(severity, Node.getMaxSeverity(iter.next().fOwnCounts));
+				}
+				return severity;
+			default:
+				return Node.getMaxSeverity(node.fTreeCounts);
+		}
+	}
+
+	/**
+	 * Updates the index from a resource delta. Changes in projects that have not been
+	 * queried yet are ignored.
+	 *
+	 * @param delta the resource delta
+	 * @throws CoreException if the delta could not be visited
+	 */
+	public synchronized void update(IResourceDelta delta) throws CoreException {
+		if (!fIndexedProjects.isEmpty())
+			delta.accept(new DeltaVisitor());
+	}
+
+	private void indexProject(IProject project) throws CoreException {
+		if (fIndexedProjects.contains(project) || !project.isAccessible())
+			return;
+		indexMarkers(project);
+		fIndexedProjects.add(project);
+	}
+
+	private void indexMarkers(IResource resource) throws CoreException {
+		if (!resource.isAccessible())
+			return;
+		IMarker[] markers= resource.findMarkers(IMarker.PROBLEM, true, IResource.DEPTH_INFINITE);
+		for (int i= 0; i < markers.length; i++) {
+			IMarker marker= markers[i];
+			putMarker(marker.getResource(), marker.getId(), marker.getAttribute(IMarker.SEVERITY, -1));
+		}
+	}
+
+	private void removeProject(IProject project) {
+		fIndexedProjects.remove(project);
+		Node node= findNode(project);
+		if (node != null)
+			node.remove();
+	}
+
+	private void updateMarkers(IResource resource, IMarkerDelta[] markerDeltas) {
+		for (int i= 0; i < markerDeltas.length; i++) {
+			IMarkerDelta markerDelta= markerDeltas[i];
+			if (!markerDelta.isSubtypeOf(IMarker.PROBLEM))
+				continue;
+			switch (markerDelta.getKind()) {
+				case IResourceDelta.ADDED:
+					putMarker(resource, markerDelta.getId(), markerDelta.getAttribute(IMarker.SEVERITY, -1));
+					break;
+				case IResourceDelta.CHANGED:
+					// the delta holds the old attributes
+					putMarker(resource, markerDelta.getId(), markerDelta.getMarker().getAttribute(IMarker.SEVERITY, -1));
+					break;
+				case IResourceDelta.REMOVED:
+					removeMarker(resource, markerDelta.getId());
+					break;
+			}
+		}
+	}
+
+	private void putMarker(IResource resource, long id, int severity) {
+		if (severity < 0 || severity >= SEVERITIES) {
+			removeMarker(resource, id);
+			return;
+		}
+		Node node= getNode(resource);
+		if (node.fMarkers == null)
+			node.fMarkers= new HashMap<Long, Integer>(4);
+		Integer old= node.fMarkers.put(new Long(id), new Integer(severity));
+		if (old != null)
+			node.count(old.intValue(), -1);
+		node.count(severity, 1);
+	}
+
+	private void removeMarker(IResource resource, long id) {
+		Node node= findNode(resource);
+		if (node == null || node.fMarkers == null)
+			return;
+		Integer old= node.fMarkers.remove(new Long(id));
+		if (old != null)
+			node.count(old.intValue(), -1);
+	}
+
+	private Node findNode(IResource resource) {
+		IPath path= resource.getFullPath();
+		Node node= fRoot;
+		for (int i= 0; i < path.segmentCount() && node != null; i++)
+			node= node.getChild(path.segment(i), false);
+		return node;
+	}
+
+	private Node getNode(IResource resource) {
+		IPath path= resource.getFullPath();
+		Node node= fRoot;
+		for (int i= 0; i < path.segmentCount(); i++)
+			node= node.getChild(path.segment(i), true);
+		return node;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2012 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -61,6 +61,7 @@ import org.eclipse.jdt.internal.ui.JavaPluginImages;
 import org.eclipse.jdt.internal.ui.viewsupport.IProblemChangedListener;
 import org.eclipse.jdt.internal.ui.viewsupport.ImageDescriptorRegistry;
 import org.eclipse.jdt.internal.ui.viewsupport.ImageImageDescriptor;
+import org.eclipse.jdt.internal.ui.viewsupport.ProblemSeverityIndex;
 
 /**
  * LabelDecorator that decorates an element's image with error and warning overlays that
@@ -296,7 +297,7 @@ public class ProblemsLabelDecorator implements ILabelDecorator, ILightweightLabe
 					return ERRORTICK_BUILDPATH_ERROR;
 				}
 			}
-			severity= res.findMaxProblemSeverity(IMarker.PROBLEM, true, depth);
+			severity= findMaxProblemSeverity(res, depth);
 		} else {
 			IMarker[] markers= res.findMarkers(IMarker.PROBLEM, true, depth);
 			if (markers != null && markers.length > 0) {
@@ -328,13 +329,13 @@ public class ProblemsLabelDecorator implements ILabelDecorator, ILightweightLabe
 		}
 		
 		// markers on package itself (e.g. missing @NonNullByDefault)
-		int severity= res.findMaxProblemSeverity(IMarker.PROBLEM, true, IResource.DEPTH_ZERO);
+		int severity= findMaxProblemSeverity(res, IResource.DEPTH_ZERO);
 		if (severity == IMarker.SEVERITY_ERROR)
 			return ERRORTICK_ERROR;
 		
 		// markers on CUs
 		for (ICompilationUnit cu : pack.getCompilationUnits()) {
-			severity= Math.max(severity, cu.getResource().findMaxProblemSeverity(IMarker.PROBLEM, true, IResource.DEPTH_ZERO));
+			severity= Math.max(severity, findMaxProblemSeverity(cu.getResource(), IResource.DEPTH_ZERO));
 			if (severity == IMarker.SEVERITY_ERROR)
 				return ERRORTICK_ERROR;
 		}
@@ -343,7 +344,7 @@ public class ProblemsLabelDecorator implements ILabelDecorator, ILightweightLabe
 		for (Object object : pack.getNonJavaResources()) {
 			if (object instanceof IResource) {
 				IResource resource= (IResource) object;
-				severity= Math.max(severity, resource.findMaxProblemSeverity(IMarker.PROBLEM, true, IResource.DEPTH_INFINITE));
+				severity= Math.max(severity, findMaxProblemSeverity(resource, IResource.DEPTH_INFINITE));
 				if (severity == IMarker.SEVERITY_ERROR)
 					return ERRORTICK_ERROR;
 			}
@@ -356,6 +357,22 @@ public class ProblemsLabelDecorator implements ILabelDecorator, ILightweightLabe
 		return 0;
 	}
 
+	/**
+	 * Returns the maximum severity of the problem markers on a resource. Uses the severity
+	 * index of the problem marker manager if it is available.
+	 *
+	 * @param resource the resource
+	 * @param depth the depth
+	 * @return the maximum severity, or <code>-1</code> if there are no problem markers
+	 * @throws CoreException if the markers could not be read
+	 */
+	private static int findMaxProblemSeverity(IResource resource, int depth) throws CoreException {
+		ProblemSeverityIndex severityIndex= JavaPlugin.getDefault().getProblemMarkerManager().getSeverityIndex();
+		if (severityIndex != null)
+			return severityIndex.findMaxProblemSeverity(resource, depth);
+		return resource.findMaxProblemSeverity(IMarker.PROBLEM, true, depth);
+	}
+
 	private boolean isMarkerInRange(IMarker marker, ISourceReference sourceElement) throws CoreException {
 		if (marker.isSubtypeOf(IMarker.TEXT)) {
 			int pos= marker.getAttribute(IMarker.CHAR_START, -1);
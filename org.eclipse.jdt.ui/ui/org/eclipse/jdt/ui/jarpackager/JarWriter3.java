@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -59,6 +59,7 @@ import org.eclipse.ltk.core.refactoring.RefactoringDescriptorProxy;
 import org.eclipse.jdt.internal.corext.util.Messages;
 
 import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.jarpackager.IJarOutputStreamFactory;
 import org.eclipse.jdt.internal.ui.jarpackager.JarPackagerMessages;
 import org.eclipse.jdt.internal.ui.jarpackager.JarPackagerUtil;
 import org.eclipse.jdt.internal.ui.viewsupport.BasicElementLabels;
@@ -94,6 +95,29 @@ public class JarWriter3 {
 	 * 							in the status object.
 	 */
 	public JarWriter3(JarPackageData jarPackage, Shell parent) throws CoreException {
+		this(jarPackage, parent, null);
+	}
+
+	/**
+	 * Creates an instance which is used to create a JAR based
+	 * on the given JarPackage.
+	 * <p>
+	 * Note: This constructor is for internal use only. Clients should not call this constructor.
+	 * </p>
+	 *
+	 * @param jarPackage		the JAR specification
+	 * @param parent			the shell used to display question dialogs,
+	 *				 			or <code>null</code> if "false/no/cancel" is the answer
+	 * 							and no dialog should be shown
+	 * @param factory			the factory of the stream to which the archive is written,
+	 * 							or <code>null</code> to write a plain {@link JarOutputStream}
+	 * @throws	CoreException	to signal any other unusual termination.
+	 * 							This can also be used to return information
+	 * 							in the status object.
+	 *
+	 * @noreference This constructor is not intended to be referenced by clients.
+	 */
+	protected JarWriter3(JarPackageData jarPackage, Shell parent, IJarOutputStreamFactory factory) throws CoreException {
 		Assert.isNotNull(jarPackage, "The JAR specification is null"); //$NON-NLS-1$
 		fJarPackage= jarPackage;
 		Assert.isTrue(fJarPackage.isValid(), "The JAR package specification is invalid"); //$NON-NLS-1$
@@ -101,11 +125,16 @@ public class JarWriter3 {
 			throw new OperationCanceledException();
 
 		try {
-			if (fJarPackage.usesManifest() && fJarPackage.areGeneratedFilesExported()) {
-				Manifest manifest= fJarPackage.getManifestProvider().create(fJarPackage);
-				fJarOutputStream= new JarOutputStream(new BufferedOutputStream(new FileOutputStream(fJarPackage.getAbsoluteJarLocation().toFile())), manifest);
-			} else
-				fJarOutputStream= new JarOutputStream(new BufferedOutputStream(new FileOutputStream(fJarPackage.getAbsoluteJarLocation().toFile())));
+			Manifest manifest= null;
+			if (fJarPackage.usesManifest() && fJarPackage.areGeneratedFilesExported())
+				manifest= fJarPackage.getManifestProvider().create(fJarPackage);
+			OutputStream out= new BufferedOutputStream(new FileOutputStream(fJarPackage.getAbsoluteJarLocation().toFile()));
+			if (factory != null)
+				fJarOutputStream= factory.create(out, manifest);
+			else if (manifest != null)
+				fJarOutputStream= new JarOutputStream(out, manifest);
+			else
+				fJarOutputStream= new JarOutputStream(out);
 			String comment= jarPackage.getComment();
 			if (comment != null)
 				fJarOutputStream.setComment(comment);
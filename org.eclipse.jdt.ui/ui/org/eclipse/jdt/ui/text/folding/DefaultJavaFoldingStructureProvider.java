@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2011 IBM Corporation and others.
+ * Copyright (c) 2006, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -358,7 +358,7 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 
 				fUpdatingCount++;
 				try {
-					update(createContext(false));
+					update(createContext(false), delta);
 				} finally {
 					fUpdatingCount--;
 				}
@@ -874,6 +874,20 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 	}
 
 	private void update(FoldingStructureComputationContext ctx) {
+		update(ctx, null);
+	}
+
+	/**
+	 * Updates the folding structure. If a fine-grained reconcile delta is given, only the folding
+	 * regions of the elements that may have changed are computed again, and the annotations of
+	 * all other elements are kept.
+	 *
+	 * @param ctx the folding context, may be <code>null</code>
+	 * @param delta the reconcile delta of the input, or <code>null</code> to compute the whole
+	 *            folding structure
+	 * @since 3.10
+	 */
+	private void update(FoldingStructureComputationContext ctx, IJavaElementDelta delta) {
 		if (ctx == null)
 			return;
 
@@ -881,9 +895,15 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 		List<JavaProjectionAnnotation> deletions= new ArrayList<JavaProjectionAnnotation>();
 		List<JavaProjectionAnnotation> updates= new ArrayList<JavaProjectionAnnotation>();
 
-		computeFoldingStructure(ctx);
-		Map<JavaProjectionAnnotation, Position> newStructure= ctx.fMap;
 		Map<IJavaElement, List<Tuple>> oldStructure= computeCurrentStructure(ctx);
+		if (delta != null && isIncremental(ctx, delta)) {
+			Set<IJavaElement> unchanged= computeChangedFoldingStructure(ctx, delta, oldStructure);
+			// the annotations of unchanged elements are neither updated nor deleted
+			oldStructure.keySet().removeAll(unchanged);
+		} else {
+			computeFoldingStructure(ctx);
+		}
+		Map<JavaProjectionAnnotation, Position> newStructure= ctx.fMap;
 
 		Iterator<JavaProjectionAnnotation> e= newStructure.keySet().iterator();
 		while (e.hasNext()) {
@@ -951,9 +971,157 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 		Annotation[] changedArray= updates.toArray(new Annotation[updates.size()]);
 		ctx.getModel().modifyAnnotations(deletedArray, additions, changedArray);
 
-		ctx.fScanner.setSource(null);
+		if (ctx.fScanner != null)
+			ctx.fScanner.setSource(null);
     }
 
+	/**
+	 * Tells whether the folding structure can be updated from the given delta, rather than being
+	 * computed for the whole input.
+	 *
+	 * @param ctx the folding context
+	 * @param delta the reconcile delta of the input
+	 * @return <code>true</code> if only the changed elements need to be folded again
+	 * @since 3.10
+	 */
+	private boolean isIncremental(FoldingStructureComputationContext ctx, IJavaElementDelta delta) {
+		return !ctx.allowCollapsing() && fInput instanceof ICompilationUnit && (delta.getFlags() & IJavaElementDelta.F_FINE_GRAINED) != 0;
+	}
+
+	/**
+	 * Computes the folding structure of the elements of the input whose folding regions may have
+	 * changed. These are the elements that are added or changed in the delta, the top-level types
+	 * (which carry the header comment), and the elements whose folding regions differ from the ones
+	 * computed from their current source range, for example after an edit of a method body.
+	 *
+	 * @param ctx the folding context
+	 * @param delta the reconcile delta of the input
+	 * @param oldStructure the current folding structure
+	 * @return the elements whose folding regions are still valid
+	 * @since 3.10
+	 */
+	private Set<IJavaElement> computeChangedFoldingStructure(FoldingStructureComputationContext ctx, IJavaElementDelta delta, Map<IJavaElement, List<Tuple>> oldStructure) {
+		Set<IJavaElement> changed= new HashSet<IJavaElement>();
+		collectChangedElements(delta, changed);
+		Set<IJavaElement> unchanged= new HashSet<IJavaElement>();
+		IParent parent= (IParent) fInput;
+		try {
+			String source= ((ISourceReference) fInput).getSource();
+			if (source == null)
+				return unchanged;
+
+			ctx.getScanner().setSource(source.toCharArray());
+			computeChangedFoldingStructure(parent.getChildren(), ctx, changed, oldStructure, unchanged);
+		} catch (JavaModelException x) {
+		}
+		return unchanged;
+	}
+
+	private void computeChangedFoldingStructure(IJavaElement[] elements, FoldingStructureComputationContext ctx, Set<IJavaElement> changed, Map<IJavaElement, List<Tuple>> oldStructure, Set<IJavaElement> unchanged) throws JavaModelException {
+		for (int i= 0; i < elements.length; i++) {
+			IJavaElement element= elements[i];
+
+			if (!changed.contains(element) && isFoldingStructureValid(element, oldStructure.get(element), ctx))
+				unchanged.add(element);
+			else
+				computeFoldingStructure(element, ctx);
+
+			if (element instanceof IParent) {
+				IParent parent= (IParent) element;
+				computeChangedFoldingStructure(parent.getChildren(), ctx, changed, oldStructure, unchanged);
+			}
+		}
+	}
+
+	private void collectChangedElements(IJavaElementDelta delta, Set<IJavaElement> changed) {
+		IJavaElementDelta[] children= delta.getAffectedChildren();
+		for (int i= 0; i < children.length; i++) {
+			if (children[i].getKind() != IJavaElementDelta.REMOVED)
+				changed.add(children[i].getElement());
+			collectChangedElements(children[i], changed);
+		}
+	}
+
+	/**
+	 * Tells whether the existing folding regions of an element are still valid. This is the case
+	 * if they are the regions that {@link #computeFoldingStructure(IJavaElement, DefaultJavaFoldingStructureProvider.FoldingStructureComputationContext)}
+	 * would compute from the current source range of the element: one region per leading
+	 * comment that spans more than one line, followed by the region of the code if it spans more
+	 * than one line. Only the leading comments of the element are scanned. Top-level types are
+	 * never considered valid, as the header comment depends on the first type.
+	 *
+	 * @param element the element
+	 * @param tuples the existing folding regions of the element, sorted by offset, or
+	 *            <code>null</code> if there are none
+	 * @param ctx the folding context
+	 * @return <code>true</code> if the folding regions need not be computed again
+	 * @throws JavaModelException if the source range of the element cannot be accessed
+	 * @since 3.10
+	 */
+	private boolean isFoldingStructureValid(IJavaElement element, List<Tuple> tuples, FoldingStructureComputationContext ctx) throws JavaModelException {
+		boolean hasCode;
+		switch (element.getElementType()) {
+			case IJavaElement.IMPORT_CONTAINER:
+			case IJavaElement.METHOD:
+			case IJavaElement.FIELD:
+			case IJavaElement.INITIALIZER:
+				hasCode= true;
+				break;
+			case IJavaElement.TYPE:
+				if (!isInnerType((IType) element))
+					return false;
+				hasCode= !isAnonymousEnum((IType) element);
+				break;
+			default:
+				return tuples == null;
+		}
+
+		ISourceRange range= ((ISourceReference) element).getSourceRange();
+		if (!SourceRange.isAvailable(range))
+			return tuples == null;
+
+		List<IRegion> regions= new ArrayList<IRegion>();
+		int end= range.getOffset() + range.getLength();
+		int start;
+		IScanner scanner= ctx.getScanner();
+		scanner.resetTo(range.getOffset(), end);
+		try {
+			while (true) {
+				int token= scanner.getNextToken();
+				start= scanner.getCurrentTokenStartPosition();
+				if (token == ITerminalSymbols.TokenNameCOMMENT_JAVADOC || token == ITerminalSymbols.TokenNameCOMMENT_BLOCK) {
+					IRegion aligned= alignRegion(new Region(start, scanner.getCurrentTokenEndPosition() + 1 - start), ctx);
+					if (aligned != null)
+						regions.add(aligned);
+				} else if (token != ITerminalSymbols.TokenNameCOMMENT_LINE) {
+					break;
+				}
+			}
+		} catch (InvalidInputException x) {
+			return false;
+		}
+		int comments= regions.size();
+		if (hasCode) {
+			IRegion aligned= alignRegion(new Region(start, end - start), ctx);
+			if (aligned != null)
+				regions.add(aligned);
+		}
+
+		if (tuples == null)
+			return regions.isEmpty();
+		if (tuples.size() != regions.size())
+			return false;
+		for (int i= 0; i < regions.size(); i++) {
+			Tuple tuple= tuples.get(i);
+			IRegion region= regions.get(i);
+			if (tuple.position.isDeleted() || tuple.annotation.isComment() != (i < comments))
+				return false;
+			if (tuple.position.getOffset() != region.getOffset() || tuple.position.getLength() != region.getLength())
+				return false;
+		}
+		return true;
+	}
+
 	private void computeFoldingStructure(FoldingStructureComputationContext ctx) {
 		IParent parent= (IParent) fInput;
 		try {
@@ -997,6 +1165,10 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 	 * javadoc or before the package or import declarations).</li>
 	 * </ul>
 	 * </p>
+	 * <p>
+	 * When the folding structure is updated after a reconcile, this method is only called for the
+	 * elements whose folding regions may have changed. The regions of the other elements are kept.
+	 * </p>
 	 *
 	 * @param element the java element to compute the folding structure for
 	 * @param ctx the computation context
@@ -24,6 +24,9 @@ public class AllTests {
 		TestSuite suite= new TestSuite(AllTests.class.getName());
 		
 		suite.addTestSuite(RefactoringContextTest.class);
+		suite.addTestSuite(CompositeChangeTest.class);
+		suite.addTestSuite(TextChangeTest.class);
+		suite.addTestSuite(RefactoringStatusTest.class);
 		
 		suite.addTest(ParticipantTests.suite());
 		suite.addTest(RefactoringHistoryTests.suite());
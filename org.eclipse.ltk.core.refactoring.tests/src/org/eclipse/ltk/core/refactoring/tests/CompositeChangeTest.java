@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.core.refactoring.tests;
+
+import java.io.ByteArrayInputStream;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+
+import org.eclipse.text.edits.InsertEdit;
+
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.CompositeChange;
+import org.eclipse.ltk.core.refactoring.PerformChangeOperation;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.TextFileChange;
+import org.eclipse.ltk.core.refactoring.tests.util.SimpleTestProject;
+
+public class CompositeChangeTest extends TestCase {
+
+	private static final int FILE_COUNT= 50;
+
+	private SimpleTestProject fProject;
+	private IFile[] fFiles;
+
+	protected void setUp() throws Exception {
+		fProject= new SimpleTestProject();
+		IFolder folder= fProject.createFolder("test");
+		fFiles= new IFile[FILE_COUNT];
+		for (int i= 0; i < FILE_COUNT; i++)
+			fFiles[i]= fProject.createFile(folder, "file" + i + ".txt", "content" + i);
+	}
+
+	protected void tearDown() throws Exception {
+		fProject.delete();
+	}
+
+	private CompositeChange createChange(boolean parallel) {
+		CompositeChange result= new CompositeChange("root");
+		CompositeChange nested= new CompositeChange("nested");
+		for (int i= 0; i < FILE_COUNT; i++) {
+			TextFileChange change= new TextFileChange("change" + i, fFiles[i]);
+			change.setEdit(new InsertEdit(0, "new "));
+			if (i % 2 == 0)
+				result.add(change);
+			else
+				nested.add(change);
+		}
+		result.add(nested);
+		result.setParallel(parallel);
+		return result;
+	}
+
+	public void testParallelValidation() throws Exception {
+		CompositeChange sequential= createChange(false);
+		CompositeChange parallel= createChange(true);
+		sequential.initializeValidationData(new NullProgressMonitor());
+		parallel.initializeValidationData(new NullProgressMonitor());
+		assertTrue(sequential.isValid(new NullProgressMonitor()).isOK());
+		assertTrue(parallel.isValid(new NullProgressMonitor()).isOK());
+
+		fFiles[7].setContents(new ByteArrayInputStream("modified".getBytes()), false, true, null);
+		fFiles[31].setContents(new ByteArrayInputStream("modified".getBytes()), false, true, null);
+
+		RefactoringStatus sequentialStatus= sequential.isValid(new NullProgressMonitor());
+		RefactoringStatus parallelStatus= parallel.isValid(new NullProgressMonitor());
+		assertTrue(parallelStatus.hasFatalError());
+		assertEquals(sequentialStatus.getSeverity(), parallelStatus.getSeverity());
+		assertEquals(sequentialStatus.getEntries().length, parallelStatus.getEntries().length);
+		assertEquals(sequentialStatus.getMessageMatchingSeverity(RefactoringStatus.FATAL), parallelStatus.getMessageMatchingSeverity(RefactoringStatus.FATAL));
+
+		sequential.dispose();
+		parallel.dispose();
+	}
+
+	public void testParallelPerform() throws Exception {
+		CompositeChange change= createChange(true);
+		change.initializeValidationData(new NullProgressMonitor());
+		PerformChangeOperation op= new PerformChangeOperation(change);
+		op.run(null);
+		assertTrue(op.changeExecuted());
+		for (int i= 0; i < FILE_COUNT; i++)
+			assertEquals("new content" + i, fProject.getContent(fFiles[i]));
+
+		Change undo= op.getUndoChange();
+		assertNotNull(undo);
+		op= new PerformChangeOperation(undo);
+		op.run(null);
+		assertTrue(op.changeExecuted());
+		for (int i= 0; i < FILE_COUNT; i++)
+			assertEquals("content" + i, fProject.getContent(fFiles[i]));
+	}
+}
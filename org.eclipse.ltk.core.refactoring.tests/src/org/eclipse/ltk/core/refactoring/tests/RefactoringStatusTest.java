@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.core.refactoring.tests;
+
+import junit.framework.TestCase;
+
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.RefactoringStatusContext;
+import org.eclipse.ltk.core.refactoring.RefactoringStatusEntry;
+import org.eclipse.ltk.internal.core.refactoring.Messages;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringCoreMessages;
+
+public class RefactoringStatusTest extends TestCase {
+
+	private static final String PLUGIN_ID= "org.eclipse.ltk.core.refactoring.tests";
+
+	private static class Context extends RefactoringStatusContext {
+		public Object getCorrespondingElement() {
+			return null;
+		}
+	}
+
+	private static String getSummaryMessage(int count) {
+		return Messages.format(RefactoringCoreMessages.RefactoringStatus_summary_problems, String.valueOf(count));
+	}
+
+	public void testUnbounded() throws Exception {
+		RefactoringStatus status= new RefactoringStatus();
+		for (int i= 0; i < 10; i++)
+			status.addWarning("warning " + i, new Context());
+		assertEquals(10, status.getEntries().length);
+		for (int i= 0; i < 10; i++) {
+			assertEquals(1, status.getEntryAt(i).getCount());
+			assertNotNull(status.getEntryAt(i).getContext());
+		}
+	}
+
+	public void testBoundedKeepsMostSevere() throws Exception {
+		RefactoringStatus status= RefactoringStatus.createBoundedStatus(3);
+		status.addInfo("info 1", new Context());
+		status.addWarning("warning 1", new Context());
+		status.addInfo("info 2", new Context());
+		status.addError("error 1", new Context());
+		status.addWarning("warning 2", new Context());
+		status.addError("error 2", new Context());
+		status.addWarning("warning 3", new Context());
+
+		assertEquals(RefactoringStatus.ERROR, status.getSeverity());
+		RefactoringStatusEntry[] entries= status.getEntries();
+		assertEquals(5, entries.length);
+		assertEquals("warning 1", entries[0].getMessage());
+		assertEquals("error 1", entries[1].getMessage());
+		assertEquals("error 2", entries[2].getMessage());
+
+		assertEquals(RefactoringStatus.INFO, entries[3].getSeverity());
+		assertEquals(getSummaryMessage(2), entries[3].getMessage());
+		assertEquals(2, entries[3].getCount());
+		assertNull(entries[3].getContext());
+
+		assertEquals(RefactoringStatus.WARNING, entries[4].getSeverity());
+		assertEquals(getSummaryMessage(2), entries[4].getMessage());
+		assertEquals(2, entries[4].getCount());
+		assertNull(entries[4].getContext());
+
+		assertSame(status.getEntryAt(4), status.getEntryAt(4));
+		assertEquals("error 1", status.getEntryWithHighestSeverity().getMessage());
+	}
+
+	public void testBoundedSummarizesByCode() throws Exception {
+		RefactoringStatus status= RefactoringStatus.createBoundedStatus(1);
+		status.addEntry(RefactoringStatus.ERROR, "kept", new Context(), PLUGIN_ID, 1);
+		for (int i= 0; i < 100; i++)
+			status.addEntry(RefactoringStatus.ERROR, "code " + (i % 2), new Context(), PLUGIN_ID, i % 2);
+
+		RefactoringStatusEntry[] entries= status.getEntries();
+		assertEquals(3, entries.length);
+		assertEquals("kept", entries[0].getMessage());
+		assertEquals("code 0", entries[1].getMessage());
+		assertEquals(0, entries[1].getCode());
+		assertEquals(50, entries[1].getCount());
+		assertEquals("code 1", entries[2].getMessage());
+		assertEquals(1, entries[2].getCode());
+		assertEquals(50, entries[2].getCount());
+		assertSame(entries[1], status.getEntryMatchingCode(PLUGIN_ID, 0));
+	}
+
+	public void testMerge() throws Exception {
+		RefactoringStatus bounded= RefactoringStatus.createBoundedStatus(2);
+		for (int i= 0; i < 5; i++)
+			bounded.addWarning("warning " + i);
+
+		RefactoringStatus unbounded= new RefactoringStatus();
+		unbounded.merge(bounded);
+		RefactoringStatusEntry[] entries= unbounded.getEntries();
+		assertEquals(3, entries.length);
+		assertEquals(3, entries[2].getCount());
+
+		RefactoringStatus result= RefactoringStatus.createBoundedStatus(2);
+		result.addFatalError("fatal");
+		result.merge(bounded);
+		result.merge(unbounded);
+		entries= result.getEntries();
+		assertEquals(RefactoringStatus.FATAL, result.getSeverity());
+		assertEquals(3, entries.length);
+		assertEquals("fatal", entries[0].getMessage());
+		assertEquals("warning 0", entries[1].getMessage());
+		assertEquals(1, entries[1].getCount());
+		assertEquals(getSummaryMessage(9), entries[2].getMessage());
+		assertEquals(9, entries[2].getCount());
+
+		RefactoringStatus summary= new RefactoringStatus();
+		summary.addEntry(unbounded.getEntryAt(2));
+		RefactoringStatus summaryOnly= RefactoringStatus.createBoundedStatus(2);
+		summaryOnly.merge(summary);
+		assertTrue(summaryOnly.hasEntries());
+		assertEquals(RefactoringStatus.WARNING, summaryOnly.getSeverity());
+		assertEquals(3, summaryOnly.getEntryAt(0).getCount());
+	}
+}
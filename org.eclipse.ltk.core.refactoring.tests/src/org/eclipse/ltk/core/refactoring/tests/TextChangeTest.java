@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.core.refactoring.tests;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.text.edits.DeleteEdit;
+import org.eclipse.text.edits.InsertEdit;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+import org.eclipse.text.edits.TextEditGroup;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+
+import org.eclipse.ltk.core.refactoring.DocumentChange;
+import org.eclipse.ltk.core.refactoring.TextEditBasedChangeGroup;
+import org.eclipse.ltk.core.refactoring.TextEditChangeGroup;
+
+public class TextChangeTest extends TestCase {
+
+	private static final String CONTENT= "line one\nline two\nline three\nline four\n";
+
+	private IDocument fDocument;
+	private DocumentChange fChange;
+	private TextEditChangeGroup[] fGroups;
+
+	protected void setUp() throws Exception {
+		fDocument= new Document(CONTENT);
+		fChange= new DocumentChange("change", fDocument);
+		fChange.setEdit(new MultiTextEdit());
+		fGroups= new TextEditChangeGroup[] {
+				addGroup("rename", new ReplaceEdit(5, 3, "1")),
+				addGroup("insert", new InsertEdit(18, "new ")),
+				addGroup("delete", new DeleteEdit(23, 5)),
+		};
+	}
+
+	private TextEditChangeGroup addGroup(String name, TextEdit edit) {
+		fChange.addEdit(edit);
+		TextEditGroup group= new TextEditGroup(name, edit);
+		TextEditChangeGroup result= new TextEditChangeGroup(fChange, group);
+		fChange.addTextEditChangeGroup(result);
+		return result;
+	}
+
+	public void testCachedPreviewFollowsEnablement() throws Exception {
+		String preview= fChange.getPreviewContent(new NullProgressMonitor());
+		assertEquals("line 1\nline two\nnew line \nline four\n", preview);
+		assertEquals(preview, fChange.getPreviewContent(new NullProgressMonitor()));
+
+		fGroups[1].setEnabled(false);
+		assertEquals("line 1\nline two\nline \nline four\n", fChange.getPreviewContent(new NullProgressMonitor()));
+
+		fGroups[1].setEnabled(true);
+		assertEquals(preview, fChange.getPreviewContent(new NullProgressMonitor()));
+	}
+
+	public void testCachedPreviewFollowsDocument() throws Exception {
+		String preview= fChange.getPreviewContent(new NullProgressMonitor());
+		fDocument.replace(fDocument.getLength(), 0, "line five\n");
+		assertEquals(preview + "line five\n", fChange.getPreviewContent(new NullProgressMonitor()));
+	}
+
+	public void testPreviewDocumentIsCopy() throws Exception {
+		IDocument preview= fChange.getPreviewDocument(new NullProgressMonitor());
+		preview.replace(0, 4, "LINE");
+		assertEquals("line 1\nline two\nnew line \nline four\n", fChange.getPreviewContent(new NullProgressMonitor()));
+	}
+
+	public void testRegionPreview() throws Exception {
+		for (int i= 0; i < fGroups.length; i++) {
+			TextEditBasedChangeGroup[] groups= new TextEditBasedChangeGroup[] { fGroups[i] };
+
+			fChange.setKeepPreviewEdits(false);
+			String leafPreview= fChange.getPreviewContent(groups, fGroups[i].getRegion(), true, 1, new NullProgressMonitor());
+
+			// preview edits are only available if the edit tree is executed
+			fChange.setKeepPreviewEdits(true);
+			String treePreview= fChange.getPreviewContent(groups, fGroups[i].getRegion(), true, 1, new NullProgressMonitor());
+			assertNotNull(fChange.getPreviewEdit(fGroups[i].getTextEdits()[0]));
+
+			assertEquals(treePreview, leafPreview);
+		}
+		assertEquals("line two\nnew line three\nline four", fChange.getPreviewContent(new TextEditBasedChangeGroup[] { fGroups[1] }, fGroups[1].getRegion(), true, 1, new NullProgressMonitor()));
+	}
+}
@@ -0,0 +1,395 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.core.refactoring.tests.history;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+
+import org.eclipse.ltk.core.refactoring.RefactoringDescriptor;
+import org.eclipse.ltk.core.refactoring.RefactoringDescriptorProxy;
+import org.eclipse.ltk.core.refactoring.RefactoringSessionDescriptor;
+import org.eclipse.ltk.core.refactoring.tests.FileSystemHelper;
+import org.eclipse.ltk.internal.core.refactoring.history.DefaultRefactoringDescriptor;
+import org.eclipse.ltk.internal.core.refactoring.history.RefactoringDescriptorProxyAdapter;
+import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryLog;
+import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryManager;
+import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryService;
+import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryLog.Record;
+
+public class RefactoringHistoryLogTests extends TestCase {
+
+	private static final int HEADER_SIZE= 16;
+
+	private static final int ENTRY_SIZE= 16;
+
+	private static final long WEEK= 7 * 24 * 60 * 60 * 1000L;
+
+	private static final long FIRST_STAMP= 1356998400000L; // 2013-01-01
+
+	private File fFolder;
+
+	private RefactoringHistoryLog fLog;
+
+	private IFileStore fStore;
+
+	private static Record createRecord(long stamp, String description) throws IOException {
+		return new Record(stamp, description, ("<session stamp=\"" + stamp + "\"/>").getBytes("utf-8"));
+	}
+
+	private static long getRecordSize(Record record) throws IOException {
+		return 8 + 4 + record.getDescription().getBytes("utf-8").length + 4 + record.getData().length;
+	}
+
+	private static long[] getStamps(Record[] records) {
+		long[] stamps= new long[records.length];
+		for (int index= 0; index < records.length; index++)
+			stamps[index]= records[index].getStamp();
+		return stamps;
+	}
+
+	private static long[] getStamps(List proxies) {
+		long[] stamps= new long[proxies.size()];
+		for (int index= 0; index < stamps.length; index++)
+			stamps[index]= ((RefactoringDescriptorProxy) proxies.get(index)).getTimeStamp();
+		return stamps;
+	}
+
+	private static void assertEquals(long[] expected, long[] actual) {
+		assertEquals("Wrong number of time stamps:", expected.length, actual.length);
+		for (int index= 0; index < expected.length; index++)
+			assertEquals("Wrong time stamp at " + index + ":", expected[index], actual[index]);
+	}
+
+	private static int[] readHeader(File file) throws IOException {
+		DataInputStream input= new DataInputStream(new FileInputStream(file));
+		try {
+			return new int[] { input.readInt(), input.readInt(), input.readInt(), input.readInt()};
+		} finally {
+			input.close();
+		}
+	}
+
+	private static void copy(File source, File target) throws IOException {
+		InputStream input= new FileInputStream(source);
+		try {
+			OutputStream output= new FileOutputStream(target);
+			try {
+				byte[] buffer= new byte[4096];
+				int read;
+				while ((read= input.read(buffer)) > 0)
+					output.write(buffer, 0, read);
+			} finally {
+				output.close();
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Writes the temporary files of a compaction which only keeps the record with time stamp 20
+	 * of the records 10, 20 and 30.
+	 */
+	private void writeCompaction() throws IOException {
+		fLog.append(new Record[] { createRecord(10, "A"), createRecord(20, "B"), createRecord(30, "C")});
+		File folder= new File(fFolder, "compacted");
+		RefactoringHistoryLog compacted= RefactoringHistoryLog.getLog(folder);
+		compacted.append(new Record[] { createRecord(20, "B")});
+		copy(new File(folder, RefactoringHistoryLog.NAME_LOG_FILE), new File(fFolder, RefactoringHistoryLog.NAME_LOG_FILE + ".tmp"));
+		copy(new File(folder, RefactoringHistoryLog.NAME_LOG_INDEX_FILE), new File(fFolder, RefactoringHistoryLog.NAME_LOG_INDEX_FILE + ".tmp"));
+		compacted.delete();
+		folder.delete();
+	}
+
+	private static void writeFolder(IFileStore store, RefactoringDescriptor[] descriptors) throws CoreException, IOException {
+		IPath path= RefactoringHistoryManager.stampToPath(descriptors[0].getTimeStamp());
+		File folder= store.getFileStore(path).toLocalFile(EFS.NONE, null);
+		folder.mkdirs();
+		OutputStream history= new FileOutputStream(new File(folder, RefactoringHistoryService.NAME_HISTORY_FILE));
+		try {
+			RefactoringHistoryManager.writeRefactoringSession(history, new RefactoringSessionDescriptor(descriptors, RefactoringSessionDescriptor.VERSION_1_0, null), true);
+		} finally {
+			history.close();
+		}
+		RefactoringDescriptorProxy[] proxies= new RefactoringDescriptorProxy[descriptors.length];
+		for (int index= 0; index < descriptors.length; index++)
+			proxies[index]= new RefactoringDescriptorProxyAdapter(descriptors[index]);
+		OutputStream index= new FileOutputStream(new File(folder, RefactoringHistoryService.NAME_INDEX_FILE));
+		try {
+			RefactoringHistoryManager.writeRefactoringDescriptorProxies(index, proxies);
+		} finally {
+			index.close();
+		}
+	}
+
+	private static RefactoringDescriptor createDescriptor(long stamp, String description) {
+		RefactoringDescriptor descriptor= new MockRefactoringDescriptor(null, description, "Comment of " + description, RefactoringDescriptor.NONE);
+		descriptor.setTimeStamp(stamp);
+		return descriptor;
+	}
+
+	/*
+	 * Writes the per-week folder layout of the refactorings in two weeks and
+	 * returns their time stamps.
+	 */
+	private long[] writeFolderLayout() throws CoreException, IOException {
+		writeFolder(fStore, new RefactoringDescriptor[] { createDescriptor(FIRST_STAMP, "First"), createDescriptor(FIRST_STAMP + 1000, "Second")});
+		writeFolder(fStore, new RefactoringDescriptor[] { createDescriptor(FIRST_STAMP + 2 * WEEK, "Third")});
+		return new long[] { FIRST_STAMP, FIRST_STAMP + 1000, FIRST_STAMP + 2 * WEEK};
+	}
+
+	private List getWeekFolders() {
+		List folders= new ArrayList();
+		File[] files= fFolder.listFiles();
+		if (files != null) {
+			for (int index= 0; index < files.length; index++) {
+				if (files[index].isDirectory())
+					folders.add(files[index]);
+			}
+		}
+		return folders;
+	}
+
+	private static DefaultRefactoringDescriptor[] readDescriptors(InputStream stream) throws CoreException, IOException {
+		try {
+			return RefactoringHistoryManager.readRefactoringDescriptors(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	private void assertMigrated(long[] stamps) throws CoreException, IOException {
+		assertTrue("Log has not been marked as migrated.", fLog.isMigrated());
+		assertTrue("Migration marker does not exist.", new File(fFolder, RefactoringHistoryLog.NAME_MARKER_FILE).exists());
+		assertTrue("Per-week folders have not been deleted.", getWeekFolders().isEmpty());
+		Record[] records= fLog.readAll();
+		assertEquals(stamps, getStamps(records));
+		for (int index= 0; index < records.length; index++) {
+			DefaultRefactoringDescriptor[] descriptors= readDescriptors(new ByteArrayInputStream(records[index].getData()));
+			assertEquals("Wrong number of refactorings in record:", 1, descriptors.length);
+			assertEquals("Wrong time stamp of refactoring:", stamps[index], descriptors[0].getTimeStamp());
+			assertEquals("Wrong description of record:", descriptors[0].getDescription(), records[index].getDescription());
+			assertEquals("Wrong comment of refactoring:", "Comment of " + descriptors[0].getDescription(), descriptors[0].getComment());
+		}
+	}
+
+	protected void setUp() throws Exception {
+		IPath location= FileSystemHelper.getRandomLocation(FileSystemHelper.getTempDir());
+		fFolder= location.toFile();
+		fStore= EFS.getLocalFileSystem().getStore(new Path(fFolder.getAbsolutePath()));
+		fLog= RefactoringHistoryLog.getLog(fFolder);
+	}
+
+	protected void tearDown() throws Exception {
+		fLog.delete();
+		fStore.delete(EFS.NONE, null);
+	}
+
+	public void testLogFormat() throws Exception {
+		assertFalse("Log exists before the first append.", fLog.exists());
+		Record[] records= new Record[] { createRecord(30, "Third"), createRecord(10, "First"), createRecord(20, "Second")};
+		fLog.append(records);
+		assertTrue("Log does not exist after append.", fLog.exists());
+		assertSame("Managers of the same folder do not share the log.", fLog, RefactoringHistoryLog.getLog(new File(fFolder.getPath())));
+
+		File logFile= new File(fFolder, RefactoringHistoryLog.NAME_LOG_FILE);
+		File indexFile= new File(fFolder, RefactoringHistoryLog.NAME_LOG_INDEX_FILE);
+		int[] header= readHeader(logFile);
+		assertEquals("Wrong log magic:", 0x52484C47, header[0]);
+		assertEquals("Wrong log version:", 1, header[1]);
+		header= readHeader(indexFile);
+		assertEquals("Wrong index magic:", 0x52484958, header[0]);
+		assertEquals("Wrong index version:", 1, header[1]);
+		assertEquals("Wrong entry count:", 3, header[2]);
+		assertEquals("Wrong index size:", HEADER_SIZE + 3 * ENTRY_SIZE, indexFile.length());
+		long size= HEADER_SIZE;
+		for (int index= 0; index < records.length; index++)
+			size+= getRecordSize(records[index]);
+		assertEquals("Wrong log size:", size, logFile.length());
+
+		Record[] read= fLog.readAll();
+		assertEquals(new long[] { 10, 20, 30}, getStamps(read));
+		assertEquals("Wrong description:", "Second", read[1].getDescription());
+		assertEquals("Wrong data:", new String(records[2].getData(), "utf-8"), new String(read[1].getData(), "utf-8"));
+		assertEquals("Wrong description:", "First", fLog.read(10).getDescription());
+		assertNull("Record of an unknown time stamp exists.", fLog.read(15));
+		assertNull("Record of an unknown time stamp exists.", fLog.read(40));
+	}
+
+	public void testRangeQueries() throws Exception {
+		fLog.append(new Record[] { createRecord(10, "A"), createRecord(20, "B"), createRecord(30, "C"), createRecord(40, "D"), createRecord(50, "E")});
+		fLog.append(new Record[] { createRecord(60, "F"), createRecord(5, "G")});
+
+		List proxies= new ArrayList();
+		fLog.readProxies(null, 0, Long.MAX_VALUE, proxies);
+		assertEquals(new long[] { 5, 10, 20, 30, 40, 50, 60}, getStamps(proxies));
+		assertEquals("Wrong description of proxy:", "G", ((RefactoringDescriptorProxy) proxies.get(0)).getDescription());
+
+		proxies.clear();
+		fLog.readProxies(null, 15, 45, proxies);
+		assertEquals(new long[] { 20, 30, 40}, getStamps(proxies));
+
+		proxies.clear();
+		fLog.readProxies("project", 20, 40, proxies);
+		assertEquals(new long[] { 20, 30, 40}, getStamps(proxies));
+		assertEquals("Wrong project of proxy:", "project", ((RefactoringDescriptorProxy) proxies.get(0)).getProject());
+
+		proxies.clear();
+		fLog.readProxies(null, 61, Long.MAX_VALUE, proxies);
+		assertEquals(new long[0], getStamps(proxies));
+
+		fLog.readProxies(null, 0, 4, proxies);
+		assertEquals(new long[0], getStamps(proxies));
+
+		fLog.readProxies(null, 40, 20, proxies);
+		assertEquals(new long[0], getStamps(proxies));
+	}
+
+	public void testReplace() throws Exception {
+		Record[] records= new Record[] { createRecord(10, "A"), createRecord(20, "B"), createRecord(30, "C"), createRecord(40, "D")};
+		fLog.append(records);
+		long used= HEADER_SIZE;
+		for (int index= 0; index < records.length; index++)
+			used+= getRecordSize(records[index]);
+
+		File logFile= new File(fFolder, RefactoringHistoryLog.NAME_LOG_FILE);
+		for (int count= 0; count < 20; count++) {
+			fLog.append(new Record[] { createRecord(20, "X")});
+			assertTrue("Replaced records have not been compacted.", logFile.length() <= 2 * used);
+		}
+		Record[] read= fLog.readAll();
+		assertEquals(new long[] { 10, 20, 30, 40}, getStamps(read));
+		assertEquals("Record has not been replaced:", "X", read[1].getDescription());
+		assertEquals("Record has not been replaced:", "X", fLog.read(20).getDescription());
+		assertEquals("Wrong description:", "C", read[2].getDescription());
+	}
+
+	public void testRemove() throws Exception {
+		Record[] records= new Record[10];
+		for (int index= 0; index < records.length; index++)
+			records[index]= createRecord((index + 1) * 10, "R");
+		fLog.append(records);
+
+		fLog.remove(new long[] { 30, 10, 50});
+		assertEquals(new long[] { 20, 40, 60, 70, 80, 90, 100}, getStamps(fLog.readAll()));
+		assertNull("Removed record still exists.", fLog.read(30));
+		File logFile= new File(fFolder, RefactoringHistoryLog.NAME_LOG_FILE);
+		assertEquals("Log has been compacted too early:", HEADER_SIZE + 10 * getRecordSize(records[0]), logFile.length());
+
+		fLog.remove(new long[] { 20, 40, 60, 70, 80, 100});
+		assertEquals(new long[] { 90}, getStamps(fLog.readAll()));
+		assertEquals("Log has not been compacted:", HEADER_SIZE + getRecordSize(records[0]), logFile.length());
+		assertEquals("Wrong entry count:", 1, readHeader(new File(fFolder, RefactoringHistoryLog.NAME_LOG_INDEX_FILE))[2]);
+
+		fLog.remove(new long[] { 90});
+		assertEquals(new long[0], getStamps(fLog.readAll()));
+		assertTrue("Empty log does not exist.", fLog.exists());
+	}
+
+	public void testIncompleteCompaction() throws Exception {
+		writeCompaction();
+
+		// the log has not been replaced yet
+		assertEquals(new long[] { 10, 20, 30}, getStamps(fLog.readAll()));
+		assertFalse("Temporary log has not been deleted.", new File(fFolder, RefactoringHistoryLog.NAME_LOG_FILE + ".tmp").exists());
+		assertFalse("Temporary index has not been deleted.", new File(fFolder, RefactoringHistoryLog.NAME_LOG_INDEX_FILE + ".tmp").exists());
+	}
+
+	public void testInterruptedCompaction() throws Exception {
+		writeCompaction();
+		File logFile= new File(fFolder, RefactoringHistoryLog.NAME_LOG_FILE);
+		logFile.delete();
+		assertTrue(new File(fFolder, RefactoringHistoryLog.NAME_LOG_FILE + ".tmp").renameTo(logFile));
+
+		// the log has been replaced, but the index has not
+		assertEquals(new long[] { 20}, getStamps(fLog.readAll()));
+		assertEquals("Wrong description:", "B", fLog.read(20).getDescription());
+		assertFalse("Temporary index has not been renamed.", new File(fFolder, RefactoringHistoryLog.NAME_LOG_INDEX_FILE + ".tmp").exists());
+	}
+
+	public void testMigrateRoundTrip() throws Exception {
+		long[] stamps= writeFolderLayout();
+		assertEquals("Wrong number of per-week folders:", 2, getWeekFolders().size());
+		assertFalse("Log is migrated before the migration.", fLog.isMigrated());
+
+		RefactoringHistoryManager.migrateHistory(fStore, fLog, new NullProgressMonitor());
+		assertMigrated(stamps);
+		Record[] migrated= fLog.readAll();
+
+		// migrating a migrated history does nothing
+		RefactoringHistoryManager.migrateHistory(fStore, fLog, new NullProgressMonitor());
+		assertMigrated(stamps);
+
+		RefactoringHistoryManager.convertToFolderLayout(fStore, new NullProgressMonitor());
+		assertFalse("Log exists after conversion.", fLog.exists());
+		assertFalse("Log is migrated after conversion.", fLog.isMigrated());
+		assertFalse("Migration marker exists after conversion.", new File(fFolder, RefactoringHistoryLog.NAME_MARKER_FILE).exists());
+		assertEquals("Wrong number of per-week folders:", 2, getWeekFolders().size());
+		File folder= fStore.getFileStore(RefactoringHistoryManager.stampToPath(FIRST_STAMP)).toLocalFile(EFS.NONE, null);
+		DefaultRefactoringDescriptor[] descriptors= readDescriptors(new FileInputStream(new File(folder, RefactoringHistoryService.NAME_HISTORY_FILE)));
+		assertEquals("Wrong number of refactorings in week:", 2, descriptors.length);
+		RefactoringHistoryManager.sortRefactoringDescriptorsAscending(descriptors);
+		assertEquals("Wrong time stamp of refactoring:", stamps[0], descriptors[0].getTimeStamp());
+		assertEquals("Wrong time stamp of refactoring:", stamps[1], descriptors[1].getTimeStamp());
+
+		RefactoringHistoryManager.migrateHistory(fStore, fLog, new NullProgressMonitor());
+		assertMigrated(stamps);
+		Record[] remigrated= fLog.readAll();
+		for (int index= 0; index < migrated.length; index++) {
+			assertEquals("Wrong description after round trip:", migrated[index].getDescription(), remigrated[index].getDescription());
+			assertEquals("Wrong data after round trip:", new String(migrated[index].getData(), "utf-8"), new String(remigrated[index].getData(), "utf-8"));
+		}
+	}
+
+	public void testInterruptedMigration() throws Exception {
+		long[] stamps= writeFolderLayout();
+
+		// a log without marker is left over by a migration which did not complete
+		fLog.append(new Record[] { createRecord(FIRST_STAMP, "Partial")});
+		assertTrue("Log does not exist.", fLog.exists());
+		assertFalse("Log is migrated before the migration.", fLog.isMigrated());
+
+		RefactoringHistoryManager.migrateHistory(fStore, fLog, new NullProgressMonitor());
+		assertMigrated(stamps);
+		assertEquals("Partial log has not been rebuilt:", "First", fLog.read(FIRST_STAMP).getDescription());
+	}
+
+	public void testConvertInterruptedMigration() throws Exception {
+		writeFolderLayout();
+		fLog.append(new Record[] { createRecord(FIRST_STAMP, "Partial")});
+
+		// the per-week folders are authoritative until the marker is written
+		RefactoringHistoryManager.convertToFolderLayout(fStore, new NullProgressMonitor());
+		assertFalse("Partial log exists after conversion.", fLog.exists());
+		assertEquals("Per-week folders have been changed:", 2, getWeekFolders().size());
+		File folder= fStore.getFileStore(RefactoringHistoryManager.stampToPath(FIRST_STAMP)).toLocalFile(EFS.NONE, null);
+		DefaultRefactoringDescriptor[] descriptors= readDescriptors(new FileInputStream(new File(folder, RefactoringHistoryService.NAME_HISTORY_FILE)));
+		assertEquals("Wrong number of refactorings in week:", 2, descriptors.length);
+	}
+}
@@ -19,6 +19,7 @@ public class RefactoringHistoryTests {
 		TestSuite suite= new TestSuite(RefactoringHistoryTests.class.getName());
 		suite.addTestSuite(RefactoringHistorySerializationTests.class);
 		suite.addTestSuite(RefactoringHistoryServiceTests.class);
+		suite.addTestSuite(RefactoringHistoryLogTests.class);
 		return suite;
 	}
 }
\ No newline at end of file
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2012 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -23,7 +23,14 @@ import org.eclipse.core.runtime.ISafeRunnable;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
 
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.ltk.internal.core.refactoring.ParallelChangeValidator;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringCoreMessages;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
 
@@ -44,6 +51,7 @@ public class CompositeChange extends Change {
 	private String fName;
 	private List fChanges;
 	private boolean fIsSynthetic;
+	private boolean fIsParallel;
 	private Change fUndoUntilException;
 
 	/**
@@ -93,6 +101,47 @@ public class CompositeChange extends Change {
 		fIsSynthetic= true;
 	}
 
+	/**
+	 * Returns whether this change validates its children in parallel.
+	 *
+	 * @return <code>true</code> if this change validates its children
+	 *  in parallel; otherwise <code>false</code>
+	 *
+	 * @see #setParallel(boolean)
+	 * @since 3.7
+	 */
+	public boolean isParallel() {
+		return fIsParallel;
+	}
+
+	/**
+	 * Sets whether this change validates its children in parallel and batches
+	 * the resource modifications of its children when performed. The default is
+	 * <code>false</code>.
+	 * <p>
+	 * In parallel mode, <code>initializeValidationData</code> and <code>isValid</code>
+	 * are sent to the children from several threads. The children of nested composite
+	 * changes which are not subclassed are validated together with the children of this
+	 * change. The resulting status is merged in the order of the children and is the
+	 * same as the one of a sequential validation. <code>perform</code> sends <code>perform</code>
+	 * to the children in order inside a single workspace operation, so that file buffer
+	 * connects and commits are batched into one resource change notification. It uses the
+	 * scheduling rule of the current thread, or the workspace root if there is none.
+	 * </p>
+	 * <p>
+	 * Parallel mode should only be enabled for large composites of independent changes,
+	 * such as text file changes, whose validation is thread safe and does not need any
+	 * scheduling rules.
+	 * </p>
+	 *
+	 * @param parallel <code>true</code> to enable the parallel mode
+	 *
+	 * @since 3.7
+	 */
+	public void setParallel(boolean parallel) {
+		fIsParallel= parallel;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -203,13 +252,19 @@ public class CompositeChange extends Change {
 	 * {@inheritDoc}
 	 * <p>
 	 * The composite change sends <code>initializeValidationData</code> to all its
-	 * children.
+	 * children. In parallel mode the children are initialized concurrently.
 	 * </p>
 	 * <p>
 	 * Client are allowed to extend this method.
 	 * </p>
+	 *
+	 * @see #setParallel(boolean)
 	 */
 	public void initializeValidationData(IProgressMonitor pm) {
+		if (fIsParallel) {
+			ParallelChangeValidator.initializeValidationData(getValidatedChanges(false), pm);
+			return;
+		}
 		pm.beginTask("", fChanges.size()); //$NON-NLS-1$
 		for (Iterator iter= fChanges.iterator(); iter.hasNext();) {
 			Change change= (Change)iter.next();
@@ -224,7 +279,10 @@ public class CompositeChange extends Change {
 	 * The composite change sends <code>isValid</code> to all its children
 	 * until the first one returns a status with a severity of <code>FATAL
 	 * </code>. If one of the children throws an exception the remaining children
-	 * will not receive the <code>isValid</code> call.
+	 * will not receive the <code>isValid</code> call. In parallel mode all
+	 * children are validated concurrently, and the statuses are merged in the
+	 * order of the children up to the first one with a severity of <code>FATAL
+	 * </code> or the first exception.
 	 * </p>
 	 * <p>
 	 * Client are allowed to extend this method.
@@ -232,6 +290,10 @@ public class CompositeChange extends Change {
 	 */
 	public RefactoringStatus isValid(IProgressMonitor pm) throws CoreException {
 		RefactoringStatus result= new RefactoringStatus();
+		if (fIsParallel) {
+			ParallelChangeValidator.isValid(getValidatedChanges(true), result, pm);
+			return result;
+		}
 		pm.beginTask("", fChanges.size()); //$NON-NLS-1$
 		for (Iterator iter= fChanges.iterator(); iter.hasNext() && !result.hasFatalError();) {
 			Change change= (Change)iter.next();
@@ -260,6 +322,48 @@ public class CompositeChange extends Change {
 	 * </p>
 	 */
 	public Change perform(IProgressMonitor pm) throws CoreException {
+		if (!fIsParallel)
+			return performChildren(pm);
+
+		final Change[] result= new Change[1];
+		IWorkspaceRunnable runnable= new IWorkspaceRunnable() {
+			public void run(IProgressMonitor monitor) throws CoreException {
+				result[0]= performChildren(monitor);
+			}
+		};
+		ISchedulingRule rule= Job.getJobManager().currentRule();
+		if (rule == null)
+			rule= ResourcesPlugin.getWorkspace().getRoot();
+		ResourcesPlugin.getWorkspace().run(runnable, rule, IWorkspace.AVOID_UPDATE, pm);
+		return result[0];
+	}
+
+	/**
+	 * Returns the changes that are validated in parallel mode, in the order
+	 * of a sequential validation.
+	 *
+	 * @param enabledOnly <code>true</code> to only return enabled changes
+	 * @return the changes to validate
+	 */
+	private Change[] getValidatedChanges(boolean enabledOnly) {
+		List result= new ArrayList(fChanges.size());
+		collectValidatedChanges(result, enabledOnly);
+		return (Change[]) result.toArray(new Change[result.size()]);
+	}
+
+	private void collectValidatedChanges(List result, boolean enabledOnly) {
+		for (Iterator iter= fChanges.iterator(); iter.hasNext();) {
+			Change change= (Change)iter.next();
+			if (enabledOnly && !change.isEnabled())
+				continue;
+			if (change.getClass() == CompositeChange.class) // subclasses may extend validation
+				((CompositeChange)change).collectValidatedChanges(result, enabledOnly);
+			else
+				result.add(change);
+		}
+	}
+
+	private Change performChildren(IProgressMonitor pm) throws CoreException {
 		fUndoUntilException= null;
 		List undos= new ArrayList(fChanges.size());
 		pm.beginTask("", fChanges.size()); //$NON-NLS-1$
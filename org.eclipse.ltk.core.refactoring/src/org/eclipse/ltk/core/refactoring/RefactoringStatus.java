@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,12 +12,17 @@ package org.eclipse.ltk.core.refactoring;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 
+import org.eclipse.ltk.internal.core.refactoring.Messages;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringCoreMessages;
+
 /**
  * A <code>RefactoringStatus</code> object represents the outcome of a
  * condition checking operation. It manages a list of <code>
@@ -32,6 +37,11 @@ import org.eclipse.core.runtime.IStatus;
  * severity is <code>OK</code>.
  * </p>
  * <p>
+ * A status created by {@link #createBoundedStatus(int)} keeps a limited number of
+ * entries in full. Additional entries are summarized by severity, plug-in identifier
+ * and code, see {@link RefactoringStatusEntry#getCount()}.
+ * </p>
+ * <p>
  * Note: this class is not intended to be extended by clients.
  * </p>
  *
@@ -85,10 +95,64 @@ public class RefactoringStatus {
 	public static final int FATAL= 4;
 
 	/**
-	 * List of refactoring status entries.
+	 * Value of <code>fMaxEntries</code> for a status that keeps all entries.
+	 */
+	private static final int UNBOUNDED= -1;
+
+	/**
+	 * Problems of a bounded status that are not kept in full.
+	 */
+	private static class Summary {
+		private final int fSeverity;
+		private final String fMessage;
+		private final String fPluginId;
+		private final int fCode;
+		private int fCount;
+
+		Summary(RefactoringStatusEntry entry) {
+			fSeverity= entry.getSeverity();
+			fMessage= entry.getMessage();
+			fPluginId= entry.getPluginId();
+			fCode= entry.getCode();
+		}
+
+		static String getKey(RefactoringStatusEntry entry) {
+			return entry.getSeverity() + ":" + entry.getCode() + ":" + entry.getPluginId(); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		RefactoringStatusEntry createEntry() {
+			String message= fMessage;
+			// problems without a code are not related, the first message does not describe the others
+			if (fCode == RefactoringStatusEntry.NO_CODE && fCount > 1)
+				message= Messages.format(RefactoringCoreMessages.RefactoringStatus_summary_problems, String.valueOf(fCount));
+			return new RefactoringStatusEntry(fSeverity, message, fPluginId, fCode, fCount);
+		}
+	}
+
+	/**
+	 * List of refactoring status entries. For a bounded status, these are
+	 * the entries which are kept in full.
 	 */
 	private List fEntries;
 
+	/**
+	 * The maximum number of entries kept in full, or <code>UNBOUNDED</code>.
+	 */
+	private final int fMaxEntries;
+
+	/**
+	 * Map from summary key (element type: <code>String</code>) to problems
+	 * that are not kept in full (element type: <code>Summary</code>), or
+	 * <code>null</code> if all entries are kept in full.
+	 */
+	private Map fSummaries;
+
+	/**
+	 * The entries created from <code>fSummaries</code>, or <code>null</code>
+	 * if they have not been created since the last change.
+	 */
+	private List fSummaryEntries;
+
 	/**
 	 * The status's severity. The following invariant holds for
 	 * <code>fSeverity</code>: <code>OK</code> &le; <code>fSeverity</code> &le;
@@ -101,7 +165,12 @@ public class RefactoringStatus {
 	 * status entries and a severity of <code>OK</code>.
 	 */
 	public RefactoringStatus() {
+		this(UNBOUNDED);
+	}
+
+	private RefactoringStatus(int maxEntries) {
 		fEntries= new ArrayList(0);
+		fMaxEntries= maxEntries;
 	}
 
 	/**
@@ -120,7 +189,8 @@ public class RefactoringStatus {
 	 *  if no entries are managed.
 	 */
 	public RefactoringStatusEntry[] getEntries() {
-		return (RefactoringStatusEntry[])fEntries.toArray(new RefactoringStatusEntry[fEntries.size()]);
+		List entries= getAllEntries();
+		return (RefactoringStatusEntry[])entries.toArray(new RefactoringStatusEntry[entries.size()]);
 	}
 
 	/**
@@ -138,9 +208,10 @@ public class RefactoringStatus {
 	 * @since 3.1
 	 */
 	public RefactoringStatusEntry[] getEntries(IRefactoringStatusEntryComparator comparator, RefactoringStatusEntry entry) {
-		final List matches= new ArrayList(fEntries.size());
+		List entries= getAllEntries();
+		final List matches= new ArrayList(entries.size());
 		RefactoringStatusEntry current= null;
-		for (Iterator iterator= fEntries.iterator(); iterator.hasNext();) {
+		for (Iterator iterator= entries.iterator(); iterator.hasNext();) {
 			current= (RefactoringStatusEntry) iterator.next();
 			if (comparator.compare(current, entry) == 0)
 				matches.add(current);
@@ -155,7 +226,7 @@ public class RefactoringStatus {
 	 *  <code>false</code> is returned.
 	 */
 	public boolean hasEntries() {
-		return !fEntries.isEmpty();
+		return !fEntries.isEmpty() || fSummaries != null;
 	}
 
 	/**
@@ -167,7 +238,10 @@ public class RefactoringStatus {
 	 * @throws IndexOutOfBoundsException if the index is out of range
 	 */
 	public RefactoringStatusEntry getEntryAt(int index) {
-		return (RefactoringStatusEntry)fEntries.get(index);
+		if (fSummaries == null || index < fEntries.size())
+			return (RefactoringStatusEntry)fEntries.get(index);
+		getAllEntries();
+		return (RefactoringStatusEntry)fSummaryEntries.get(index - fEntries.size());
 	}
 
 	/**
@@ -184,7 +258,7 @@ public class RefactoringStatus {
 	 */
 	public RefactoringStatusEntry getEntryMatchingCode(String pluginId, int code) {
 		Assert.isTrue(pluginId != null);
-		for (Iterator iter= fEntries.iterator(); iter.hasNext(); ) {
+		for (Iterator iter= getAllEntries().iterator(); iter.hasNext(); ) {
 			RefactoringStatusEntry entry= (RefactoringStatusEntry)iter.next();
 			if (pluginId.equals(entry.getPluginId()) && entry.getCode() == code)
 				return entry;
@@ -206,7 +280,7 @@ public class RefactoringStatus {
 		Assert.isTrue(severity >= OK && severity <= FATAL);
 		if (severity > fSeverity)
 			return null;
-		Iterator iter= fEntries.iterator();
+		Iterator iter= getAllEntries().iterator();
 		while (iter.hasNext()) {
 			RefactoringStatusEntry entry= (RefactoringStatusEntry)iter.next();
 			if (entry.getSeverity() >= severity)
@@ -225,11 +299,12 @@ public class RefactoringStatus {
 	 * @since 3.1
 	 */
 	public RefactoringStatusEntry getEntryWithHighestSeverity() {
-		if (fEntries == null || fEntries.size() == 0)
+		List entries= getAllEntries();
+		if (entries.size() == 0)
 			return null;
-		RefactoringStatusEntry result= (RefactoringStatusEntry)fEntries.get(0);
-		for (int i= 1; i < fEntries.size(); i++) {
-			RefactoringStatusEntry entry= (RefactoringStatusEntry)fEntries.get(i);
+		RefactoringStatusEntry result= (RefactoringStatusEntry)entries.get(0);
+		for (int i= 1; i < entries.size(); i++) {
+			RefactoringStatusEntry entry= (RefactoringStatusEntry)entries.get(i);
 			if (result.getSeverity() < entry.getSeverity())
 				result= entry;
 		}
@@ -275,6 +350,36 @@ public class RefactoringStatus {
 		return result;
 	}
 
+	/**
+	 * Creates a new <code>RefactoringStatus</code> with an empty list of status entries
+	 * which keeps at most the given number of entries in full.
+	 * <p>
+	 * When the limit is reached, the most severe entries are kept, preferring those that
+	 * have been added first. All other entries are summarized by severity, plug-in identifier
+	 * and code: for each such combination, the status only keeps the message of the first
+	 * summarized entry and the number of summarized entries. Entries without a code are
+	 * summarized with a generic message that states their number instead. Their contexts and
+	 * data are discarded. Summarizing entries are returned after the entries kept in full and have a
+	 * {@link RefactoringStatusEntry#getCount() count} greater than <code>1</code>, unless they
+	 * summarize a single problem.
+	 * </p>
+	 * <p>
+	 * Use a bounded status to collect the problems of refactorings which can report a
+	 * very large number of problems, so that the contexts of all of them are not kept in
+	 * memory. The severity of a bounded status is the same as the one of an unbounded status
+	 * that contains the same problems.
+	 * </p>
+	 *
+	 * @param maxEntries the maximum number of entries kept in full, must be positive
+	 * @return the refactoring status
+	 *
+	 * @since 3.7
+	 */
+	public static RefactoringStatus createBoundedStatus(int maxEntries) {
+		Assert.isTrue(maxEntries > 0);
+		return new RefactoringStatus(maxEntries);
+	}
+
 	/**
 	 * Creates a new <code>RefactoringStatus</code> with one <code>INFO</code> entry
 	 * filled with the given message.
@@ -439,7 +544,13 @@ public class RefactoringStatus {
 	public void merge(RefactoringStatus other) {
 		if (other == null)
 			return;
-		fEntries.addAll(other.fEntries);
+		if (fMaxEntries == UNBOUNDED && other.fSummaries == null) {
+			fEntries.addAll(other.fEntries);
+		} else {
+			for (Iterator iter= other.getAllEntries().iterator(); iter.hasNext();) {
+				add((RefactoringStatusEntry)iter.next());
+			}
+		}
 		fSeverity= Math.max(fSeverity, other.getSeverity());
 	}
 
@@ -467,8 +578,7 @@ public class RefactoringStatus {
 	 * @see RefactoringStatusEntry
 	 */
 	public void addInfo(String msg, RefactoringStatusContext context) {
-		fEntries.add(new RefactoringStatusEntry(RefactoringStatus.INFO, msg, context));
-		fSeverity= Math.max(fSeverity, INFO);
+		add(new RefactoringStatusEntry(RefactoringStatus.INFO, msg, context));
 	}
 
 	/**
@@ -495,8 +605,7 @@ public class RefactoringStatus {
 	 * @see RefactoringStatusEntry
 	 */
 	public void addWarning(String msg, RefactoringStatusContext context) {
-		fEntries.add(new RefactoringStatusEntry(RefactoringStatus.WARNING, msg, context));
-		fSeverity= Math.max(fSeverity, WARNING);
+		add(new RefactoringStatusEntry(RefactoringStatus.WARNING, msg, context));
 	}
 
 	/**
@@ -525,8 +634,7 @@ public class RefactoringStatus {
 	 * @see RefactoringStatusEntry
 	 */
 	public void addError(String msg, RefactoringStatusContext context) {
-		fEntries.add(new RefactoringStatusEntry(RefactoringStatus.ERROR, msg, context));
-		fSeverity= Math.max(fSeverity, ERROR);
+		add(new RefactoringStatusEntry(RefactoringStatus.ERROR, msg, context));
 	}
 
 	/**
@@ -551,8 +659,7 @@ public class RefactoringStatus {
 	 * @see RefactoringStatusEntry
 	 */
 	public void addFatalError(String msg, RefactoringStatusContext context) {
-		fEntries.add(new RefactoringStatusEntry(RefactoringStatus.FATAL, msg, context));
-		fSeverity= Math.max(fSeverity, FATAL);
+		add(new RefactoringStatusEntry(RefactoringStatus.FATAL, msg, context));
 	}
 
 	/**
@@ -569,8 +676,7 @@ public class RefactoringStatus {
 	 *  or a positive integer
 	 */
 	public void addEntry(int severity, String msg, RefactoringStatusContext context, String pluginId, int code) {
-		fEntries.add(new RefactoringStatusEntry(severity, msg, context, pluginId, code));
-		fSeverity= Math.max(fSeverity, severity);
+		add(new RefactoringStatusEntry(severity, msg, context, pluginId, code));
 	}
 
 	/**
@@ -588,8 +694,7 @@ public class RefactoringStatus {
 	 * @param data application specific data of the entry
 	 */
 	public void addEntry(int severity, String msg, RefactoringStatusContext context, String pluginId, int code, Object data) {
-		fEntries.add(new RefactoringStatusEntry(severity, msg, context, pluginId, code, data));
-		fSeverity= Math.max(fSeverity, severity);
+		add(new RefactoringStatusEntry(severity, msg, context, pluginId, code, data));
 	}
 
 	/**
@@ -601,8 +706,79 @@ public class RefactoringStatus {
 	 */
 	public void addEntry(RefactoringStatusEntry entry) {
 		Assert.isNotNull(entry);
-		fEntries.add(entry);
+		add(entry);
+	}
+
+	private void add(RefactoringStatusEntry entry) {
 		fSeverity= Math.max(fSeverity, entry.getSeverity());
+		if (fMaxEntries == UNBOUNDED) {
+			fEntries.add(entry);
+		} else if (entry.getCount() > 1) {
+			summarize(entry);
+		} else if (fEntries.size() < fMaxEntries) {
+			fEntries.add(entry);
+		} else {
+			int index= getLeastSevereEntryIndex();
+			RefactoringStatusEntry leastSevere= (RefactoringStatusEntry)fEntries.get(index);
+			if (leastSevere.getSeverity() < entry.getSeverity()) {
+				fEntries.remove(index);
+				summarize(leastSevere);
+				fEntries.add(entry);
+			} else {
+				summarize(entry);
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the last kept entry with the lowest severity.
+	 *
+	 * @return the index of the entry
+	 */
+	private int getLeastSevereEntryIndex() {
+		int result= fEntries.size() - 1;
+		int severity= ((RefactoringStatusEntry)fEntries.get(result)).getSeverity();
+		for (int i= result - 1; i >= 0 && severity > INFO; i--) {
+			int current= ((RefactoringStatusEntry)fEntries.get(i)).getSeverity();
+			if (current < severity) {
+				result= i;
+				severity= current;
+			}
+		}
+		return result;
+	}
+
+	private void summarize(RefactoringStatusEntry entry) {
+		if (fSummaries == null)
+			fSummaries= new LinkedHashMap();
+		String key= Summary.getKey(entry);
+		Summary summary= (Summary)fSummaries.get(key);
+		if (summary == null) {
+			summary= new Summary(entry);
+			fSummaries.put(key, summary);
+		}
+		summary.fCount+= entry.getCount();
+		fSummaryEntries= null;
+	}
+
+	/**
+	 * Returns the entries kept in full followed by the summarizing entries.
+	 *
+	 * @return the list of entries (element type: <code>RefactoringStatusEntry</code>)
+	 */
+	private List getAllEntries() {
+		if (fSummaries == null)
+			return fEntries;
+		if (fSummaryEntries == null) {
+			fSummaryEntries= new ArrayList(fSummaries.size());
+			for (Iterator iter= fSummaries.values().iterator(); iter.hasNext();) {
+				fSummaryEntries.add(((Summary)iter.next()).createEntry());
+			}
+		}
+		List result= new ArrayList(fEntries.size() + fSummaryEntries.size());
+		result.addAll(fEntries);
+		result.addAll(fSummaryEntries);
+		return result;
 	}
 
 	/**
@@ -672,7 +848,7 @@ public class RefactoringStatus {
 		buff.append("<") //$NON-NLS-1$
 			.append(getSeverityString(fSeverity)).append("\n"); //$NON-NLS-1$
 		if (!isOK()) {
-			for (Iterator iter= fEntries.iterator(); iter.hasNext(); ) {
+			for (Iterator iter= getAllEntries().iterator(); iter.hasNext(); ) {
 				buff.append("\t") //$NON-NLS-1$
 					.append(iter.next()).append("\n"); //$NON-NLS-1$
 			}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -58,6 +58,11 @@ public class RefactoringStatusEntry {
 	/** A generic data pointer */
 	private final Object fData;
 
+	/**
+	 * The number of problems described by this entry.
+	 */
+	private final int fCount;
+
 	/**
 	 * Creates a new refactoring status entry. The context is set to <code>
 	 * null</code> the problem code is set to <code>NO_CODE</code>, the
@@ -111,17 +116,38 @@ public class RefactoringStatusEntry {
 	 * @param data application specific data
 	 */
 	public RefactoringStatusEntry(int severity, String msg, RefactoringStatusContext context, String pluginId, int code, Object data) {
+		this(severity, msg, context, pluginId, code, data, 1);
+	}
+
+	/**
+	 * Creates a new entry that summarizes several problems with the same severity,
+	 * plug-in identifier and code. Summarizing entries don't have a context.
+	 *
+	 * @param severity the severity
+	 * @param msg the message of one of the summarized problems
+	 * @param pluginId the plug-in identifier. Can be <code>null</code> if argument <code>
+	 *  code</code> equals <code>NO_CODE</code>
+	 * @param code the problem code. Must be either <code>NO_CODE</code> or a positive integer
+	 * @param count the number of summarized problems, at least 1
+	 */
+	/* package */ RefactoringStatusEntry(int severity, String msg, String pluginId, int code, int count) {
+		this(severity, msg, null, pluginId, code, null, count);
+	}
+
+	private RefactoringStatusEntry(int severity, String msg, RefactoringStatusContext context, String pluginId, int code, Object data, int count) {
 		Assert.isTrue(severity == RefactoringStatus.INFO || severity == RefactoringStatus.WARNING
 			|| severity == RefactoringStatus.ERROR || severity == RefactoringStatus.FATAL);
 		Assert.isNotNull(msg);
 		Assert.isTrue(code == NO_CODE || code >= 0);
 		if (code != NO_CODE) Assert.isTrue(pluginId != null);
+		Assert.isTrue(count >= 1);
 		fMessage= msg;
 		fSeverity= severity;
 		fContext= context;
 		fPluginId= pluginId;
 		fCode= code;
 		fData= data;
+		fCount= count;
 	}
 
 	/**
@@ -189,6 +215,20 @@ public class RefactoringStatusEntry {
 		return fData;
 	}
 
+	/**
+	 * Returns the number of problems described by this entry. This is <code>1</code>,
+	 * unless the entry summarizes problems that have not been kept in full by a bounded
+	 * status.
+	 *
+	 * @return the number of problems described by this entry
+	 *
+	 * @see RefactoringStatus#createBoundedStatus(int)
+	 * @since 3.7
+	 */
+	public int getCount() {
+		return fCount;
+	}
+
 	/**
 	 * Returns whether the entry represents a fatal error or not.
 	 *
@@ -273,6 +313,7 @@ public class RefactoringStatusEntry {
 			+ RefactoringStatus.getSeverityString(fSeverity) + ": " + fMessage + //$NON-NLS-1$
 			"\nContext: " + contextString + //$NON-NLS-1$
 			(fCode == NO_CODE ? "\ncode: none" : "\nplug-in id: " + fPluginId + "code: " + fCode) +  //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-			"\nData: " + fData;  //$NON-NLS-1$
+			"\nData: " + fData +  //$NON-NLS-1$
+			(fCount > 1 ? "\nCount: " + fCount : ""); //$NON-NLS-1$ //$NON-NLS-2$
 	}
 }
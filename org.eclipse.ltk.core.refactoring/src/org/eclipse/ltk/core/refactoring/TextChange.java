@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,9 +10,13 @@
  *******************************************************************************/
 package org.eclipse.ltk.core.refactoring;
 
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
@@ -20,8 +24,11 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.SubProgressMonitor;
 
+import org.eclipse.text.edits.DeleteEdit;
+import org.eclipse.text.edits.InsertEdit;
 import org.eclipse.text.edits.MalformedTreeException;
 import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
 import org.eclipse.text.edits.TextEdit;
 import org.eclipse.text.edits.TextEditCopier;
 import org.eclipse.text.edits.TextEditGroup;
@@ -70,9 +77,86 @@ import org.eclipse.ltk.internal.core.refactoring.Changes;
  */
 public abstract class TextChange extends TextEditBasedChange {
 
+	/**
+	 * A preview computed by executing edits on a copy of the current document.
+	 */
+	private static final class CachedPreview {
+		public final IDocument document;
+		public final IRegion region;
+		/** The copier of the executed edits, or <code>null</code> if the edit tree was not copied */
+		public final TextEditCopier copier;
+		public CachedPreview(IDocument d, IRegion r, TextEditCopier c) {
+			document= d;
+			region= r;
+			copier= c;
+		}
+	}
+
+	/**
+	 * Identifies a preview by the change groups it was computed for and their
+	 * enabled state at that time.
+	 */
+	private static final class PreviewKey {
+		private final boolean fAllEdits;
+		private final TextEditBasedChangeGroup[] fGroups;
+		private final boolean[] fEnabled;
+
+		public PreviewKey(boolean allEdits, TextEditBasedChangeGroup[] groups) {
+			fAllEdits= allEdits;
+			fGroups= groups;
+			fEnabled= new boolean[groups.length];
+			for (int i= 0; i < groups.length; i++)
+				fEnabled[i]= groups[i].isEnabled();
+		}
+
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PreviewKey))
+				return false;
+			PreviewKey other= (PreviewKey) obj;
+			if (fAllEdits != other.fAllEdits || fGroups.length != other.fGroups.length)
+				return false;
+			for (int i= 0; i < fGroups.length; i++) {
+				if (fGroups[i] != other.fGroups[i])
+					return false;
+			}
+			return Arrays.equals(fEnabled, other.fEnabled);
+		}
+
+		public int hashCode() {
+			int result= fAllEdits ? 1 : 0;
+			for (int i= 0; i < fGroups.length; i++)
+				result= 31 * result + System.identityHashCode(fGroups[i]) + (fEnabled[i] ? 1 : 0);
+			return result;
+		}
+	}
+
+	/**
+	 * The most recently used previews computed from one content of the current document.
+	 */
+	private static final class PreviewCache {
+		private static final int MAX_SIZE= 32;
+
+		public final String content;
+		public final Map previews= new LinkedHashMap(16, 0.75f, true) {
+			private static final long serialVersionUID= 1L;
+			protected boolean removeEldestEntry(Map.Entry eldest) {
+				return size() > MAX_SIZE;
+			}
+		};
+		public PreviewCache(String c) {
+			content= c;
+		}
+	}
+
 	private TextEdit fEdit;
 	private TextEditCopier fCopier;
 
+	/**
+	 * Softly references the {@link PreviewCache}, so that the cached previews
+	 * are evicted under memory pressure.
+	 */
+	private SoftReference fPreviewCache;
+
 	/**
 	 * Creates a new text change with the specified name.  The name is a
 	 * human-readable value that is displayed to users.  The name does not
@@ -102,6 +186,7 @@ public abstract class TextChange extends TextEditBasedChange {
 		Assert.isTrue(fEdit == null, "Root edit can only be set once"); //$NON-NLS-1$
 		Assert.isTrue(edit != null);
 		fEdit= edit;
+		fPreviewCache= null;
 	}
 
 	/**
@@ -136,6 +221,7 @@ public abstract class TextChange extends TextEditBasedChange {
 	public void addTextEditChangeGroup(TextEditChangeGroup group) {
 		Assert.isTrue(fEdit != null, "Can only add a description if a root edit exists"); //$NON-NLS-1$
 		addChangeGroup(group);
+		fPreviewCache= null;
 	}
 
 	/**
@@ -165,6 +251,7 @@ public abstract class TextChange extends TextEditBasedChange {
 	public void addEdit(TextEdit edit) throws MalformedTreeException {
 		Assert.isTrue(fEdit != null, "root must exist to add an edit"); //$NON-NLS-1$
 		fEdit.addChild(edit);
+		fPreviewCache= null;
 	}
 
 	//---- Document management -----------------------------------------------
@@ -231,6 +318,7 @@ public abstract class TextChange extends TextEditBasedChange {
 	public Change perform(IProgressMonitor pm) throws CoreException {
 		pm.beginTask("", 3); //$NON-NLS-1$
 		IDocument document= null;
+		fPreviewCache= null;
 
 		try {
 			document= acquireDocument(new SubProgressMonitor(pm, 1));
@@ -392,6 +480,11 @@ public abstract class TextChange extends TextEditBasedChange {
 	 * preview is computed by executing the all managed text edits. The
 	 * method considers the active state of the added {@link TextEditChangeGroup
 	 * text edit change groups}.
+	 * <p>
+	 * Previews are cached as long as the current document and the enabled
+	 * state of the change groups do not change. The returned document is a
+	 * copy of the cached preview.
+	 * </p>
 	 *
 	 * @param pm a progress monitor to report progress or <code>null</code>
 	 *  if no progress reporting is desired
@@ -401,14 +494,14 @@ public abstract class TextChange extends TextEditBasedChange {
 	 */
 	public IDocument getPreviewDocument(IProgressMonitor pm) throws CoreException {
 		PreviewAndRegion result= getPreviewDocument(ALL_EDITS, pm);
-		return result.document;
+		return new Document(result.document.get());
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public String getPreviewContent(IProgressMonitor pm) throws CoreException {
-		return getPreviewDocument(pm).get();
+		return getPreviewDocument(ALL_EDITS, pm).document.get();
 	}
 
 	/**
@@ -524,7 +617,31 @@ public abstract class TextChange extends TextEditBasedChange {
 	//---- private helper methods --------------------------------------------------
 
 	private PreviewAndRegion getPreviewDocument(TextEditBasedChangeGroup[] changes, IProgressMonitor pm) throws CoreException {
-		IDocument document= new Document(getCurrentDocument(pm).get());
+		String content= getCurrentDocument(pm).get();
+		PreviewCache cache= fPreviewCache != null ? (PreviewCache) fPreviewCache.get() : null;
+		if (cache == null || !cache.content.equals(content)) {
+			cache= new PreviewCache(content);
+			fPreviewCache= new SoftReference(cache);
+		}
+		PreviewKey key= changes == ALL_EDITS
+			? new PreviewKey(true, getChangeGroups())
+			: new PreviewKey(false, changes);
+		CachedPreview preview= (CachedPreview) cache.previews.get(key);
+		boolean keep= getKeepPreviewEdits();
+		if (preview == null || keep && preview.copier == null) {
+			preview= null;
+			if (!keep && changes != ALL_EDITS)
+				preview= computeLeafPreview(content, changes);
+			if (preview == null)
+				preview= computePreview(content, changes);
+			cache.previews.put(key, preview);
+		}
+		fCopier= keep ? preview.copier : null;
+		return new PreviewAndRegion(preview.document, preview.region);
+	}
+
+	private CachedPreview computePreview(String content, TextEditBasedChangeGroup[] changes) throws CoreException {
+		IDocument document= new Document(content);
 		boolean trackChanges= getKeepPreviewEdits();
 		setKeepPreviewEdits(true);
 		TextEditProcessor processor= changes == ALL_EDITS
@@ -532,7 +649,7 @@ public abstract class TextChange extends TextEditBasedChange {
 			: createTextEditProcessor(document, TextEdit.NONE, changes);
 		try {
 			processor.performEdits();
-			return new PreviewAndRegion(document, getNewRegion(changes));
+			return new CachedPreview(document, getNewRegion(changes), fCopier);
 		} catch (BadLocationException e) {
 			throw Changes.asCoreException(e);
 		} finally {
@@ -540,6 +657,69 @@ public abstract class TextChange extends TextEditBasedChange {
 		}
 	}
 
+	/**
+	 * Computes the preview of the given change groups without copying and traversing
+	 * the edit tree. This is only possible if all groups are enabled and all their edits
+	 * are leaf insert, replace or delete edits of the root edit which neither overlap
+	 * nor start at the same offset, since the result then doesn't depend on the tree.
+	 *
+	 * @param content the current content of the document
+	 * @param changes the change groups to preview
+	 * @return the preview, or <code>null</code> if the edits of the change groups
+	 *  must be executed by a text edit processor
+	 */
+	private CachedPreview computeLeafPreview(String content, TextEditBasedChangeGroup[] changes) {
+		if (fEdit == null)
+			return null;
+		List edits= new ArrayList();
+		for (int c= 0; c < changes.length; c++) {
+			TextEditBasedChangeGroup change= changes[c];
+			Assert.isTrue(change.getTextEditChange() == this);
+			if (!change.isEnabled())
+				return null;
+			edits.addAll(Arrays.asList(change.getTextEditGroup().getTextEdits()));
+		}
+		if (edits.size() == 0)
+			return null;
+		TextEdit[] sorted= (TextEdit[]) edits.toArray(new TextEdit[edits.size()]);
+		Arrays.sort(sorted, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				return ((TextEdit) o1).getOffset() - ((TextEdit) o2).getOffset();
+			}
+		});
+		String[] texts= new String[sorted.length];
+		for (int i= 0; i < sorted.length; i++) {
+			TextEdit edit= sorted[i];
+			if (edit.hasChildren() || edit.isDeleted() || edit.getRoot() != fEdit)
+				return null;
+			if (edit instanceof ReplaceEdit)
+				texts[i]= ((ReplaceEdit) edit).getText();
+			else if (edit instanceof InsertEdit)
+				texts[i]= ((InsertEdit) edit).getText();
+			else if (edit instanceof DeleteEdit)
+				texts[i]= ""; //$NON-NLS-1$
+			else
+				return null;
+			if (i > 0 && (sorted[i - 1].getOffset() == edit.getOffset() || sorted[i - 1].getExclusiveEnd() > edit.getOffset()))
+				return null;
+		}
+		if (sorted[sorted.length - 1].getExclusiveEnd() > content.length())
+			return null;
+
+		StringBuffer buffer= new StringBuffer(content);
+		int delta= 0;
+		for (int i= sorted.length - 1; i >= 0; i--) {
+			TextEdit edit= sorted[i];
+			buffer.replace(edit.getOffset(), edit.getExclusiveEnd(), texts[i]);
+			delta+= texts[i].length() - edit.getLength();
+		}
+		TextEdit last= sorted[sorted.length - 1];
+		String lastText= texts[sorted.length - 1];
+		int start= sorted[0].getOffset();
+		int end= last.getOffset() + delta - (lastText.length() - last.getLength()) + lastText.length();
+		return new CachedPreview(new Document(buffer.toString()), new Region(start, end - start), null);
+	}
+
 	private TextEditProcessor createTextEditProcessor(IDocument document, int flags, boolean preview) {
 		if (fEdit == null)
 			return new TextEditProcessor(document, new MultiTextEdit(0,0), flags);
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.internal.core.refactoring;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+
+/**
+ * Sends <code>initializeValidationData</code> or <code>isValid</code> to a
+ * list of independent changes from a number of worker jobs.
+ * <p>
+ * The results are merged in the order of the changes, so that the outcome is the
+ * same as if the changes had been validated sequentially: statuses are merged up to
+ * and including the first status with a severity of <code>FATAL</code>, and the
+ * exception of the first failing change is rethrown. The calling thread waits for
+ * the workers and reports their progress.
+ * </p>
+ *
+ * @since 3.7
+ */
+public final class ParallelChangeValidator {
+
+	/** The job family of the worker jobs */
+	public static final Object FAMILY= new Object();
+
+	private static final long POLL_INTERVAL= 100;
+
+	private final Change[] fChanges;
+	private final boolean fInitialize;
+
+	private final RefactoringStatus[] fResults;
+	private final Throwable[] fExceptions;
+
+	private int fNext;
+	private int fDone;
+	private int fRunningWorkers;
+	private boolean fCanceled;
+
+	private ParallelChangeValidator(Change[] changes, boolean initialize) {
+		fChanges= changes;
+		fInitialize= initialize;
+		fResults= new RefactoringStatus[changes.length];
+		fExceptions= new Throwable[changes.length];
+	}
+
+	/**
+	 * Sends <code>initializeValidationData</code> to the given changes.
+	 *
+	 * @param changes the changes to initialize
+	 * @param pm a progress monitor
+	 */
+	public static void initializeValidationData(Change[] changes, IProgressMonitor pm) {
+		ParallelChangeValidator validator= new ParallelChangeValidator(changes, true);
+		validator.run(pm);
+		for (int i= 0; i < changes.length; i++) {
+			Throwable exception= validator.fExceptions[i];
+			if (exception instanceof RuntimeException)
+				throw (RuntimeException) exception;
+			if (exception instanceof Error)
+				throw (Error) exception;
+		}
+	}
+
+	/**
+	 * Sends <code>isValid</code> to the given changes and merges the resulting statuses
+	 * into the given status until the first status with a severity of <code>FATAL</code>.
+	 *
+	 * @param changes the changes to validate
+	 * @param result the status to merge the results into
+	 * @param pm a progress monitor
+	 * @throws CoreException if validating one of the changes failed
+	 * @throws OperationCanceledException if the progress monitor got canceled
+	 */
+	public static void isValid(Change[] changes, RefactoringStatus result, IProgressMonitor pm) throws CoreException {
+		ParallelChangeValidator validator= new ParallelChangeValidator(changes, false);
+		validator.run(pm);
+		for (int i= 0; i < changes.length && !result.hasFatalError(); i++) {
+			Throwable exception= validator.fExceptions[i];
+			if (exception instanceof CoreException)
+				throw (CoreException) exception;
+			if (exception instanceof RuntimeException)
+				throw (RuntimeException) exception;
+			if (exception instanceof Error)
+				throw (Error) exception;
+			result.merge(validator.fResults[i]);
+		}
+	}
+
+	private void run(IProgressMonitor pm) {
+		int workers= Math.min(Runtime.getRuntime().availableProcessors(), fChanges.length);
+		pm.beginTask("", fChanges.length); //$NON-NLS-1$
+		try {
+			synchronized (this) {
+				fRunningWorkers= workers;
+			}
+			for (int i= 0; i < workers; i++) {
+				Job job= new Job(RefactoringCoreMessages.ParallelChangeValidator_job_name) {
+					protected IStatus run(IProgressMonitor monitor) {
+						work();
+						return Status.OK_STATUS;
+					}
+					public boolean belongsTo(Object family) {
+						return family == FAMILY;
+					}
+				};
+				job.setSystem(true);
+				job.schedule();
+			}
+			int reported= 0;
+			synchronized (this) {
+				while (fRunningWorkers > 0) {
+					try {
+						wait(POLL_INTERVAL);
+					} catch (InterruptedException e) {
+						fCanceled= true;
+					}
+					pm.worked(fDone - reported);
+					reported= fDone;
+					if (pm.isCanceled())
+						fCanceled= true;
+				}
+			}
+			if (pm.isCanceled())
+				throw new OperationCanceledException();
+		} finally {
+			pm.done();
+		}
+	}
+
+	private synchronized int next() {
+		if (fCanceled || fNext == fChanges.length)
+			return -1;
+		return fNext++;
+	}
+
+	private synchronized void done(boolean worker) {
+		if (worker)
+			fRunningWorkers--;
+		else
+			fDone++;
+		notifyAll();
+	}
+
+	private void work() {
+		try {
+			for (int i= next(); i >= 0; i= next()) {
+				try {
+					if (fInitialize)
+						fChanges[i].initializeValidationData(new NullProgressMonitor());
+					else
+						fResults[i]= fChanges[i].isValid(new NullProgressMonitor());
+				} catch (CoreException e) {
+					fExceptions[i]= e;
+				} catch (RuntimeException e) {
+					fExceptions[i]= e;
+				} catch (Error e) {
+					fExceptions[i]= e;
+				}
+				done(false);
+			}
+		} finally {
+			done(true);
+		}
+	}
+}
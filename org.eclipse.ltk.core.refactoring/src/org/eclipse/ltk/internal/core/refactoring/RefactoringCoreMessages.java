@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2012 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -118,6 +118,8 @@ public final class RefactoringCoreMessages extends NLS {
 
 	public static String NullChange_name;
 
+	public static String ParallelChangeValidator_job_name;
+
 	public static String ParticipantDescriptor_error_class_missing;
 
 	public static String ParticipantDescriptor_error_id_missing;
@@ -140,6 +142,8 @@ public final class RefactoringCoreMessages extends NLS {
 
 	public static String ProcessorBasedRefactoring_prechange_participants_removed;
 
+	public static String RefactoringStatus_summary_problems;
+
 	public static String Refactoring_execute_label;
 
 	public static String RenameResourceChange_name;
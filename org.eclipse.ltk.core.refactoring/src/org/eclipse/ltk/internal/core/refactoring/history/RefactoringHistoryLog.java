@@ -0,0 +1,819 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.internal.core.refactoring.history;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.core.runtime.Assert;
+
+import org.eclipse.ltk.internal.core.refactoring.IRefactoringSerializationConstants;
+
+/**
+ * Append-only refactoring history store with a sorted time stamp index.
+ * <p>
+ * The store consists of two files in the history folder:
+ * <ul>
+ * <li>{@link #NAME_LOG_FILE} contains the refactoring records in the order
+ * they have been added. A record consists of the time stamp, the description
+ * and the refactoring session document of a single refactoring. Records are
+ * never modified; changing a refactoring appends a new record.</li>
+ * <li>{@link #NAME_LOG_INDEX_FILE} contains fixed-size entries of time stamp and
+ * record offset, sorted by time stamp. Since the entries have a fixed size, the index
+ * is searched with positioned reads or can be memory-mapped, and range queries take
+ * O(log n) plus the size of the result.</li>
+ * </ul>
+ * The index is updated in place and never shrinks, its header contains the number of
+ * valid entries. Records which are no longer referenced by the index, because they
+ * have been removed or replaced, are removed once they make up more than half of the
+ * log. The compacted log and index are written to temporary files first, which then
+ * replace the log and the index. An interrupted replacement is completed or rolled
+ * back the next time the log is accessed.
+ * </p>
+ * <p>
+ * The marker file {@link #NAME_MARKER_FILE} records the version of the successful
+ * migration of a history in the per-week folder layout into the log. A log without
+ * a marker may be incomplete.
+ * </p>
+ *
+ * @since 3.7
+ */
+public final class RefactoringHistoryLog {
+
+	/** The record of a refactoring */
+	public static final class Record {
+
+		/** The refactoring session document */
+		final byte[] fData;
+
+		/** The description of the refactoring */
+		final String fDescription;
+
+		/** The time stamp of the refactoring */
+		final long fStamp;
+
+		/**
+		 * Creates a new record.
+		 *
+		 * @param stamp
+		 *            the time stamp of the refactoring
+		 * @param description
+		 *            the description of the refactoring
+		 * @param data
+		 *            the refactoring session document
+		 */
+		public Record(final long stamp, final String description, final byte[] data) {
+			fStamp= stamp;
+			fDescription= description;
+			fData= data;
+		}
+
+		/**
+		 * Returns the refactoring session document.
+		 *
+		 * @return the refactoring session document, or <code>null</code> if
+		 *         it has not been read
+		 */
+		public byte[] getData() {
+			return fData;
+		}
+
+		/**
+		 * Returns the description of the refactoring.
+		 *
+		 * @return the description
+		 */
+		public String getDescription() {
+			return fDescription;
+		}
+
+		/**
+		 * Returns the time stamp of the refactoring.
+		 *
+		 * @return the time stamp
+		 */
+		public long getStamp() {
+			return fStamp;
+		}
+	}
+
+	/** The name of the log file */
+	public static final String NAME_LOG_FILE= "refactorings.log"; //$NON-NLS-1$
+
+	/** The name of the index file */
+	public static final String NAME_LOG_INDEX_FILE= "refactorings.idx"; //$NON-NLS-1$
+
+	/** The name of the migration marker file */
+	public static final String NAME_MARKER_FILE= "refactorings.migrated"; //$NON-NLS-1$
+
+	/** The suffix of the temporary files written by a compaction */
+	private static final String SUFFIX_TEMPORARY_FILE= ".tmp"; //$NON-NLS-1$
+
+	/** The version of the migration from the per-week folder layout */
+	private static final int MIGRATION_VERSION= 1;
+
+	/** The size of an index entry: time stamp and record offset */
+	private static final int ENTRY_SIZE= 16;
+
+	/** The size of the file headers: magic, version, entry count and reserved */
+	private static final int HEADER_SIZE= 16;
+
+	/** The magic number of the index file */
+	private static final int INDEX_MAGIC= 0x52484958; // "RHIX"
+
+	/** The magic number of the log file */
+	private static final int LOG_MAGIC= 0x52484C47; // "RHLG"
+
+	/** The version of the file format */
+	private static final int VERSION= 1;
+
+	/**
+	 * The history logs in use (element type:
+	 * <code>&lt;File, WeakReference&lt;RefactoringHistoryLog&gt;&gt;</code>).
+	 * A log refers to its folder key, so an entry is kept exactly as long as
+	 * its log is referenced.
+	 */
+	private static final Map fgLogs= new WeakHashMap();
+
+	/**
+	 * Returns the history log of the specified history folder.
+	 * <p>
+	 * All history managers of a history folder share the same log.
+	 * </p>
+	 *
+	 * @param folder
+	 *            the history folder
+	 * @return the history log
+	 */
+	public static RefactoringHistoryLog getLog(final File folder) {
+		synchronized (fgLogs) {
+			final WeakReference reference= (WeakReference) fgLogs.get(folder);
+			RefactoringHistoryLog log= reference != null ? (RefactoringHistoryLog) reference.get() : null;
+			if (log == null) {
+				log= new RefactoringHistoryLog(folder);
+				fgLogs.put(log.fFolder, new WeakReference(log));
+			}
+			return log;
+		}
+	}
+
+	/** The history folder */
+	private final File fFolder;
+
+	/** The index file */
+	private final File fIndexFile;
+
+	/** The log file */
+	private final File fLogFile;
+
+	/** The migration marker file */
+	private final File fMarkerFile;
+
+	/** The temporary index file of a compaction */
+	private final File fTemporaryIndexFile;
+
+	/** The temporary log file of a compaction */
+	private final File fTemporaryLogFile;
+
+	/**
+	 * Has the migration marker of the current version been read since the
+	 * marker file has been created?
+	 */
+	private boolean fMigrated= false;
+
+	/**
+	 * Creates a new refactoring history log.
+	 *
+	 * @param folder
+	 *            the history folder
+	 */
+	private RefactoringHistoryLog(final File folder) {
+		Assert.isNotNull(folder);
+		fFolder= folder;
+		fLogFile= new File(folder, NAME_LOG_FILE);
+		fIndexFile= new File(folder, NAME_LOG_INDEX_FILE);
+		fMarkerFile= new File(folder, NAME_MARKER_FILE);
+		fTemporaryLogFile= new File(folder, NAME_LOG_FILE + SUFFIX_TEMPORARY_FILE);
+		fTemporaryIndexFile= new File(folder, NAME_LOG_INDEX_FILE + SUFFIX_TEMPORARY_FILE);
+	}
+
+	/**
+	 * Adds the specified records to the log. Existing records with the same
+	 * time stamps are replaced.
+	 *
+	 * @param records
+	 *            the records to add, in any order
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	public synchronized void append(final Record[] records) throws IOException {
+		if (records.length == 0)
+			return;
+		int count= 0;
+		long last= Long.MIN_VALUE;
+		if (exists()) {
+			// only the last entry is needed to append newer records
+			final RandomAccessFile index= new RandomAccessFile(fIndexFile, "r"); //$NON-NLS-1$
+			try {
+				final FileChannel channel= index.getChannel();
+				count= readEntryCount(channel);
+				if (count > 0)
+					last= readEntries(channel, count - 1, 1).getLong();
+			} finally {
+				index.close();
+			}
+		} else
+			createFiles();
+
+		final long[] recordOffsets= writeRecords(fLogFile, records);
+
+		boolean appendOnly= true;
+		for (int index= 0; index < records.length; index++) {
+			if (records[index].fStamp <= last) {
+				appendOnly= false;
+				break;
+			}
+			last= records[index].fStamp;
+		}
+		if (appendOnly) {
+			writeEntries(fIndexFile, count, records, recordOffsets);
+		} else {
+			final long[][] entries= readEntries();
+			final long[][] merged= merge(entries[0], entries[1], records, recordOffsets);
+			writeEntries(merged[0], merged[1]);
+			if (merged[0].length < entries[0].length + records.length)
+				compact(merged[0], merged[1]); // replaced records are no longer referenced
+		}
+	}
+
+	/**
+	 * Tells whether the log exists.
+	 *
+	 * @return <code>true</code> if the log exists, <code>false</code>
+	 *         otherwise
+	 */
+	public synchronized boolean exists() {
+		recover();
+		return fIndexFile.exists() && fLogFile.exists();
+	}
+
+	/**
+	 * Completes or rolls back a compaction which has been interrupted.
+	 * <p>
+	 * The temporary log is written before the temporary index, and the log is
+	 * replaced before the index. The log is only deleted once both temporary
+	 * files are complete.
+	 * </p>
+	 */
+	private void recover() {
+		if (!fTemporaryIndexFile.exists()) {
+			fTemporaryLogFile.delete();
+		} else if (fTemporaryLogFile.exists() && fLogFile.exists()) {
+			// the compaction has not replaced the log yet
+			fTemporaryIndexFile.delete();
+			fTemporaryLogFile.delete();
+		} else {
+			if (fTemporaryLogFile.exists())
+				fTemporaryLogFile.renameTo(fLogFile);
+			fIndexFile.delete();
+			fTemporaryIndexFile.renameTo(fIndexFile);
+		}
+	}
+
+	/**
+	 * Reads the record with the specified time stamp.
+	 *
+	 * @param stamp
+	 *            the time stamp
+	 * @return the record, or <code>null</code> if there is no refactoring with
+	 *         the time stamp
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	public synchronized Record read(final long stamp) throws IOException {
+		if (!exists())
+			return null;
+		final RandomAccessFile index= new RandomAccessFile(fIndexFile, "r"); //$NON-NLS-1$
+		try {
+			final FileChannel channel= index.getChannel();
+			final int count= readEntryCount(channel);
+			final int position= findEntry(channel, count, stamp);
+			if (position >= count)
+				return null;
+			final ByteBuffer entry= readEntries(channel, position, 1);
+			if (entry.getLong() != stamp)
+				return null;
+			final RandomAccessFile log= new RandomAccessFile(fLogFile, "r"); //$NON-NLS-1$
+			try {
+				return readRecord(log, entry.getLong(), true);
+			} finally {
+				log.close();
+			}
+		} finally {
+			index.close();
+		}
+	}
+
+	/**
+	 * Deletes the log and its migration marker.
+	 */
+	public synchronized void delete() {
+		fMarkerFile.delete();
+		fMigrated= false;
+		deleteFiles();
+	}
+
+	private void deleteFiles() {
+		fTemporaryIndexFile.delete();
+		fTemporaryLogFile.delete();
+		fLogFile.delete();
+		fIndexFile.delete();
+	}
+
+	/**
+	 * Tells whether the migration from the per-week folder layout into this
+	 * log has completed.
+	 *
+	 * @return <code>true</code> if the migration marker of the current
+	 *         version exists, <code>false</code> otherwise
+	 */
+	public synchronized boolean isMigrated() {
+		// the marker may be deleted together with the history folder
+		if (!fMarkerFile.exists())
+			fMigrated= false;
+		else if (!fMigrated) {
+			try {
+				final DataInputStream input= new DataInputStream(new FileInputStream(fMarkerFile));
+				try {
+					fMigrated= input.readInt() == MIGRATION_VERSION;
+				} finally {
+					input.close();
+				}
+			} catch (IOException exception) {
+				fMigrated= false;
+			}
+		}
+		return fMigrated;
+	}
+
+	/**
+	 * Records that the migration from the per-week folder layout into this
+	 * log has completed. The marker is written after the log has been
+	 * written, and before the per-week folders are deleted.
+	 *
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	public synchronized void setMigrated() throws IOException {
+		fFolder.mkdirs();
+		final DataOutputStream output= new DataOutputStream(new FileOutputStream(fMarkerFile));
+		try {
+			output.writeInt(MIGRATION_VERSION);
+		} finally {
+			output.close();
+		}
+		fMigrated= true;
+	}
+
+	/**
+	 * Reads all records of the log in ascending order of their time stamps.
+	 *
+	 * @return the records
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	public synchronized Record[] readAll() throws IOException {
+		if (!exists())
+			return new Record[0];
+		final long[][] entries= readEntries();
+		final Record[] records= new Record[entries[0].length];
+		final RandomAccessFile log= new RandomAccessFile(fLogFile, "r"); //$NON-NLS-1$
+		try {
+			for (int index= 0; index < records.length; index++)
+				records[index]= readRecord(log, entries[1][index], true);
+		} finally {
+			log.close();
+		}
+		return records;
+	}
+
+	/**
+	 * Reads the refactoring descriptor proxies in the specified range.
+	 *
+	 * @param project
+	 *            the name of the project, or <code>null</code> for the
+	 *            workspace
+	 * @param start
+	 *            the start time stamp, inclusive
+	 * @param end
+	 *            the end time stamp, inclusive
+	 * @param collection
+	 *            the collection of proxies to fill in
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	public synchronized void readProxies(final String project, final long start, final long end, final Collection collection) throws IOException {
+		if (!exists() || start > end)
+			return;
+		final RandomAccessFile index= new RandomAccessFile(fIndexFile, "r"); //$NON-NLS-1$
+		try {
+			final FileChannel channel= index.getChannel();
+			final int count= readEntryCount(channel);
+			final int first= findEntry(channel, count, start);
+			final int last= end == Long.MAX_VALUE ? count : findEntry(channel, count, end + 1);
+			if (first >= last)
+				return;
+			final ByteBuffer entries= readEntries(channel, first, last - first);
+			final RandomAccessFile log= new RandomAccessFile(fLogFile, "r"); //$NON-NLS-1$
+			try {
+				for (int position= first; position < last; position++) {
+					final long stamp= entries.getLong();
+					final Record record= readRecord(log, entries.getLong(), false);
+					collection.add(new DefaultRefactoringDescriptorProxy(record.fDescription, project, stamp));
+				}
+			} finally {
+				log.close();
+			}
+		} finally {
+			index.close();
+		}
+	}
+
+	/**
+	 * Removes the refactorings with the specified time stamps from the log.
+	 *
+	 * @param removed
+	 *            the time stamps of the refactorings to remove
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	public synchronized void remove(final long[] removed) throws IOException {
+		if (!exists() || removed.length == 0)
+			return;
+		final long[] sorted= (long[]) removed.clone();
+		Arrays.sort(sorted);
+		final long[][] entries= readEntries();
+		final long[] stamps= new long[entries[0].length];
+		final long[] offsets= new long[entries[0].length];
+		int count= 0;
+		for (int index= 0; index < entries[0].length; index++) {
+			if (Arrays.binarySearch(sorted, entries[0][index]) < 0) {
+				stamps[count]= entries[0][index];
+				offsets[count]= entries[1][index];
+				count++;
+			}
+		}
+		if (count == entries[0].length)
+			return;
+		final long[] remainingStamps= new long[count];
+		final long[] remainingOffsets= new long[count];
+		System.arraycopy(stamps, 0, remainingStamps, 0, count);
+		System.arraycopy(offsets, 0, remainingOffsets, 0, count);
+		writeEntries(remainingStamps, remainingOffsets);
+		compact(remainingStamps, remainingOffsets);
+	}
+
+	/**
+	 * Rewrites the log without unreferenced records if they make up more than
+	 * half of the log.
+	 *
+	 * @param stamps
+	 *            the time stamps of the index entries
+	 * @param offsets
+	 *            the record offsets of the index entries
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	private void compact(final long[] stamps, final long[] offsets) throws IOException {
+		final RandomAccessFile log= new RandomAccessFile(fLogFile, "r"); //$NON-NLS-1$
+		final Record[] records= new Record[stamps.length];
+		try {
+			long used= HEADER_SIZE;
+			for (int index= 0; index < offsets.length; index++)
+				used+= getRecordSize(log, offsets[index]);
+			if (used * 2 >= log.length())
+				return;
+			for (int index= 0; index < records.length; index++)
+				records[index]= readRecord(log, offsets[index], true);
+		} finally {
+			log.close();
+		}
+		fTemporaryIndexFile.delete();
+		writeHeader(fTemporaryLogFile, LOG_MAGIC);
+		final long[] recordOffsets= writeRecords(fTemporaryLogFile, records);
+		writeHeader(fTemporaryIndexFile, INDEX_MAGIC);
+		writeEntries(fTemporaryIndexFile, 0, records, recordOffsets);
+		// the history is not lost if the replacement is interrupted, see recover()
+		replace(fTemporaryLogFile, fLogFile);
+		replace(fTemporaryIndexFile, fIndexFile);
+	}
+
+	private static void replace(final File source, final File target) throws IOException {
+		target.delete();
+		if (!source.renameTo(target))
+			throw new IOException("Could not replace " + target.getPath()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Creates empty log and index files.
+	 *
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	private void createFiles() throws IOException {
+		fLogFile.getParentFile().mkdirs();
+		writeHeader(fLogFile, LOG_MAGIC);
+		writeHeader(fIndexFile, INDEX_MAGIC);
+	}
+
+	private static void writeHeader(final File file, final int magic) throws IOException {
+		final RandomAccessFile output= new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+		try {
+			output.setLength(0);
+			output.writeInt(magic);
+			output.writeInt(VERSION);
+			output.writeInt(0);
+			output.writeInt(0);
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Returns the position of the first index entry whose time stamp is not
+	 * smaller than the specified one.
+	 *
+	 * @param channel
+	 *            the index channel
+	 * @param count
+	 *            the number of entries
+	 * @param stamp
+	 *            the time stamp
+	 * @return the position of the entry, or <code>count</code> if all time
+	 *         stamps are smaller
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	private static int findEntry(final FileChannel channel, final int count, final long stamp) throws IOException {
+		final ByteBuffer buffer= ByteBuffer.allocate(8);
+		int low= 0;
+		int high= count;
+		while (low < high) {
+			final int middle= (low + high) >>> 1;
+			buffer.clear();
+			readFully(channel, buffer, HEADER_SIZE + (long) middle * ENTRY_SIZE);
+			if (buffer.getLong(0) < stamp)
+				low= middle + 1;
+			else
+				high= middle;
+		}
+		return low;
+	}
+
+	private static int readEntryCount(final FileChannel channel) throws IOException {
+		final ByteBuffer header= ByteBuffer.allocate(HEADER_SIZE);
+		readFully(channel, header, 0);
+		if (header.getInt(0) != INDEX_MAGIC || header.getInt(4) != VERSION)
+			throw new IOException("Invalid refactoring history index"); //$NON-NLS-1$
+		final int count= header.getInt(8);
+		if (count < 0 || HEADER_SIZE + (long) count * ENTRY_SIZE > channel.size())
+			throw new IOException("Invalid refactoring history index"); //$NON-NLS-1$
+		return count;
+	}
+
+	private static ByteBuffer readEntries(final FileChannel channel, final int position, final int count) throws IOException {
+		final ByteBuffer buffer= ByteBuffer.allocate(count * ENTRY_SIZE);
+		readFully(channel, buffer, HEADER_SIZE + (long) position * ENTRY_SIZE);
+		buffer.flip();
+		return buffer;
+	}
+
+	private static void readFully(final FileChannel channel, final ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			final int read= channel.read(buffer, position);
+			if (read < 0)
+				throw new IOException("Unexpected end of refactoring history"); //$NON-NLS-1$
+			position+= read;
+		}
+	}
+
+	/**
+	 * Reads all index entries.
+	 *
+	 * @return the time stamps and the record offsets
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	private long[][] readEntries() throws IOException {
+		final RandomAccessFile index= new RandomAccessFile(fIndexFile, "r"); //$NON-NLS-1$
+		try {
+			final FileChannel channel= index.getChannel();
+			final int count= readEntryCount(channel);
+			final ByteBuffer buffer= readEntries(channel, 0, count);
+			final long[] stamps= new long[count];
+			final long[] offsets= new long[count];
+			for (int position= 0; position < count; position++) {
+				stamps[position]= buffer.getLong();
+				offsets[position]= buffer.getLong();
+			}
+			return new long[][] { stamps, offsets };
+		} finally {
+			index.close();
+		}
+	}
+
+	/**
+	 * Merges new records into the sorted index entries.
+	 *
+	 * @param stamps
+	 *            the time stamps of the existing entries
+	 * @param offsets
+	 *            the record offsets of the existing entries
+	 * @param records
+	 *            the new records
+	 * @param recordOffsets
+	 *            the offsets of the new records
+	 * @return the merged time stamps and record offsets
+	 */
+	private static long[][] merge(final long[] stamps, final long[] offsets, final Record[] records, final long[] recordOffsets) {
+		final long[][] added= new long[records.length][];
+		for (int index= 0; index < records.length; index++)
+			added[index]= new long[] { records[index].fStamp, recordOffsets[index], index };
+		// stable with respect to the order of the records, later records replace earlier ones
+		Arrays.sort(added, new Comparator() {
+
+			public final int compare(final Object first, final Object second) {
+				final long[] predecessor= (long[]) first;
+				final long[] successor= (long[]) second;
+				if (predecessor[0] != successor[0])
+					return predecessor[0] < successor[0] ? -1 : 1;
+				return predecessor[2] < successor[2] ? -1 : (predecessor[2] == successor[2] ? 0 : 1);
+			}
+		});
+		final long[] mergedStamps= new long[stamps.length + added.length];
+		final long[] mergedOffsets= new long[stamps.length + added.length];
+		int count= 0;
+		int existing= 0;
+		int next= 0;
+		while (existing < stamps.length || next < added.length) {
+			if (next < added.length && (existing >= stamps.length || added[next][0] <= stamps[existing])) {
+				final long stamp= added[next][0];
+				if (existing < stamps.length && stamps[existing] == stamp)
+					existing++;
+				if (count > 0 && mergedStamps[count - 1] == stamp)
+					count--;
+				mergedStamps[count]= stamp;
+				mergedOffsets[count]= added[next][1];
+				next++;
+			} else {
+				mergedStamps[count]= stamps[existing];
+				mergedOffsets[count]= offsets[existing];
+				existing++;
+			}
+			count++;
+		}
+		final long[] resultStamps= new long[count];
+		final long[] resultOffsets= new long[count];
+		System.arraycopy(mergedStamps, 0, resultStamps, 0, count);
+		System.arraycopy(mergedOffsets, 0, resultOffsets, 0, count);
+		return new long[][] { resultStamps, resultOffsets };
+	}
+
+	/**
+	 * Writes the index entries, replacing all existing entries.
+	 *
+	 * @param stamps
+	 *            the sorted time stamps
+	 * @param offsets
+	 *            the record offsets
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	private void writeEntries(final long[] stamps, final long[] offsets) throws IOException {
+		final ByteBuffer buffer= ByteBuffer.allocate(stamps.length * ENTRY_SIZE);
+		for (int index= 0; index < stamps.length; index++) {
+			buffer.putLong(stamps[index]);
+			buffer.putLong(offsets[index]);
+		}
+		buffer.flip();
+		writeEntries(fIndexFile, 0, buffer, stamps.length);
+	}
+
+	/**
+	 * Appends index entries for the specified records, which are sorted and
+	 * newer than all existing entries.
+	 *
+	 * @param file
+	 *            the index file
+	 * @param count
+	 *            the number of existing entries
+	 * @param records
+	 *            the records
+	 * @param recordOffsets
+	 *            the offsets of the records
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	private static void writeEntries(final File file, final int count, final Record[] records, final long[] recordOffsets) throws IOException {
+		final ByteBuffer buffer= ByteBuffer.allocate(records.length * ENTRY_SIZE);
+		for (int index= 0; index < records.length; index++) {
+			buffer.putLong(records[index].fStamp);
+			buffer.putLong(recordOffsets[index]);
+		}
+		buffer.flip();
+		writeEntries(file, count, buffer, count + records.length);
+	}
+
+	private static void writeEntries(final File file, final int position, final ByteBuffer entries, final int count) throws IOException {
+		final RandomAccessFile index= new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+		try {
+			final FileChannel channel= index.getChannel();
+			long offset= HEADER_SIZE + (long) position * ENTRY_SIZE;
+			while (entries.hasRemaining())
+				offset+= channel.write(entries, offset);
+			// the entry count is written last, so that readers never see entries which have not been written
+			final ByteBuffer header= ByteBuffer.allocate(4);
+			header.putInt(0, count);
+			channel.write(header, 8);
+		} finally {
+			index.close();
+		}
+	}
+
+	private static long getRecordSize(final RandomAccessFile log, final long offset) throws IOException {
+		log.seek(offset + 8);
+		final int description= log.readInt();
+		log.seek(offset + 8 + 4 + description);
+		return 8 + 4 + description + 4 + log.readInt();
+	}
+
+	private static Record readRecord(final RandomAccessFile log, final long offset, final boolean data) throws IOException {
+		log.seek(offset);
+		final long stamp= log.readLong();
+		final byte[] description= new byte[log.readInt()];
+		log.readFully(description);
+		byte[] bytes= null;
+		if (data) {
+			bytes= new byte[log.readInt()];
+			log.readFully(bytes);
+		}
+		return new Record(stamp, new String(description, IRefactoringSerializationConstants.OUTPUT_ENCODING), bytes);
+	}
+
+	/**
+	 * Appends the specified records to a log file.
+	 *
+	 * @param file
+	 *            the log file
+	 * @param records
+	 *            the records
+	 * @return the offsets of the records
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	private static long[] writeRecords(final File file, final Record[] records) throws IOException {
+		final long[] offsets= new long[records.length];
+		final long position= file.length();
+		final DataOutputStream output= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+		try {
+			for (int index= 0; index < records.length; index++) {
+				offsets[index]= position + output.size();
+				writeRecord(output, records[index]);
+			}
+		} finally {
+			output.close();
+		}
+		return offsets;
+	}
+
+	private static void writeRecord(final DataOutputStream output, final Record record) throws IOException {
+		final byte[] description= record.fDescription.getBytes(IRefactoringSerializationConstants.OUTPUT_ENCODING);
+		output.writeLong(record.fStamp);
+		output.writeInt(description.length);
+		output.write(description);
+		output.writeInt(record.fData.length);
+		output.write(record.fData);
+	}
+}
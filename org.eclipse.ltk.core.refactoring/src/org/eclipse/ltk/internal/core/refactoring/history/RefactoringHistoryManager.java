@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2010 IBM Corporation and others.
+ * Copyright (c) 2005, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,9 @@ package org.eclipse.ltk.internal.core.refactoring.history;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -81,6 +84,7 @@ import org.eclipse.ltk.internal.core.refactoring.RefactoringCoreMessages;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringSessionReader;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringSessionTransformer;
+import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryLog.Record;
 
 /**
  * Manager for persistable refactoring histories.
@@ -98,6 +102,13 @@ public final class RefactoringHistoryManager {
 	/** The calendar instance */
 	private static final Calendar fgCalendar= Calendar.getInstance(TimeZone.getTimeZone("GMT+00:00")); //$NON-NLS-1$
 
+	/**
+	 * The lock which serializes the conversions between the per-week folder
+	 * layout and the history log, since several managers may exist for the
+	 * same history folder
+	 */
+	private static final Object fgMigrationLock= new Object();
+
 	/**
 	 * Checks whether the argument map is well-formed.
 	 * <p>
@@ -144,6 +155,99 @@ public final class RefactoringHistoryManager {
 		return new CoreException(new Status(IStatus.ERROR, RefactoringCore.ID_PLUGIN, IRefactoringCoreStatusCodes.REFACTORING_HISTORY_IO_ERROR, exception.getLocalizedMessage(), exception));
 	}
 
+	/**
+	 * Converts the history log in the specified history folder into the folder
+	 * layout which is used for shared refactoring histories.
+	 * <p>
+	 * The refactorings are written into per-week history and index files, and
+	 * the history log is deleted afterwards. Nothing happens if the folder does
+	 * not contain a history log. A history log whose migration has not
+	 * completed is deleted, since the per-week folders still contain the
+	 * history.
+	 * </p>
+	 *
+	 * @param store
+	 *            the history folder
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @throws CoreException
+	 *             if an error occurs while converting the history
+	 */
+	public static void convertToFolderLayout(final IFileStore store, final IProgressMonitor monitor) throws CoreException {
+		synchronized (fgMigrationLock) {
+			convertLogToFolderLayout(store, monitor);
+		}
+	}
+
+	private static void convertLogToFolderLayout(final IFileStore store, final IProgressMonitor monitor) throws CoreException {
+		try {
+			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_updating_history, 100);
+			final RefactoringHistoryLog log= getLog(store);
+			if (log == null || !log.exists())
+				return;
+			if (!log.isMigrated()) {
+				log.delete();
+				return;
+			}
+			final Record[] records= log.readAll();
+			final Map weeks= new HashMap();
+			for (int index= 0; index < records.length; index++) {
+				final IPath path= stampToPath(records[index].fStamp);
+				List list= (List) weeks.get(path);
+				if (list == null) {
+					list= new ArrayList();
+					weeks.put(path, list);
+				}
+				list.add(records[index]);
+			}
+			// per-week folders left over by an interrupted migration are outdated
+			final IFileStore[] stores= store.childStores(EFS.NONE, new SubProgressMonitor(monitor, 10, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+			for (int index= 0; index < stores.length; index++) {
+				if (stores[index].fetchInfo().isDirectory())
+					stores[index].delete(EFS.NONE, null);
+			}
+			final RefactoringHistoryManager manager= new RefactoringHistoryManager(store, null, false);
+			final IProgressMonitor subMonitor= new SubProgressMonitor(monitor, 90);
+			try {
+				subMonitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_updating_history, weeks.size() * 2);
+				final DocumentBuilder parser= DocumentBuilderFactory.newInstance().newDocumentBuilder();
+				parser.setErrorHandler(new DefaultHandler());
+				for (final Iterator iterator= weeks.entrySet().iterator(); iterator.hasNext();) {
+					final Map.Entry entry= (Map.Entry) iterator.next();
+					final List list= (List) entry.getValue();
+					final IFileStore folder= store.getFileStore((IPath) entry.getKey());
+					Document document= null;
+					final RefactoringDescriptorProxy[] proxies= new RefactoringDescriptorProxy[list.size()];
+					for (int index= 0; index < proxies.length; index++) {
+						final Record record= (Record) list.get(index);
+						final Document current= parser.parse(new InputSource(new ByteArrayInputStream(record.fData)));
+						if (document == null) {
+							document= current;
+						} else {
+							final NodeList refactorings= current.getElementsByTagName(IRefactoringSerializationConstants.ELEMENT_REFACTORING);
+							for (int offset= 0; offset < refactorings.getLength(); offset++)
+								document.getDocumentElement().appendChild(document.importNode(refactorings.item(offset), true));
+						}
+						proxies[index]= new DefaultRefactoringDescriptorProxy(record.fDescription, null, record.fStamp);
+					}
+					manager.writeHistoryEntry(folder.getChild(RefactoringHistoryService.NAME_HISTORY_FILE), document, new SubProgressMonitor(subMonitor, 1, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL), RefactoringCoreMessages.RefactoringHistoryService_updating_history);
+					writeIndexEntry(folder.getChild(RefactoringHistoryService.NAME_INDEX_FILE), proxies, EFS.NONE, new SubProgressMonitor(subMonitor, 1, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL), RefactoringCoreMessages.RefactoringHistoryService_updating_history);
+				}
+			} finally {
+				subMonitor.done();
+			}
+			log.delete();
+		} catch (ParserConfigurationException exception) {
+			throw createCoreException(exception);
+		} catch (IOException exception) {
+			throw createCoreException(exception);
+		} catch (SAXException exception) {
+			throw createCoreException(exception);
+		} finally {
+			monitor.done();
+		}
+	}
+
 	/**
 	 * Escapes the specified string for the history index.
 	 *
@@ -166,6 +270,25 @@ public final class RefactoringHistoryManager {
 		return string;
 	}
 
+	/**
+	 * Returns the history log of the specified history folder.
+	 *
+	 * @param store
+	 *            the history folder
+	 * @return the history log, or <code>null</code> if the folder is not
+	 *         located in the local file system
+	 */
+	private static RefactoringHistoryLog getLog(final IFileStore store) {
+		try {
+			final File folder= store.toLocalFile(EFS.NONE, null);
+			if (folder != null)
+				return RefactoringHistoryLog.getLog(folder);
+		} catch (CoreException exception) {
+			RefactoringCorePlugin.log(exception);
+		}
+		return null;
+	}
+
 	/**
 	 * Returns the argument map of the specified descriptor.
 	 *
@@ -768,6 +891,12 @@ public final class RefactoringHistoryManager {
 		writer.flush();
 	}
 
+	private static byte[] toByteArray(final Document document) {
+		final ByteArrayOutputStream stream= new ByteArrayOutputStream(1024);
+		writeNode(stream, document);
+		return stream.toByteArray();
+	}
+
 	/** The cached session descriptor, or <code>null</code> */
 	private RefactoringSessionDescriptor fCachedDescriptor= null;
 
@@ -783,6 +912,12 @@ public final class RefactoringHistoryManager {
 	/** The history file store */
 	private final IFileStore fHistoryStore;
 
+	/**
+	 * The history log, or <code>null</code> if the history is stored in the
+	 * per-week folder layout
+	 */
+	private final RefactoringHistoryLog fLog;
+
 	/**
 	 * The non-empty name of the managed project, or <code>null</code> for the
 	 * workspace
@@ -797,12 +932,18 @@ public final class RefactoringHistoryManager {
 	 * @param name
 	 *            the non-empty name of the managed project, or
 	 *            <code>null</code> for the workspace
+	 * @param indexed
+	 *            <code>true</code> to store the history in an indexed history
+	 *            log, <code>false</code> to use the per-week folder layout of
+	 *            shared refactoring histories. The history log is only used if
+	 *            the store is located in the local file system.
 	 */
-	RefactoringHistoryManager(final IFileStore store, final String name) {
+	RefactoringHistoryManager(final IFileStore store, final String name, final boolean indexed) {
 		Assert.isNotNull(store);
 		Assert.isTrue(name == null || !"".equals(name)); //$NON-NLS-1$
 		fHistoryStore= store;
 		fProjectName= name;
+		fLog= indexed ? getLog(store) : null;
 	}
 
 	/**
@@ -821,6 +962,10 @@ public final class RefactoringHistoryManager {
 	 *             if an error occurs while adding the descriptor to the history
 	 */
 	void addRefactoringDescriptor(final RefactoringDescriptor descriptor, final boolean sort, final IProgressMonitor monitor) throws CoreException {
+		if (fLog != null) {
+			addLoggedRefactoringDescriptor(descriptor, monitor);
+			return;
+		}
 		try {
 			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_updating_history, 18);
 			final long stamp= descriptor.getTimeStamp();
@@ -901,6 +1046,32 @@ public final class RefactoringHistoryManager {
 		}
 	}
 
+	/**
+	 * Adds the specified refactoring descriptor to the history log.
+	 *
+	 * @param descriptor
+	 *            the refactoring descriptor to add
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @throws CoreException
+	 *             if an error occurs while adding the descriptor to the history
+	 */
+	private void addLoggedRefactoringDescriptor(final RefactoringDescriptor descriptor, final IProgressMonitor monitor) throws CoreException {
+		try {
+			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_updating_history, 2);
+			final long stamp= descriptor.getTimeStamp();
+			if (stamp >= 0) {
+				migrateHistory(new SubProgressMonitor(monitor, 1, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+				final Document document= transformDescriptor(descriptor, false);
+				fLog.append(new Record[] { new Record(stamp, descriptor.getDescription(), toByteArray(document)) });
+			}
+		} catch (IOException exception) {
+			throw createCoreException(exception);
+		} finally {
+			monitor.done();
+		}
+	}
+
 	/**
 	 * Returns the cached refactoring history document.
 	 *
@@ -959,6 +1130,186 @@ public final class RefactoringHistoryManager {
 		}
 	}
 
+	/**
+	 * Migrates the refactoring history from the per-week folder layout into the
+	 * history log, unless this has already been done.
+	 *
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @throws CoreException
+	 *             if an error occurs while migrating the history
+	 */
+	private void migrateHistory(final IProgressMonitor monitor) throws CoreException {
+		if (fLog.isMigrated())
+			return;
+		try {
+			migrateHistory(fHistoryStore, fLog, monitor);
+		} finally {
+			fCachedDocument= null;
+			fCachedPath= null;
+			fCachedDescriptor= null;
+			fCachedStore= null;
+		}
+	}
+
+	/**
+	 * Migrates the refactoring history in the specified history folder from
+	 * the per-week folder layout into the history log.
+	 * <p>
+	 * All refactorings of the history files below the history folder are
+	 * added to the history log. The per-week folders are only deleted after
+	 * the migration marker of the log has been written. A log without marker
+	 * is the result of an interrupted migration and is rebuilt from the
+	 * per-week folders. Nothing happens if the marker exists.
+	 * </p>
+	 *
+	 * @param store
+	 *            the history folder
+	 * @param log
+	 *            the history log of the folder
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @throws CoreException
+	 *             if an error occurs while migrating the history
+	 */
+	public static void migrateHistory(final IFileStore store, final RefactoringHistoryLog log, final IProgressMonitor monitor) throws CoreException {
+		try {
+			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_updating_history, 100);
+			synchronized (fgMigrationLock) {
+				if (log.isMigrated())
+					return;
+				final List folders= new ArrayList();
+				if (store.fetchInfo().exists()) {
+					final IFileStore[] stores= store.childStores(EFS.NONE, new SubProgressMonitor(monitor, 10, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+					for (int index= 0; index < stores.length; index++) {
+						if (stores[index].fetchInfo().isDirectory())
+							folders.add(stores[index]);
+					}
+				}
+				log.delete();
+				if (!folders.isEmpty()) {
+					final DocumentBuilder parser= DocumentBuilderFactory.newInstance().newDocumentBuilder();
+					parser.setErrorHandler(new DefaultHandler());
+					final List records= new ArrayList(256);
+					final IProgressMonitor subMonitor= new SubProgressMonitor(monitor, 70, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL);
+					try {
+						subMonitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_updating_history, folders.size());
+						for (final Iterator iterator= folders.iterator(); iterator.hasNext();)
+							collectHistoryRecords((IFileStore) iterator.next(), parser, records, new SubProgressMonitor(subMonitor, 1, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+					} finally {
+						subMonitor.done();
+					}
+					log.append((Record[]) records.toArray(new Record[records.size()]));
+				}
+				log.setMigrated();
+				final IProgressMonitor deleteMonitor= new SubProgressMonitor(monitor, 20, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL);
+				try {
+					deleteMonitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_updating_history, folders.size());
+					for (final Iterator iterator= folders.iterator(); iterator.hasNext();)
+						((IFileStore) iterator.next()).delete(EFS.NONE, new SubProgressMonitor(deleteMonitor, 1, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+				} finally {
+					deleteMonitor.done();
+				}
+			}
+		} catch (ParserConfigurationException exception) {
+			throw createCoreException(exception);
+		} catch (IOException exception) {
+			throw createCoreException(exception);
+		} finally {
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Collects the refactorings of the history files below the specified
+	 * folder as history log records.
+	 *
+	 * @param store
+	 *            the folder of the per-week layout
+	 * @param parser
+	 *            the parser to use
+	 * @param records
+	 *            the list of records to fill in
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @throws CoreException
+	 *             if an error occurs while reading a history file
+	 */
+	private static void collectHistoryRecords(final IFileStore store, final DocumentBuilder parser, final List records, final IProgressMonitor monitor) throws CoreException {
+		try {
+			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_updating_history, 10);
+			final IFileStore[] stores= store.childStores(EFS.NONE, new SubProgressMonitor(monitor, 1, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+			final IProgressMonitor subMonitor= new SubProgressMonitor(monitor, 9, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL);
+			try {
+				subMonitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_updating_history, stores.length);
+				for (int index= 0; index < stores.length; index++) {
+					final IFileStore current= stores[index];
+					if (current.fetchInfo().isDirectory())
+						collectHistoryRecords(current, parser, records, new SubProgressMonitor(subMonitor, 1, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+					else if (current.getName().equalsIgnoreCase(RefactoringHistoryService.NAME_HISTORY_FILE)) {
+						collectHistoryRecords(current, parser, records);
+						subMonitor.worked(1);
+					} else
+						subMonitor.worked(1);
+				}
+			} finally {
+				subMonitor.done();
+			}
+		} finally {
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Collects the refactorings of the specified history file as history log
+	 * records.
+	 *
+	 * @param file
+	 *            the history file
+	 * @param parser
+	 *            the parser to use
+	 * @param records
+	 *            the list of records to fill in
+	 * @throws CoreException
+	 *             if an error occurs while reading the history file
+	 */
+	private static void collectHistoryRecords(final IFileStore file, final DocumentBuilder parser, final List records) throws CoreException {
+		InputStream input= null;
+		try {
+			input= new BufferedInputStream(file.openInputStream(EFS.NONE, null));
+			final Document document= parser.parse(new InputSource(input));
+			final String version= document.getDocumentElement().getAttribute(IRefactoringSerializationConstants.ATTRIBUTE_VERSION);
+			final NodeList list= document.getElementsByTagName(IRefactoringSerializationConstants.ELEMENT_REFACTORING);
+			for (int index= 0; index < list.getLength(); index++) {
+				final Element element= (Element) list.item(index);
+				try {
+					final long stamp= Long.parseLong(element.getAttribute(IRefactoringSerializationConstants.ATTRIBUTE_STAMP));
+					final Document record= parser.newDocument();
+					final Element session= record.createElement(IRefactoringSerializationConstants.ELEMENT_SESSION);
+					if (version.length() > 0)
+						session.setAttribute(IRefactoringSerializationConstants.ATTRIBUTE_VERSION, version);
+					record.appendChild(session);
+					session.appendChild(record.importNode(element, true));
+					records.add(new Record(stamp, element.getAttribute(IRefactoringSerializationConstants.ATTRIBUTE_DESCRIPTION), toByteArray(record)));
+				} catch (NumberFormatException exception) {
+					// Just skip
+				}
+			}
+		} catch (IOException exception) {
+			throw createCoreException(exception);
+		} catch (SAXException exception) {
+			throw createCoreException(exception);
+		} finally {
+			if (input != null) {
+				try {
+					input.close();
+				} catch (IOException exception) {
+					// Do nothing
+				}
+			}
+		}
+	}
+
 	/**
 	 * Reads the refactoring history from disk.
 	 *
@@ -975,13 +1326,27 @@ public final class RefactoringHistoryManager {
 			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_retrieving_history, 200);
 			final Set set= new HashSet();
 			try {
-				if (fHistoryStore.fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 20, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL)).exists())
-					readRefactoringDescriptorProxies(fHistoryStore, fProjectName, set, start, end, new SubProgressMonitor(monitor, 80), RefactoringCoreMessages.RefactoringHistoryService_retrieving_history);
+				if (fHistoryStore.fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 20, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL)).exists()) {
+					if (fLog != null) {
+						migrateHistory(new SubProgressMonitor(monitor, 40, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+						fLog.readProxies(fProjectName, start, end, set);
+						monitor.worked(40);
+					} else
+						readRefactoringDescriptorProxies(fHistoryStore, fProjectName, set, start, end, new SubProgressMonitor(monitor, 80), RefactoringCoreMessages.RefactoringHistoryService_retrieving_history);
+				}
 				final IFileStore store= EFS.getLocalFileSystem().getStore(RefactoringCorePlugin.getDefault().getStateLocation()).getChild(RefactoringHistoryService.NAME_HISTORY_FOLDER).getChild(RefactoringHistoryService.NAME_WORKSPACE_PROJECT);
-				if (store.fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 20, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL)).exists())
-					readRefactoringDescriptorProxies(store, null, set, start, end, new SubProgressMonitor(monitor, 80), RefactoringCoreMessages.RefactoringHistoryService_retrieving_history);
+				if (store.fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 20, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL)).exists()) {
+					final RefactoringHistoryLog log= getLog(store);
+					if (log != null && log.exists() && log.isMigrated()) {
+						log.readProxies(null, start, end, set);
+						monitor.worked(80);
+					} else
+						readRefactoringDescriptorProxies(store, null, set, start, end, new SubProgressMonitor(monitor, 80), RefactoringCoreMessages.RefactoringHistoryService_retrieving_history);
+				}
 			} catch (CoreException exception) {
 				RefactoringCorePlugin.log(exception);
+			} catch (IOException exception) {
+				RefactoringCorePlugin.log(exception);
 			}
 			final RefactoringDescriptorProxy[] proxies= new RefactoringDescriptorProxy[set.size()];
 			set.toArray(proxies);
@@ -1096,6 +1461,21 @@ public final class RefactoringHistoryManager {
 	 *             if an error occurs
 	 */
 	void removeRefactoringDescriptors(final RefactoringDescriptorProxy[] proxies, final IProgressMonitor monitor, final String task) throws CoreException {
+		if (fLog != null) {
+			try {
+				monitor.beginTask(task, 2);
+				migrateHistory(new SubProgressMonitor(monitor, 1, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+				final long[] stamps= new long[proxies.length];
+				for (int index= 0; index < proxies.length; index++)
+					stamps[index]= proxies[index].getTimeStamp();
+				fLog.remove(stamps);
+			} catch (IOException exception) {
+				throw createCoreException(exception);
+			} finally {
+				monitor.done();
+			}
+			return;
+		}
 		try {
 			final Map paths= new HashMap();
 			monitor.beginTask(task, proxies.length + 300);
@@ -1139,7 +1519,23 @@ public final class RefactoringHistoryManager {
 		try {
 			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_resolving_information, 2);
 			final long stamp= proxy.getTimeStamp();
-			if (stamp >= 0) {
+			if (stamp >= 0 && fLog != null) {
+				try {
+					migrateHistory(new SubProgressMonitor(monitor, 1, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+					final Record record= fLog.read(stamp);
+					if (record != null) {
+						final RefactoringDescriptor[] descriptors= new RefactoringSessionReader(false, fProjectName).readSession(new InputSource(new ByteArrayInputStream(record.fData))).getRefactorings();
+						for (int index= 0; index < descriptors.length; index++) {
+							if (descriptors[index].getTimeStamp() == stamp)
+								return descriptors[index];
+						}
+					}
+				} catch (CoreException exception) {
+					RefactoringCorePlugin.log(exception);
+				} catch (IOException exception) {
+					RefactoringCorePlugin.log(exception);
+				}
+			} else if (stamp >= 0) {
 				InputStream input= null;
 				try {
 					final IFileStore folder= fHistoryStore.getFileStore(stampToPath(stamp));
@@ -1190,7 +1586,27 @@ public final class RefactoringHistoryManager {
 		try {
 			monitor.beginTask(RefactoringCoreMessages.RefactoringHistoryService_updating_history, 100);
 			final long stamp= proxy.getTimeStamp();
-			if (stamp >= 0) {
+			if (stamp >= 0 && fLog != null) {
+				try {
+					migrateHistory(new SubProgressMonitor(monitor, 50, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL));
+					final Record record= fLog.read(stamp);
+					if (record != null) {
+						final DocumentBuilder parser= DocumentBuilderFactory.newInstance().newDocumentBuilder();
+						parser.setErrorHandler(new DefaultHandler());
+						final Document document= parser.parse(new InputSource(new ByteArrayInputStream(record.fData)));
+						final NodeList list= document.getElementsByTagName(IRefactoringSerializationConstants.ELEMENT_REFACTORING);
+						for (int index= 0; index < list.getLength(); index++)
+							((Element) list.item(index)).setAttribute(IRefactoringSerializationConstants.ATTRIBUTE_COMMENT, comment);
+						fLog.append(new Record[] { new Record(stamp, record.fDescription, toByteArray(document)) });
+					}
+				} catch (ParserConfigurationException exception) {
+					throw createCoreException(exception);
+				} catch (IOException exception) {
+					throw createCoreException(exception);
+				} catch (SAXException exception) {
+					throw createCoreException(exception);
+				}
+			} else if (stamp >= 0) {
 				final IPath path= stampToPath(stamp);
 				final IFileStore folder= fHistoryStore.getFileStore(path);
 				final IFileStore history= folder.getChild(RefactoringHistoryService.NAME_HISTORY_FILE);
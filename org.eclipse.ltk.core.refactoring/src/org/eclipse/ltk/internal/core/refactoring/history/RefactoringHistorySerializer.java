@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2008 IBM Corporation and others.
+ * Copyright (c) 2005, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -59,7 +59,7 @@ public final class RefactoringHistorySerializer implements IRefactoringHistoryLi
 								final URI uri= project.getLocationURI();
 								if (uri != null) {
 									try {
-										processHistoryNotification(EFS.getStore(uri).getChild(RefactoringHistoryService.NAME_HISTORY_FOLDER), event, name);
+										processHistoryNotification(EFS.getStore(uri).getChild(RefactoringHistoryService.NAME_HISTORY_FOLDER), event, name, false);
 									} catch (CoreException exception) {
 										RefactoringCorePlugin.log(exception);
 									} finally {
@@ -72,7 +72,7 @@ public final class RefactoringHistorySerializer implements IRefactoringHistoryLi
 								}
 							} else {
 								try {
-									processHistoryNotification(store.getChild(name), event, name);
+									processHistoryNotification(store.getChild(name), event, name, true);
 								} catch (CoreException exception) {
 									RefactoringCorePlugin.log(exception);
 								}
@@ -80,7 +80,7 @@ public final class RefactoringHistorySerializer implements IRefactoringHistoryLi
 						}
 					} else {
 						try {
-							processHistoryNotification(store.getChild(RefactoringHistoryService.NAME_WORKSPACE_PROJECT), event, name);
+							processHistoryNotification(store.getChild(RefactoringHistoryService.NAME_WORKSPACE_PROJECT), event, name, true);
 						} catch (CoreException exception) {
 							RefactoringCorePlugin.log(exception);
 						}
@@ -99,13 +99,16 @@ public final class RefactoringHistorySerializer implements IRefactoringHistoryLi
 	 *            the history event
 	 * @param name
 	 *            the project name, or <code>null</code>
+	 * @param indexed
+	 *            <code>true</code> to use an indexed history log,
+	 *            <code>false</code> for a shared refactoring history
 	 * @throws CoreException
 	 *             if an error occurs
 	 */
-	private void processHistoryNotification(final IFileStore store, final RefactoringHistoryEvent event, final String name) throws CoreException {
+	private void processHistoryNotification(final IFileStore store, final RefactoringHistoryEvent event, final String name, final boolean indexed) throws CoreException {
 		final RefactoringDescriptorProxy proxy= event.getDescriptor();
 		final int type= event.getEventType();
-		final RefactoringHistoryManager manager= new RefactoringHistoryManager(store, name);
+		final RefactoringHistoryManager manager= new RefactoringHistoryManager(store, name, indexed);
 		final NullProgressMonitor monitor= new NullProgressMonitor();
 		if (type == RefactoringHistoryEvent.PUSHED || type == RefactoringHistoryEvent.ADDED) {
 			final RefactoringDescriptor descriptor= proxy.requestDescriptor(monitor);
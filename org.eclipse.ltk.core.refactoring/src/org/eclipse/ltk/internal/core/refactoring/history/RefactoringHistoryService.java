@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2008 IBM Corporation and others.
+ * Copyright (c) 2005, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -217,7 +217,9 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 	 * </p>
 	 * <p>
 	 * Note: this method simply copies the content of the refactoring history
-	 * folder to the location corresponding to the shared history setting.
+	 * folder to the location corresponding to the shared history setting. When
+	 * the history is shared, its history log is converted into the per-week
+	 * folder layout beforehand.
 	 * Clients wishing to programmatically change the refactoring history
 	 * location have to update the preference
 	 * {@link RefactoringPreferenceConstants#PREFERENCE_SHARED_REFACTORING_HISTORY}
@@ -255,6 +257,7 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 					if (enable) {
 						final IFileStore source= history.getChild(name);
 						if (source.fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 20)).exists()) {
+							RefactoringHistoryManager.convertToFolderLayout(source, new SubProgressMonitor(monitor, 20));
 							IFileStore destination= EFS.getStore(uri).getChild(NAME_HISTORY_FOLDER);
 							if (destination.fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 20)).exists())
 								destination.delete(EFS.NONE, new SubProgressMonitor(monitor, 20));
@@ -1007,15 +1010,15 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 					if (hasSharedRefactoringHistory(project)) {
 						final URI uri= project.getLocationURI();
 						if (uri != null)
-							return getManager(EFS.getStore(uri).getChild(RefactoringHistoryService.NAME_HISTORY_FOLDER), name);
+							return getManager(EFS.getStore(uri).getChild(RefactoringHistoryService.NAME_HISTORY_FOLDER), name, false);
 					} else
-						return getManager(store.getChild(name), name);
+						return getManager(store.getChild(name), name, true);
 				}
 			} catch (CoreException exception) {
 				// Do nothing
 			}
 		} else
-			return getManager(store.getChild(NAME_WORKSPACE_PROJECT), null);
+			return getManager(store.getChild(NAME_WORKSPACE_PROJECT), null, true);
 		return null;
 	}
 
@@ -1028,13 +1031,16 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 	 * @param name
 	 *            the non-empty project name, or <code>null</code> for the
 	 *            workspace
+	 * @param indexed
+	 *            <code>true</code> to use an indexed history log,
+	 *            <code>false</code> for a shared refactoring history
 	 * @return the refactoring history manager
 	 */
-	private RefactoringHistoryManager getManager(final IFileStore store, final String name) {
+	private RefactoringHistoryManager getManager(final IFileStore store, final String name, final boolean indexed) {
 		Assert.isNotNull(store);
 		RefactoringHistoryManager manager= (RefactoringHistoryManager) fManagerCache.get(store);
 		if (manager == null) {
-			manager= new RefactoringHistoryManager(store, name);
+			manager= new RefactoringHistoryManager(store, name, indexed);
 			fManagerCache.put(store, manager);
 		}
 		return manager;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -28,6 +28,7 @@ import org.eclipse.ltk.core.refactoring.Change;
 import org.eclipse.ltk.core.refactoring.CreateChangeOperation;
 import org.eclipse.ltk.core.refactoring.PerformChangeOperation;
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.RefactoringStatusEntry;
 import org.eclipse.ltk.ui.refactoring.RefactoringWizard;
 import org.eclipse.ltk.ui.refactoring.RefactoringWizardPage;
 
@@ -68,7 +69,8 @@ public class ErrorWizardPage extends RefactoringWizardPage implements IErrorWiza
 			if (severity >= RefactoringStatus.FATAL) {
 				setDescription(RefactoringUIMessages.ErrorWizardPage_cannot_proceed);
 			} else if (severity >= RefactoringStatus.INFO) {
-				setDescription(Messages.format(RefactoringUIMessages.ErrorWizardPage_confirm, new String[] {getLabelAsText(IDialogConstants.NEXT_LABEL), getLabelAsText(IDialogConstants.FINISH_LABEL)}));
+				String message= hasSummarizedEntries(fStatus) ? RefactoringUIMessages.ErrorWizardPage_confirm_summarized : RefactoringUIMessages.ErrorWizardPage_confirm;
+				setDescription(Messages.format(message, new String[] {getLabelAsText(IDialogConstants.NEXT_LABEL), getLabelAsText(IDialogConstants.FINISH_LABEL)}));
 			} else {
 				setDescription(""); //$NON-NLS-1$
 			}
@@ -78,6 +80,15 @@ public class ErrorWizardPage extends RefactoringWizardPage implements IErrorWiza
 		}
 	}
 
+	private static boolean hasSummarizedEntries(RefactoringStatus status) {
+		RefactoringStatusEntry[] entries= status.getEntries();
+		for (int i= entries.length - 1; i >= 0; i--) {
+			if (entries[i].getCount() > 1)
+				return true;
+		}
+		return false;
+	}
+
 	protected String getLabelAsText(String label) {
 		Assert.isNotNull(label);
 		return LegacyActionTools.removeMnemonics(label);
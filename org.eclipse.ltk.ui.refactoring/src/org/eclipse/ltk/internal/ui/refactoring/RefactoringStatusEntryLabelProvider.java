@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,7 +19,12 @@ import org.eclipse.ltk.internal.ui.refactoring.util.Strings;
 
 public class RefactoringStatusEntryLabelProvider extends LabelProvider{
 		public String getText(Object element){
-			return Strings.removeNewLine(((RefactoringStatusEntry)element).getMessage());
+			RefactoringStatusEntry entry= (RefactoringStatusEntry)element;
+			String message= Strings.removeNewLine(entry.getMessage());
+			// the message of a summary without a code already states the number of problems
+			if (entry.getCount() > 1 && entry.getCode() != RefactoringStatusEntry.NO_CODE)
+				return Messages.format(RefactoringUIMessages.RefactoringStatusViewer_summary_label, new String[] { message, String.valueOf(entry.getCount() - 1) });
+			return message;
 		}
 		public Image getImage(Object element){
 			RefactoringStatusEntry entry= (RefactoringStatusEntry)element;
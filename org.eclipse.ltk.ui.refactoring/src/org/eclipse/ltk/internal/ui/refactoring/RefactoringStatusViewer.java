@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -55,9 +55,12 @@ public class RefactoringStatusViewer extends SashForm {
 		public NullContextViewer() {
 		}
 		public void createControl(Composite parent) {
-			fLabel= new Label(parent, SWT.CENTER | SWT.FLAT);
+			fLabel= new Label(parent, SWT.CENTER | SWT.WRAP | SWT.FLAT);
 			fLabel.setText(RefactoringUIMessages.ErrorWizardPage_no_context_information_available);
 		}
+		public void setText(String text) {
+			fLabel.setText(text);
+		}
 		public void setInput(RefactoringStatusContext input) {
 			// do nothing
 		}
@@ -251,6 +254,8 @@ public class RefactoringStatusViewer extends SashForm {
 		RefactoringStatusContext context= entry.getContext();
 		if (context == null || (fFilter != null && !fFilter.select(entry))) {
 			showNullContextViewer();
+			if (entry.getCount() > 1)
+				fNullContextViewer.setText(Messages.format(RefactoringUIMessages.RefactoringStatusViewer_summary_context, String.valueOf(entry.getCount())));
 		} else {
 			try {
 				StatusContextViewerDescriptor descriptor= StatusContextViewerDescriptor.get(context);
@@ -281,6 +286,7 @@ public class RefactoringStatusViewer extends SashForm {
 	}
 
 	private void showNullContextViewer() {
+		fNullContextViewer.setText(RefactoringUIMessages.ErrorWizardPage_no_context_information_available);
 		fCurrentContextViewer= fNullContextViewer;
 		fCurrentDescriptor= null;
 		fContextViewerContainer.showPage(fCurrentContextViewer.getControl());
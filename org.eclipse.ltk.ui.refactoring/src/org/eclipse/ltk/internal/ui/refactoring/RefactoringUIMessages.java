@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -82,6 +82,8 @@ public final class RefactoringUIMessages extends NLS {
 
 	public static String ErrorWizardPage_confirm;
 
+	public static String ErrorWizardPage_confirm_summarized;
+
 	public static String ErrorWizardPage_next_Change;
 
 	public static String ErrorWizardPage_no_context_information_available;
@@ -306,6 +308,10 @@ public final class RefactoringUIMessages extends NLS {
 
 	public static String RefactoringStatusViewer_Problem_context;
 
+	public static String RefactoringStatusViewer_summary_context;
+
+	public static String RefactoringStatusViewer_summary_label;
+
 	public static String RefactoringUI_cannot_execute;
 
 	public static String RefactoringUI_open_unexpected_exception;